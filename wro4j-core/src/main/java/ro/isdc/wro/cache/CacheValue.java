@@ -3,20 +3,25 @@
  */
 package ro.isdc.wro.cache;
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.Serializable;
-import java.util.zip.GZIPOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ro.isdc.wro.WroRuntimeException;
 import ro.isdc.wro.config.Context;
+import ro.isdc.wro.config.jmx.WroConfiguration;
+import ro.isdc.wro.http.support.ContentCodec;
+import ro.isdc.wro.http.support.ContentCodecs;
+import ro.isdc.wro.http.support.PreloadLinks;
+import ro.isdc.wro.http.support.ResponseValidators;
 
 
 /**
@@ -29,30 +34,101 @@ public final class CacheValue
   implements Serializable {
   private static final Logger LOG = LoggerFactory.getLogger(CacheValue.class);
   private String rawContent;
-  private byte[] gzippedContent;
+  /**
+   * The raw content encoded once (using configured encoding) when the value is created, in order to avoid encoding the
+   * content for each served request.
+   */
+  private byte[] rawBytes;
+  /**
+   * The compressed content by encoding (ex: gzip), computed once per encoding at {@link #compressionLevel}.
+   */
+  private final Map<String, byte[]> encodedContents = new ConcurrentHashMap<String, byte[]>();
+  private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
   private String hash;
+  /**
+   * The last modification timestamp of the served content. Initially the time when the content was set, unless the
+   * timestamp of the resources it was computed from is known (see {@link #setLastModified(long)}).
+   */
+  private long lastModified;
+  /**
+   * Validators computed once per content, rather than once per request.
+   */
+  private transient volatile ResponseValidators validators;
+  /**
+   * The value of the Link header with the preload hints of the css content, computed once per content. An empty string
+   * means that there is nothing to preload.
+   */
+  private transient volatile String preloadLinks;
 
-  private CacheValue(final String rawContent, final String hash) {
-    this.rawContent = rawContent;
+  private CacheValue(final String rawContent, final byte[] rawBytes, final String hash) {
     this.hash = hash;
-    //the trade-off between the memory and processing time
-    if (Context.get().getConfig().isCacheGzippedContent()) {
-      gzippedContent = computeGzippedContent(rawContent);
+    updateContent(rawContent, rawBytes);
+  }
+
+  private void updateContent(final String rawContent, final byte[] rawBytes) {
+    this.rawContent = rawContent;
+    this.lastModified = System.currentTimeMillis();
+    this.validators = null;
+    this.preloadLinks = null;
+    this.rawBytes = rawBytes;
+    this.encodedContents.clear();
+    final WroConfiguration config = Context.get().getConfig();
+    this.compressionLevel = config.getCompressionLevel();
+    if (config.isCacheGzippedContent() && rawBytes != null) {
+      // compress while the value is created rather than when it is first served
+      getEncodedContent(ContentCodecs.GZIP);
+      for (final ContentCodec codec : ContentCodecs.forEncodings(config.getContentEncodings())) {
+        getEncodedContent(codec);
+      }
     }
   }
 
-  private byte[] computeGzippedContent(final String content) {
-    LOG.debug("Gzipping the content....");
+  private static byte[] encode(final String content) {
     try {
-      final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      final OutputStream os = new GZIPOutputStream(new BufferedOutputStream(baos));
-      IOUtils.copy(new ByteArrayInputStream(content.getBytes(Context.get().getConfig().getEncoding())), os);
-      os.close();
-      return baos.toByteArray();
-    } catch (final IOException e) {
-      throw WroRuntimeException.wrap(e, "Problem while computing gzipped content").logError();
+      return content.getBytes(Context.get().getConfig().getEncoding());
+    } catch (final UnsupportedEncodingException e) {
+      throw WroRuntimeException.wrap(e, "Cannot encode the content").logError();
+    }
+  }
+
+  /**
+   * Compresses the content the first time it is requested for the provided codec, at the configured compression level.
+   * The compressed content is kept along with the value, thus it is computed only once per codec.
+   *
+   * @param codec
+   *          the codec used to compress the content.
+   * @return the compressed content, or null if there is no content. The returned array is shared and must not be
+   *         modified.
+   */
+  public byte[] getEncodedContent(final ContentCodec codec) {
+    if (rawBytes == null) {
+      return null;
     }
-  };
+    byte[] content = encodedContents.get(codec.getEncoding());
+    if (content == null) {
+      synchronized (encodedContents) {
+        content = encodedContents.get(codec.getEncoding());
+        if (content == null) {
+          LOG.debug("Compressing the content using {}....", codec.getEncoding());
+          try {
+            content = codec.encode(rawBytes, compressionLevel);
+          } catch (final IOException e) {
+            throw WroRuntimeException.wrap(e, "Problem while computing " + codec.getEncoding() + " content").logError();
+          }
+          encodedContents.put(codec.getEncoding(), content);
+        }
+      }
+    }
+    return content;
+  }
+
+  /**
+   * @return a buffer over the content compressed by the provided codec, or null if there is no content.
+   */
+  public ByteBuffer getEncodedBuffer(final ContentCodec codec) {
+    final byte[] content = getEncodedContent(codec);
+    return content == null ? null : ByteBuffer.wrap(content);
+  }
 
 
   /**
@@ -61,7 +137,19 @@ public final class CacheValue
    * @return {@link CacheValue} based on supplied values.
    */
   public static final CacheValue valueOf(final String rawContent, final String hash) {
-    return new CacheValue(rawContent, hash);
+    return new CacheValue(rawContent, rawContent == null ? null : encode(rawContent), hash);
+  }
+
+  /**
+   * Factory method used when the encoded content is already available, avoiding to encode the content again.
+   *
+   * @param rawBytes
+   *          the raw content encoded using the configured encoding.
+   * @return {@link CacheValue} based on supplied values.
+   * @since 1.8.1
+   */
+  public static final CacheValue valueOf(final String rawContent, final byte[] rawBytes, final String hash) {
+    return new CacheValue(rawContent, rawBytes, hash);
   }
 
   /**
@@ -76,10 +164,34 @@ public final class CacheValue
    * @param rawContent the content to set
    */
   public void setRawContent(final String rawContent) {
-    this.rawContent = rawContent;
+    updateContent(rawContent, rawContent == null ? null : encode(rawContent));
+  }
+
+  /**
+   * @return the raw content encoded using the encoding configured when the content was set. The returned array is
+   *         shared and must not be modified.
+   */
+  public byte[] getRawBytes() {
+    return this.rawBytes;
   }
 
 
+  /**
+   * @return a buffer over the encoded raw content, sharing the array returned by {@link #getRawBytes()} (no copy), or
+   *         null if there is no content.
+   */
+  public ByteBuffer getRawBuffer() {
+    return rawBytes == null ? null : ByteBuffer.wrap(rawBytes);
+  }
+
+  /**
+   * @return a buffer over the gzipped content, sharing the cached gzipped content when available, or null if there is
+   *         no content.
+   */
+  public ByteBuffer getGzippedBuffer() {
+    return getEncodedBuffer(ContentCodecs.GZIP);
+  }
+
   /**
    * @return the hash
    */
@@ -93,20 +205,81 @@ public final class CacheValue
    */
   public void setHash(final String hash) {
     this.hash = hash;
+    this.validators = null;
+  }
+
+  /**
+   * @return the last modification timestamp of the content of this value.
+   */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * @param lastModified
+   *          the last modification timestamp of the content, usually the newest timestamp of the resources the content
+   *          was computed from.
+   * @since 1.8.1
+   */
+  public void setLastModified(final long lastModified) {
+    this.lastModified = lastModified;
+    this.validators = null;
+  }
+
+  /**
+   * @return the validators of the response serving this value: the strong ETag (based on the hash) and the
+   *         Last-Modified timestamp.
+   */
+  public ResponseValidators getValidators() {
+    ResponseValidators result = validators;
+    if (result == null) {
+      result = ResponseValidators.strong(hash, lastModified);
+      validators = result;
+    }
+    return result;
+  }
+
+  /**
+   * @return the value of the Link header with the preload hints of the fonts and images referred by this value, when
+   *         it holds the content of a css bundle (see {@link PreloadLinks}), or null if there is nothing to preload.
+   */
+  public String getPreloadLinks() {
+    String result = preloadLinks;
+    if (result == null) {
+      result = rawContent == null ? "" : StringUtils.defaultString(PreloadLinks.fromCss(rawContent));
+      preloadLinks = result;
+    }
+    return result.length() == 0 ? null : result;
   }
 
   /**
    * @return the gzippedContent
    */
   public byte[] getGzippedContent() {
-    return this.gzippedContent == null ? computeGzippedContent(rawContent) : gzippedContent;
+    return getEncodedContent(ContentCodecs.GZIP);
+  }
+
+  /**
+   * @return the number of bytes held by this value: the raw content (two bytes per char), its encoded bytes and the
+   *         content compressed so far. Since the content is compressed when first requested for a codec, the weight
+   *         grows after the value is cached, unless the compressed content is computed while the value is created (see
+   *         {@link WroConfiguration#isCacheGzippedContent()}). A cache weighing its values when they are stored doesn't
+   *         account for the growth.
+   */
+  public long getWeight() {
+    long weight = rawContent == null ? 0 : 2L * rawContent.length();
+    weight += rawBytes == null ? 0 : rawBytes.length;
+    for (final byte[] content : encodedContents.values()) {
+      weight += content.length;
+    }
+    return weight;
   }
 
   /**
    * Used by unit test to prove that gzipped content is cached only when required.
    */
   byte[] getGzippedContentInternal() {
-    return this.gzippedContent;
+    return encodedContents.get(ContentCodecs.GZIP.getEncoding());
   }
 
   /**
@@ -0,0 +1,714 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.cache.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.isdc.wro.WroRuntimeException;
+import ro.isdc.wro.cache.CacheKey;
+import ro.isdc.wro.cache.CacheStrategy;
+import ro.isdc.wro.cache.CacheValue;
+import ro.isdc.wro.config.Context;
+import ro.isdc.wro.config.ReadOnlyContext;
+import ro.isdc.wro.model.WroModel;
+import ro.isdc.wro.model.WroModelInspector;
+import ro.isdc.wro.model.factory.WroModelFactory;
+import ro.isdc.wro.model.group.Group;
+import ro.isdc.wro.model.group.Inject;
+import ro.isdc.wro.model.resource.Resource;
+import ro.isdc.wro.model.resource.ResourceType;
+import ro.isdc.wro.model.resource.locator.factory.UriLocatorFactory;
+import ro.isdc.wro.model.resource.processor.ResourcePostProcessor;
+import ro.isdc.wro.model.resource.processor.ResourcePreProcessor;
+import ro.isdc.wro.model.resource.processor.factory.ProcessorsFactory;
+import ro.isdc.wro.model.resource.support.change.ResourceDependencyIndex;
+import ro.isdc.wro.model.resource.support.hash.SHA1HashStrategy;
+import ro.isdc.wro.util.AbstractDecorator;
+import ro.isdc.wro.util.DestroyableLazyInitializer;
+import ro.isdc.wro.util.LazyInitializer;
+import ro.isdc.wro.util.WroUtil;
+
+
+/**
+ * A {@link CacheStrategy} storing the processed groups in a local directory, allowing the cached content to survive
+ * restarts. This way, after a restart the groups are served immediately, without being processed again.
+ * <p/>
+ * The entries are stored in a folder identified by the fingerprint of the model and the processors chain, thus a
+ * change of the model or of the processors invalidates all entries. The entries stored for other fingerprints are
+ * deleted, only if found in a folder created by this strategy (containing a marker file). The entries are validated
+ * (using a checksum) when the cache is first used and the corrupted ones are deleted.
+ * <p/>
+ * Each entry records the resources it was produced from (including the imported ones, when known) and a digest of
+ * their content. An entry found on disk is served only if the digest of the resources is unchanged, thus the changes
+ * made while the application was stopped are not missed. The entries are written by a background thread, since
+ * computing the digest requires reading all the resources. The pending writes are completed when the strategy is
+ * destroyed.
+ * <p/>
+ * The values are also kept in a {@link WeightedMemoryCacheStrategy} bounded by the configured
+ * {@link ro.isdc.wro.config.jmx.WroConfiguration#getWeightedMemoryCacheSize()}, thus the entries evicted from memory
+ * are read again from disk. Any failure to read or write the disk is logged and treated as a cache miss. This class is
+ * thread-safe.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public class DiskCacheStrategy
+    implements CacheStrategy<CacheKey, CacheValue> {
+  private static final Logger LOG = LoggerFactory.getLogger(DiskCacheStrategy.class);
+  /**
+   * Aliased used by provider for this implementation
+   */
+  public static final String ALIAS = "disk";
+  /**
+   * The prefix of the folder created inside the temporary directory, when no explicit directory is configured. It is
+   * followed by an identifier of the web application and of the filter, in order to not share the folder.
+   */
+  static final String DEFAULT_FOLDER_NAME = "wro4j-cache";
+  /**
+   * The file identifying a folder created by this strategy. Only these folders are deleted when stale.
+   */
+  static final String MARKER_FILE = ".wro4j-disk-cache";
+  /**
+   * Standard servlet context attribute holding the temporary directory of the web application.
+   */
+  private static final String ATTR_SERVLET_TEMP_DIR = "javax.servlet.context.tempdir";
+  private static final String ENTRY_EXTENSION = ".entry";
+  /**
+   * Identifies the format of an entry file.
+   */
+  private static final int MAGIC = 0x77726f36;
+  /**
+   * Upper bounds of the counts read from an entry file, protecting against corrupted files.
+   */
+  private static final int MAX_ATTRIBUTES = 256;
+  private static final int MAX_RESOURCES = 10000;
+  /**
+   * How long to wait for the pending writes when the strategy is destroyed.
+   */
+  private static final long WRITE_TIMEOUT_SECONDS = 30;
+  @Inject
+  private ReadOnlyContext context;
+  @Inject
+  private WroModelFactory modelFactory;
+  @Inject
+  private ProcessorsFactory processorsFactory;
+  @Inject
+  private UriLocatorFactory locatorFactory;
+  @Inject
+  private ResourceDependencyIndex dependencyIndex;
+  /**
+   * Values already loaded from disk (or put), bounded by their weight.
+   */
+  private final DestroyableLazyInitializer<CacheStrategy<CacheKey, CacheValue>> memoryRef =
+      new DestroyableLazyInitializer<CacheStrategy<CacheKey, CacheValue>>() {
+    @Override
+    protected CacheStrategy<CacheKey, CacheValue> initialize() {
+      return WeightedMemoryCacheStrategy.forCacheValues(context.getConfig().getWeightedMemoryCacheSize());
+    }
+  };
+  /**
+   * Valid entries stored on disk.
+   */
+  private final ConcurrentMap<CacheKey, Entry> entries = new ConcurrentHashMap<CacheKey, Entry>();
+  /**
+   * The values put, not written to disk yet. A value whose write is pending is written only if it is not replaced
+   * meanwhile.
+   */
+  private final Map<CacheKey, CacheValue> pendingWrites = new ConcurrentHashMap<CacheKey, CacheValue>();
+  /**
+   * Guards the publishing of the written entries against the concurrent updates of the same keys.
+   */
+  private final Object entriesLock = new Object();
+  /**
+   * Writes the entries, one at a time, in the order they were put.
+   */
+  private final DestroyableLazyInitializer<ExecutorService> writerRef =
+      new DestroyableLazyInitializer<ExecutorService>() {
+    @Override
+    protected ExecutorService initialize() {
+      return Executors.newSingleThreadExecutor(WroUtil.createDaemonThreadFactory(DiskCacheStrategy.class.getName()));
+    }
+
+    @Override
+    public void destroy() {
+      if (isInitialized()) {
+        get().shutdown();
+        try {
+          if (!get().awaitTermination(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            LOG.warn("Timeout while waiting for the disk cache entries to be written");
+            get().shutdownNow();
+          }
+        } catch (final InterruptedException e) {
+          get().shutdownNow();
+          Thread.currentThread().interrupt();
+        }
+      }
+      super.destroy();
+    };
+  };
+  private final LazyInitializer<File> directoryInitializer = new LazyInitializer<File>() {
+    @Override
+    protected File initialize() {
+      final File directory = new File(getBaseDirectory(), computeFingerprint());
+      LOG.debug("Using disk cache directory: {}", directory);
+      deleteStaleFingerprints(directory);
+      loadEntries(directory);
+      return directory;
+    }
+  };
+
+  /**
+   * {@inheritDoc}
+   */
+  public CacheValue get(final CacheKey key) {
+    CacheValue value = memoryRef.get().get(key);
+    if (value == null) {
+      value = pendingWrites.get(key);
+    }
+    if (value == null) {
+      getDirectory();
+      final Entry entry = entries.get(key);
+      if (entry != null) {
+        value = load(entry);
+        if (value != null) {
+          memoryRef.get().put(key, value);
+        } else if (entries.remove(key, entry)) {
+          scheduleDelete(entry.file);
+        }
+      }
+    }
+    return value;
+  }
+
+  /**
+   * @return the value read from the entry, or null if the entry is not valid anymore.
+   */
+  private CacheValue load(final Entry entry) {
+    // the changes made while running are handled by invalidating the key, thus the digest is checked only once
+    if (!entry.verified) {
+      if (!entry.resourcesDigest.equals(computeResourcesDigest(entry.resourceUris))) {
+        LOG.debug("Resources changed since the disk cache entry was stored: {}", entry.file);
+        return null;
+      }
+      entry.verified = true;
+    }
+    return read(entry);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void put(final CacheKey key, final CacheValue value) {
+    final File file = getEntryFile(key);
+    synchronized (entriesLock) {
+      entries.remove(key);
+      memoryRef.get().put(key, value);
+      if (value == null) {
+        pendingWrites.remove(key);
+        scheduleDelete(file);
+      } else {
+        pendingWrites.put(key, value);
+        scheduleWrite(file, key, value);
+      }
+    }
+  }
+
+  /**
+   * Writes the entry using a copy of the current context, since the write may happen after the request completes.
+   */
+  private void scheduleWrite(final File file, final CacheKey key, final CacheValue value) {
+    final Context detachedContext = Context.detachedContext(Context.get());
+    writerRef.get().execute(new Runnable() {
+      public void run() {
+        if (pendingWrites.get(key) != value) {
+          LOG.debug("Skip writing the replaced disk cache entry: {}", key);
+          return;
+        }
+        Context.set(detachedContext, detachedContext.getConfig());
+        try {
+          final List<String> resourceUris = getResourceUris(key);
+          final String resourcesDigest = computeResourcesDigest(resourceUris);
+          // cannot be validated after restart without a digest
+          final Entry entry = resourcesDigest == null ? null : write(file, key, value, resourceUris, resourcesDigest);
+          publish(file, key, value, entry);
+        } catch (final RuntimeException e) {
+          LOG.warn("Could not write disk cache entry for key: " + key, e);
+          publish(file, key, value, null);
+        } finally {
+          Context.unset();
+        }
+      }
+    });
+  }
+
+  /**
+   * Makes the written entry available, unless the value was replaced meanwhile.
+   */
+  private void publish(final File file, final CacheKey key, final CacheValue value, final Entry entry) {
+    synchronized (entriesLock) {
+      if (pendingWrites.get(key) == value) {
+        pendingWrites.remove(key);
+        if (entry != null) {
+          entry.verified = true;
+          entries.put(key, entry);
+        } else {
+          FileUtils.deleteQuietly(file);
+        }
+      }
+    }
+  }
+
+  private void scheduleDelete(final File file) {
+    writerRef.get().execute(new Runnable() {
+      public void run() {
+        FileUtils.deleteQuietly(file);
+      }
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void clear() {
+    synchronized (entriesLock) {
+      memoryRef.get().clear();
+      entries.clear();
+      pendingWrites.clear();
+    }
+    if (directoryInitializer.isInitialized()) {
+      writerRef.get().execute(new Runnable() {
+        public void run() {
+          final File[] files = getDirectory().listFiles();
+          if (files != null) {
+            for (final File file : files) {
+              if (!MARKER_FILE.equals(file.getName())) {
+                FileUtils.deleteQuietly(file);
+              }
+            }
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Completes the pending writes and keeps the content on disk, in order to be used after restart.
+   */
+  public void destroy() {
+    writerRef.destroy();
+    memoryRef.destroy();
+    entries.clear();
+    pendingWrites.clear();
+  }
+
+  /**
+   * @return the folder containing the entries of the current fingerprint.
+   */
+  private File getDirectory() {
+    return directoryInitializer.get();
+  }
+
+  /**
+   * @return the folder containing the entries of all fingerprints.
+   * @VisibleForTesting
+   */
+  File getBaseDirectory() {
+    final String configuredDirectory = context.getConfig().getDiskCacheDirectory();
+    if (configuredDirectory != null) {
+      return new File(configuredDirectory);
+    }
+    final ServletContext servletContext = context.getServletContext();
+    final Object tempDir = servletContext != null ? servletContext.getAttribute(ATTR_SERVLET_TEMP_DIR) : null;
+    final File parent = tempDir instanceof File ? (File) tempDir : FileUtils.getTempDirectory();
+    return new File(parent, DEFAULT_FOLDER_NAME + "-" + computeContextId());
+  }
+
+  /**
+   * @return a short identifier of the web application and of the filter using this strategy.
+   */
+  private String computeContextId() {
+    final StringBuilder sb = new StringBuilder();
+    final ServletContext servletContext = context.getServletContext();
+    if (servletContext != null) {
+      sb.append(servletContext.getRealPath("/")).append(';').append(servletContext.getServletContextName());
+    }
+    final FilterConfig filterConfig = context.getFilterConfig();
+    if (filterConfig != null) {
+      sb.append(';').append(filterConfig.getFilterName());
+    }
+    return hash(toBytes(sb.toString())).substring(0, 8);
+  }
+
+  /**
+   * @return a fingerprint of the model and the processors chain used to produce the cached content.
+   */
+  private String computeFingerprint() {
+    final StringBuilder sb = new StringBuilder();
+    final WroModel model = modelFactory.create();
+    for (final Group group : model.getGroups()) {
+      sb.append(group.getName()).append('{');
+      for (final Resource resource : group.getResources()) {
+        sb.append(resource.getType()).append(':').append(resource.getUri());
+        sb.append(':').append(resource.isMinimize()).append(';');
+      }
+      sb.append('}');
+    }
+    for (final ResourcePreProcessor processor : processorsFactory.getPreProcessors()) {
+      sb.append(AbstractDecorator.getOriginalDecoratedObject(processor).getClass().getName()).append(';');
+    }
+    for (final ResourcePostProcessor processor : processorsFactory.getPostProcessors()) {
+      sb.append(AbstractDecorator.getOriginalDecoratedObject(processor).getClass().getName()).append(';');
+    }
+    sb.append(context.getConfig().getEncoding());
+    return hash(toBytes(sb.toString()));
+  }
+
+  /**
+   * @return the uris of the resources used to produce the group identified by the key, including the imported
+   *         resources recorded during processing.
+   */
+  private List<String> getResourceUris(final CacheKey key) {
+    final Set<String> uris = new LinkedHashSet<String>();
+    final Group group = new WroModelInspector(modelFactory.create()).getGroupByName(key.getGroupName());
+    if (group != null) {
+      for (final Resource resource : group.collectResourcesOfType(key.getType()).getResources()) {
+        collectUris(resource.getUri(), uris);
+      }
+    }
+    return new ArrayList<String>(uris);
+  }
+
+  private void collectUris(final String uri, final Set<String> uris) {
+    if (uris.add(uri)) {
+      final List<String> imports = dependencyIndex.getImports(uri);
+      if (imports != null) {
+        for (final String importedUri : imports) {
+          collectUris(importedUri, uris);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the digest of the content of all the provided resources, or null if any of them cannot be located.
+   */
+  private String computeResourcesDigest(final List<String> uris) {
+    final StringBuilder sb = new StringBuilder();
+    for (final String uri : uris) {
+      try {
+        sb.append(uri).append('=').append(hash(locatorFactory.locate(uri))).append(';');
+      } catch (final Exception e) {
+        LOG.debug("[FAIL] Cannot compute the digest of the resource: {}", uri);
+        return null;
+      }
+    }
+    return hash(toBytes(sb.toString()));
+  }
+
+  private String hash(final byte[] bytes) {
+    try {
+      return hash(new ByteArrayInputStream(bytes));
+    } catch (final IOException e) {
+      throw WroRuntimeException.wrap(e);
+    }
+  }
+
+  private String hash(final InputStream input)
+      throws IOException {
+    try {
+      return new SHA1HashStrategy().getHash(input);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private byte[] toBytes(final String value) {
+    try {
+      return value.getBytes("UTF-8");
+    } catch (final UnsupportedEncodingException e) {
+      throw WroRuntimeException.wrap(e);
+    }
+  }
+
+  /**
+   * Deletes the folders of the other fingerprints, created by this strategy.
+   */
+  private void deleteStaleFingerprints(final File directory) {
+    final File[] folders = directory.getParentFile().listFiles();
+    if (folders != null) {
+      for (final File folder : folders) {
+        if (folder.isDirectory() && !folder.equals(directory) && new File(folder, MARKER_FILE).isFile()) {
+          LOG.debug("Deleting stale disk cache folder: {}", folder);
+          FileUtils.deleteQuietly(folder);
+        }
+      }
+    }
+  }
+
+  /**
+   * Validates the entries found in the directory, deleting the invalid ones.
+   */
+  private void loadEntries(final File directory) {
+    directory.mkdirs();
+    final File marker = new File(directory, MARKER_FILE);
+    try {
+      marker.createNewFile();
+    } catch (final IOException e) {
+      LOG.warn("Could not create the disk cache marker file: " + marker, e);
+    }
+    final File[] files = directory.listFiles();
+    if (files != null) {
+      for (final File file : files) {
+        if (file.equals(marker)) {
+          continue;
+        }
+        final Entry entry = file.getName().endsWith(ENTRY_EXTENSION) ? readEntry(file) : null;
+        if (entry == null) {
+          LOG.debug("Deleting invalid disk cache entry: {}", file);
+          FileUtils.deleteQuietly(file);
+        } else {
+          entries.put(entry.key, entry);
+        }
+      }
+    }
+    LOG.debug("Found {} valid entries in disk cache", entries.size());
+  }
+
+  private File getEntryFile(final CacheKey key) {
+    try {
+      final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      writeKey(new DataOutputStream(baos), key);
+      return new File(getDirectory(), hash(baos.toByteArray()) + ENTRY_EXTENSION);
+    } catch (final IOException e) {
+      throw WroRuntimeException.wrap(e, "Cannot encode cache key: " + key);
+    }
+  }
+
+  /**
+   * Entry file format: magic number, key, hash, last modified timestamp, resource uris, digest of the resources,
+   * checksum of the content, content length and content bytes. The entry is written in a temporary file, which then replaces the entry file.
+   *
+   * @return the written {@link Entry} or null if the write failed.
+   */
+  private Entry write(final File file, final CacheKey key, final CacheValue value, final List<String> resourceUris,
+      final String resourcesDigest) {
+    File tempFile = null;
+    DataOutputStream out = null;
+    try {
+      final byte[] content = value.getRawBytes() == null ? new byte[0] : value.getRawBytes();
+      tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+      out = new DataOutputStream(new FileOutputStream(tempFile));
+      out.writeInt(MAGIC);
+      writeKey(out, key);
+      out.writeUTF(value.getHash() == null ? "" : value.getHash());
+      out.writeLong(value.getLastModified());
+      out.writeInt(resourceUris.size());
+      for (final String uri : resourceUris) {
+        out.writeUTF(uri);
+      }
+      out.writeUTF(resourcesDigest);
+      final CRC32 crc = new CRC32();
+      crc.update(content);
+      out.writeLong(crc.getValue());
+      out.writeInt(content.length);
+      final Entry entry = new Entry(file, key);
+      entry.hash = value.getHash() == null ? "" : value.getHash();
+      entry.lastModified = value.getLastModified();
+      entry.resourceUris.addAll(resourceUris);
+      entry.resourcesDigest = resourcesDigest;
+      entry.offset = out.size();
+      entry.length = content.length;
+      out.write(content);
+      out.close();
+      replace(tempFile, file);
+      return entry;
+    } catch (final IOException e) {
+      LOG.warn("Could not write disk cache entry for key: " + key, e);
+      FileUtils.deleteQuietly(tempFile);
+      return null;
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  /**
+   * Renames the source to the target. The rename replaces the target atomically where supported (ex: POSIX file
+   * systems), otherwise the target is deleted first.
+   */
+  private void replace(final File source, final File target)
+      throws IOException {
+    if (!source.renameTo(target)) {
+      FileUtils.deleteQuietly(target);
+      if (!source.renameTo(target)) {
+        throw new IOException("Cannot rename " + source + " to " + target);
+      }
+    }
+  }
+
+  /**
+   * Key format: group name, resource type, minimize flag, number of attributes followed by the attributes (sorted by
+   * name).
+   */
+  private void writeKey(final DataOutputStream out, final CacheKey key)
+      throws IOException {
+    out.writeUTF(key.getGroupName());
+    out.writeUTF(key.getType().name());
+    out.writeBoolean(key.isMinimize());
+    final Map<String, String> attributes = new TreeMap<String, String>(key.getAttributes());
+    out.writeInt(attributes.size());
+    for (final Map.Entry<String, String> attribute : attributes.entrySet()) {
+      out.writeUTF(attribute.getKey());
+      out.writeUTF(attribute.getValue());
+    }
+  }
+
+  private CacheKey readKey(final DataInputStream in)
+      throws IOException {
+    final String groupName = in.readUTF();
+    final ResourceType type = ResourceType.valueOf(in.readUTF());
+    final CacheKey key = new CacheKey(groupName, type, in.readBoolean());
+    final int count = readCount(in, MAX_ATTRIBUTES);
+    for (int i = 0; i < count; i++) {
+      key.addAttribute(in.readUTF(), in.readUTF());
+    }
+    return key;
+  }
+
+  private int readCount(final DataInputStream in, final int max)
+      throws IOException {
+    final int count = in.readInt();
+    if (count < 0 || count > max) {
+      throw new IOException("Invalid count: " + count);
+    }
+    return count;
+  }
+
+  /**
+   * Reads the header of the entry and validates the checksum of the content, without loading the content in memory.
+   *
+   * @return the {@link Entry} or null if the file is invalid.
+   */
+  private Entry readEntry(final File file) {
+    DataInputStream in = null;
+    try {
+      final CountingInputStream counter = new CountingInputStream(new FileInputStream(file));
+      in = new DataInputStream(counter);
+      if (in.readInt() != MAGIC) {
+        return null;
+      }
+      final Entry entry = new Entry(file, readKey(in));
+      entry.hash = in.readUTF();
+      entry.lastModified = in.readLong();
+      final int resourcesCount = readCount(in, MAX_RESOURCES);
+      for (int i = 0; i < resourcesCount; i++) {
+        entry.resourceUris.add(in.readUTF());
+      }
+      entry.resourcesDigest = in.readUTF();
+      final long checksum = in.readLong();
+      final int length = in.readInt();
+      final long offset = counter.getByteCount();
+      if (length < 0 || length != file.length() - offset) {
+        return null;
+      }
+      final CRC32 crc = new CRC32();
+      final byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        crc.update(buffer, 0, read);
+      }
+      if (crc.getValue() != checksum) {
+        return null;
+      }
+      entry.offset = offset;
+      entry.length = length;
+      return entry;
+    } catch (final Exception e) {
+      LOG.debug("Invalid disk cache entry: {}", file);
+      return null;
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /**
+   * Reads the content of an already validated entry. The read bytes are used as the encoded content of the value.
+   */
+  private CacheValue read(final Entry entry) {
+    RandomAccessFile in = null;
+    try {
+      in = new RandomAccessFile(entry.file, "r");
+      in.seek(entry.offset);
+      final byte[] content = new byte[entry.length];
+      in.readFully(content);
+      final String hash = entry.hash.length() == 0 ? null : entry.hash;
+      final CacheValue value = CacheValue.valueOf(decode(content), content, hash);
+      value.setLastModified(entry.lastModified);
+      return value;
+    } catch (final IOException e) {
+      LOG.warn("Could not read disk cache entry: " + entry.file, e);
+      return null;
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  private String decode(final byte[] content)
+      throws UnsupportedEncodingException {
+    return new String(content, context.getConfig().getEncoding());
+  }
+
+  /**
+   * A valid entry found on disk.
+   */
+  private static final class Entry {
+    private final File file;
+    private final CacheKey key;
+    private final List<String> resourceUris = new ArrayList<String>();
+    private String resourcesDigest;
+    private String hash;
+    private long lastModified;
+    private long offset;
+    private int length;
+    /**
+     * True if the resources are known to be unchanged since the entry was stored.
+     */
+    private volatile boolean verified;
+
+    Entry(final File file, final CacheKey key) {
+      this.file = file;
+      this.key = key;
+    }
+  }
+}
@@ -0,0 +1,450 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.cache.impl;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.isdc.wro.cache.CacheKey;
+import ro.isdc.wro.cache.CacheStrategy;
+import ro.isdc.wro.cache.CacheValue;
+import ro.isdc.wro.config.ReadOnlyContext;
+import ro.isdc.wro.config.jmx.WroConfiguration;
+import ro.isdc.wro.model.group.Inject;
+import ro.isdc.wro.util.LazyInitializer;
+
+
+/**
+ * A memory {@link CacheStrategy} bounded by the total weight (ex: number of bytes) of the cached values, instead of the
+ * number of entries. This is useful when the size of cached values varies a lot, or when the number of entries is hard
+ * to predict (ex: when the {@link CacheKey} has attributes for each browser).
+ * <p/>
+ * When the maximum weight is exceeded, the least recently used entries are evicted. A new entry is admitted only if it
+ * was requested at least as frequently as the entries it would evict (TinyLFU admission policy), this way the hot
+ * entries are not evicted by entries requested only once. The frequencies are estimated using a small count-min sketch
+ * which is periodically aged. The admission is decided before evicting anything and the replacement of a cached entry
+ * is always admitted. The entries are kept ordered by their last access, thus finding the entries to evict doesn't
+ * depend on the number of cached entries.
+ * <p/>
+ * The values which are not admitted are held by soft references, until reclaimed by the garbage collector. They are
+ * served meanwhile, thus they are not computed again on each request, and are admitted as soon as they become frequent
+ * enough. The total weight of these values is also bounded by the maximum weight: the oldest ones are dropped first.
+ * The values heavier than the maximum weight are never held.
+ * <p/>
+ * The reads of admitted values do not acquire any lock. Only the writes and the reads of rejected values are
+ * serialized. As all {@link MemoryCacheStrategy}s this cache is thread-safe.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public class WeightedMemoryCacheStrategy<K, V>
+    implements CacheStrategy<K, V> {
+  private static final Logger LOG = LoggerFactory.getLogger(WeightedMemoryCacheStrategy.class);
+  /**
+   * Aliased used by provider for this implementation
+   */
+  public static final String ALIAS = "weighted-memory";
+  private final ConcurrentMap<K, Node<K, V>> map = new ConcurrentHashMap<K, Node<K, V>>();
+  /**
+   * The admitted entries, ordered by their last access (the least recently used first).
+   */
+  private final ConcurrentSkipListMap<Long, Node<K, V>> accessOrder = new ConcurrentSkipListMap<Long, Node<K, V>>();
+  /**
+   * The values which were not admitted, held softly, in the order they were rejected. Guarded by the write lock.
+   */
+  private final Map<K, KeyedReference<K, V>> rejected = new LinkedHashMap<K, KeyedReference<K, V>>();
+  private final ReferenceQueue<V> rejectedQueue = new ReferenceQueue<V>();
+  private final FrequencySketch sketch = new FrequencySketch();
+  /**
+   * Used to order the entries by the last access.
+   */
+  private final AtomicLong ticker = new AtomicLong();
+  private final Object writeLock = new Object();
+  private final long maxWeight;
+  private final Weigher<? super V> weigher;
+  private long totalWeight;
+  private long rejectedWeight;
+
+  /**
+   * Computes the weight of a cached value.
+   */
+  public static interface Weigher<V> {
+    /**
+     * @return the weight of the value, never negative.
+     */
+    long weigh(V value);
+  }
+
+  /**
+   * @return a {@link WeightedMemoryCacheStrategy} bounded by the number of bytes held by the {@link CacheValue}'s.
+   */
+  public static WeightedMemoryCacheStrategy<CacheKey, CacheValue> forCacheValues(final long maxWeight) {
+    return new WeightedMemoryCacheStrategy<CacheKey, CacheValue>(maxWeight, new Weigher<CacheValue>() {
+      public long weigh(final CacheValue value) {
+        return value.getWeight();
+      }
+    });
+  }
+
+  /**
+   * @return a {@link CacheStrategy} bounded by the number of bytes held by the {@link CacheValue}'s, whose maximum weight
+   *         is read from the {@link WroConfiguration#getWeightedMemoryCacheSize()} when first used.
+   */
+  public static CacheStrategy<CacheKey, CacheValue> forConfiguredCacheValues() {
+    return new ConfiguredCacheStrategy();
+  }
+
+  /**
+   * @param maxWeight
+   *          the maximum total weight of the cached values. It must be greater than 0.
+   * @param weigher
+   *          the {@link Weigher} used to compute the weight of each cached value.
+   */
+  public WeightedMemoryCacheStrategy(final long maxWeight, final Weigher<? super V> weigher) {
+    isTrue(maxWeight > 0, "The maximum weight must be greater than 0");
+    notNull(weigher);
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public V get(final K key) {
+    sketch.increment(key);
+    final Node<K, V> node = map.get(key);
+    if (node != null) {
+      touch(node);
+      return node.value;
+    }
+    return getRejected(key);
+  }
+
+  /**
+   * Moves the entry at the end of the access order, unless it was evicted meanwhile.
+   */
+  private void touch(final Node<K, V> node) {
+    final long tick = ticker.incrementAndGet();
+    synchronized (node) {
+      if (accessOrder.remove(node.lastAccess, node)) {
+        node.lastAccess = tick;
+        accessOrder.put(tick, node);
+      }
+    }
+  }
+
+  /**
+   * @return the value which was not admitted, if not reclaimed yet. The value is admitted if it became frequent enough.
+   */
+  private V getRejected(final K key) {
+    synchronized (writeLock) {
+      expungeReclaimed();
+      final KeyedReference<K, V> reference = rejected.get(key);
+      final V value = reference != null ? reference.get() : null;
+      if (value != null && admit(key, value, reference.weight, false)) {
+        LOG.debug("Admitted the previously rejected {}", key);
+        removeRejected(key);
+      }
+      return value;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void put(final K key, final V value) {
+    notNull(key);
+    synchronized (writeLock) {
+      expungeReclaimed();
+      removeRejected(key);
+      if (value == null) {
+        remove(key);
+        return;
+      }
+      final long weight = weigher.weigh(value);
+      if (!admit(key, value, weight, map.containsKey(key))) {
+        remove(key);
+        if (weight <= maxWeight) {
+          holdRejected(key, value, weight);
+        }
+      }
+    }
+  }
+
+  /**
+   * Holds softly the rejected value, dropping the oldest rejected values when their total weight exceeds the maximum
+   * weight. Must be invoked while holding the write lock.
+   */
+  private void holdRejected(final K key, final V value, final long weight) {
+    final Iterator<KeyedReference<K, V>> iterator = rejected.values().iterator();
+    while (rejectedWeight + weight > maxWeight && iterator.hasNext()) {
+      rejectedWeight -= iterator.next().weight;
+      iterator.remove();
+    }
+    rejected.put(key, new KeyedReference<K, V>(key, value, weight, rejectedQueue));
+    rejectedWeight += weight;
+  }
+
+  /**
+   * Must be invoked while holding the write lock.
+   */
+  private void removeRejected(final K key) {
+    final KeyedReference<K, V> reference = rejected.remove(key);
+    if (reference != null) {
+      rejectedWeight -= reference.weight;
+    }
+  }
+
+  /**
+   * Decides the admission of the value before evicting anything. Must be invoked while holding the write lock.
+   *
+   * @param isReplacement
+   *          true if the key is already cached, in which case the value is admitted if it is not heavier than the
+   *          maximum weight.
+   * @return true if the value was admitted.
+   */
+  private boolean admit(final K key, final V value, final long weight, final boolean isReplacement) {
+    if (weight > maxWeight) {
+      LOG.debug("The value of {} is too large to be cached: {}", key, weight);
+      return false;
+    }
+    final Node<K, V> existing = map.get(key);
+    final long requiredWeight = totalWeight - (existing != null ? existing.weight : 0) + weight - maxWeight;
+    final List<Node<K, V>> victims = new ArrayList<Node<K, V>>();
+    long freedWeight = 0;
+    for (final Node<K, V> node : accessOrder.values()) {
+      if (freedWeight >= requiredWeight) {
+        break;
+      }
+      if (!node.key.equals(key)) {
+        if (!isReplacement && sketch.frequency(key) < sketch.frequency(node.key)) {
+          LOG.debug("Rejected {} in favor of more frequently used {}", key, node.key);
+          return false;
+        }
+        victims.add(node);
+        freedWeight += node.weight;
+      }
+    }
+    for (final Node<K, V> victim : victims) {
+      LOG.debug("Evicting {}", victim.key);
+      remove(victim.key);
+      onEvicted(victim.key, victim.value);
+    }
+    remove(key);
+    final Node<K, V> node = new Node<K, V>(key, value, weight, ticker.incrementAndGet());
+    accessOrder.put(node.lastAccess, node);
+    map.put(key, node);
+    totalWeight += weight;
+    return true;
+  }
+
+  /**
+   * Invoked while holding the write lock, when a value is evicted in order to make room for another one. Useful for
+   * releasing the resources held by the value. The default implementation does nothing.
+   */
+  protected void onEvicted(final K key, final V value) {
+  }
+
+  /**
+   * Must be invoked while holding the write lock.
+   */
+  private void remove(final K key) {
+    final Node<K, V> node = map.remove(key);
+    if (node != null) {
+      synchronized (node) {
+        accessOrder.remove(node.lastAccess, node);
+      }
+      totalWeight -= node.weight;
+    }
+  }
+
+  /**
+   * Removes the rejected entries whose values were reclaimed by the garbage collector. Must be invoked while holding the
+   * write lock.
+   */
+  @SuppressWarnings("unchecked")
+  private void expungeReclaimed() {
+    Reference<? extends V> reference;
+    while ((reference = rejectedQueue.poll()) != null) {
+      final KeyedReference<K, V> keyedReference = (KeyedReference<K, V>) reference;
+      if (rejected.get(keyedReference.key) == keyedReference) {
+        removeRejected(keyedReference.key);
+      }
+    }
+  }
+
+  /**
+   * @return the total weight of the cached values.
+   */
+  public long getTotalWeight() {
+    synchronized (writeLock) {
+      return totalWeight;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void clear() {
+    synchronized (writeLock) {
+      map.clear();
+      accessOrder.clear();
+      rejected.clear();
+      totalWeight = 0;
+      rejectedWeight = 0;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void destroy() {
+    clear();
+  }
+
+  /**
+   * Creates the {@link WeightedMemoryCacheStrategy} only when first used, since the configuration is not available when
+   * the cache strategies are provided.
+   */
+  private static final class ConfiguredCacheStrategy
+      implements CacheStrategy<CacheKey, CacheValue> {
+    @Inject
+    private ReadOnlyContext context;
+    private final LazyInitializer<WeightedMemoryCacheStrategy<CacheKey, CacheValue>> cacheRef =
+        new LazyInitializer<WeightedMemoryCacheStrategy<CacheKey, CacheValue>>() {
+      @Override
+      protected WeightedMemoryCacheStrategy<CacheKey, CacheValue> initialize() {
+        final long maxWeight = context != null ? context.getConfig().getWeightedMemoryCacheSize()
+            : WroConfiguration.DEFAULT_WEIGHTED_MEMORY_CACHE_SIZE;
+        LOG.debug("Creating weighted memory cache of size: {}", maxWeight);
+        return forCacheValues(maxWeight);
+      }
+    };
+
+    public CacheValue get(final CacheKey key) {
+      return cacheRef.get().get(key);
+    }
+
+    public void put(final CacheKey key, final CacheValue value) {
+      cacheRef.get().put(key, value);
+    }
+
+    public void clear() {
+      if (cacheRef.isInitialized()) {
+        cacheRef.get().clear();
+      }
+    }
+
+    public void destroy() {
+      clear();
+    }
+  }
+
+  private static final class Node<K, V> {
+    private final K key;
+    private final V value;
+    private final long weight;
+    private volatile long lastAccess;
+
+    Node(final K key, final V value, final long weight, final long lastAccess) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+      this.lastAccess = lastAccess;
+    }
+  }
+
+  /**
+   * A soft reference to a rejected value, remembering its key and weight.
+   */
+  private static final class KeyedReference<K, V>
+      extends SoftReference<V> {
+    private final K key;
+    private final long weight;
+
+    KeyedReference(final K key, final V value, final long weight, final ReferenceQueue<V> queue) {
+      super(value, queue);
+      this.key = key;
+      this.weight = weight;
+    }
+  }
+
+  /**
+   * A count-min sketch estimating the access frequency of the keys, using 4 bit counters. All counters are halved
+   * after a number of increments, in order to favor the recent accesses.
+   */
+  private static final class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 1024;
+    private static final int MAX_FREQUENCY = 15;
+    private static final int SAMPLE_SIZE = 10 * WIDTH;
+    private static final int[] SEEDS = {
+      0x97cb3127, 0xb2f9b4c1, 0xc3a5c85d, 0x8ebc6af1
+    };
+    private final AtomicIntegerArray table = new AtomicIntegerArray(DEPTH * WIDTH);
+    private final AtomicInteger additions = new AtomicInteger();
+
+    void increment(final Object key) {
+      final int hash = spread(key.hashCode());
+      for (int i = 0; i < DEPTH; i++) {
+        final int index = indexOf(hash, i);
+        int count;
+        do {
+          count = table.get(index);
+        } while (count < MAX_FREQUENCY && !table.compareAndSet(index, count, count + 1));
+      }
+      if (additions.incrementAndGet() >= SAMPLE_SIZE) {
+        reset();
+      }
+    }
+
+    int frequency(final Object key) {
+      final int hash = spread(key.hashCode());
+      int frequency = MAX_FREQUENCY;
+      for (int i = 0; i < DEPTH; i++) {
+        frequency = Math.min(frequency, table.get(indexOf(hash, i)));
+      }
+      return frequency;
+    }
+
+    private synchronized void reset() {
+      if (additions.get() >= SAMPLE_SIZE) {
+        for (int i = 0; i < table.length(); i++) {
+          table.set(i, table.get(i) >>> 1);
+        }
+        additions.set(0);
+      }
+    }
+
+    private int indexOf(final int hash, final int depth) {
+      int h = hash * SEEDS[depth];
+      h ^= h >>> 16;
+      return depth * WIDTH + (h & (WIDTH - 1));
+    }
+
+    private int spread(final int hashCode) {
+      int h = hashCode * 0x9e3779b9;
+      h ^= h >>> 15;
+      return h;
+    }
+  }
+}
@@ -2,14 +2,21 @@ package ro.isdc.wro.cache.support;
 
 import static org.apache.commons.lang3.Validate.notNull;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ro.isdc.wro.WroRuntimeException;
 import ro.isdc.wro.cache.CacheStrategy;
 
 
@@ -17,6 +24,11 @@ import ro.isdc.wro.cache.CacheStrategy;
  * Ensure that the {@link AbstractSynchronizedCacheStrategyDecorator#loadValue(Object)} will be called only once for the same
  * key. This behavior is important for avoiding redundant execution of expensive computation in concurrent environment
  * which cause high memory and CPU consumption.
+ * <p/>
+ * The cache hits do not acquire any lock. When the value is missing, a single load per key is in-flight at a time: the
+ * first thread computes the value, while the others wait for the same result. The in-flight load is discarded as soon
+ * as it completes, thus no state is retained per key. The same applies to the values loaded together (see
+ * {@link #getAll(Collection)}).
  *
  * @author Alex Objelean
  * @created 30 Apr 2012
@@ -25,7 +37,10 @@ import ro.isdc.wro.cache.CacheStrategy;
 public abstract class AbstractSynchronizedCacheStrategyDecorator<K, V>
     extends CacheStrategyDecorator<K, V> {
   private static final Logger LOG = LoggerFactory.getLogger(AbstractSynchronizedCacheStrategyDecorator.class);
-  private final ConcurrentMap<K, ReadWriteLock> locks = new ConcurrentHashMap<K, ReadWriteLock>();
+  /**
+   * Holds the loads in progress. An entry is removed as soon as the load is completed.
+   */
+  private final ConcurrentMap<K, LoadTask> pendingLoads = new ConcurrentHashMap<K, LoadTask>();
 
   public AbstractSynchronizedCacheStrategyDecorator(final CacheStrategy<K, V> decorated) {
     super(decorated);
@@ -35,31 +50,145 @@ public abstract class AbstractSynchronizedCacheStrategyDecorator<K, V>
   public final V get(final K key) {
     notNull(key);
     LOG.debug("Searching cache key: {}", key);
-    V value = null;
-    //invoke this callback method before the lock is acquired to avoid dead-lock
+    //invoke this callback method before the value is loaded to avoid dead-lock
     onBeforeGet(key);
-    final ReadWriteLock lock = getLockForKey(key);
-    lock.readLock().lock();
+    V value = getDecoratedObject().get(key);
+    if (value == null) {
+      value = loadOnce(key);
+    }
+    return value;
+  }
+
+  /**
+   * Returns the values of all provided keys. The keys missing from the cache are loaded together (see
+   * {@link #loadValues(Collection)}), except the ones already being loaded by other threads, whose result is awaited.
+   * Meanwhile, the concurrent {@link #get(Object)} of the keys loaded together wait for the result of this batch.
+   *
+   * @param keys
+   *          the keys whose values to get.
+   * @return the value of each key, in the iteration order of the provided keys.
+   */
+  public final Map<K, V> getAll(final Collection<K> keys) {
+    notNull(keys);
+    final Map<K, V> result = new LinkedHashMap<K, V>();
+    for (final K key : keys) {
+      notNull(key);
+      if (!result.containsKey(key)) {
+        onBeforeGet(key);
+        result.put(key, getDecoratedObject().get(key));
+      }
+    }
+    final Map<K, LoadTask> ownedTasks = new LinkedHashMap<K, LoadTask>();
+    final Map<K, LoadTask> awaitedTasks = new LinkedHashMap<K, LoadTask>();
+    for (final Map.Entry<K, V> entry : result.entrySet()) {
+      if (entry.getValue() == null) {
+        final K key = entry.getKey();
+        final LoadTask task = new LoadTask(key);
+        final LoadTask pending = pendingLoads.putIfAbsent(key, task);
+        if (pending == null) {
+          ownedTasks.put(key, task);
+        } else {
+          awaitedTasks.put(key, pending);
+        }
+      }
+    }
+    if (!ownedTasks.isEmpty()) {
+      loadAll(ownedTasks);
+    }
+    for (final Map.Entry<K, LoadTask> entry : ownedTasks.entrySet()) {
+      result.put(entry.getKey(), await(entry.getValue()));
+    }
+    for (final Map.Entry<K, LoadTask> entry : awaitedTasks.entrySet()) {
+      result.put(entry.getKey(), await(entry.getValue()));
+    }
+    return result;
+  }
+
+  /**
+   * Loads the values of the keys whose load tasks were registered by the current thread, completing each task.
+   */
+  private void loadAll(final Map<K, LoadTask> ownedTasks) {
     try {
-      value = getDecoratedObject().get(key);
+      final List<K> missingKeys = new ArrayList<K>();
+      for (final Map.Entry<K, LoadTask> entry : ownedTasks.entrySet()) {
+        // the value could be loaded by another thread before the task was registered
+        final V value = getDecoratedObject().get(entry.getKey());
+        if (value != null) {
+          entry.getValue().complete(value);
+        } else {
+          missingKeys.add(entry.getKey());
+        }
+      }
+      if (!missingKeys.isEmpty()) {
+        LOG.debug("Cache is empty. Loading new values for keys: {}", missingKeys);
+        final Map<K, V> values = loadValues(missingKeys);
+        for (final K key : missingKeys) {
+          final V value = values.get(key);
+          getDecoratedObject().put(key, value);
+          onPut(key, value);
+          ownedTasks.get(key).complete(value);
+        }
+      }
+    } catch (final RuntimeException e) {
+      failAll(ownedTasks, e);
+    } catch (final Error e) {
+      failAll(ownedTasks, e);
+      throw e;
     } finally {
-      lock.readLock().unlock();
+      for (final Map.Entry<K, LoadTask> entry : ownedTasks.entrySet()) {
+        pendingLoads.remove(entry.getKey(), entry.getValue());
+      }
     }
-    if (value == null) {
-      lock.writeLock().lock();
+  }
+
+  private void failAll(final Map<K, LoadTask> tasks, final Throwable e) {
+    for (final LoadTask task : tasks.values()) {
+      task.fail(e);
+    }
+  }
+
+  /**
+   * @return true if the value of the provided key is available in the cache. The value is not loaded when missing.
+   */
+  public final boolean isCached(final K key) {
+    notNull(key);
+    return getDecoratedObject().get(key) != null;
+  }
+
+  /**
+   * Loads the value in the current thread, unless another thread is already loading it, in which case waits for its
+   * result.
+   */
+  private V loadOnce(final K key) {
+    final LoadTask task = new LoadTask(key);
+    LoadTask pending = pendingLoads.putIfAbsent(key, task);
+    if (pending == null) {
+      pending = task;
       try {
-        // this is necessary to ensure that the load wasn't invoked
-        value = getDecoratedObject().get(key);
-        if (value == null) {
-          LOG.debug("Cache is empty. Loading new value...");
-          value = loadValue(key);
-          put(key, value);
-        }
+        task.run();
       } finally {
-        lock.writeLock().unlock();
+        pendingLoads.remove(key, task);
       }
     }
-    return value;
+    return await(pending);
+  }
+
+  private V await(final LoadTask task) {
+    try {
+      return task.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw WroRuntimeException.wrap(e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw WroRuntimeException.wrap((Exception) cause);
+    }
   }
 
   /**
@@ -69,23 +198,28 @@ public abstract class AbstractSynchronizedCacheStrategyDecorator<K, V>
   protected void onBeforeGet(final K key) {
   }
 
+  /**
+   * If a load is in progress for the same key, waits for it to complete before updating the value. This way, the value
+   * put (ex: null when invalidating the cache) won't be overridden by a load which started before.
+   */
   @Override
   public final void put(final K key, final V value) {
-    final ReadWriteLock lock = getLockForKey(key);
-    lock.writeLock().lock();
-    try {
-      getDecoratedObject().put(key, value);
-    } finally {
-      lock.writeLock().unlock();
+    final LoadTask pending = pendingLoads.get(key);
+    if (pending != null && !pending.isOwnedByCurrentThread()) {
+      try {
+        await(pending);
+      } catch (final RuntimeException e) {
+        LOG.debug("Pending load failed for key: {}", key);
+      }
     }
+    getDecoratedObject().put(key, value);
+    onPut(key, value);
   }
 
   /**
-   * Ensure that the returned lock will never be null.
+   * Invoked after a value (possibly null) is stored in the cache, either when loaded or when explicitly put.
    */
-  private ReadWriteLock getLockForKey(final K key) {
-    final ReadWriteLock lock = locks.putIfAbsent(key, new ReentrantReadWriteLock());
-    return lock == null ? locks.get(key) : lock;
+  protected void onPut(final K key, final V value) {
   }
 
   /**
@@ -93,4 +227,59 @@ public abstract class AbstractSynchronizedCacheStrategyDecorator<K, V>
    * multiple times for the same key.
    */
   protected abstract V loadValue(final K key);
+
+  /**
+   * Loads the values associated with the provided keys, none of them being loaded by another thread. The default
+   * implementation loads each value using {@link #loadValue(Object)}. Override it when loading more values at once is
+   * cheaper than loading them one by one.
+   *
+   * @return the loaded value of each key.
+   */
+  protected Map<K, V> loadValues(final Collection<K> keys) {
+    final Map<K, V> values = new LinkedHashMap<K, V>();
+    for (final K key : keys) {
+      values.put(key, loadValue(key));
+    }
+    return values;
+  }
+
+  /**
+   * The load of a single value, run by the thread which created it.
+   */
+  private final class LoadTask
+      extends FutureTask<V> {
+    private final Thread owner = Thread.currentThread();
+
+    LoadTask(final K key) {
+      super(new Callable<V>() {
+        public V call()
+            throws Exception {
+          // this is necessary to ensure that the load wasn't already completed by another thread
+          V value = getDecoratedObject().get(key);
+          if (value == null) {
+            LOG.debug("Cache is empty. Loading new value...");
+            value = loadValue(key);
+            getDecoratedObject().put(key, value);
+            onPut(key, value);
+          }
+          return value;
+        }
+      });
+    }
+
+    boolean isOwnedByCurrentThread() {
+      return owner == Thread.currentThread();
+    }
+
+    /**
+     * Completes the task without running it, when loaded as part of a batch.
+     */
+    void complete(final V value) {
+      set(value);
+    }
+
+    void fail(final Throwable e) {
+      setException(e);
+    }
+  }
 }
@@ -0,0 +1,226 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.cache.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.isdc.wro.cache.CacheKey;
+import ro.isdc.wro.cache.CacheStrategy;
+import ro.isdc.wro.cache.CacheValue;
+import ro.isdc.wro.config.Context;
+import ro.isdc.wro.config.jmx.WroConfiguration;
+import ro.isdc.wro.http.support.PreserveDetailsRequestWrapper;
+import ro.isdc.wro.model.WroModelInspector;
+import ro.isdc.wro.model.factory.WroModelFactory;
+import ro.isdc.wro.model.group.Group;
+import ro.isdc.wro.model.group.Inject;
+import ro.isdc.wro.model.resource.ResourceType;
+import ro.isdc.wro.util.WroUtil;
+
+
+/**
+ * Populates the cache in background with all groups of the model, for each resource type and minimize flag, in order to
+ * avoid the processing cost for the first request of each group. The groups are processed in parallel using a bounded
+ * thread pool.
+ * <p/>
+ * The warm up is started by a request, because the processing of a group may depend on the request details (ex: the
+ * css url rewriting). Each group is processed as if it was requested from the same folder as the request which started
+ * the warm up. Only the {@link CacheKey}'s without attributes are computed.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public class CacheWarmer
+    implements CacheWarmerMBean {
+  private static final Logger LOG = LoggerFactory.getLogger(CacheWarmer.class);
+  @Inject
+  private WroModelFactory modelFactory;
+  @Inject
+  private CacheStrategy<CacheKey, CacheValue> cacheStrategy;
+  private final AtomicBoolean started = new AtomicBoolean();
+  private final AtomicInteger totalCount = new AtomicInteger();
+  private final AtomicInteger completedCount = new AtomicInteger();
+  private final AtomicInteger failedCount = new AtomicInteger();
+  private volatile ExecutorService executor;
+
+  /**
+   * Starts the warm up unless it was already started. Must be invoked inside of the request cycle.
+   */
+  public void warmUpOnce() {
+    if (started.compareAndSet(false, true)) {
+      try {
+        warmUp(Context.get());
+      } catch (final RuntimeException e) {
+        LOG.error("Could not warm up the cache", e);
+      }
+    }
+  }
+
+  private void warmUp(final Context context) {
+    final List<CacheKey> keys = computeKeys(context.getConfig());
+    LOG.info("Warming up the cache with {} entries", keys.size());
+    totalCount.set(keys.size());
+    if (keys.isEmpty()) {
+      return;
+    }
+    final int poolSize = Math.min(keys.size(), Runtime.getRuntime().availableProcessors());
+    executor = Executors.newFixedThreadPool(poolSize, WroUtil.createDaemonThreadFactory("cacheWarmer"));
+    for (final CacheKey key : keys) {
+      final Context keyContext = createContext(context, key);
+      executor.submit(new Runnable() {
+        public void run() {
+          warmUp(key, keyContext);
+        }
+      });
+    }
+    executor.shutdown();
+  }
+
+  private void warmUp(final CacheKey key, final Context keyContext) {
+    Context.set(keyContext, keyContext.getConfig());
+    try {
+      cacheStrategy.get(key);
+      completedCount.incrementAndGet();
+    } catch (final Exception e) {
+      failedCount.incrementAndGet();
+      LOG.warn("Could not warm up the cache for key: " + key, e);
+    } finally {
+      Context.unset();
+    }
+  }
+
+  /**
+   * @return the keys of all groups defined in the model.
+   */
+  private List<CacheKey> computeKeys(final WroConfiguration config) {
+    final List<CacheKey> keys = new ArrayList<CacheKey>();
+    final WroModelInspector inspector = new WroModelInspector(modelFactory.create());
+    for (final String groupName : inspector.getGroupNames()) {
+      final Group group = inspector.getGroupByName(groupName);
+      for (final ResourceType type : ResourceType.values()) {
+        if (group.hasResourcesOfType(type)) {
+          for (final boolean minimize : getMinimizeFlags(config)) {
+            keys.add(new CacheKey(groupName, type, minimize));
+          }
+        }
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * @return the minimize flags which can be requested (the minimization can be turned off only in debug mode).
+   */
+  private boolean[] getMinimizeFlags(final WroConfiguration config) {
+    if (!config.isMinimizeEnabled()) {
+      return new boolean[] { false };
+    }
+    return config.isDebug() ? new boolean[] { true, false } : new boolean[] { true };
+  }
+
+  /**
+   * @return a {@link Context} simulating a request of the group identified by the key.
+   */
+  private Context createContext(final Context context, final CacheKey key) {
+    final HttpServletRequest request = context.getRequest();
+    if (request == null) {
+      return Context.detachedContext(context);
+    }
+    final String requestUri = request.getRequestURI();
+    final String folder = StringUtils.removeEnd(requestUri, FilenameUtils.getName(requestUri));
+    final String groupUri = folder + key.getGroupName() + "." + key.getType().name().toLowerCase();
+    final Context keyContext = Context.detachedContext(context, new WarmUpRequestWrapper(request, groupUri));
+    keyContext.setAggregatedFolderPath(ResourceType.CSS == key.getType() ? StringUtils.removeStart(folder,
+        request.getContextPath()) : null);
+    return keyContext;
+  }
+
+  /**
+   * Stops the warm up, if in progress.
+   */
+  public void destroy() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public int getTotalCount() {
+    return totalCount.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public int getCompletedCount() {
+    return completedCount.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public int getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isInProgress() {
+    return started.get() && completedCount.get() + failedCount.get() < totalCount.get();
+  }
+
+  /**
+   * A request of a group, which doesn't depend on the lifecycle of the original request.
+   */
+  private static class WarmUpRequestWrapper
+      extends PreserveDetailsRequestWrapper {
+    private final String requestURI;
+
+    public WarmUpRequestWrapper(final HttpServletRequest request, final String requestURI) {
+      super(request);
+      this.requestURI = requestURI;
+    }
+
+    @Override
+    public String getRequestURI() {
+      return requestURI;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+      return new StringBuffer(StringUtils.removeEnd(super.getRequestURL().toString(), super.getRequestURI())).append(
+          requestURI);
+    }
+
+    @Override
+    public String getQueryString() {
+      return null;
+    }
+
+    @Override
+    public String getParameter(final String name) {
+      return null;
+    }
+
+    @Override
+    public Object getAttribute(final String name) {
+      return null;
+    }
+  }
+}
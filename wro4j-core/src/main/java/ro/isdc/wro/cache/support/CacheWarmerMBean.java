@@ -0,0 +1,32 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.cache.support;
+
+/**
+ * This interface defines the MBean exposing the progress of the cache warm up.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public interface CacheWarmerMBean {
+  /**
+   * @return the number of cache entries to be computed by the warm up.
+   */
+  int getTotalCount();
+
+  /**
+   * @return the number of cache entries successfully computed so far.
+   */
+  int getCompletedCount();
+
+  /**
+   * @return the number of cache entries which could not be computed.
+   */
+  int getFailedCount();
+
+  /**
+   * @return true while the warm up is running.
+   */
+  boolean isInProgress();
+}
@@ -2,9 +2,16 @@ package ro.isdc.wro.cache.support;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
@@ -14,11 +21,24 @@ import org.slf4j.LoggerFactory;
 import ro.isdc.wro.cache.CacheKey;
 import ro.isdc.wro.cache.CacheStrategy;
 import ro.isdc.wro.cache.CacheValue;
+import ro.isdc.wro.config.Context;
 import ro.isdc.wro.config.ReadOnlyContext;
+import ro.isdc.wro.http.support.ProxyResourceCache;
+import ro.isdc.wro.model.WroModelInspector;
+import ro.isdc.wro.model.factory.WroModelFactory;
+import ro.isdc.wro.model.group.Group;
 import ro.isdc.wro.model.group.Inject;
 import ro.isdc.wro.model.group.processor.GroupsProcessor;
+import ro.isdc.wro.model.group.processor.PreProcessedResourceCache;
+import ro.isdc.wro.model.resource.Resource;
+import ro.isdc.wro.model.resource.locator.LastModifiedAware;
+import ro.isdc.wro.model.resource.locator.UriLocator;
+import ro.isdc.wro.model.resource.locator.factory.UriLocatorFactory;
 import ro.isdc.wro.model.resource.support.MutableResourceAuthorizationManager;
 import ro.isdc.wro.model.resource.support.ResourceAuthorizationManager;
+import ro.isdc.wro.model.resource.support.change.ResourceChangeDetector;
+import ro.isdc.wro.model.resource.support.change.ResourceDependencyIndex;
+import ro.isdc.wro.model.resource.support.change.ResourceFileWatcher;
 import ro.isdc.wro.model.resource.support.change.ResourceWatcher;
 import ro.isdc.wro.model.resource.support.hash.HashStrategy;
 import ro.isdc.wro.util.LazyInitializer;
@@ -45,11 +65,35 @@ public class DefaultSynchronizedCacheStrategyDecorator
   private ReadOnlyContext context;
   @Inject
   private ResourceWatcher resourceWatcher;
+  @Inject
+  private ResourceFileWatcher resourceFileWatcher;
+  @Inject
+  private ResourceChangeDetector resourceChangeDetector;
+  @Inject
+  private ResourceDependencyIndex resourceDependencyIndex;
+  @Inject
+  private PreProcessedResourceCache preProcessedResourceCache;
+  @Inject
+  private ProxyResourceCache proxyResourceCache;
+  @Inject
+  private WroModelFactory modelFactory;
+  @Inject
+  private UriLocatorFactory locatorFactory;
 
   /**
    * Holds the keys that were checked for change. As long as a key is contained in this set, it won't be checked again.
    */
   private final Set<CacheKey> checkedKeys = Collections.synchronizedSet(new HashSet<CacheKey>());
+  /**
+   * Holds the keys which were loaded in the cache, along with a detached {@link Context} used to re-process the group
+   * outside of the request cycle. Populated only when the cache is reloaded in background.
+   */
+  private final Map<CacheKey, Context> reloadableKeys = new ConcurrentHashMap<CacheKey, Context>();
+  /**
+   * The hash of each cached value, maintained when the values are stored. Allows computing versioned urls without
+   * accessing (and possibly processing) the cached content.
+   */
+  private final ConcurrentMap<CacheKey, String> fingerprints = new ConcurrentHashMap<CacheKey, String>();
   private final SchedulerHelper resourceWatcherScheduler;
 
   /**
@@ -87,6 +131,9 @@ public class DefaultSynchronizedCacheStrategyDecorator
       protected Runnable initialize() {
         return new Runnable() {
           public void run() {
+            resourceFileWatcher.checkAndNotify();
+            // each group is checked again during the next period, but the resources shared by groups only once.
+            resourceChangeDetector.startCycle();
             checkedKeys.clear();
           }
         };
@@ -96,13 +143,45 @@ public class DefaultSynchronizedCacheStrategyDecorator
 
   @Override
   protected CacheValue loadValue(final CacheKey key) {
+    onLoad(key);
+    return computeCacheValue(key);
+  }
+
+  private void onLoad(final CacheKey key) {
     resourceWatcherScheduler.scheduleWithPeriod(getResourceWatcherUpdatePeriod(), getTimeUnitForResourceWatcher());
+    if (getResourceWatcherUpdatePeriod() > 0 && resourceFileWatcher.isEnabled()) {
+      resourceFileWatcher.watch(key);
+    }
+    if (context.getConfig().isReloadCacheInBackground()) {
+      reloadableKeys.put(key, Context.detachedContext(Context.get()));
+    }
+  }
+
+  /**
+   * Processes the groups together (see {@link GroupsProcessor#processAll(Collection)}), in order to pre process only
+   * once the resources shared by more groups.
+   */
+  @Override
+  protected Map<CacheKey, CacheValue> loadValues(final Collection<CacheKey> keys) {
+    LOG.debug("load values in cache for keys: {}", keys);
+    // before processing, thus the changes performed meanwhile are detected
+    for (final CacheKey key : keys) {
+      onLoad(key);
+    }
+    final Map<CacheKey, CacheValue> values = new HashMap<CacheKey, CacheValue>();
+    for (final Map.Entry<CacheKey, String> entry : groupsProcessor.processAll(keys).entrySet()) {
+      values.put(entry.getKey(), computeCacheValueByContent(entry.getKey(), entry.getValue()));
+    }
+    return values;
+  }
+
+  private CacheValue computeCacheValue(final CacheKey key) {
     LOG.debug("load value in cache for key: {}", key);
     final String content = groupsProcessor.process(key);
     if (LOG.isDebugEnabled()) {
       LOG.debug("found content: {}", StringUtils.abbreviate(content, 30));
     }
-    return computeCacheValueByContent(content);
+    return computeCacheValueByContent(key, content);
   }
 
   private long getResourceWatcherUpdatePeriod() {
@@ -117,6 +196,62 @@ public class DefaultSynchronizedCacheStrategyDecorator
     return TimeUnit.SECONDS;
   }
 
+  /**
+   * Creates a {@link CacheValue} based on provided content of the group, last modified when its newest resource was
+   * modified.
+   */
+  private CacheValue computeCacheValueByContent(final CacheKey key, final String content) {
+    final CacheValue value = computeCacheValueByContent(content);
+    final long lastModified = getResourcesLastModified(key);
+    if (lastModified > 0) {
+      value.setLastModified(lastModified);
+    }
+    return value;
+  }
+
+  /**
+   * @return the newest last modified timestamp of the resources of the group, including the resources they import, or
+   *         0 when the timestamp of any of them is unknown (see {@link LastModifiedAware}).
+   */
+  private long getResourcesLastModified(final CacheKey key) {
+    try {
+      final Group group = new WroModelInspector(modelFactory.create()).getGroupByName(key.getGroupName());
+      if (group == null) {
+        return 0;
+      }
+      final LinkedList<String> uris = new LinkedList<String>();
+      for (final Resource resource : group.collectResourcesOfType(key.getType()).getResources()) {
+        uris.add(resource.getUri());
+      }
+      final Set<String> visitedUris = new HashSet<String>();
+      long result = 0;
+      while (!uris.isEmpty()) {
+        final String uri = uris.removeFirst();
+        if (visitedUris.add(uri)) {
+          final long lastModified = getLastModified(uri);
+          if (lastModified <= 0) {
+            return 0;
+          }
+          result = Math.max(result, lastModified);
+          final List<String> imports = resourceDependencyIndex.getImports(uri);
+          if (imports != null) {
+            uris.addAll(imports);
+          }
+        }
+      }
+      return result;
+    } catch (final Exception e) {
+      LOG.debug("Could not retrieve the last modified timestamp of group: {}", key.getGroupName());
+      return 0;
+    }
+  }
+
+  private long getLastModified(final String uri)
+      throws IOException {
+    final UriLocator locator = locatorFactory.getInstance(uri);
+    return locator instanceof LastModifiedAware ? ((LastModifiedAware) locator).getLastModified(uri) : 0;
+  }
+
   /**
    * Creates a {@link CacheValue} based on provided content.
    */
@@ -137,6 +272,41 @@ public class DefaultSynchronizedCacheStrategyDecorator
     }
   }
 
+  @Override
+  protected void onPut(final CacheKey key, final CacheValue value) {
+    if (value == null || value.getHash() == null) {
+      fingerprints.remove(key);
+    } else {
+      fingerprints.put(key, value.getHash());
+    }
+  }
+
+  /**
+   * Returns the hash of the content associated with the provided key. The lookup doesn't touch the cached content,
+   * unless the key was never stored, in which case the value is retrieved (and processed if missing).
+   * <p/>
+   * The hash of a retrieved value is remembered only if no other fingerprint was stored meanwhile, and forgotten if
+   * the value was invalidated meanwhile (ex: by the resource watcher), thus a stale fingerprint is never kept.
+   *
+   * @param key
+   *          the key of the group.
+   * @return the hash of the cached content, used as fingerprint of the group.
+   */
+  public String getFingerprint(final CacheKey key) {
+    String fingerprint = fingerprints.get(key);
+    if (fingerprint == null) {
+      fingerprint = get(key).getHash();
+      if (fingerprint != null) {
+        fingerprints.putIfAbsent(key, fingerprint);
+        final CacheValue current = getDecoratedObject().get(key);
+        if (current == null || !fingerprint.equals(current.getHash())) {
+          fingerprints.remove(key, fingerprint);
+        }
+      }
+    }
+    return fingerprint;
+  }
+
   @Override
   protected void onBeforeGet(final CacheKey key) {
     if (shouldWatchForChange(key)) {
@@ -151,23 +321,62 @@ public class DefaultSynchronizedCacheStrategyDecorator
    * @return true if the provided key should be checked for change.
    */
   private boolean shouldWatchForChange(final CacheKey key) {
-    final boolean result = getResourceWatcherUpdatePeriod() > 0 && !wasCheckedForChange(key);
+    final boolean result = getResourceWatcherUpdatePeriod() > 0 && !wasCheckedForChange(key)
+        && !resourceFileWatcher.isWatched(key);
     LOG.debug("shouldWatchForChange={}", result);
     return result;
   }
 
+  /**
+   * Re-processes in background each group found in the cache and replaces the cached value only when the new one is
+   * ready. Meanwhile, the requests are served with the stale cached value. The keys which are not found in the cache
+   * anymore (evicted or invalidated) are not re-processed, since these will be loaded on demand.
+   */
+  public void reload() {
+    LOG.debug("Reloading {} cached groups in background", reloadableKeys.size());
+    // the cached groups are about to be re-processed, thus the pre processed resources must be computed again.
+    preProcessedResourceCache.clear();
+    for (final Map.Entry<CacheKey, Context> entry : new HashMap<CacheKey, Context>(reloadableKeys).entrySet()) {
+      final CacheKey key = entry.getKey();
+      if (getDecoratedObject().get(key) == null) {
+        reloadableKeys.remove(key);
+      } else {
+        reloadValue(key, entry.getValue());
+      }
+    }
+  }
+
+  private void reloadValue(final CacheKey key, final Context reloadContext) {
+    Context.set(reloadContext, reloadContext.getConfig());
+    try {
+      put(key, computeCacheValue(key));
+    } catch (final Exception e) {
+      // keep serving the stale value
+      LOG.error("Could not reload the cache for key: " + key, e);
+    } finally {
+      Context.unset();
+    }
+  }
+
   @Override
   public void clear() {
     super.clear();
+    fingerprints.clear();
     // reset authorization manager (clear any stored uri's).
     if (authorizationManager instanceof MutableResourceAuthorizationManager) {
       ((MutableResourceAuthorizationManager) authorizationManager).clear();
     }
+    preProcessedResourceCache.clear();
+    proxyResourceCache.clear();
+    resourceFileWatcher.clear();
+    resourceDependencyIndex.clear();
   }
 
   @Override
   public void destroy() {
     super.destroy();
+    reloadableKeys.clear();
+    fingerprints.clear();
     resourceWatcherScheduler.destroy();
   }
 
@@ -23,6 +23,7 @@ import ro.isdc.wro.WroRuntimeException;
 import ro.isdc.wro.config.jmx.WroConfiguration;
 import ro.isdc.wro.config.support.ContextPropagatingCallable;
 import ro.isdc.wro.http.WroFilter;
+import ro.isdc.wro.http.support.PreserveDetailsRequestWrapper;
 
 
 /**
@@ -100,6 +101,42 @@ public class Context
   }
 
 
+  /**
+   * Creates a copy of the provided context which is safe to use outside of the request cycle (ex: by a background thread
+   * after the original request completes). The details of the original request are preserved, but the response is not
+   * available.
+   *
+   * @param context
+   *          the {@link Context} to copy.
+   * @return a {@link Context} which doesn't depend on the lifecycle of the original request.
+   */
+  public static Context detachedContext(final Context context) {
+    notNull(context);
+    return detachedContext(context, context.request != null ? new PreserveDetailsRequestWrapper(context.request)
+        : null);
+  }
+
+
+  /**
+   * Similar to {@link #detachedContext(Context)}, but uses the provided request instead of the original one.
+   *
+   * @param context
+   *          the {@link Context} to copy.
+   * @param request
+   *          the request which is safe to use outside of the request cycle (can be null).
+   */
+  public static Context detachedContext(final Context context, final HttpServletRequest request) {
+    notNull(context);
+    final Context detached = new Context();
+    detached.request = request;
+    detached.servletContext = context.servletContext;
+    detached.filterConfig = context.filterConfig;
+    detached.aggregatedFolderPath = context.aggregatedFolderPath;
+    detached.config = context.config;
+    return detached;
+  }
+
+
   /**
    * @return {@link Context} associated with CURRENT request cycle.
    */
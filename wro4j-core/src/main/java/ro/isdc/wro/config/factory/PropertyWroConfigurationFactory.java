@@ -46,6 +46,8 @@ public class PropertyWroConfigurationFactory
     config.setGzipEnabled(valueAsBoolean(properties.get(ConfigConstants.gzipResources.name()), true));
     config.setJmxEnabled(valueAsBoolean(properties.get(ConfigConstants.jmxEnabled.name()), true));
     config.setCacheUpdatePeriod(valueAsLong(properties.get(ConfigConstants.cacheUpdatePeriod.name()), 0));
+    config.setReloadCacheInBackground(valueAsBoolean(properties.get(ConfigConstants.reloadCacheInBackground.name()),
+        false));
     config.setModelUpdatePeriod(valueAsLong(properties.get(ConfigConstants.modelUpdatePeriod.name()), 0));
     config.setResourceWatcherUpdatePeriod(valueAsLong(
         properties.get(ConfigConstants.resourceWatcherUpdatePeriod.name()), 0));
@@ -60,8 +62,28 @@ public class PropertyWroConfigurationFactory
     config.setHeader(valueAsString(properties.get(ConfigConstants.header.name())));
     config.setCacheGzippedContent(valueAsBoolean(properties.get(ConfigConstants.cacheGzippedContent.name()), false));
     config.setParallelPreprocessing(valueAsBoolean(properties.get(ConfigConstants.parallelPreprocessing.name()), false));
+    config.setPreProcessingCacheSize((int) valueAsLong(
+        properties.get(ConfigConstants.preProcessingCacheSize.name()), 0));
     config.setConnectionTimeout((int) valueAsLong(properties.get(ConfigConstants.connectionTimeout.name()),
         WroConfiguration.DEFAULT_CONNECTION_TIMEOUT));
+    config.setDiskCacheDirectory(valueAsString(properties.get(ConfigConstants.diskCacheDirectory.name())));
+    config.setCacheWarmUpEnabled(valueAsBoolean(properties.get(ConfigConstants.cacheWarmUpEnabled.name()), false));
+    config.setParallelPreprocessingPoolSize((int) valueAsLong(
+        properties.get(ConfigConstants.parallelPreprocessingPoolSize.name()), 0));
+    config.setAsyncProcessing(valueAsBoolean(properties.get(ConfigConstants.asyncProcessing.name()), false));
+    config.setAsyncProcessingTimeout(valueAsLong(properties.get(ConfigConstants.asyncProcessingTimeout.name()),
+        WroConfiguration.DEFAULT_ASYNC_PROCESSING_TIMEOUT));
+    config.setCompressionLevel((int) valueAsLong(properties.get(ConfigConstants.compressionLevel.name()), 9));
+    config.setContentEncodings(valueAsString(properties.get(ConfigConstants.contentEncodings.name()),
+        WroConfiguration.DEFAULT_CONTENT_ENCODINGS));
+    config.setProxyResourceSpillThreshold(valueAsLong(
+        properties.get(ConfigConstants.proxyResourceSpillThreshold.name()), 0));
+    config.setProxyResourceCacheSize(valueAsLong(properties.get(ConfigConstants.proxyResourceCacheSize.name()),
+        WroConfiguration.DEFAULT_PROXY_RESOURCE_CACHE_SIZE));
+    config.setWeightedMemoryCacheSize(valueAsLong(properties.get(ConfigConstants.weightedMemoryCacheSize.name()),
+        WroConfiguration.DEFAULT_WEIGHTED_MEMORY_CACHE_SIZE));
+    config.setPreloadLinks(valueAsBoolean(properties.get(ConfigConstants.preloadLinks.name()), false));
+    config.setResourceWatcherFileMonitor(valueAsBoolean(properties.get(ConfigConstants.resourceWatcherFileMonitor.name()), false));
     LOG.debug("WroConfiguration created: {}", config);
     return config;
   }
@@ -28,6 +28,28 @@ public enum ConfigConstants {
    * Parameter containing an integer value for specifying how often (in seconds) the cache should be refreshed.
    */
   cacheUpdatePeriod,
+  /**
+   * When true, the scheduled cache reload (see {@link #cacheUpdatePeriod}) re-processes in background each group found
+   * in the cache and replaces the cached value only when the new one is ready. Meanwhile, the stale content is served.
+   * Otherwise, the cache is cleared.
+   */
+  reloadCacheInBackground,
+  /**
+   * When true, all groups of the model are processed in background (using a bounded thread pool) as soon as the first
+   * request is handled, in order to populate the cache before the groups are requested.
+   */
+  cacheWarmUpEnabled,
+  /**
+   * When true, a request for a group which is not cached yet is processed asynchronously (requires Servlet 3.0
+   * support), releasing the container thread. The requests for the same group are served from the result of the first
+   * one.
+   */
+  asyncProcessing,
+  /**
+   * The number of milliseconds after which the container times out a request processed asynchronously. A timed out
+   * request is not written anymore.
+   */
+  asyncProcessingTimeout,
   /**
    * Parameter containing an integer value for specifying how often (in seconds) the model should be refreshed.
    */
@@ -41,6 +63,11 @@ public enum ConfigConstants {
    * Flag which enables an experimental feature: asynchronous check for resource watcher.
    */
   resourceWatcherAsync,
+  /**
+   * Flag indicating if the change of the resources read from files is detected by inspecting the files in background,
+   * instead of checking each group when requested.
+   */
+  resourceWatcherFileMonitor,
   /**
    * Flag indicating if the minimization is enabled. When this flag is false, the minimization will be
    *         suppressed for all resources.
@@ -55,12 +82,58 @@ public enum ConfigConstants {
    * When true, will run in parallel pre processing of multiple resources. In theory this should improve the performance.
    */
   parallelPreprocessing,
+  /**
+   * The number of threads shared by all parallel pre processing tasks of the manager, including the nested ones (ex:
+   * css imports). When 0 (default), the number of available processors is used.
+   */
+  parallelPreprocessingPoolSize,
+  /**
+   * Maximum number of pre processed resources kept in the cache sitting beneath the group cache. Allows a resource
+   * shared by many groups to be pre processed only once. When this value is 0, the cache is disabled.
+   */
+  preProcessingCacheSize,
+  /**
+   * The directory where the processed groups are stored by the disk cache strategy. When not set, a folder inside the
+   * temporary directory of the servlet context is used.
+   */
+  diskCacheDirectory,
   /**
    * When this flag is enabled, the raw processed content will be gzipped only the first time and all subsequent
    * requests will use the cached gzipped content. Otherwise, the gzip operation will be performed for each request.
    * This flag allow to control the memory vs processing power trade-off.
    */
   cacheGzippedContent,
+  /**
+   * The compression level (from 1 - fastest, to 9 - best compression) used to compress the content cached when
+   * cacheGzippedContent is enabled. The content compressed for each request uses the default level of the codec.
+   */
+  compressionLevel,
+  /**
+   * Comma separated list of the content encodings which can be used to compress the served content, in the order of
+   * preference. Besides gzip and deflate, other encodings (ex: br, zstd) are available when a ContentCodec supporting
+   * them is found in the classpath. The encoding is chosen based on the q-values of the Accept-Encoding header.
+   */
+  contentEncodings,
+  /**
+   * The maximum number of bytes of the resources (ex: images, fonts referred by css) cached by the resource proxy. Use
+   * 0 to disable the cache, in which case each proxy request reads the resource using its locator.
+   */
+  proxyResourceCacheSize,
+  /**
+   * The maximum number of bytes of the processed groups (including their compressed content, when cached) held in
+   * memory by the weighted-memory and disk cache strategies.
+   */
+  weightedMemoryCacheSize,
+  /**
+   * The size (in bytes) above which the resources cached by the resource proxy are stored on disk (in the temporary
+   * directory of the web application) instead of memory. Use 0 to keep all cached proxy resources in memory.
+   */
+  proxyResourceSpillThreshold,
+  /**
+   * When this flag is enabled, the responses serving css bundles contain a Link header with preload hints for the fonts
+   * and images referred by the css, allowing the browser to fetch them before the css is parsed.
+   */
+  preloadLinks,
   /**
    * Instructs wro4j to not throw an exception when a resource is missing.
    */
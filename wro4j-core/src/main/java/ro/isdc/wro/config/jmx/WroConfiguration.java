@@ -32,14 +32,47 @@ public class WroConfiguration
    * Default encoding to use.
    */
   public static final String DEFAULT_ENCODING = CharEncoding.UTF_8;
+  /**
+   * Default value of the contentEncodings option. The encodings without an available codec are ignored.
+   */
+  public static final String DEFAULT_CONTENT_ENCODINGS = "br,zstd,gzip";
+  /**
+   * Default value of the proxyResourceCacheSize option (16MB).
+   */
+  public static final long DEFAULT_PROXY_RESOURCE_CACHE_SIZE = 16 * 1024 * 1024;
+  /**
+   * Default value of the weightedMemoryCacheSize option (64MB).
+   */
+  public static final long DEFAULT_WEIGHTED_MEMORY_CACHE_SIZE = 64 * 1024 * 1024;
   /**
    * Default value for connectionTimeout property.
    */
   public static final int DEFAULT_CONNECTION_TIMEOUT = 2000;
+  /**
+   * Default value of the asyncProcessingTimeout option (30 seconds).
+   */
+  public static final long DEFAULT_ASYNC_PROCESSING_TIMEOUT = 30000;
   /**
    * How often to run a thread responsible for refreshing the cache.
    */
   private long cacheUpdatePeriod;
+  /**
+   * When true, the scheduled cache reload re-processes the cached groups in background, serving the stale content until
+   * the new one is ready, instead of clearing the cache.
+   */
+  private boolean reloadCacheInBackground = false;
+  /**
+   * When true, the cache is populated in background with all groups of the model once the first request is handled.
+   */
+  private boolean cacheWarmUpEnabled = false;
+  /**
+   * When true, the requests for groups which are not cached yet are processed asynchronously.
+   */
+  private boolean asyncProcessing;
+  /**
+   * The number of milliseconds after which a request processed asynchronously times out.
+   */
+  private long asyncProcessingTimeout = DEFAULT_ASYNC_PROCESSING_TIMEOUT;
   /**
    * How often to run a thread responsible for refreshing the model.
    */
@@ -52,6 +85,10 @@ public class WroConfiguration
    * Flag for enabling an experimental feature which allows asynchronous resource watcher check.
    */
   private boolean resourceWatcherAsync;
+  /**
+   * When true, the change of the groups having all resources read from files is detected by inspecting the files.
+   */
+  private boolean resourceWatcherFileMonitor;
   /**
    * Gzip enable flag.
    */
@@ -66,11 +103,35 @@ public class WroConfiguration
   private boolean ignoreMissingResources = true;
 
   /**
-   * When this flag is enabled, the raw processed content will be gzipped only the first time and all subsequent
-   * requests will use the cached gzipped content. Otherwise, the gzip operation will be performed for each request.
-   * This flag allow to control the memory vs processing power trade-off.
+   * When this flag is enabled, the raw processed content is compressed (using each configured content encoding) while
+   * it is cached, rather than when it is first served. Otherwise, the content is compressed by the first request
+   * accepting an encoding. In both cases, the compressed content is kept along with the cached content.
    */
   private boolean cacheGzippedContent = false;
+  /**
+   * Compression level of the cached compressed content.
+   */
+  private int compressionLevel = 9;
+  /**
+   * Encodings used to compress the served content, in the order of preference.
+   */
+  private String contentEncodings = DEFAULT_CONTENT_ENCODINGS;
+  /**
+   * The maximum weight (in bytes) of the proxy resources cache.
+   */
+  private long proxyResourceCacheSize = DEFAULT_PROXY_RESOURCE_CACHE_SIZE;
+  /**
+   * The maximum weight (in bytes) of the groups held in memory by the weighted-memory and disk cache strategies.
+   */
+  private long weightedMemoryCacheSize = DEFAULT_WEIGHTED_MEMORY_CACHE_SIZE;
+  /**
+   * When true, the css bundles are served with preload hints of the referred fonts and images.
+   */
+  private boolean preloadLinks;
+  /**
+   * Proxy resources larger than this number of bytes are cached on disk. 0 means never.
+   */
+  private long proxyResourceSpillThreshold;
   /**
    * Allow to turn jmx on or off. By default this value is true.
    */
@@ -101,6 +162,19 @@ public class WroConfiguration
    * By default this flag is false, because this feature is experimental.
    */
   private boolean parallelPreprocessing = false;
+  /**
+   * Number of threads used for parallel pre processing. When 0, the number of available processors is used.
+   */
+  private int parallelPreprocessingPoolSize;
+  /**
+   * Maximum number of pre processed resources kept in cache (beneath the group cache). When 0, the pre processed
+   * resources are not cached.
+   */
+  private int preProcessingCacheSize = 0;
+  /**
+   * The directory where the disk cache strategy stores the processed groups.
+   */
+  private String diskCacheDirectory;
   /**
    * When a group is empty and this flag is false, the processing will fail. This is useful for runtime solution to
    * allow filter chaining when there is nothing to process for a given request.
@@ -247,6 +321,23 @@ public class WroConfiguration
     cacheUpdatePeriodListeners.add(listener);
   }
 
+  /**
+   * @return true if the scheduled cache reload should re-process the cached groups in background instead of clearing
+   *         the cache.
+   */
+  public boolean isReloadCacheInBackground() {
+    return reloadCacheInBackground;
+  }
+
+  /**
+   * @param reloadCacheInBackground
+   *          flag for re-processing the cached groups in background (serving stale content meanwhile) when the cache
+   *          update period expires.
+   */
+  public void setReloadCacheInBackground(final boolean reloadCacheInBackground) {
+    this.reloadCacheInBackground = reloadCacheInBackground;
+  }
+
   /**
    * @return the debug
    */
@@ -409,6 +500,22 @@ public class WroConfiguration
     this.parallelPreprocessing = parallelPreprocessing;
   }
 
+  /**
+   * @return the maximum number of pre processed resources to keep in cache. A value of 0 means that the cache is
+   *         disabled.
+   */
+  public int getPreProcessingCacheSize() {
+    return preProcessingCacheSize;
+  }
+
+  /**
+   * @param preProcessingCacheSize
+   *          the maximum number of pre processed resources to keep in cache. Use 0 to disable the cache.
+   */
+  public void setPreProcessingCacheSize(final int preProcessingCacheSize) {
+    this.preProcessingCacheSize = preProcessingCacheSize;
+  }
+
   /**
    * @return value of the flag responsible for handling empty group behavior.
    */
@@ -467,6 +574,190 @@ public class WroConfiguration
     this.resourceWatcherAsync = resourceWatcherAsync;
   }
 
+  /**
+   * @return the directory where the disk cache strategy stores the processed groups. When null, a folder inside the
+   *         temporary directory of the servlet context is used.
+   */
+  public String getDiskCacheDirectory() {
+    return diskCacheDirectory;
+  }
+
+  /**
+   * @param diskCacheDirectory
+   *          the directory where the disk cache strategy stores the processed groups.
+   */
+  public void setDiskCacheDirectory(final String diskCacheDirectory) {
+    this.diskCacheDirectory = diskCacheDirectory;
+  }
+
+  /**
+   * @return true if the cache should be populated in background with all groups of the model once the first request is
+   *         handled.
+   */
+  public boolean isCacheWarmUpEnabled() {
+    return cacheWarmUpEnabled;
+  }
+
+  /**
+   * @param cacheWarmUpEnabled
+   *          flag for enabling the cache warm up.
+   */
+  public void setCacheWarmUpEnabled(final boolean cacheWarmUpEnabled) {
+    this.cacheWarmUpEnabled = cacheWarmUpEnabled;
+  }
+
+  /**
+   * @return the number of threads used for parallel pre processing.
+   */
+  public int getParallelPreprocessingPoolSize() {
+    return parallelPreprocessingPoolSize;
+  }
+
+  /**
+   * @param parallelPreprocessingPoolSize
+   *          the number of threads used for parallel pre processing. Use 0 for the number of available processors.
+   */
+  public void setParallelPreprocessingPoolSize(final int parallelPreprocessingPoolSize) {
+    this.parallelPreprocessingPoolSize = parallelPreprocessingPoolSize;
+  }
+
+  /**
+   * @return true if the requests for groups which are not cached yet are processed asynchronously.
+   */
+  public boolean isAsyncProcessing() {
+    return asyncProcessing;
+  }
+
+  /**
+   * @param asyncProcessing
+   *          flag for enabling the asynchronous processing of the groups which are not cached yet.
+   */
+  public void setAsyncProcessing(final boolean asyncProcessing) {
+    this.asyncProcessing = asyncProcessing;
+  }
+
+  /**
+   * @return the number of milliseconds after which a request processed asynchronously times out.
+   */
+  public long getAsyncProcessingTimeout() {
+    return asyncProcessingTimeout;
+  }
+
+  /**
+   * @param asyncProcessingTimeout
+   *          the number of milliseconds after which a request processed asynchronously times out.
+   */
+  public void setAsyncProcessingTimeout(final long asyncProcessingTimeout) {
+    this.asyncProcessingTimeout = asyncProcessingTimeout;
+  }
+
+  /**
+   * @return the compression level used for the cached compressed content.
+   */
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+
+  /**
+   * @param compressionLevel
+   *          the compression level (from 1 to 9) used for the cached compressed content.
+   */
+  public void setCompressionLevel(final int compressionLevel) {
+    this.compressionLevel = compressionLevel;
+  }
+
+  /**
+   * @return comma separated list of encodings used to compress the served content.
+   */
+  public String getContentEncodings() {
+    return contentEncodings;
+  }
+
+  /**
+   * @param contentEncodings
+   *          comma separated list of encodings used to compress the served content, in the order of preference.
+   */
+  public void setContentEncodings(final String contentEncodings) {
+    this.contentEncodings = contentEncodings;
+  }
+
+  /**
+   * @return the size (in bytes) above which the proxy resources are cached on disk, or 0 if they are always kept in
+   *         memory.
+   */
+  public long getProxyResourceSpillThreshold() {
+    return proxyResourceSpillThreshold;
+  }
+
+  /**
+   * @param proxyResourceSpillThreshold
+   *          the size (in bytes) above which the proxy resources are cached on disk. Use 0 to keep them in memory.
+   */
+  public void setProxyResourceSpillThreshold(final long proxyResourceSpillThreshold) {
+    this.proxyResourceSpillThreshold = proxyResourceSpillThreshold;
+  }
+
+  /**
+   * @return the maximum number of bytes of the resources cached by the resource proxy.
+   */
+  public long getProxyResourceCacheSize() {
+    return proxyResourceCacheSize;
+  }
+
+  /**
+   * @param proxyResourceCacheSize
+   *          the maximum number of bytes of the resources cached by the resource proxy. Use 0 to disable the cache.
+   */
+  public void setProxyResourceCacheSize(final long proxyResourceCacheSize) {
+    this.proxyResourceCacheSize = proxyResourceCacheSize;
+  }
+
+  /**
+   * @return the maximum number of bytes of the groups held in memory by the weighted-memory and disk cache strategies.
+   */
+  public long getWeightedMemoryCacheSize() {
+    return weightedMemoryCacheSize;
+  }
+
+  /**
+   * @param weightedMemoryCacheSize
+   *          the maximum number of bytes of the groups held in memory by the weighted-memory and disk cache
+   *          strategies. It must be greater than 0.
+   */
+  public void setWeightedMemoryCacheSize(final long weightedMemoryCacheSize) {
+    this.weightedMemoryCacheSize = weightedMemoryCacheSize;
+  }
+
+  /**
+   * @return true if the css bundles are served with preload hints of the referred fonts and images.
+   */
+  public boolean isPreloadLinks() {
+    return preloadLinks;
+  }
+
+  /**
+   * @param preloadLinks
+   *          flag for adding the Link header with preload hints to the css bundles responses.
+   */
+  public void setPreloadLinks(final boolean preloadLinks) {
+    this.preloadLinks = preloadLinks;
+  }
+
+  /**
+   * @return true if the change of the resources read from files is detected by inspecting the files.
+   */
+  public boolean isResourceWatcherFileMonitor() {
+    return resourceWatcherFileMonitor;
+  }
+
+  /**
+   * @param resourceWatcherFileMonitor
+   *          flag enabling the detection of the change by inspecting the resource files.
+   */
+  public void setResourceWatcherFileMonitor(final boolean resourceWatcherFileMonitor) {
+    this.resourceWatcherFileMonitor = resourceWatcherFileMonitor;
+  }
+
   @Override
   public boolean equals(final Object obj) {
     return EqualsBuilder.reflectionEquals(this, obj, true);
@@ -1,14 +1,23 @@
 package ro.isdc.wro.http;
 
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
@@ -16,18 +25,34 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ro.isdc.wro.cache.CacheStrategy;
+import ro.isdc.wro.cache.impl.NoCacheStrategy;
+import ro.isdc.wro.cache.impl.WeightedMemoryCacheStrategy;
+import ro.isdc.wro.http.support.DelegatingServletOutputStream;
 import ro.isdc.wro.http.support.HttpHeader;
-import ro.isdc.wro.http.support.RedirectedStreamServletResponseWrapper;
+import ro.isdc.wro.http.support.ResponseValidators;
 import ro.isdc.wro.model.resource.locator.support.DispatcherStreamLocator;
 import ro.isdc.wro.util.WroUtil;
+import ro.isdc.wro.util.io.NullOutputStream;
 
 
 /**
  * A filter responsible for gzipping all content served through this filter.
+ * <p/>
+ * The content is compressed in one of the following ways:
+ * <ul>
+ * <li>When the servlet context contains a precompressed sidecar of the requested static resource (ex:
+ * <code>/js/app.js.gz</code> for <code>/js/app.js</code>), the sidecar is served as is, without invoking the chain. This
+ * is enabled only for the paths configured with the {@link #PARAM_PRECOMPRESSED_PATHS} init parameter.</li>
+ * <li>When the chained response is a complete (200 OK, not a range request) response having a validator (ETag or
+ * Last-Modified header), the compressed content is cached using the request uri and the validator as key. The
+ * compressed content is served from the cache as long as the validator doesn't change.</li>
+ * <li>Otherwise, the content is compressed while it is written, without being buffered.</li>
+ * </ul>
  *
  * @author Alex Objelean
  * @created 11 Apr 2013
@@ -36,12 +61,38 @@ import ro.isdc.wro.util.WroUtil;
 public class GzipFilter
     implements Filter {
   private static final Logger LOG = LoggerFactory.getLogger(GzipFilter.class);
+  /**
+   * The extension of the precompressed sidecar files.
+   */
+  public static final String GZIP_EXTENSION = ".gz";
+  /**
+   * The default maximum number of bytes of the compressed content held by the cache.
+   */
+  public static final long DEFAULT_CACHE_MAX_WEIGHT = 8 * 1024 * 1024;
+  /**
+   * The init parameter enabling the serving of precompressed sidecars, containing a comma separated list of path
+   * prefixes (ex: <code>/static/,/js/</code>). The sidecars are not served when this parameter is not set.
+   */
+  public static final String PARAM_PRECOMPRESSED_PATHS = "precompressedPaths";
+  private static final String GZIP_ENCODING = "gzip";
+  private ServletContext servletContext;
+  private final List<String> precompressedPaths = new ArrayList<String>();
+  private final CacheStrategy<String, byte[]> compressedCache = newCompressedCache();
 
   /**
    * {@inheritDoc}
    */
   public void init(final FilterConfig filterConfig)
       throws ServletException {
+    servletContext = filterConfig.getServletContext();
+    final String paths = filterConfig.getInitParameter(PARAM_PRECOMPRESSED_PATHS);
+    if (paths != null) {
+      for (final String path : paths.split(",")) {
+        if (StringUtils.isNotBlank(path)) {
+          precompressedPaths.add(path.trim());
+        }
+      }
+    }
   }
 
   /**
@@ -53,35 +104,98 @@ public class GzipFilter
     final HttpServletResponse response = (HttpServletResponse) res;
 
     if (isGzipAllowed(request)) {
-      doGzipResponse(request, response, chain);
+      if (!serveSidecar(request, response)) {
+        doGzipResponse(request, response, chain);
+      }
     } else {
       LOG.debug("Gzip not allowed. Proceeding with chain.");
       chain.doFilter(request, response);
     }
   }
 
+  /**
+   * Serves the precompressed sidecar of the requested path, if enabled for the path and the servlet context contains
+   * both the static resource and its sidecar. The conditional requests are handled using validators derived from the
+   * sidecar timestamp and size. The range requests are not handled, thus are passed down the chain.
+   *
+   * @return true if the request was handled using the sidecar.
+   */
+  private boolean serveSidecar(final HttpServletRequest request, final HttpServletResponse response)
+      throws IOException {
+    if (servletContext == null || !"GET".equals(request.getMethod())
+        || request.getHeader(HttpHeader.RANGE.toString()) != null) {
+      return false;
+    }
+    final String path = StringUtils.removeStart(request.getRequestURI(), request.getContextPath());
+    if (!isPrecompressedPath(path) || servletContext.getResource(path) == null) {
+      return false;
+    }
+    final String sidecarPath = path + GZIP_EXTENSION;
+    final URL sidecarUrl = servletContext.getResource(sidecarPath);
+    if (sidecarUrl == null) {
+      return false;
+    }
+    final URLConnection connection = sidecarUrl.openConnection();
+    final InputStream is = connection.getInputStream();
+    try {
+      final long lastModified = connection.getLastModified();
+      final int length = connection.getContentLength();
+      final ResponseValidators validators = ResponseValidators.weak(Long.toHexString(lastModified) + "-"
+          + Integer.toHexString(length), lastModified);
+      response.setHeader(HttpHeader.VARY.toString(), HttpHeader.ACCEPT_ENCODING.toString());
+      validators.setHeaders(response);
+      if (validators.isNotModified(request)) {
+        LOG.debug("Precompressed sidecar not modified: {}", sidecarPath);
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return true;
+      }
+      LOG.debug("Serving precompressed sidecar: {}", sidecarPath);
+      final String contentType = servletContext.getMimeType(path);
+      if (contentType != null) {
+        response.setContentType(contentType);
+      }
+      setGzipHeaders(response);
+      if (length >= 0) {
+        response.setContentLength(length);
+      }
+      IOUtils.copy(is, response.getOutputStream());
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the path is a static resource for which the sidecar serving is enabled.
+   */
+  private boolean isPrecompressedPath(final String path) {
+    if (StringUtils.isEmpty(path) || path.endsWith("/") || StringUtils.startsWithIgnoreCase(path, "/WEB-INF/")
+        || StringUtils.startsWithIgnoreCase(path, "/META-INF/")) {
+      return false;
+    }
+    for (final String precompressedPath : precompressedPaths) {
+      if (path.startsWith(precompressedPath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Performs actual gzip of the filtered content.
    */
   private void doGzipResponse(final HttpServletRequest req, final HttpServletResponse response, final FilterChain chain)
       throws IOException, ServletException {
-    LOG.debug("Applying gzip on resource: " + req.getRequestURI());
-    response.setHeader(HttpHeader.CONTENT_ENCODING.toString(), "gzip");
-    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    final CountingOutputStream countingStream = new CountingOutputStream(new GZIPOutputStream(new BufferedOutputStream(
-        baos)));
-    // final GZIPOutputStream gzout = new GZIPOutputStream(new BufferedOutputStream(baos));
-    // Perform gzip operation in-memory before sending response
-    final HttpServletResponseWrapper wrappedResponse = new RedirectedStreamServletResponseWrapper(countingStream,
-        response);
+    LOG.debug("Applying gzip on resource: {}", req.getRequestURI());
+    setGzipHeaders(response);
+    final GzipResponseWrapper wrappedResponse = new GzipResponseWrapper(req, response);
     chain.doFilter(req, wrappedResponse);
-    // close underlying stream
-    countingStream.close();
-    response.setContentLength(countingStream.getCount());
-    // avoid NO CONTENT error thrown by jetty when gzipping empty response
-    if (countingStream.getCount() > 0) {
-      IOUtils.write(baos.toByteArray(), response.getOutputStream());
-    }
+    wrappedResponse.finish();
+  }
+
+  private void setGzipHeaders(final HttpServletResponse response) {
+    response.setHeader(HttpHeader.CONTENT_ENCODING.toString(), GZIP_ENCODING);
+    response.setHeader(HttpHeader.VARY.toString(), HttpHeader.ACCEPT_ENCODING.toString());
   }
 
   /**
@@ -91,10 +205,228 @@ public class GzipFilter
     return !DispatcherStreamLocator.isIncludedRequest(request) && WroUtil.isGzipSupported(request);
   }
 
+  /**
+   * @return the cache holding the compressed content of the responses having validators. Override this method to
+   *         change the size of the cache or to disable caching (ex: using a {@link NoCacheStrategy}).
+   */
+  protected CacheStrategy<String, byte[]> newCompressedCache() {
+    return new WeightedMemoryCacheStrategy<String, byte[]>(DEFAULT_CACHE_MAX_WEIGHT,
+        new WeightedMemoryCacheStrategy.Weigher<byte[]>() {
+          public long weigh(final byte[] value) {
+            return value.length;
+          }
+        });
+  }
+
   /**
    * {@inheritDoc}
    */
   public void destroy() {
+    compressedCache.destroy();
   }
 
+  /**
+   * Compresses the content written by the chain. The way the content is compressed is decided when the first byte is
+   * written, since by then the headers of the response are known.
+   */
+  private class GzipResponseWrapper
+      extends HttpServletResponseWrapper {
+    private final HttpServletRequest request;
+    private final HttpServletResponse response;
+    private final ServletOutputStream servletOutputStream;
+    private PrintWriter printWriter;
+    private String validator;
+    private int status = HttpServletResponse.SC_OK;
+    /**
+     * Where the content is written, created when the first byte is written.
+     */
+    private OutputStream target;
+    /**
+     * Holds the content when it should be cached once compressed.
+     */
+    private ByteArrayOutputStream buffer;
+    /**
+     * The cache key of the content, or null if the content is not cached.
+     */
+    private String cacheKey;
+    private byte[] cachedContent;
+
+    GzipResponseWrapper(final HttpServletRequest request, final HttpServletResponse response) {
+      super(response);
+      this.request = request;
+      this.response = response;
+      this.servletOutputStream = new DelegatingServletOutputStream(new OutputStream() {
+        @Override
+        public void write(final int b)
+            throws IOException {
+          getTarget().write(b);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+            throws IOException {
+          getTarget().write(b, off, len);
+        }
+
+        @Override
+        public void flush()
+            throws IOException {
+          if (target != null) {
+            target.flush();
+          }
+        }
+
+        @Override
+        public void close() {
+          // the stream is closed once the chain is done
+        }
+      });
+    }
+
+    private OutputStream getTarget()
+        throws IOException {
+      if (target == null) {
+        if (isCacheable()) {
+          cacheKey = request.getRequestURI() + "?" + request.getQueryString() + "#" + validator;
+          cachedContent = compressedCache.get(cacheKey);
+        }
+        if (cachedContent != null) {
+          LOG.debug("Serving compressed content from cache: {}", cacheKey);
+          target = new NullOutputStream();
+        } else if (cacheKey != null) {
+          buffer = new ByteArrayOutputStream();
+          target = new GZIPOutputStream(buffer);
+        } else {
+          target = new GZIPOutputStream(response.getOutputStream());
+        }
+      }
+      return target;
+    }
+
+    /**
+     * Only the complete content is cached: a partial content (or an error page) served for the same uri and validator
+     * must not be served to the other requests.
+     */
+    private boolean isCacheable() {
+      return validator != null && status == HttpServletResponse.SC_OK
+          && request.getHeader(HttpHeader.RANGE.toString()) == null;
+    }
+
+    @Override
+    public void setStatus(final int sc) {
+      super.setStatus(sc);
+      status = sc;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void setStatus(final int sc, final String sm) {
+      super.setStatus(sc, sm);
+      status = sc;
+    }
+
+    @Override
+    public void sendError(final int sc)
+        throws IOException {
+      super.sendError(sc);
+      status = sc;
+    }
+
+    @Override
+    public void sendError(final int sc, final String msg)
+        throws IOException {
+      super.sendError(sc, msg);
+      status = sc;
+    }
+
+    @Override
+    public void sendRedirect(final String location)
+        throws IOException {
+      super.sendRedirect(location);
+      status = HttpServletResponse.SC_MOVED_TEMPORARILY;
+    }
+
+    @Override
+    public void setHeader(final String name, final String value) {
+      super.setHeader(name, value);
+      onHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(final String name, final String value) {
+      super.addHeader(name, value);
+      onHeader(name, value);
+    }
+
+    @Override
+    public void setDateHeader(final String name, final long date) {
+      super.setDateHeader(name, date);
+      onHeader(name, String.valueOf(date));
+    }
+
+    private void onHeader(final String name, final String value) {
+      if (HttpHeader.ETAG.toString().equalsIgnoreCase(name)) {
+        validator = value;
+      } else if (HttpHeader.LAST_MODIFIED.toString().equalsIgnoreCase(name) && validator == null) {
+        validator = value;
+      }
+    }
+
+    /**
+     * The length of the content is not known until it is compressed.
+     */
+    @Override
+    public void setContentLength(final int len) {
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+      return servletOutputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter()
+        throws IOException {
+      if (printWriter == null) {
+        printWriter = new PrintWriter(new OutputStreamWriter(servletOutputStream, getCharacterEncoding()));
+      }
+      return printWriter;
+    }
+
+    @Override
+    public void flushBuffer()
+        throws IOException {
+      if (printWriter != null) {
+        printWriter.flush();
+      }
+      servletOutputStream.flush();
+    }
+
+    /**
+     * Writes the compressed content to the response.
+     */
+    void finish()
+        throws IOException {
+      if (printWriter != null) {
+        printWriter.flush();
+      }
+      if (target == null) {
+        // avoid NO CONTENT error thrown by jetty when gzipping empty response
+        response.setContentLength(0);
+        return;
+      }
+      if (target instanceof GZIPOutputStream) {
+        // writes the remaining compressed data without closing the response stream
+        ((GZIPOutputStream) target).finish();
+      }
+      if (buffer != null) {
+        cachedContent = buffer.toByteArray();
+        compressedCache.put(cacheKey, cachedContent);
+      }
+      if (cachedContent != null) {
+        response.setContentLength(cachedContent.length);
+        response.getOutputStream().write(cachedContent);
+      }
+    }
+  }
 }
@@ -29,22 +29,29 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ro.isdc.wro.cache.CacheKey;
+import ro.isdc.wro.cache.support.CacheWarmer;
 import ro.isdc.wro.config.Context;
 import ro.isdc.wro.config.factory.PropertiesAndFilterConfigWroConfigurationFactory;
 import ro.isdc.wro.config.jmx.WroConfiguration;
 import ro.isdc.wro.http.handler.RequestHandler;
 import ro.isdc.wro.http.handler.factory.DefaultRequestHandlerFactory;
 import ro.isdc.wro.http.handler.factory.RequestHandlerFactory;
+import ro.isdc.wro.http.support.AsyncRequestSupport;
+import ro.isdc.wro.http.support.RequestRouter;
 import ro.isdc.wro.http.support.ResponseHeadersConfigurer;
 import ro.isdc.wro.http.support.ServletContextAttributeHelper;
+import ro.isdc.wro.manager.WroManager;
 import ro.isdc.wro.manager.factory.DefaultWroManagerFactory;
 import ro.isdc.wro.manager.factory.WroManagerFactory;
 import ro.isdc.wro.model.group.processor.Injector;
 import ro.isdc.wro.model.group.processor.InjectorBuilder;
 import ro.isdc.wro.model.resource.locator.ServletContextUriLocator;
 import ro.isdc.wro.model.resource.locator.support.DispatcherStreamLocator;
+import ro.isdc.wro.util.LazyInitializer;
 import ro.isdc.wro.util.ObjectFactory;
 import ro.isdc.wro.util.WroUtil;
+import ro.isdc.wro.util.concurrent.CoalescingTaskExecutor;
 
 
 /**
@@ -90,6 +97,10 @@ public class WroFilter
   private Collection<RequestHandler> requestHandlers;
 
   private ResponseHeadersConfigurer headersConfigurer;
+  /**
+   * Passes down the chain the requests which cannot be handled by this filter, without creating a context.
+   */
+  private RequestRouter requestRouter;
   /**
    * Flag used to toggle filter processing. When this flag is false, the filter will proceed with chaining. This flag is
    * true by default.
@@ -97,6 +108,27 @@ public class WroFilter
   private boolean enable = true;
   private Injector injector;
   private MBeanServer mbeanServer = null;
+  /**
+   * Populates the cache when the first request is handled (if enabled).
+   */
+  private final CacheWarmer cacheWarmer = new CacheWarmer();
+  /**
+   * The maximum number of suspended requests waiting to be processed, per processing thread. When exceeded, the
+   * requests are processed by the container thread.
+   */
+  private static final int MAX_PENDING_ASYNC_REQUESTS_PER_THREAD = 64;
+  /**
+   * Processes the suspended requests (if async processing is enabled).
+   */
+  private final LazyInitializer<CoalescingTaskExecutor<CacheKey>> asyncExecutor =
+      new LazyInitializer<CoalescingTaskExecutor<CacheKey>>() {
+    @Override
+    protected CoalescingTaskExecutor<CacheKey> initialize() {
+      final int poolSize = Runtime.getRuntime().availableProcessors();
+      return new CoalescingTaskExecutor<CacheKey>(poolSize, poolSize * MAX_PENDING_ASYNC_REQUESTS_PER_THREAD,
+          "wroAsyncProcessing");
+    }
+  };
 
   /**
    * @return true if the provided request contains an attribute indicating that it was handled through {@link WroFilter}
@@ -115,6 +147,7 @@ public class WroFilter
     this.injector = createInjector();
     headersConfigurer = newResponseHeadersConfigurer();
     requestHandlers = createRequestHandlers();
+    requestRouter = newRequestRouter();
 
     registerChangeListeners();
     registerMBean();
@@ -172,6 +205,10 @@ public class WroFilter
         if (!mbeanServer.isRegistered(name)) {
           mbeanServer.registerMBean(wroConfiguration, name);
         }
+        final ObjectName cacheWarmerName = getCacheWarmerObjectName();
+        if (wroConfiguration.isCacheWarmUpEnabled() && !mbeanServer.isRegistered(cacheWarmerName)) {
+          mbeanServer.registerMBean(cacheWarmer, cacheWarmerName);
+        }
       } catch (final JMException e) {
         LOG.error("Exception occured while registering MBean", e);
       }
@@ -183,6 +220,10 @@ public class WroFilter
       if (mbeanServer != null && mbeanServer.isRegistered(getMBeanObjectName())) {
         mbeanServer.unregisterMBean(getMBeanObjectName());
       }
+      if (mbeanServer != null && wroConfiguration.isCacheWarmUpEnabled()
+          && mbeanServer.isRegistered(getCacheWarmerObjectName())) {
+        mbeanServer.unregisterMBean(getCacheWarmerObjectName());
+      }
     } catch (final JMException e) {
       LOG.error("Exception occured while registering MBean", e);
     }
@@ -193,6 +234,11 @@ public class WroFilter
     return new ObjectName(newMBeanName(), "type", WroConfiguration.class.getSimpleName());
   }
 
+  private ObjectName getCacheWarmerObjectName()
+      throws MalformedObjectNameException {
+    return new ObjectName(newMBeanName(), "type", CacheWarmer.class.getSimpleName());
+  }
+
   /**
    * @return the name of MBean to be used by JMX to configure wro4j.
    */
@@ -258,6 +304,16 @@ public class WroFilter
     return ResponseHeadersConfigurer.fromConfig(wroConfiguration);
   }
 
+  /**
+   * Override this method when custom request handlers accept requests not containing the
+   * {@link ro.isdc.wro.http.handler.RequestHandlerSupport#PATH_API}.
+   *
+   * @return the {@link RequestRouter} deciding which requests are handled by this filter.
+   */
+  protected RequestRouter newRequestRouter() {
+    return new RequestRouter();
+  }
+
   /**
    * @return default implementation of {@link RequestHandlerFactory}
    */
@@ -284,19 +340,21 @@ public class WroFilter
     final HttpServletRequest request = (HttpServletRequest) req;
     final HttpServletResponse response = (HttpServletResponse) res;
 
-    if (isFilterActive(request)) {
+    if (isFilterActive(request) && requestRouter.isRoutable(request)) {
       LOG.debug("processing wro request: {}", request.getRequestURI());
       try {
         // add request, response & servletContext to thread local
         Context.set(Context.webContext(request, response, filterConfig), wroConfiguration);
         addPassThroughFilterAttribute(request);
-        if (!handledWithRequestHandler(request, response)) {
+        warmUpCache();
+        if (!handledWithRequestHandler(request, response) && !processedAsynchronously(request, response)) {
           processRequest(request, response);
           onRequestProcessed();
         }
       } catch (final Exception e) {
         onException(e, response, chain);
       } finally {
+        updateRequestRouter();
         Context.unset();
       }
     } else {
@@ -304,6 +362,26 @@ public class WroFilter
     }
   }
 
+  /**
+   * Collects the group names once the model is created, thus the requests of unknown groups are not routed anymore.
+   */
+  private void updateRequestRouter() {
+    try {
+      requestRouter.update(wroManagerFactory.create());
+    } catch (final RuntimeException e) {
+      LOG.debug("Cannot update the request router", e);
+    }
+  }
+
+  /**
+   * Starts the cache warm up (only once), if enabled.
+   */
+  private void warmUpCache() {
+    if (wroConfiguration.isCacheWarmUpEnabled()) {
+      injector.inject(cacheWarmer).warmUpOnce();
+    }
+  }
+
   private void addPassThroughFilterAttribute(final HttpServletRequest request) {
     request.setAttribute(ATTRIBUTE_PASSED_THROUGH_FILTER, Boolean.TRUE);
   }
@@ -321,6 +399,81 @@ public class WroFilter
     return false;
   }
 
+  /**
+   * Suspends the request and processes it using a wro4j thread, when the async processing is enabled and supported by
+   * the container and the requested group is not cached yet. This way, the container thread is not blocked while the
+   * group is processed. The requests of the same group received meanwhile wait for the first one to complete, after
+   * which they are served from the cache. When too many requests are waiting to be processed, the request is processed
+   * by the current thread.
+   *
+   * @return true if the request was suspended for asynchronous processing.
+   */
+  private boolean processedAsynchronously(final HttpServletRequest request, final HttpServletResponse response) {
+    if (!wroConfiguration.isAsyncProcessing() || !AsyncRequestSupport.isAsyncSupported(request)) {
+      return false;
+    }
+    final WroManager manager = wroManagerFactory.create();
+    final CacheKey cacheKey = manager.getCacheKeyFactory().create(request);
+    if (cacheKey == null || manager.isCached(cacheKey)) {
+      return false;
+    }
+    LOG.debug("processing asynchronously: {}", cacheKey);
+    final AsyncRequestSupport asyncRequest = AsyncRequestSupport.start(request,
+        wroConfiguration.getAsyncProcessingTimeout());
+    final Context context = Context.get();
+    final boolean submitted = asyncExecutor.get().submit(cacheKey, new Runnable() {
+      public void run() {
+        Context.set(context, wroConfiguration);
+        try {
+          processAsyncRequest(asyncRequest, request, response);
+        } finally {
+          Context.unset();
+        }
+      }
+    });
+    if (!submitted) {
+      LOG.debug("Too many pending asynchronous requests, processing in current thread: {}", cacheKey);
+      processAsyncRequest(asyncRequest, request, response);
+    }
+    return true;
+  }
+
+  /**
+   * Processes the suspended request, unless it was timed out meanwhile, and completes it.
+   */
+  private void processAsyncRequest(final AsyncRequestSupport asyncRequest, final HttpServletRequest request,
+      final HttpServletResponse response) {
+    try {
+      if (asyncRequest.isTimedOut()) {
+        LOG.debug("Asynchronous request timed out before being processed: {}", request.getRequestURI());
+      } else {
+        processRequest(request, response);
+        onRequestProcessed();
+      }
+    } catch (final Exception e) {
+      onAsyncException(e, asyncRequest, response);
+    } finally {
+      asyncRequest.complete();
+    }
+  }
+
+  /**
+   * Handles the failure of a request processed asynchronously. Unlike {@link #onException(Exception, HttpServletResponse,
+   * FilterChain)}, the request cannot proceed with the chain, since the processing is not performed by a container
+   * thread. An error status is sent instead.
+   */
+  private void onAsyncException(final Exception e, final AsyncRequestSupport asyncRequest,
+      final HttpServletResponse response) {
+    LOG.error("Exception occured during asynchronous processing", e);
+    try {
+      if (!asyncRequest.isTimedOut() && !response.isCommitted()) {
+        response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+      }
+    } catch (final Exception ex) {
+      LOG.debug("Error while sending the error status", ex);
+    }
+  }
+
   /**
    * @return {@link Injector} used to inject {@link RequestHandler}'s.
    * @VisibleForTesting
@@ -486,6 +639,10 @@ public class WroFilter
   public void destroy() {
     //Avoid memory leak by unregistering mBean on destroy
     unregisterMBean();
+    cacheWarmer.destroy();
+    if (asyncExecutor.isInitialized()) {
+      asyncExecutor.get().destroy();
+    }
     if (wroManagerFactory != null) {
       wroManagerFactory.destroy();
     }
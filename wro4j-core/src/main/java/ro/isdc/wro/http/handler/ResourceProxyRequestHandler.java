@@ -2,6 +2,8 @@ package ro.isdc.wro.http.handler;
 
 import static org.apache.commons.lang3.Validate.notNull;
 
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -18,9 +20,15 @@ import ro.isdc.wro.config.ReadOnlyContext;
 import ro.isdc.wro.http.WroFilter;
 import ro.isdc.wro.http.support.ContentTypeResolver;
 import ro.isdc.wro.http.support.HttpHeader;
+import ro.isdc.wro.http.support.ProxyResourceCache;
+import ro.isdc.wro.http.support.ProxyResourceCache.ProxyResource;
 import ro.isdc.wro.http.support.ResponseHeadersConfigurer;
+import ro.isdc.wro.http.support.ResponseValidators;
+import ro.isdc.wro.http.support.ResponseValidators.ByteRange;
 import ro.isdc.wro.http.support.UnauthorizedRequestException;
 import ro.isdc.wro.model.group.Inject;
+import ro.isdc.wro.model.resource.locator.LastModifiedAware;
+import ro.isdc.wro.model.resource.locator.UriLocator;
 import ro.isdc.wro.model.resource.locator.factory.UriLocatorFactory;
 import ro.isdc.wro.model.resource.support.ResourceAuthorizationManager;
 
@@ -61,6 +69,8 @@ public class ResourceProxyRequestHandler
 
   @Inject
   private ResourceAuthorizationManager authManager;
+  @Inject
+  private ProxyResourceCache proxyResourceCache;
   private ResponseHeadersConfigurer headersConfigurer;
 
   @Override
@@ -79,47 +89,155 @@ public class ResourceProxyRequestHandler
       throws IOException {
     final String resourceUri = getResourceUri(request);
     LOG.debug("[OK] serving proxy resource: {}", resourceUri);
+    if (proxyResourceCache.isEnabled()) {
+      serveCachedResource(request, response, resourceUri);
+      return;
+    }
     final OutputStream outputStream = response.getOutputStream();
     response.setContentType(ContentTypeResolver.get(resourceUri, context.getConfig().getEncoding()));
-
-    if (isResourceChanged(request)) {
-      // set expiry headers
-      getHeadersConfigurer().setHeaders(response);
+    final ResponseValidators validators = getValidators(resourceUri);
+    if (isResourceChanged(request, validators)) {
+      setHeaders(response, validators);
       InputStream is = null;
       try {
-        is = new AutoCloseInputStream(locatorFactory.locate(resourceUri));
-        final int length = IOUtils.copy(is, outputStream);
-        // servlet engine may ignore this if content body is flushed to client
-        response.setContentLength(length);
-        response.setStatus(HttpServletResponse.SC_OK);
+        if (request.getHeader(HttpHeader.RANGE.toString()) != null) {
+          // the content is read in memory only when a part of it is requested
+          final byte[] content = IOUtils.toByteArray(new AutoCloseInputStream(locatorFactory.locate(resourceUri)));
+          is = new ByteArrayInputStream(content);
+          serveRange(request, response, validators, content.length, is, outputStream);
+        } else {
+          is = new AutoCloseInputStream(locatorFactory.locate(resourceUri));
+          final int length = IOUtils.copy(is, outputStream);
+          // servlet engine may ignore this if content body is flushed to client
+          response.setContentLength(length);
+          response.setStatus(HttpServletResponse.SC_OK);
+        }
       } finally {
         IOUtils.closeQuietly(is);
         IOUtils.closeQuietly(outputStream);
       }
     } else {
       response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      validators.setHeaders(response);
+    }
+  }
+
+  /**
+   * Serves the resource from the {@link ProxyResourceCache}. The resource is retrieved once per request and its content
+   * is opened before the headers are set. When the file holding the content was deleted after the resource was
+   * retrieved (evicted or changed meanwhile), the resource is retrieved again.
+   */
+  private void serveCachedResource(final HttpServletRequest request, final HttpServletResponse response,
+      final String resourceUri)
+      throws IOException {
+    ProxyResource resource = proxyResourceCache.get(resourceUri);
+    final OutputStream outputStream = response.getOutputStream();
+    if (!isResourceChanged(request, resource.getValidators())) {
+      response.setContentType(resource.getContentType());
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      resource.getValidators().setHeaders(response);
+      return;
+    }
+    InputStream is = null;
+    try {
+      try {
+        is = resource.getInputStream();
+      } catch (final FileNotFoundException e) {
+        LOG.debug("Proxy resource file removed meanwhile, retrieving it again: {}", resourceUri);
+        resource = proxyResourceCache.get(resourceUri);
+        is = resource.getInputStream();
+      }
+      response.setContentType(resource.getContentType());
+      setHeaders(response, resource.getValidators());
+      serveRange(request, response, resource.getValidators(), resource.getLength(), is, outputStream);
+    } finally {
+      IOUtils.closeQuietly(is);
+      IOUtils.closeQuietly(outputStream);
+    }
+  }
+
+  /**
+   * Sets the expiry headers, the validators and advertises the support of range requests.
+   */
+  private void setHeaders(final HttpServletResponse response, final ResponseValidators validators) {
+    getHeadersConfigurer().setHeaders(response);
+    validators.setHeaders(response);
+    response.setHeader(HttpHeader.ACCEPT_RANGES.toString(), "bytes");
+  }
+
+  /**
+   * Serves the part of the content requested by the Range header, or the entire content when no valid range is
+   * requested.
+   */
+  private void serveRange(final HttpServletRequest request, final HttpServletResponse response,
+      final ResponseValidators validators, final long length, final InputStream content,
+      final OutputStream outputStream)
+      throws IOException {
+    final ByteRange range = validators.getRange(request, length);
+    if (range == null) {
+      response.setContentLength((int) length);
+      response.setStatus(HttpServletResponse.SC_OK);
+      IOUtils.copyLarge(content, outputStream);
+    } else {
+      response.setHeader(HttpHeader.CONTENT_RANGE.toString(), range.toContentRange());
+      if (range.isSatisfiable()) {
+        response.setContentLength((int) range.getLength());
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        IOUtils.copyLarge(content, outputStream, range.getStart(), range.getLength());
+      } else {
+        response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+      }
     }
   }
 
   /**
    * Used to identify whether the {@link HttpServletResponse#SC_NOT_MODIFIED} or {@link HttpServletResponse#SC_OK}
-   * should be returned. Currently a single timestamp is used to detect the change for all resources. This might be no
-   * accurate, but at least it allows sending NOT_MODIFIED header much often resulting in less load on the server.
+   * should be returned. When the proxy resources are cached, the change is detected using the hash of the cached
+   * content. Otherwise, the change is detected using the last modification timestamp of the resource, when the locator
+   * is able to provide it (see {@link LastModifiedAware}), or a single timestamp is used to detect the change for all
+   * resources. This might be no accurate, but at least it allows sending NOT_MODIFIED header much often
+   * resulting in less load on the server.
    * <p/>
    * Override this method if a different way detecting change is required.
    *
+   * @param validators
+   *          the validators of the requested resource.
    * @return true if the requested resource is changed on the server and the latest version should be returned.
+   * @since 1.8.1
    */
-  protected boolean isResourceChanged(final HttpServletRequest request) {
+  protected boolean isResourceChanged(final HttpServletRequest request, final ResponseValidators validators) {
     try {
-      final long ifModifiedSince = request.getDateHeader(HttpHeader.IF_MODIFIED_SINCE.toString());
-      return ifModifiedSince < getHeadersConfigurer().getLastModifiedTimestamp();
+      return !validators.isNotModified(request);
     } catch (final Exception e) {
       LOG.warn("Could not extract IF_MODIFIED_SINCE header for request: " + request.getRequestURI() + ". Assuming content is changed. ", e);
       return true;
     }
   }
 
+  /**
+   * @return the validators of a proxy resource which is not cached. The ETag is weak, since it is derived from the last
+   *         modification timestamp rather than from the content.
+   */
+  private ResponseValidators getValidators(final String resourceUri) {
+    final long lastModified = getLastModified(resourceUri);
+    return ResponseValidators.weak(Long.toHexString(lastModified), lastModified);
+  }
+
+  private long getLastModified(final String resourceUri) {
+    final UriLocator locator = locatorFactory.getInstance(resourceUri);
+    if (locator instanceof LastModifiedAware) {
+      try {
+        final long lastModified = ((LastModifiedAware) locator).getLastModified(resourceUri);
+        if (lastModified > 0) {
+          return lastModified;
+        }
+      } catch (final IOException e) {
+        LOG.debug("Could not retrieve the last modified timestamp of: {}", resourceUri);
+      }
+    }
+    return getHeadersConfigurer().getLastModifiedTimestamp();
+  }
+
   private void verifyAccess(final HttpServletRequest request, final HttpServletResponse response) {
     final String resourceUri = getResourceUri(request);
     if (!authManager.isAuthorized(resourceUri)) {
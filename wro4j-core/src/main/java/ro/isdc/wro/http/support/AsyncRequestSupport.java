@@ -0,0 +1,166 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.http.support;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.ServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.isdc.wro.WroRuntimeException;
+
+
+/**
+ * Gives access to the asynchronous processing of a request (Servlet 3.0), using reflection in order to be usable in any
+ * container. When the container doesn't support Servlet 3.0, the request is always processed synchronously.
+ * <p/>
+ * The methods are looked up on the Servlet 3.0 interfaces when available, otherwise on the class of the object they are
+ * invoked on.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public class AsyncRequestSupport {
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncRequestSupport.class);
+  private static final String ASYNC_CONTEXT_CLASS = "javax.servlet.AsyncContext";
+  private final Object asyncContext;
+  /**
+   * Set when the container reports that the asynchronous processing timed out (or failed), after which the response
+   * must not be used anymore.
+   */
+  private volatile boolean timedOut;
+
+  private AsyncRequestSupport(final Object asyncContext) {
+    this.asyncContext = asyncContext;
+  }
+
+  /**
+   * @return true if the provided request can be processed asynchronously.
+   */
+  public static boolean isAsyncSupported(final ServletRequest request) {
+    notNull(request);
+    try {
+      final Method isAsyncSupported = getMethod(ServletRequest.class, request, "isAsyncSupported");
+      final Method isAsyncStarted = getMethod(ServletRequest.class, request, "isAsyncStarted");
+      return (Boolean) isAsyncSupported.invoke(request) && !(Boolean) isAsyncStarted.invoke(request);
+    } catch (final NoSuchMethodException e) {
+      return false;
+    } catch (final Exception e) {
+      LOG.debug("Cannot check if asynchronous processing is supported", e);
+      return false;
+    }
+  }
+
+  /**
+   * Puts the request into asynchronous mode. The response is not committed when the filter chain returns, until
+   * {@link #complete()} is invoked.
+   *
+   * @param timeout
+   *          the number of milliseconds after which the container times out the asynchronous processing.
+   * @return the started asynchronous request.
+   */
+  public static AsyncRequestSupport start(final ServletRequest request, final long timeout) {
+    notNull(request);
+    try {
+      final Object asyncContext = getMethod(ServletRequest.class, request, "startAsync").invoke(request);
+      final AsyncRequestSupport asyncRequest = new AsyncRequestSupport(asyncContext);
+      getMethod(loadClass(ASYNC_CONTEXT_CLASS), asyncContext, "setTimeout", long.class).invoke(asyncContext, timeout);
+      asyncRequest.addTimeoutListener();
+      return asyncRequest;
+    } catch (final Exception e) {
+      throw WroRuntimeException.wrap(e, "Cannot start asynchronous processing");
+    }
+  }
+
+  /**
+   * Registers a listener (created dynamically, since the AsyncListener interface may not be available at compile time)
+   * marking the request as timed out.
+   */
+  private void addTimeoutListener()
+      throws Exception {
+    final Method addListener = getAddListenerMethod();
+    final Class<?> listenerClass = addListener.getParameterTypes()[0];
+    final Object listener = Proxy.newProxyInstance(listenerClass.getClassLoader(), new Class<?>[] {
+      listenerClass
+    }, new InvocationHandler() {
+      public Object invoke(final Object proxy, final Method method, final Object[] args)
+          throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+          return method.invoke(this, args);
+        }
+        if ("onTimeout".equals(method.getName()) || "onError".equals(method.getName())) {
+          LOG.debug("Asynchronous processing stopped by the container: {}", method.getName());
+          timedOut = true;
+        }
+        return null;
+      }
+    });
+    addListener.invoke(asyncContext, listener);
+  }
+
+  private Method getAddListenerMethod()
+      throws NoSuchMethodException {
+    final Class<?> asyncContextClass = loadClass(ASYNC_CONTEXT_CLASS);
+    for (final Method method : (asyncContextClass != null ? asyncContextClass : asyncContext.getClass()).getMethods()) {
+      if ("addListener".equals(method.getName()) && method.getParameterTypes().length == 1) {
+        return method;
+      }
+    }
+    throw new NoSuchMethodException("addListener");
+  }
+
+  /**
+   * @return true if the container timed out the asynchronous processing, in which case the response must not be
+   *         written.
+   */
+  public boolean isTimedOut() {
+    return timedOut;
+  }
+
+  /**
+   * Completes the asynchronous processing and commits the response, unless the container timed it out already.
+   */
+  public void complete() {
+    if (timedOut) {
+      LOG.debug("Asynchronous processing timed out, nothing to complete");
+      return;
+    }
+    try {
+      getMethod(loadClass(ASYNC_CONTEXT_CLASS), asyncContext, "complete").invoke(asyncContext);
+    } catch (final Exception e) {
+      LOG.error("Cannot complete asynchronous processing", e);
+    }
+  }
+
+  /**
+   * @return the method declared by the provided interface (if available), otherwise the public method of the target
+   *         class.
+   */
+  private static Method getMethod(final Class<?> interfaceClass, final Object target, final String name,
+      final Class<?>... parameterTypes)
+      throws NoSuchMethodException {
+    if (interfaceClass != null) {
+      try {
+        return interfaceClass.getMethod(name, parameterTypes);
+      } catch (final NoSuchMethodException e) {
+        LOG.debug("Method {} not found in {}", name, interfaceClass);
+      }
+    }
+    return target.getClass().getMethod(name, parameterTypes);
+  }
+
+  private static Class<?> loadClass(final String className) {
+    try {
+      return Class.forName(className, false, ServletRequest.class.getClassLoader());
+    } catch (final ClassNotFoundException e) {
+      return null;
+    }
+  }
+}
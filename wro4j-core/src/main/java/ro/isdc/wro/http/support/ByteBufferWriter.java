@@ -0,0 +1,132 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.http.support;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.isdc.wro.WroRuntimeException;
+import ro.isdc.wro.util.provider.ProviderFinder;
+
+
+/**
+ * Writes a {@link ByteBuffer} to the response {@link OutputStream}. When the container supports it, the buffer is
+ * handed to the container as is (ex: jetty <code>HttpOutput#sendContent(ByteBuffer)</code>), otherwise the content is
+ * written to the stream directly from the array backing the buffer, without any intermediate copy.
+ * <p/>
+ * Other containers can be supported by providing a {@link ContainerOutputAdapter}.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public class ByteBufferWriter {
+  private static final Logger LOG = LoggerFactory.getLogger(ByteBufferWriter.class);
+  private volatile List<ContainerOutputAdapter> adapters;
+
+  /**
+   * Writes the remaining content of the buffer. The position of the provided buffer is not changed.
+   */
+  public void write(final OutputStream outputStream, final ByteBuffer content)
+      throws IOException {
+    notNull(outputStream);
+    notNull(content);
+    final ByteBuffer buffer = content.duplicate();
+    for (final ContainerOutputAdapter adapter : getAdapters()) {
+      if (adapter.write(outputStream, buffer)) {
+        return;
+      }
+    }
+    if (buffer.hasArray()) {
+      outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    } else {
+      final WritableByteChannel channel = Channels.newChannel(outputStream);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
+  private List<ContainerOutputAdapter> getAdapters() {
+    if (adapters == null) {
+      final List<ContainerOutputAdapter> list = new ArrayList<ContainerOutputAdapter>(newAdapters());
+      list.add(new SendContentAdapter());
+      adapters = list;
+    }
+    return adapters;
+  }
+
+  /**
+   * @return the custom {@link ContainerOutputAdapter}'s, used before the default ones.
+   * @VisibleForTesting
+   */
+  List<ContainerOutputAdapter> newAdapters() {
+    return ProviderFinder.of(ContainerOutputAdapter.class).find();
+  }
+
+  /**
+   * Uses the <code>sendContent(ByteBuffer)</code> method of the response stream, when available (jetty).
+   */
+  private static class SendContentAdapter
+      implements ContainerOutputAdapter {
+    private static final Method NOT_SUPPORTED;
+    static {
+      try {
+        NOT_SUPPORTED = Object.class.getMethod("toString");
+      } catch (final NoSuchMethodException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    /**
+     * The sendContent method of each inspected stream class.
+     */
+    private final Map<Class<?>, Method> methods = new ConcurrentHashMap<Class<?>, Method>();
+
+    public boolean write(final OutputStream outputStream, final ByteBuffer content)
+        throws IOException {
+      final Method method = getSendContentMethod(outputStream.getClass());
+      if (method == NOT_SUPPORTED) {
+        return false;
+      }
+      try {
+        method.invoke(outputStream, content);
+        return true;
+      } catch (final InvocationTargetException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw WroRuntimeException.wrap(e);
+      } catch (final IllegalAccessException e) {
+        throw WroRuntimeException.wrap(e);
+      }
+    }
+
+    private Method getSendContentMethod(final Class<?> streamClass) {
+      Method method = methods.get(streamClass);
+      if (method == null) {
+        try {
+          method = streamClass.getMethod("sendContent", ByteBuffer.class);
+          LOG.debug("Using sendContent method of {}", streamClass);
+        } catch (final NoSuchMethodException e) {
+          method = NOT_SUPPORTED;
+        }
+        methods.put(streamClass, method);
+      }
+      return method;
+    }
+  }
+}
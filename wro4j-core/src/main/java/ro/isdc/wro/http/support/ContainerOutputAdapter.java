@@ -0,0 +1,29 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.http.support;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Writes a {@link ByteBuffer} using the api of the container owning the response {@link OutputStream}, avoiding to copy
+ * the content through the stream buffers. The implementations are discovered using the
+ * <code>META-INF/services</code> mechanism and used by {@link ByteBufferWriter}.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public interface ContainerOutputAdapter {
+  /**
+   * @param outputStream
+   *          the response stream.
+   * @param content
+   *          the content to write.
+   * @return true if the content was written, false if the provided stream is not supported by this adapter.
+   */
+  boolean write(OutputStream outputStream, ByteBuffer content)
+      throws IOException;
+}
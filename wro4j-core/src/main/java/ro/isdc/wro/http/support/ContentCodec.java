@@ -0,0 +1,34 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.http.support;
+
+import java.io.IOException;
+
+
+/**
+ * Encodes the content served to the client using an http content-coding (ex: gzip). Besides the codecs provided by
+ * {@link ContentCodecs}, other implementations (ex: brotli or zstd, backed by a codec library) are discovered using
+ * the <code>META-INF/services</code> mechanism.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public interface ContentCodec {
+  /**
+   * @return the name of the content-coding, as used by the <code>Accept-Encoding</code> and
+   *         <code>Content-Encoding</code> headers (ex: gzip).
+   */
+  String getEncoding();
+
+  /**
+   * @param content
+   *          the content to encode.
+   * @param level
+   *          the compression level, from 1 (fastest) to 9 (best compression), or -1 for the default level of the
+   *          codec. Codecs having a different range of levels are responsible for mapping this value.
+   * @return the encoded content.
+   */
+  byte[] encode(byte[] content, int level)
+      throws IOException;
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.http.support;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.isdc.wro.util.provider.ProviderFinder;
+
+
+/**
+ * Holds the available {@link ContentCodec}'s and negotiates the one to use for a request, based on the q-values of the
+ * <code>Accept-Encoding</code> header.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public final class ContentCodecs {
+  private static final Logger LOG = LoggerFactory.getLogger(ContentCodecs.class);
+  /**
+   * The gzip content-coding.
+   */
+  public static final ContentCodec GZIP = new GzipCodec();
+  /**
+   * The deflate content-coding (zlib format, as required by the http specification).
+   */
+  public static final ContentCodec DEFLATE = new DeflateCodec();
+  private static final String ANY_ENCODING = "*";
+  private static volatile Map<String, ContentCodec> available;
+
+  private ContentCodecs() {
+  }
+
+  /**
+   * @return all available codecs by their encoding. The discovered codecs can override the default ones.
+   */
+  private static Map<String, ContentCodec> getAvailable() {
+    if (available == null) {
+      final Map<String, ContentCodec> map = new LinkedHashMap<String, ContentCodec>();
+      map.put(GZIP.getEncoding(), GZIP);
+      map.put(DEFLATE.getEncoding(), DEFLATE);
+      for (final ContentCodec codec : ProviderFinder.of(ContentCodec.class).find()) {
+        LOG.debug("Found content codec: {}", codec.getEncoding());
+        map.put(codec.getEncoding().toLowerCase(), codec);
+      }
+      available = Collections.unmodifiableMap(map);
+    }
+    return available;
+  }
+
+  /**
+   * @param encodings
+   *          comma separated list of encodings, in the order of preference.
+   * @return the available codecs for the provided encodings, in the same order. The encodings without an available
+   *         codec are ignored.
+   */
+  public static List<ContentCodec> forEncodings(final String encodings) {
+    final List<ContentCodec> codecs = new ArrayList<ContentCodec>();
+    for (final String encoding : StringUtils.split(StringUtils.defaultString(encodings), ',')) {
+      final ContentCodec codec = getAvailable().get(encoding.trim().toLowerCase());
+      if (codec == null) {
+        LOG.debug("No codec available for encoding: {}", encoding);
+      } else if (!codecs.contains(codec)) {
+        codecs.add(codec);
+      }
+    }
+    return codecs;
+  }
+
+  /**
+   * Chooses the codec having the highest q-value in the provided <code>Accept-Encoding</code> header. When more codecs
+   * have the same q-value, the first one is chosen.
+   *
+   * @param acceptEncoding
+   *          the value of the <code>Accept-Encoding</code> header (can be null).
+   * @param codecs
+   *          the codecs which can be used, in the order of preference.
+   * @return the chosen codec, or null if none is acceptable (the identity encoding should be used).
+   */
+  public static ContentCodec negotiate(final String acceptEncoding, final List<ContentCodec> codecs) {
+    notNull(codecs);
+    if (StringUtils.isEmpty(acceptEncoding)) {
+      return null;
+    }
+    final Map<String, Float> qValues = parse(acceptEncoding);
+    ContentCodec result = null;
+    float resultQValue = 0;
+    for (final ContentCodec codec : codecs) {
+      Float qValue = qValues.get(codec.getEncoding());
+      if (qValue == null && codec == GZIP) {
+        qValue = qValues.get("x-gzip");
+      }
+      if (qValue == null) {
+        qValue = qValues.get(ANY_ENCODING);
+      }
+      if (qValue != null && qValue > resultQValue) {
+        result = codec;
+        resultQValue = qValue;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the q-value of each encoding of the header.
+   */
+  private static Map<String, Float> parse(final String acceptEncoding) {
+    final Map<String, Float> qValues = new LinkedHashMap<String, Float>();
+    for (final String token : StringUtils.split(acceptEncoding, ',')) {
+      final String[] parts = StringUtils.split(token, ';');
+      if (parts.length == 0) {
+        continue;
+      }
+      float qValue = 1;
+      for (int i = 1; i < parts.length; i++) {
+        final String param = parts[i].trim();
+        if (param.startsWith("q=")) {
+          try {
+            qValue = Float.parseFloat(param.substring(2).trim());
+          } catch (final NumberFormatException e) {
+            qValue = 0;
+          }
+        }
+      }
+      qValues.put(parts[0].trim().toLowerCase(), qValue);
+    }
+    return qValues;
+  }
+
+  private static class GzipCodec
+      implements ContentCodec {
+    public String getEncoding() {
+      return "gzip";
+    }
+
+    public byte[] encode(final byte[] content, final int level)
+        throws IOException {
+      final ByteArrayOutputStream baos = new ByteArrayOutputStream(content.length / 3 + 64);
+      final GZIPOutputStream os = new GZIPOutputStream(baos) {
+        {
+          def.setLevel(level);
+        }
+      };
+      os.write(content);
+      os.close();
+      return baos.toByteArray();
+    }
+  }
+
+  private static class DeflateCodec
+      implements ContentCodec {
+    public String getEncoding() {
+      return "deflate";
+    }
+
+    public byte[] encode(final byte[] content, final int level)
+        throws IOException {
+      final ByteArrayOutputStream baos = new ByteArrayOutputStream(content.length / 3 + 64);
+      final Deflater deflater = new Deflater(level);
+      try {
+        final DeflaterOutputStream os = new DeflaterOutputStream(baos, deflater);
+        os.write(content);
+        os.close();
+      } finally {
+        deflater.end();
+      }
+      return baos.toByteArray();
+    }
+  }
+}
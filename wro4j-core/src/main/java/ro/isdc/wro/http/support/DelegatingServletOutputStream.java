@@ -48,6 +48,14 @@ public class DelegatingServletOutputStream extends ServletOutputStream {
     this.targetStream.write(b);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    this.targetStream.write(b, off, len);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -15,7 +15,14 @@ public enum HttpHeader {
   EXPIRES("Expires"),
   IF_MODIFIED_SINCE("If-Modified-Since"),
   IF_NONE_MATCH("If-None-Match"),
+  IF_RANGE("If-Range"),
+  RANGE("Range"),
+  ACCEPT_RANGES("Accept-Ranges"),
+  CONTENT_RANGE("Content-Range"),
   CONTENT_ENCODING("Content-Encoding"),
+  ACCEPT_ENCODING("Accept-Encoding"),
+  VARY("Vary"),
+  LINK("Link"),
   PRAGMA("Pragma");
   /**
    * HTTP header as string.
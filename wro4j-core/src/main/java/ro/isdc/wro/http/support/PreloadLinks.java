@@ -0,0 +1,95 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.http.support;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import ro.isdc.wro.http.handler.ResourceProxyRequestHandler;
+import ro.isdc.wro.model.resource.processor.support.CssUrlInspector;
+
+
+/**
+ * Builds the value of the <code>Link</code> header containing the preload hints of the fonts and images referred by a
+ * css bundle. Since the urls are extracted from the processed content, they are already rewritten by
+ * {@link ro.isdc.wro.model.resource.processor.impl.css.CssUrlRewritingProcessor} (relative to the bundle or pointing to
+ * the resource proxy), thus they can be resolved by the browser against the url of the bundle, before the css is
+ * parsed.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public final class PreloadLinks {
+  /**
+   * The maximum number of preloaded resources per bundle. Preloading too many resources competes with the bandwidth
+   * needed by the page itself.
+   */
+  static final int MAX_LINKS = 16;
+  private static final Set<String> FONT_EXTENSIONS = new HashSet<String>(Arrays.asList("woff2", "woff", "ttf", "otf",
+      "eot"));
+  private static final Set<String> IMAGE_EXTENSIONS = new HashSet<String>(Arrays.asList("png", "jpg", "jpeg", "gif",
+      "svg", "webp", "ico"));
+
+  private PreloadLinks() {
+  }
+
+  /**
+   * @param css
+   *          the processed content of a css bundle.
+   * @return the value of the <code>Link</code> header or null if the css doesn't refer any font or image.
+   */
+  public static String fromCss(final String css) {
+    notNull(css);
+    final Set<String> urls = new LinkedHashSet<String>();
+    new CssUrlInspector().findAndReplace(css, new CssUrlInspector.ItemHandler() {
+      public String replace(final String originalDeclaration, final String originalUrl) {
+        urls.add(originalUrl.trim());
+        return Matcher.quoteReplacement(originalDeclaration);
+      }
+    });
+    final StringBuilder links = new StringBuilder();
+    int count = 0;
+    for (final String url : urls) {
+      final String destination = getDestination(url);
+      if (destination != null && count < MAX_LINKS) {
+        if (links.length() > 0) {
+          links.append(", ");
+        }
+        links.append('<').append(url).append(">; rel=preload; as=").append(destination);
+        if ("font".equals(destination)) {
+          // fonts are always fetched in anonymous mode, the preloaded response is not used otherwise
+          links.append("; crossorigin");
+        }
+        count++;
+      }
+    }
+    return links.length() > 0 ? links.toString() : null;
+  }
+
+  /**
+   * @return the value of the <code>as</code> attribute, or null if the url shouldn't be preloaded.
+   */
+  private static String getDestination(final String url) {
+    if (url.length() == 0 || url.startsWith("data:") || StringUtils.containsAny(url, "<>\"', ")) {
+      return null;
+    }
+    String path = StringUtils.substringBefore(url, "#");
+    if (!ResourceProxyRequestHandler.isProxyUri(path)) {
+      path = StringUtils.substringBefore(path, "?");
+    }
+    final String extension = FilenameUtils.getExtension(path).toLowerCase();
+    if (FONT_EXTENSIONS.contains(extension)) {
+      return "font";
+    }
+    return IMAGE_EXTENSIONS.contains(extension) ? "image" : null;
+  }
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.http.support;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletContext;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.isdc.wro.WroRuntimeException;
+import ro.isdc.wro.cache.impl.WeightedMemoryCacheStrategy;
+import ro.isdc.wro.cache.support.AbstractSynchronizedCacheStrategyDecorator;
+import ro.isdc.wro.config.ReadOnlyContext;
+import ro.isdc.wro.model.group.Inject;
+import ro.isdc.wro.model.resource.locator.LastModifiedAware;
+import ro.isdc.wro.model.resource.locator.UriLocator;
+import ro.isdc.wro.model.resource.locator.factory.UriLocatorFactory;
+import ro.isdc.wro.model.resource.support.hash.HashStrategy;
+import ro.isdc.wro.util.LazyInitializer;
+
+
+/**
+ * Caches the resources served by the resource proxy (usually images and fonts referred by the css <code>url()</code>
+ * statements), in order to avoid locating the resource for each request. This is especially important for the
+ * resources located remotely (ex: by the {@link ro.isdc.wro.model.resource.locator.UrlUriLocator}), which otherwise
+ * would be fetched for each hit.
+ * <p/>
+ * The cache is bounded by the number of cached bytes (see
+ * {@link ro.isdc.wro.config.jmx.WroConfiguration#getProxyResourceCacheSize()}) and is disabled when this size is 0.
+ * The resources larger than {@link ro.isdc.wro.config.jmx.WroConfiguration#getProxyResourceSpillThreshold()} are
+ * stored on disk and only their metadata is kept in memory. Each instance uses its own folder and the file of a resource
+ * is deleted when the resource is evicted or loaded again. A cached resource is loaded again when the locator reports a
+ * different last modified timestamp (see {@link LastModifiedAware}), checked at most once per resource watcher period,
+ * or when the cache is cleared. Concurrent requests of a missing resource locate it only once. This class is
+ * thread-safe.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public class ProxyResourceCache {
+  private static final Logger LOG = LoggerFactory.getLogger(ProxyResourceCache.class);
+  /**
+   * The prefix of the folder (created inside the temporary directory) containing the resources stored on disk.
+   */
+  static final String SPILL_FOLDER_NAME = "wro4j-proxy";
+  /**
+   * Standard servlet context attribute holding the temporary directory of the web application.
+   */
+  private static final String ATTR_SERVLET_TEMP_DIR = "javax.servlet.context.tempdir";
+  /**
+   * The estimated number of bytes used by the metadata of a cached resource.
+   */
+  private static final long ENTRY_OVERHEAD = 256;
+  @Inject
+  private ReadOnlyContext context;
+  @Inject
+  private UriLocatorFactory locatorFactory;
+  @Inject
+  private HashStrategy hashStrategy;
+  /**
+   * The file holding the content of each resource stored on disk. At most one file is kept for each resource.
+   */
+  private final ConcurrentMap<String, File> spilledFiles = new ConcurrentHashMap<String, File>();
+  private final LazyInitializer<File> spillDirectoryInitializer = new LazyInitializer<File>() {
+    @Override
+    protected File initialize() {
+      final ServletContext servletContext = context.getServletContext();
+      final Object tempDir = servletContext != null ? servletContext.getAttribute(ATTR_SERVLET_TEMP_DIR) : null;
+      final File parent = tempDir instanceof File ? (File) tempDir : FileUtils.getTempDirectory();
+      try {
+        // a folder for each instance, thus the caches of other applications or filters are not affected.
+        final File directory = File.createTempFile(SPILL_FOLDER_NAME, "", parent);
+        FileUtils.forceDelete(directory);
+        FileUtils.forceMkdir(directory);
+        FileUtils.forceDeleteOnExit(directory);
+        LOG.debug("Using proxy resources directory: {}", directory);
+        return directory;
+      } catch (final IOException e) {
+        throw WroRuntimeException.wrap(e, "Cannot create the proxy resources directory");
+      }
+    }
+  };
+  private final LazyInitializer<AbstractSynchronizedCacheStrategyDecorator<String, ProxyResource>> cacheRef = new LazyInitializer<AbstractSynchronizedCacheStrategyDecorator<String, ProxyResource>>() {
+    @Override
+    protected AbstractSynchronizedCacheStrategyDecorator<String, ProxyResource> initialize() {
+      final long maxWeight = context.getConfig().getProxyResourceCacheSize();
+      LOG.debug("Creating proxy resource cache of size: {}", maxWeight);
+      final WeightedMemoryCacheStrategy<String, ProxyResource> cache = new WeightedMemoryCacheStrategy<String, ProxyResource>(
+          maxWeight, new WeightedMemoryCacheStrategy.Weigher<ProxyResource>() {
+            public long weigh(final ProxyResource value) {
+              return ENTRY_OVERHEAD + (value.file == null ? value.length : 0);
+            }
+          }) {
+        @Override
+        protected void onEvicted(final String uri, final ProxyResource value) {
+          deleteSpilledFile(uri, value);
+        }
+      };
+      return new AbstractSynchronizedCacheStrategyDecorator<String, ProxyResource>(cache) {
+        @Override
+        protected ProxyResource loadValue(final String uri) {
+          try {
+            return load(uri);
+          } catch (final IOException e) {
+            throw WroRuntimeException.wrap(e, "Cannot load proxy resource: " + uri);
+          }
+        }
+
+        @Override
+        protected void onBeforeGet(final String uri) {
+          final ProxyResource resource = getDecoratedObject().get(uri);
+          if (resource != null && isStale(uri, resource)) {
+            LOG.debug("Proxy resource changed: {}", uri);
+            put(uri, null);
+            deleteSpilledFile(uri, resource);
+          }
+        }
+      };
+    }
+  };
+
+  /**
+   * @return true if the proxy resources should be cached.
+   */
+  public boolean isEnabled() {
+    return context.getConfig().getProxyResourceCacheSize() > 0;
+  }
+
+  /**
+   * @param uri
+   *          the uri of the proxy resource.
+   * @return the cached resource, located if not cached yet or changed since it was cached.
+   * @throws IOException
+   *           if the resource cannot be located.
+   */
+  public ProxyResource get(final String uri)
+      throws IOException {
+    notNull(uri);
+    try {
+      return cacheRef.get().get(uri);
+    } catch (final WroRuntimeException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private ProxyResource load(final String uri)
+      throws IOException {
+    LOG.debug("Loading proxy resource: {}", uri);
+    // retrieved before reading the content, thus a change during read is detected by the next request.
+    final long sourceLastModified = getSourceLastModified(uri);
+    final InputStream is = locatorFactory.locate(uri);
+    final byte[] content;
+    try {
+      content = IOUtils.toByteArray(is);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+    final String hash = hashStrategy.getHash(new ByteArrayInputStream(content));
+    final String contentType = ContentTypeResolver.get(uri, context.getConfig().getEncoding());
+    final long lastModified = sourceLastModified > 0 ? sourceLastModified : System.currentTimeMillis();
+    final long spillThreshold = context.getConfig().getProxyResourceSpillThreshold();
+    if (spillThreshold > 0 && content.length > spillThreshold) {
+      return new ProxyResource(contentType, hash, sourceLastModified, lastModified, null, spill(uri, content),
+          content.length);
+    }
+    return new ProxyResource(contentType, hash, sourceLastModified, lastModified, content, null, content.length);
+  }
+
+  /**
+   * Writes the content in a new file, replacing the file previously stored for the same resource. The file is not
+   * referred until completely written.
+   */
+  private File spill(final String uri, final byte[] content)
+      throws IOException {
+    final File file = File.createTempFile("resource", ".bin", spillDirectoryInitializer.get());
+    try {
+      FileUtils.writeByteArrayToFile(file, content);
+    } catch (final IOException e) {
+      FileUtils.deleteQuietly(file);
+      throw e;
+    }
+    LOG.debug("Stored proxy resource of {} bytes in: {}", content.length, file);
+    final File previous = spilledFiles.put(uri, file);
+    if (previous != null) {
+      FileUtils.deleteQuietly(previous);
+    }
+    return file;
+  }
+
+  /**
+   * Deletes the file holding the content of the resource, unless replaced meanwhile.
+   */
+  private void deleteSpilledFile(final String uri, final ProxyResource resource) {
+    if (resource.file != null && spilledFiles.remove(uri, resource.file)) {
+      LOG.debug("Deleting stored proxy resource: {}", resource.file);
+      FileUtils.deleteQuietly(resource.file);
+    }
+  }
+
+  /**
+   * The source of the resource is checked for change at most once per resource watcher period (see
+   * {@link ro.isdc.wro.config.jmx.WroConfiguration#getResourceWatcherUpdatePeriod()}), in order to not hit the source
+   * on each request. When the resource watcher is disabled, the resource is loaded again only after the cache is
+   * cleared.
+   */
+  private boolean isStale(final String uri, final ProxyResource resource) {
+    if (resource.file != null && !resource.file.isFile()) {
+      return true;
+    }
+    final long period = TimeUnit.SECONDS.toMillis(context.getConfig().getResourceWatcherUpdatePeriod());
+    final long now = System.currentTimeMillis();
+    if (period <= 0 || now - resource.checkedAt < period) {
+      return false;
+    }
+    resource.checkedAt = now;
+    final long sourceLastModified = getSourceLastModified(uri);
+    return sourceLastModified > 0 && sourceLastModified != resource.sourceLastModified;
+  }
+
+  /**
+   * @return the last modified timestamp reported by the locator, or 0 if unknown.
+   */
+  private long getSourceLastModified(final String uri) {
+    final UriLocator locator = locatorFactory.getInstance(uri);
+    if (locator instanceof LastModifiedAware) {
+      try {
+        return Math.max(0, ((LastModifiedAware) locator).getLastModified(uri));
+      } catch (final IOException e) {
+        LOG.debug("Could not retrieve the last modified timestamp of: {}", uri);
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Removes all cached resources.
+   */
+  public void clear() {
+    if (cacheRef.isInitialized()) {
+      LOG.debug("Clearing proxy resource cache");
+      cacheRef.get().clear();
+    }
+    deleteSpilledResources();
+  }
+
+  private void deleteSpilledResources() {
+    spilledFiles.clear();
+    if (spillDirectoryInitializer.isInitialized()) {
+      try {
+        FileUtils.cleanDirectory(spillDirectoryInitializer.get());
+      } catch (final IOException e) {
+        LOG.warn("Could not clean the proxy resources directory", e);
+      }
+    }
+  }
+
+  /**
+   * A cached proxy resource. The content is held either in memory or in a file.
+   */
+  public static final class ProxyResource {
+    private final String contentType;
+    private final String hash;
+    /**
+     * The timestamp reported by the locator when the resource was loaded, or 0 if unknown.
+     */
+    private final long sourceLastModified;
+    private final byte[] content;
+    private final File file;
+    private final long length;
+    private final ResponseValidators validators;
+    /**
+     * When the source of the resource was last checked for change.
+     */
+    private volatile long checkedAt = System.currentTimeMillis();
+
+    private ProxyResource(final String contentType, final String hash, final long sourceLastModified,
+        final long lastModified, final byte[] content, final File file, final long length) {
+      this.contentType = contentType;
+      this.hash = hash;
+      this.sourceLastModified = sourceLastModified;
+      this.content = content;
+      this.file = file;
+      this.length = length;
+      this.validators = ResponseValidators.strong(hash, lastModified);
+    }
+
+    /**
+     * @return the value of the Content-Type header.
+     */
+    public String getContentType() {
+      return contentType;
+    }
+
+    /**
+     * @return the hash of the content.
+     */
+    public String getHash() {
+      return hash;
+    }
+
+    /**
+     * @return the number of bytes of the content.
+     */
+    public long getLength() {
+      return length;
+    }
+
+    /**
+     * @return the validators of the resource, having the content hash as strong ETag.
+     */
+    public ResponseValidators getValidators() {
+      return validators;
+    }
+
+    /**
+     * @return true if the content is stored on disk.
+     */
+    public boolean isStoredOnDisk() {
+      return file != null;
+    }
+
+    /**
+     * @return a new stream for reading the content. The caller is responsible for closing it.
+     */
+    public InputStream getInputStream()
+        throws IOException {
+      return file == null ? new ByteArrayInputStream(content) : new FileInputStream(file);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.http.support;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.isdc.wro.http.handler.RequestHandlerSupport;
+import ro.isdc.wro.manager.WroManager;
+import ro.isdc.wro.model.WroModel;
+import ro.isdc.wro.model.WroModelInspector;
+import ro.isdc.wro.model.factory.DefaultWroModelFactoryDecorator;
+import ro.isdc.wro.model.group.GroupExtractor;
+
+
+/**
+ * Decides, without creating a {@link ro.isdc.wro.config.Context}, if a request can be handled by
+ * {@link ro.isdc.wro.http.WroFilter}. A request is not routable when it doesn't refer the
+ * {@link RequestHandlerSupport#PATH_API} (used by all request handlers) and the group extracted from it doesn't exist in
+ * the model. Such requests are passed down the chain after a single lookup.
+ * <p/>
+ * The known group names are collected from the cached model, after a request was processed (the model cannot be
+ * created outside of a context). As long as the names are unknown or the model is destroyed (ex: reloaded), all
+ * requests are considered routable. This class is thread-safe.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public class RequestRouter {
+  private static final Logger LOG = LoggerFactory.getLogger(RequestRouter.class);
+  private volatile Routes routes;
+
+  /**
+   * @param request
+   *          the request received by the filter.
+   * @return false only if the request is known to not match any group or request handler.
+   */
+  public boolean isRoutable(final HttpServletRequest request) {
+    final Routes current = routes;
+    if (current == null || !current.isValid() || isHandlerRequest(request)) {
+      return true;
+    }
+    try {
+      final String groupName = current.groupExtractor.getGroupName(request);
+      return groupName != null && current.groupNames.contains(groupName);
+    } catch (final RuntimeException e) {
+      // a custom extractor may require a context.
+      LOG.debug("Cannot extract group name without context", e);
+      return true;
+    }
+  }
+
+  /**
+   * Allows subclasses to route the requests accepted by custom request handlers not using the
+   * {@link RequestHandlerSupport#PATH_API}.
+   *
+   * @return true if the request may be accepted by a {@link ro.isdc.wro.http.handler.RequestHandler}.
+   */
+  protected boolean isHandlerRequest(final HttpServletRequest request) {
+    return StringUtils.containsIgnoreCase(request.getRequestURI(), RequestHandlerSupport.PATH_API)
+        || StringUtils.containsIgnoreCase(request.getQueryString(), RequestHandlerSupport.PATH_API);
+  }
+
+  /**
+   * Collects the group names of the model cached by the manager, unless they are already known. Doesn't create the
+   * model when it is not cached.
+   *
+   * @param manager
+   *          the {@link WroManager} which processed the last request.
+   */
+  public void update(final WroManager manager) {
+    notNull(manager);
+    final Routes current = routes;
+    if (current != null && current.isValid() && current.modelFactory == manager.getModelFactory()) {
+      return;
+    }
+    if (manager.getModelFactory() instanceof DefaultWroModelFactoryDecorator) {
+      final DefaultWroModelFactoryDecorator modelFactory = (DefaultWroModelFactoryDecorator) manager.getModelFactory();
+      final WroModel model = modelFactory.getCachedModel();
+      if (model != null) {
+        final Set<String> groupNames = new HashSet<String>(new WroModelInspector(model).getGroupNames());
+        LOG.debug("Routing groups: {}", groupNames);
+        routes = new Routes(modelFactory, model, Collections.unmodifiableSet(groupNames),
+            manager.getGroupExtractor());
+      }
+    }
+  }
+
+  /**
+   * The group names of a model, valid until the model is destroyed.
+   */
+  private static final class Routes {
+    private final DefaultWroModelFactoryDecorator modelFactory;
+    private final WroModel model;
+    private final Set<String> groupNames;
+    private final GroupExtractor groupExtractor;
+
+    Routes(final DefaultWroModelFactoryDecorator modelFactory, final WroModel model, final Set<String> groupNames,
+        final GroupExtractor groupExtractor) {
+      this.modelFactory = modelFactory;
+      this.model = model;
+      this.groupNames = groupNames;
+      this.groupExtractor = groupExtractor;
+    }
+
+    boolean isValid() {
+      return modelFactory.getCachedModel() == model;
+    }
+  }
+}
@@ -1,10 +1,10 @@
 package ro.isdc.wro.http.support;
 
-import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -20,6 +20,10 @@ import ro.isdc.wro.util.WroUtil;
 /**
  * Responsible for configuring response headers. The configured headers contains the default headers overridden by those
  * set through "headers" property.
+ * <p/>
+ * The headers are compiled once, when the instance is created, thus setting them on a response doesn't perform any
+ * lookup or formatting. The only exception is the Expires header relative to the current time (see
+ * {@link #getExpiresMaxAge()}), whose formatted value is refreshed at most once per second.
  *
  * @author Alex Objelean
  * @since 1.4.9
@@ -31,6 +35,16 @@ public class ResponseHeadersConfigurer {
    * Default value used by Cache-control header.
    */
   private static final String DEFAULT_CACHE_CONTROL_VALUE = "public, max-age=315360000";
+  /**
+   * Default time (in milliseconds) after which the served content expires, used when the debug mode is off.
+   */
+  private static final long DEFAULT_EXPIRES_MAX_AGE = TimeUnit.DAYS.toMillis(365);
+  private static final ResponseHeadersConfigurer NO_CACHE = new ResponseHeadersConfigurer() {
+    @Override
+    public void configureDefaultHeaders(final Map<String, String> map) {
+      addNoCacheHeaders(map);
+    }
+  };
   /**
    * String representation of headers to set. Each header is separated by a | character.
    */
@@ -54,17 +68,26 @@ public class ResponseHeadersConfigurer {
       return super.get(((String) key).toLowerCase());
     }
   };
+  /**
+   * The names of the headers set on each response, compiled from the headersMap.
+   */
+  private String[] headerNames;
+  /**
+   * The values of the headers set on each response, having the same index as the corresponding name.
+   */
+  private String[] headerValues;
+  /**
+   * The Expires header computed relative to the current time, or null if the Expires header (if any) has a fixed
+   * value.
+   */
+  private RelativeDate expires;
 
   /**
-   * Factory method which creates a {@link ResponseHeadersConfigurer} containing headers used to disable cache.
+   * Factory method which returns a {@link ResponseHeadersConfigurer} containing headers used to disable cache. The
+   * returned instance is shared, since the headers never change.
    */
   public static ResponseHeadersConfigurer noCache() {
-    return new ResponseHeadersConfigurer() {
-      @Override
-      public void configureDefaultHeaders(final Map<String, String> map) {
-        addNoCacheHeaders(map);
-      }
-    };
+    return NO_CACHE;
   }
 
   /**
@@ -86,15 +109,18 @@ public class ResponseHeadersConfigurer {
           // prevent caching when in development mode
           addNoCacheHeaders(map);
         } else {
-          final Calendar cal = Calendar.getInstance();
-          cal.roll(Calendar.YEAR, 1);
+          // the Expires header is added relative to the current time (see getExpiresMaxAge)
           map.put(HttpHeader.CACHE_CONTROL.toString(), DEFAULT_CACHE_CONTROL_VALUE);
-          map.put(HttpHeader.EXPIRES.toString(), WroUtil.toDateAsString(cal.getTimeInMillis()));
           // TODO probably this is not a good idea to set this field which will have a different value when there will be
           // more than one instance of wro4j.
           map.put(HttpHeader.LAST_MODIFIED.toString(), WroUtil.toDateAsString(getLastModifiedTimestamp()));
         }
       };
+
+      @Override
+      protected long getExpiresMaxAge() {
+        return config.isDebug() ? 0 : DEFAULT_EXPIRES_MAX_AGE;
+      }
     };
   }
 
@@ -125,10 +151,33 @@ public class ResponseHeadersConfigurer {
    */
   private void initHeaderValues() {
     configureDefaultHeaders(headersMap);
+    final long expiresMaxAge = getExpiresMaxAge();
+    if (expiresMaxAge > 0) {
+      // replaced by the relative Expires header, unless an explicit one is set as string
+      headersMap.remove(HttpHeader.EXPIRES.getHeaderName());
+    }
     configureFromHeadersAsString();
+    if (expiresMaxAge > 0 && headersMap.get(HttpHeader.EXPIRES.getHeaderName()) == null) {
+      expires = new RelativeDate(expiresMaxAge);
+      headersMap.put(HttpHeader.EXPIRES.toString(), expires.get());
+    }
+    compileHeaders();
     LOG.debug("Header Values: {}", headersMap);
   }
 
+  /**
+   * Copies the headers into arrays, iterated for each response. The relative Expires header is excluded, since its value
+   * is computed when the headers are set.
+   */
+  private void compileHeaders() {
+    final Map<String, String> compiled = new LinkedHashMap<String, String>(headersMap);
+    if (expires != null) {
+      compiled.remove(HttpHeader.EXPIRES.getHeaderName());
+    }
+    headerNames = compiled.keySet().toArray(new String[compiled.size()]);
+    headerValues = compiled.values().toArray(new String[compiled.size()]);
+  }
+
   private void configureFromHeadersAsString() {
     if (!StringUtils.isEmpty(headersAsString)) {
       try {
@@ -173,6 +222,18 @@ public class ResponseHeadersConfigurer {
   public void configureDefaultHeaders(final Map<String, String> map) {
   }
 
+  /**
+   * Allows the Expires header to be computed relative to the time when the response is served, instead of having a
+   * fixed value. Invoked once, after {@link #configureDefaultHeaders(Map)}. The relative Expires header replaces the
+   * default one, but not the one explicitly set as string.
+   *
+   * @return the number of milliseconds after which the served content expires, or 0 if the Expires header is not
+   *         relative to the current time.
+   */
+  protected long getExpiresMaxAge() {
+    return 0;
+  }
+
   /**
    * Populates the map with headers used to disable cache.
    */
@@ -191,8 +252,11 @@ public class ResponseHeadersConfigurer {
    */
   public void setHeaders(final HttpServletResponse response) {
     // Force resource caching as best as possible
-    for (final Map.Entry<String, String> entry : headersMap.entrySet()) {
-      response.setHeader(entry.getKey(), entry.getValue());
+    for (int i = 0; i < headerNames.length; i++) {
+      response.setHeader(headerNames[i], headerValues[i]);
+    }
+    if (expires != null) {
+      response.setHeader(HttpHeader.EXPIRES.getHeaderName(), expires.get());
     }
   }
 
@@ -219,4 +283,37 @@ public class ResponseHeadersConfigurer {
     timestamp = timestamp - (timestamp % 1000);
     return timestamp;
   }
+
+  /**
+   * A date relative to the current time, formatted as http date. The formatted value is computed again only when the
+   * current second changes, which is the precision of the http dates.
+   */
+  private static final class RelativeDate {
+    private final long offset;
+    private volatile FormattedDate current;
+
+    RelativeDate(final long offset) {
+      this.offset = offset;
+    }
+
+    String get() {
+      final long second = System.currentTimeMillis() / 1000;
+      FormattedDate date = current;
+      if (date == null || date.second != second) {
+        date = new FormattedDate(second, WroUtil.toDateAsString(second * 1000 + offset));
+        current = date;
+      }
+      return date.value;
+    }
+  }
+
+  private static final class FormattedDate {
+    private final long second;
+    private final String value;
+
+    FormattedDate(final long second, final String value) {
+      this.second = second;
+      this.value = value;
+    }
+  }
 }
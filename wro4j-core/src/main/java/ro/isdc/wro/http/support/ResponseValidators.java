@@ -0,0 +1,276 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.http.support;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.isdc.wro.util.WroUtil;
+
+
+/**
+ * The validators (ETag and Last-Modified) of a response, computed once and used to handle the conditional requests
+ * (<code>If-None-Match</code>, <code>If-Modified-Since</code>, <code>If-Range</code>) and the byte <code>Range</code>
+ * requests, without touching the payload. Instances are immutable and can be shared by any number of requests.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public final class ResponseValidators {
+  private static final Logger LOG = LoggerFactory.getLogger(ResponseValidators.class);
+  private static final String WEAK_PREFIX = "W/";
+  private static final String BYTES_UNIT = "bytes=";
+  /**
+   * The value of the ETag header, or null if unknown.
+   */
+  private final String etag;
+  /**
+   * The quoted tag, without the weakness indicator.
+   */
+  private final String opaqueTag;
+  private final boolean weak;
+  /**
+   * Last modification timestamp truncated to seconds (the precision of http dates), or 0 if unknown.
+   */
+  private final long lastModified;
+  private final String lastModifiedAsString;
+
+  private ResponseValidators(final String tag, final boolean weak, final long lastModified) {
+    this.opaqueTag = tag == null ? null : "\"" + tag + "\"";
+    this.weak = weak;
+    this.etag = opaqueTag == null ? null : (weak ? WEAK_PREFIX + opaqueTag : opaqueTag);
+    this.lastModified = lastModified > 0 ? lastModified - lastModified % 1000 : 0;
+    this.lastModifiedAsString = this.lastModified > 0 ? WroUtil.toDateAsString(this.lastModified) : null;
+  }
+
+  /**
+   * @param tag
+   *          the unquoted value of a strong entity tag, changing whenever any byte of the content changes (ex: content
+   *          hash). Can be null if unknown.
+   * @param lastModified
+   *          the last modification timestamp or 0 if unknown.
+   */
+  public static ResponseValidators strong(final String tag, final long lastModified) {
+    return new ResponseValidators(tag, false, lastModified);
+  }
+
+  /**
+   * @param tag
+   *          the unquoted value of a weak entity tag, which identifies semantically equivalent content. Can be null if
+   *          unknown.
+   * @param lastModified
+   *          the last modification timestamp or 0 if unknown.
+   */
+  public static ResponseValidators weak(final String tag, final long lastModified) {
+    return new ResponseValidators(tag, true, lastModified);
+  }
+
+  /**
+   * @return the value of the ETag header, or null if there is no entity tag.
+   */
+  public String getETag() {
+    return etag;
+  }
+
+  /**
+   * @return the last modification timestamp (truncated to seconds), or 0 if unknown.
+   */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Sets the ETag and Last-Modified headers, for the known validators.
+   */
+  public void setHeaders(final HttpServletResponse response) {
+    notNull(response);
+    if (etag != null) {
+      response.setHeader(HttpHeader.ETAG.toString(), etag);
+    }
+    if (lastModifiedAsString != null) {
+      response.setHeader(HttpHeader.LAST_MODIFIED.toString(), lastModifiedAsString);
+    }
+  }
+
+  /**
+   * Evaluates the conditional headers of the request. When the <code>If-None-Match</code> header is present, the
+   * <code>If-Modified-Since</code> header is ignored.
+   *
+   * @return true if the client has the current version of the content, thus a
+   *         {@link HttpServletResponse#SC_NOT_MODIFIED} can be sent.
+   */
+  public boolean isNotModified(final HttpServletRequest request) {
+    notNull(request);
+    final String ifNoneMatch = request.getHeader(HttpHeader.IF_NONE_MATCH.toString());
+    if (ifNoneMatch != null) {
+      return matchesAny(ifNoneMatch);
+    }
+    if (lastModified > 0) {
+      final long ifModifiedSince = getDateHeader(request, HttpHeader.IF_MODIFIED_SINCE.toString());
+      return ifModifiedSince >= lastModified;
+    }
+    return false;
+  }
+
+  /**
+   * Weak comparison of the entity tag with each of the tags from the provided list (the * value matches any tag).
+   */
+  private boolean matchesAny(final String tags) {
+    if (opaqueTag == null) {
+      return false;
+    }
+    for (final String tag : tags.split(",")) {
+      final String trimmed = tag.trim();
+      if ("*".equals(trimmed) || opaqueTag.equals(StringUtils.removeStart(trimmed, WEAK_PREFIX))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Computes the byte range requested by the <code>Range</code> header. Only single ranges are supported, a request
+   * for multiple ranges is served with the full content, as allowed by the specification. The range is ignored when the
+   * <code>If-Range</code> precondition fails (strong comparison is used for entity tags).
+   *
+   * @param request
+   *          the request to inspect.
+   * @param length
+   *          the length of the full content.
+   * @return the requested range or null if the full content should be served.
+   */
+  public ByteRange getRange(final HttpServletRequest request, final long length) {
+    notNull(request);
+    final String range = request.getHeader(HttpHeader.RANGE.toString());
+    if (range == null || !isIfRangeSatisfied(request)) {
+      return null;
+    }
+    return ByteRange.parse(range, length);
+  }
+
+  private boolean isIfRangeSatisfied(final HttpServletRequest request) {
+    final String ifRange = request.getHeader(HttpHeader.IF_RANGE.toString());
+    if (ifRange == null) {
+      return true;
+    }
+    final String trimmed = ifRange.trim();
+    if (trimmed.startsWith("\"") || trimmed.startsWith(WEAK_PREFIX)) {
+      return !weak && opaqueTag != null && opaqueTag.equals(trimmed);
+    }
+    final long date = getDateHeader(request, HttpHeader.IF_RANGE.toString());
+    return lastModified > 0 && date == lastModified;
+  }
+
+  private long getDateHeader(final HttpServletRequest request, final String name) {
+    try {
+      return request.getDateHeader(name);
+    } catch (final IllegalArgumentException e) {
+      LOG.debug("Invalid date header {}: {}", name, request.getHeader(name));
+      return -1;
+    }
+  }
+
+  /**
+   * A range of bytes of the content.
+   */
+  public static final class ByteRange {
+    private final long start;
+    private final long end;
+    private final long length;
+
+    private ByteRange(final long start, final long end, final long length) {
+      this.start = start;
+      this.end = end;
+      this.length = length;
+    }
+
+    /**
+     * @return the range described by the header value, null if the header is invalid or contains multiple ranges.
+     */
+    static ByteRange parse(final String header, final long length) {
+      isTrue(length >= 0);
+      final String value = header.trim();
+      if (!value.startsWith(BYTES_UNIT) || value.indexOf(',') >= 0) {
+        return null;
+      }
+      final String spec = value.substring(BYTES_UNIT.length()).trim();
+      final int dashIndex = spec.indexOf('-');
+      if (dashIndex < 0) {
+        return null;
+      }
+      try {
+        final String first = spec.substring(0, dashIndex).trim();
+        final String last = spec.substring(dashIndex + 1).trim();
+        if (first.length() == 0) {
+          // suffix range: the last N bytes
+          final long suffixLength = Long.parseLong(last);
+          if (suffixLength <= 0) {
+            return suffixLength == 0 ? unsatisfiable(length) : null;
+          }
+          return new ByteRange(Math.max(0, length - suffixLength), length - 1, length);
+        }
+        final long start = Long.parseLong(first);
+        final long end = last.length() == 0 ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+        if (start < 0 || (last.length() > 0 && Long.parseLong(last) < start)) {
+          return null;
+        }
+        return start >= length ? unsatisfiable(length) : new ByteRange(start, end, length);
+      } catch (final NumberFormatException e) {
+        return null;
+      }
+    }
+
+    private static ByteRange unsatisfiable(final long length) {
+      return new ByteRange(-1, -1, length);
+    }
+
+    /**
+     * @return false if the range is outside of the content, in which case a
+     *         {@link HttpServletResponse#SC_REQUESTED_RANGE_NOT_SATISFIABLE} must be sent.
+     */
+    public boolean isSatisfiable() {
+      return start >= 0;
+    }
+
+    /**
+     * @return the index of the first byte of the range.
+     */
+    public long getStart() {
+      return start;
+    }
+
+    /**
+     * @return the index of the last byte of the range (inclusive).
+     */
+    public long getEnd() {
+      return end;
+    }
+
+    /**
+     * @return the number of bytes in the range.
+     */
+    public long getLength() {
+      return isSatisfiable() ? end - start + 1 : 0;
+    }
+
+    /**
+     * @return the value of the Content-Range header.
+     */
+    public String toContentRange() {
+      return isSatisfiable() ? BYTES_UNIT.replace('=', ' ') + start + "-" + end + "/" + length : "bytes */" + length;
+    }
+
+    @Override
+    public String toString() {
+      return toContentRange();
+    }
+  }
+}
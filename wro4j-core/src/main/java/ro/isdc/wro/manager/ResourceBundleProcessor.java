@@ -2,6 +2,10 @@ package ro.isdc.wro.manager;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -19,8 +23,12 @@ import ro.isdc.wro.cache.CacheValue;
 import ro.isdc.wro.cache.factory.CacheKeyFactory;
 import ro.isdc.wro.config.Context;
 import ro.isdc.wro.config.ReadOnlyContext;
-import ro.isdc.wro.config.jmx.WroConfiguration;
+import ro.isdc.wro.http.support.ByteBufferWriter;
+import ro.isdc.wro.http.support.ContentCodec;
+import ro.isdc.wro.http.support.ContentCodecs;
 import ro.isdc.wro.http.support.HttpHeader;
+import ro.isdc.wro.http.support.ResponseValidators;
+import ro.isdc.wro.http.support.ResponseValidators.ByteRange;
 import ro.isdc.wro.model.group.Inject;
 import ro.isdc.wro.model.resource.ResourceType;
 import ro.isdc.wro.util.WroUtil;
@@ -35,6 +43,11 @@ import ro.isdc.wro.util.WroUtil;
  */
 public class ResourceBundleProcessor {
   private static final Logger LOG = LoggerFactory.getLogger(ResourceBundleProcessor.class);
+  /**
+   * The Cache-Control value of the content requested with a fingerprint: the url changes when the content changes, thus
+   * the content never needs to be revalidated.
+   */
+  private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
   /**
    * A cacheStrategy used for caching processed results. <GroupName, processed result>.
    */
@@ -44,6 +57,12 @@ public class ResourceBundleProcessor {
   private ReadOnlyContext context;
   @Inject
   private CacheKeyFactory cacheKeyFactory;
+  /**
+   * Writes the cached content without copying it.
+   */
+  private final ByteBufferWriter bufferWriter = new ByteBufferWriter();
+  private volatile Codecs codecs;
+  private volatile ContentTypes contentTypes;
 
 
   /**
@@ -51,7 +70,6 @@ public class ResourceBundleProcessor {
    */
   public void serveProcessedBundle()
       throws IOException {
-    final WroConfiguration configuration = context.getConfig();
     final HttpServletRequest request = context.getRequest();
     final HttpServletResponse response = context.getResponse();
 
@@ -62,40 +80,49 @@ public class ResourceBundleProcessor {
       initAggregatedFolderPath(request, cacheKey.getType());
       final CacheValue cacheValue = cacheStrategy.get(cacheKey);
 
-      // TODO move ETag check in wroManagerFactory
-      final String ifNoneMatch = request.getHeader(HttpHeader.IF_NONE_MATCH.toString());
-
-      // enclose etag value in quotes to be compliant with the RFC
-      final String etagValue = String.format("\"%s\"", cacheValue.getHash());
-
-      if (etagValue != null && etagValue.equals(ifNoneMatch)) {
-        LOG.debug("ETag hash detected: {}. Sending {} status code", etagValue, HttpServletResponse.SC_NOT_MODIFIED);
+      final ResponseValidators validators = cacheValue.getValidators();
+      final boolean immutable = isImmutable(request, cacheValue);
+      if (immutable) {
+        response.setHeader(HttpHeader.CACHE_CONTROL.toString(), IMMUTABLE_CACHE_CONTROL);
+      }
+      if (immutable ? isConditional(request) : validators.isNotModified(request)) {
+        LOG.debug("ETag hash detected: {}. Sending {} status code", validators.getETag(),
+            HttpServletResponse.SC_NOT_MODIFIED);
         response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-        // because we cannot return null, return a stream containing nothing.
-        // TODO close output stream?
+        validators.setHeaders(response);
         return;
       }
       /**
        * Set contentType before actual content is written, solves <br/>
        * <a href="http://code.google.com/p/wro4j/issues/detail?id=341">issue341</a>
        */
-      response.setContentType(cacheKey.getType().getContentType() + "; charset=" + configuration.getEncoding());
-      // set ETag header
-      response.setHeader(HttpHeader.ETAG.toString(), etagValue);
+      response.setContentType(getContentType(cacheKey.getType()));
+      // set ETag & Last-Modified headers
+      validators.setHeaders(response);
+      setPreloadLinks(response, cacheKey.getType(), cacheValue);
 
       os = response.getOutputStream();
       if (cacheValue.getRawContent() != null) {
         // use gziped response if supported & Set content length based on gzip flag
-        if (isGzipAllowed()) {
-          response.setContentLength(cacheValue.getGzippedContent().length);
-          // add gzip header and gzip response
-          response.setHeader(HttpHeader.CONTENT_ENCODING.toString(), "gzip");
-          response.setHeader("Vary", "Accept-Encoding");
-          IOUtils.write(cacheValue.getGzippedContent(), os);
+        final ContentCodec codec = negotiateCodec(request);
+        if (codec != null) {
+          final ByteBuffer encodedContent = cacheValue.getEncodedBuffer(codec);
+          response.setContentLength(encodedContent.remaining());
+          // add encoding header and compressed response
+          response.setHeader(HttpHeader.CONTENT_ENCODING.toString(), codec.getEncoding());
+          response.setHeader(HttpHeader.VARY.toString(), HttpHeader.ACCEPT_ENCODING.toString());
+          bufferWriter.write(os, encodedContent);
         } else {
-          //using getRawContent().length() is not the same and can return 2Bytes smaller size.
-          response.setContentLength(cacheValue.getRawContent().getBytes(configuration.getEncoding()).length);
-          IOUtils.write(cacheValue.getRawContent(), os, configuration.getEncoding());
+          // the raw content is already encoded, no need to encode it for each request.
+          final ByteBuffer rawContent = cacheValue.getRawBuffer();
+          response.setHeader(HttpHeader.ACCEPT_RANGES.toString(), "bytes");
+          final ByteRange range = validators.getRange(request, rawContent.remaining());
+          if (range != null) {
+            serveRange(response, os, rawContent, range);
+          } else {
+            response.setContentLength(rawContent.remaining());
+            bufferWriter.write(os, rawContent);
+          }
         }
       }
     } finally {
@@ -105,6 +132,65 @@ public class ResourceBundleProcessor {
     }
   }
 
+  /**
+   * Serves a part of the content. The ranges are supported only for the not gzipped content, since the gzipped content
+   * is a different representation whose bytes are not stable across compression settings.
+   */
+  private void serveRange(final HttpServletResponse response, final OutputStream os, final ByteBuffer content,
+      final ByteRange range)
+      throws IOException {
+    response.setHeader(HttpHeader.CONTENT_RANGE.toString(), range.toContentRange());
+    if (!range.isSatisfiable()) {
+      LOG.debug("Unsatisfiable range: {}", range);
+      response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+      return;
+    }
+    LOG.debug("Serving range: {}", range);
+    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    response.setContentLength((int) range.getLength());
+    content.position(content.position() + (int) range.getStart());
+    content.limit(content.position() + (int) range.getLength());
+    bufferWriter.write(os, content.slice());
+  }
+
+  /**
+   * Adds the preload hints of the fonts and images referred by a css bundle, when enabled.
+   */
+  private void setPreloadLinks(final HttpServletResponse response, final ResourceType type,
+      final CacheValue cacheValue) {
+    if (ResourceType.CSS == type && context.getConfig().isPreloadLinks()) {
+      final String preloadLinks = cacheValue.getPreloadLinks();
+      if (preloadLinks != null) {
+        response.setHeader(HttpHeader.LINK.toString(), preloadLinks);
+      }
+    }
+  }
+
+  /**
+   * @return true if the request contains the fingerprint of the served content (see
+   *         {@link WroManager#encodeVersionIntoGroupPath(String, ResourceType, boolean)}), either as a folder or as a
+   *         parameter value. Such a content never changes for the same url.
+   */
+  private boolean isImmutable(final HttpServletRequest request, final CacheValue cacheValue) {
+    final String hash = cacheValue.getHash();
+    if (hash == null || context.getConfig().isDebug()) {
+      return false;
+    }
+    final String requestUri = StringUtils.defaultString(request.getRequestURI());
+    // the fingerprint folder is the parent of the group name: .../<hash>/group.js
+    final int hashIndex = requestUri.lastIndexOf('/') - hash.length();
+    return (hashIndex > 0 && requestUri.charAt(hashIndex - 1) == '/' && requestUri.startsWith(hash, hashIndex))
+        || StringUtils.contains(request.getQueryString(), hash);
+  }
+
+  /**
+   * @return true if the client holds a copy of the requested content.
+   */
+  private boolean isConditional(final HttpServletRequest request) {
+    return request.getHeader(HttpHeader.IF_NONE_MATCH.toString()) != null
+        || request.getHeader(HttpHeader.IF_MODIFIED_SINCE.toString()) != null;
+  }
+
   private CacheKey getSafeCacheKey(final HttpServletRequest request) {
     final CacheKey cacheKey = cacheKeyFactory.create(request);
     if (cacheKey == null) {
@@ -113,8 +199,50 @@ public class ResourceBundleProcessor {
     return cacheKey;
   }
 
-  private boolean isGzipAllowed() {
-    return context.getConfig().isGzipEnabled() && WroUtil.isGzipSupported(context.getRequest());
+  /**
+   * @return the codec used to compress the response, chosen based on the <code>Accept-Encoding</code> header, or null
+   *         if the content should not be compressed.
+   */
+  private ContentCodec negotiateCodec(final HttpServletRequest request) {
+    if (!context.getConfig().isGzipEnabled()) {
+      return null;
+    }
+    final List<ContentCodec> codecs = getCodecs();
+    final String acceptEncoding = WroUtil.getAcceptEncoding(request);
+    final ContentCodec codec = ContentCodecs.negotiate(acceptEncoding, codecs);
+    // the header value can be mangled by proxies (ex: ~~~~~~~~~~~~~), in which case gzip is assumed to be supported
+    if (codec == null && codecs.contains(ContentCodecs.GZIP) && StringUtils.containsOnly(acceptEncoding, "X~-")
+        && WroUtil.isGzipSupported(request)) {
+      return ContentCodecs.GZIP;
+    }
+    return codec;
+  }
+
+  /**
+   * @return the codecs of the configured encodings, computed again only when the configuration changes.
+   */
+  private List<ContentCodec> getCodecs() {
+    final String contentEncodings = context.getConfig().getContentEncodings();
+    Codecs current = codecs;
+    if (current == null || !StringUtils.equals(current.encodings, contentEncodings)) {
+      current = new Codecs(contentEncodings);
+      codecs = current;
+    }
+    return current.list;
+  }
+
+  /**
+   * @return the value of the Content-Type header for the provided type, computed again only when the configured
+   *         encoding changes.
+   */
+  private String getContentType(final ResourceType type) {
+    final String encoding = context.getConfig().getEncoding();
+    ContentTypes current = contentTypes;
+    if (current == null || !StringUtils.equals(current.encoding, encoding)) {
+      current = new ContentTypes(encoding);
+      contentTypes = current;
+    }
+    return current.values.get(type);
   }
 
   /**
@@ -129,4 +257,32 @@ public class ResourceBundleProcessor {
       Context.get().setAggregatedFolderPath(aggregatedFolder);
     }
   }
+
+  /**
+   * The codecs of the configured encodings.
+   */
+  private static class Codecs {
+    private final String encodings;
+    private final List<ContentCodec> list;
+
+    Codecs(final String encodings) {
+      this.encodings = encodings;
+      this.list = ContentCodecs.forEncodings(encodings);
+    }
+  }
+
+  /**
+   * The Content-Type header values of each {@link ResourceType}, using the configured encoding.
+   */
+  private static class ContentTypes {
+    private final String encoding;
+    private final Map<ResourceType, String> values = new EnumMap<ResourceType, String>(ResourceType.class);
+
+    ContentTypes(final String encoding) {
+      this.encoding = encoding;
+      for (final ResourceType type : ResourceType.values()) {
+        values.put(type, type.getContentType() + "; charset=" + encoding);
+      }
+    }
+  }
 }
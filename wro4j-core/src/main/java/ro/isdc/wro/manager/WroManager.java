@@ -7,7 +7,10 @@ import static org.apache.commons.lang3.Validate.notNull;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +50,7 @@ import ro.isdc.wro.model.resource.processor.factory.ProcessorsFactory;
 import ro.isdc.wro.model.resource.processor.factory.SimpleProcessorsFactory;
 import ro.isdc.wro.model.resource.support.DefaultResourceAuthorizationManager;
 import ro.isdc.wro.model.resource.support.ResourceAuthorizationManager;
+import ro.isdc.wro.model.resource.support.change.ResourceDependencyIndex;
 import ro.isdc.wro.model.resource.support.change.ResourceWatcher;
 import ro.isdc.wro.model.resource.support.hash.HashStrategy;
 import ro.isdc.wro.model.resource.support.hash.SHA1HashStrategy;
@@ -108,6 +112,8 @@ public class WroManager
   private final MetaDataFactory metaDataFactory;
   @Inject
   private final ResourceWatcher resourceWatcher;
+  @Inject
+  private ResourceDependencyIndex resourceDependencyIndex;
   /**
    * Schedules the model update.
    */
@@ -125,7 +131,8 @@ public class WroManager
     @Override
     protected Runnable initialize() {
       // decorate with ContextPropagatingCallable to make context available in the new thread
-      return ContextPropagatingCallable.decorate(new ReloadCacheRunnable(getCacheStrategy()));
+      return ContextPropagatingCallable.decorate(new ReloadCacheRunnable(getCacheStrategy(),
+          Context.get().getConfig()));
     }
   }, ReloadCacheRunnable.class.getSimpleName());
 
@@ -159,8 +166,47 @@ public class WroManager
     resourceBundleProcessor.serveProcessedBundle();
   }
 
+  /**
+   * Process more groups at once and store the result in the cache. Unlike processing each group on its own (ex: when
+   * concurrent requests hit a cold cache), the resources shared by more groups (ex: a common group referred by other
+   * groups) are pre processed only once, while the distinct resources and the groups are processed in parallel.
+   *
+   * @param cacheKeys
+   *          the keys of the groups to process.
+   * @return the cached value of each key, in the iteration order of the provided keys.
+   * @since 1.8.1
+   */
+  public final Map<CacheKey, CacheValue> processAll(final Collection<CacheKey> cacheKeys) {
+    notNull(cacheKeys);
+    if (cacheStrategy instanceof DefaultSynchronizedCacheStrategyDecorator) {
+      return ((DefaultSynchronizedCacheStrategyDecorator) cacheStrategy).getAll(cacheKeys);
+    }
+    final Map<CacheKey, CacheValue> result = new LinkedHashMap<CacheKey, CacheValue>();
+    for (final CacheKey cacheKey : cacheKeys) {
+      result.put(cacheKey, cacheStrategy.get(cacheKey));
+    }
+    return result;
+  }
+
+  /**
+   * @param cacheKey
+   *          the key of the group to check.
+   * @return true if the processed group is available in the cache, meaning that it can be served without processing.
+   * @since 1.8.1
+   */
+  public final boolean isCached(final CacheKey cacheKey) {
+    notNull(cacheKey);
+    if (cacheStrategy instanceof DefaultSynchronizedCacheStrategyDecorator) {
+      return ((DefaultSynchronizedCacheStrategyDecorator) cacheStrategy).isCached(cacheKey);
+    }
+    return cacheStrategy.get(cacheKey) != null;
+  }
+
   /**
    * Encodes a fingerprint of the resource into the path. The result may look like this: ${fingerprint}/myGroup.js
+   * <p/>
+   * The fingerprint of a group already stored in the cache is retrieved in constant time, without accessing the cached
+   * content, thus this method can be safely invoked many times for each rendered page.
    *
    * @return a path to the resource with the fingerprint encoded as a folder name.
    */
@@ -168,10 +214,16 @@ public class WroManager
       final boolean minimize) {
     // TODO use CacheKeyFactory
     final CacheKey key = new CacheKey(groupName, resourceType, minimize);
-    final CacheValue cacheValue = cacheStrategy.get(key);
     final String groupUrl = groupExtractor.encodeGroupUrl(groupName, resourceType, minimize);
     // encode the fingerprint of the resource into the resource path
-    return formatVersionedResource(cacheValue.getHash(), groupUrl);
+    return formatVersionedResource(getFingerprint(key), groupUrl);
+  }
+
+  private String getFingerprint(final CacheKey key) {
+    if (cacheStrategy instanceof DefaultSynchronizedCacheStrategyDecorator) {
+      return ((DefaultSynchronizedCacheStrategyDecorator) cacheStrategy).getFingerprint(key);
+    }
+    return cacheStrategy.get(key).getHash();
   }
 
   /**
@@ -186,7 +238,7 @@ public class WroManager
    * @return formatted versioned path of the resource.
    */
   protected String formatVersionedResource(final String hash, final String resourcePath) {
-    return String.format("%s/%s", hash, resourcePath);
+    return hash + "/" + resourcePath;
   }
 
   public final void onCachePeriodChanged(final long period) {
@@ -292,6 +344,13 @@ public class WroManager
     return resourceWatcher;
   }
 
+  /**
+   * @return the {@link ResourceDependencyIndex} holding the imports recorded while processing the resources.
+   */
+  public ResourceDependencyIndex getResourceDependencyIndex() {
+    return resourceDependencyIndex;
+  }
+
   /**
    * Registers a callback.
    *
@@ -8,10 +8,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ro.isdc.wro.cache.CacheStrategy;
+import ro.isdc.wro.cache.support.DefaultSynchronizedCacheStrategyDecorator;
+import ro.isdc.wro.config.jmx.WroConfiguration;
 
 
 /**
- * A {@link Runnable} executed by scheduler to clear the cache.
+ * A {@link Runnable} executed by scheduler to clear the cache. When configured, the cached content is reloaded in
+ * background instead (see {@link WroConfiguration#isReloadCacheInBackground()}).
  * 
  * @author Alex Objelean
  * @created 24 Oct 2011
@@ -21,18 +24,38 @@ public final class ReloadCacheRunnable
     implements Runnable {
   private static final Logger LOG = LoggerFactory.getLogger(ReloadCacheRunnable.class);
   private CacheStrategy<?, ?> cacheStrategy;
+  private final WroConfiguration config;
   
   public ReloadCacheRunnable(final CacheStrategy<?, ?> cacheStrategy) {
+    this(cacheStrategy, null);
+  }
+  
+  /**
+   * @param config
+   *          the {@link WroConfiguration} used to decide if the cache should be reloaded in background. It is required
+   *          because the runnable is executed outside of the request cycle. When null, the cache is always cleared.
+   */
+  public ReloadCacheRunnable(final CacheStrategy<?, ?> cacheStrategy, final WroConfiguration config) {
     Validate.notNull(cacheStrategy);
     this.cacheStrategy = cacheStrategy;
+    this.config = config;
   }
   
   public void run() {
     LOG.debug("Reloading Cache....");
     try {
-      cacheStrategy.clear();
+      if (isReloadInBackground()) {
+        ((DefaultSynchronizedCacheStrategyDecorator) cacheStrategy).reload();
+      } else {
+        cacheStrategy.clear();
+      }
     } catch (final Exception e) {
       LOG.error("Exception occured during cache reload: ", e);
     }
   }
-}
\ No newline at end of file
+  
+  private boolean isReloadInBackground() {
+    return config != null && config.isReloadCacheInBackground()
+        && cacheStrategy instanceof DefaultSynchronizedCacheStrategyDecorator;
+  }
+}
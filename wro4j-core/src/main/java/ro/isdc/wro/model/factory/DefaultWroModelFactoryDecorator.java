@@ -114,6 +114,14 @@ public final class DefaultWroModelFactoryDecorator
     return modelInitializer.get();
   }
 
+  /**
+   * @return the cached model, or null if the model was not created yet or was destroyed. Never creates the model, thus
+   *         can be used outside of a context.
+   */
+  public WroModel getCachedModel() {
+    return modelInitializer.getIfInitialized();
+  }
+
   public void destroy() {
     LOG.debug("Destroy model");
     modelInitializer.destroy();
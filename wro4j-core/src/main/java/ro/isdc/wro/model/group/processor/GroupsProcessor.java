@@ -6,17 +6,28 @@ package ro.isdc.wro.model.group.processor;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
-import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ro.isdc.wro.WroRuntimeException;
 import ro.isdc.wro.cache.CacheKey;
 import ro.isdc.wro.config.ReadOnlyContext;
+import ro.isdc.wro.config.support.ContextPropagatingCallable;
 import ro.isdc.wro.manager.callback.LifecycleCallbackRegistry;
 import ro.isdc.wro.model.WroModel;
 import ro.isdc.wro.model.WroModelInspector;
@@ -29,6 +40,9 @@ import ro.isdc.wro.model.resource.processor.ResourcePreProcessor;
 import ro.isdc.wro.model.resource.processor.decorator.DefaultProcessorDecorator;
 import ro.isdc.wro.model.resource.processor.decorator.ProcessorDecorator;
 import ro.isdc.wro.model.resource.processor.factory.ProcessorsFactory;
+import ro.isdc.wro.model.resource.processor.support.ProcessingCriteria;
+import ro.isdc.wro.model.resource.processor.support.ProcessingType;
+import ro.isdc.wro.util.io.PipelineBuffers;
 
 
 /**
@@ -69,18 +83,8 @@ public class GroupsProcessor {
           cacheKey.getGroupName(), cacheKey.getType());
       // find processed result for a group
       final WroModel model = modelFactory.create();
-      final Group group = new WroModelInspector(model).getGroupByName(cacheKey.getGroupName());
-      if (group == null) {
-        throw new WroRuntimeException("No such group available in the model: " + cacheKey.getGroupName());
-      }
-      final Group filteredGroup = group.collectResourcesOfType(cacheKey.getType());
-      if (filteredGroup.getResources().isEmpty()) {
-        LOG.debug("No resources found in group: {} and resource type: {}", group.getName(), cacheKey.getType());
-        if (!context.getConfig().isIgnoreEmptyGroup()) {
-          throw new WroRuntimeException("No resources found in group: " + group.getName());
-        }
-      }
-      final String result = preProcessorExecutor.processAndMerge(filteredGroup.getResources(), cacheKey.isMinimize());
+      final List<Resource> resources = getResources(new WroModelInspector(model), cacheKey);
+      final String result = preProcessorExecutor.processAndMerge(resources, cacheKey.isMinimize());
       return applyPostProcessors(cacheKey, result);
     } catch (final IOException e) {
       throw new WroRuntimeException("Exception while merging resources: " + e.getMessage(), e).logError();
@@ -89,6 +93,114 @@ public class GroupsProcessor {
     }
   }
 
+  /**
+   * Process more groups at once. Each distinct resource of the processed groups (ex: the resources of a group referred
+   * by other groups) is pre processed only once, all the distinct resources being pre processed in parallel. The
+   * content of each group is then merged from the shared pre processed resources and post processed in parallel. All
+   * groups are processed using the {@link ro.isdc.wro.config.Context} of the current request cycle.
+   *
+   * @param cacheKeys
+   *          the keys of the groups to process.
+   * @return the processed content of each key, in the iteration order of the provided keys.
+   */
+  public Map<CacheKey, String> processAll(final Collection<CacheKey> cacheKeys) {
+    Validate.notNull(cacheKeys);
+    LOG.debug("Starting processing of groups: {}", cacheKeys);
+    try {
+      final WroModelInspector inspector = new WroModelInspector(modelFactory.create());
+      final Map<CacheKey, List<Resource>> resourcesByKey = new LinkedHashMap<CacheKey, List<Resource>>();
+      for (final CacheKey cacheKey : cacheKeys) {
+        resourcesByKey.put(cacheKey, getResources(inspector, cacheKey));
+      }
+      final Map<ResourceKey, String> preProcessed = preProcessDistinctResources(resourcesByKey);
+      final List<Callable<String>> callables = new ArrayList<Callable<String>>();
+      for (final Map.Entry<CacheKey, List<Resource>> entry : resourcesByKey.entrySet()) {
+        final CacheKey cacheKey = entry.getKey();
+        final StringBuilder merged = new StringBuilder();
+        for (final Resource resource : entry.getValue()) {
+          merged.append(preProcessed.get(new ResourceKey(resource, cacheKey.isMinimize())));
+        }
+        callables.add(new ContextPropagatingCallable<String>(new Callable<String>() {
+          public String call()
+              throws Exception {
+            try {
+              return applyPostProcessors(cacheKey, merged.toString());
+            } finally {
+              callbackRegistry.onProcessingComplete();
+            }
+          }
+        }));
+      }
+      final Map<CacheKey, String> result = new LinkedHashMap<CacheKey, String>();
+      final Iterator<String> contents = preProcessorExecutor.getExecutor().invokeAll(callables).iterator();
+      for (final CacheKey cacheKey : resourcesByKey.keySet()) {
+        result.put(cacheKey, contents.next());
+      }
+      return result;
+    } catch (final WroRuntimeException e) {
+      throw e;
+    } catch (final Exception e) {
+      throw new WroRuntimeException("Exception while processing groups: " + e.getMessage(), e).logError();
+    }
+  }
+
+  /**
+   * Pre process in parallel each distinct resource of the provided groups.
+   *
+   * @return the pre processed content of each distinct resource.
+   */
+  private Map<ResourceKey, String> preProcessDistinctResources(final Map<CacheKey, List<Resource>> resourcesByKey)
+      throws IOException {
+    final Map<ResourceKey, String> result = new HashMap<ResourceKey, String>();
+    callbackRegistry.onBeforeMerge();
+    try {
+      // the processing criteria depends on the minimize flag, thus the resources are pre processed separately
+      for (final boolean minimize : new boolean[] { true, false }) {
+        final Set<ResourceKey> distinctKeys = new LinkedHashSet<ResourceKey>();
+        for (final Map.Entry<CacheKey, List<Resource>> entry : resourcesByKey.entrySet()) {
+          if (entry.getKey().isMinimize() == minimize) {
+            for (final Resource resource : entry.getValue()) {
+              distinctKeys.add(new ResourceKey(resource, minimize));
+            }
+          }
+        }
+        if (!distinctKeys.isEmpty()) {
+          LOG.debug("Pre processing {} distinct resources with minimize flag: {}", distinctKeys.size(), minimize);
+          final List<Resource> resources = new ArrayList<Resource>();
+          for (final ResourceKey key : distinctKeys) {
+            resources.add(key.resource);
+          }
+          final Iterator<String> contents = preProcessorExecutor.processAll(resources,
+              ProcessingCriteria.create(ProcessingType.ALL, minimize)).iterator();
+          for (final ResourceKey key : distinctKeys) {
+            result.put(key, contents.next());
+          }
+        }
+      }
+      return result;
+    } finally {
+      callbackRegistry.onAfterMerge();
+    }
+  }
+
+  /**
+   * @return the resources of the group identified by the provided key.
+   */
+  private List<Resource> getResources(final WroModelInspector inspector, final CacheKey cacheKey) {
+    final Group group = inspector.getGroupByName(cacheKey.getGroupName());
+    if (group == null) {
+      throw new WroRuntimeException("No such group available in the model: " + cacheKey.getGroupName());
+    }
+    final Group filteredGroup = group.collectResourcesOfType(cacheKey.getType());
+    if (filteredGroup.getResources().isEmpty()) {
+      LOG.debug("No resources found in group: {} and resource type: {}", group.getName(), cacheKey.getType());
+      if (!context.getConfig().isIgnoreEmptyGroup()) {
+        throw new WroRuntimeException("No resources found in group: " + group.getName());
+      }
+    }
+    return filteredGroup.getResources();
+  }
+
   /**
    * Apply resourcePostProcessors.
    *
@@ -107,15 +219,14 @@ public class GroupsProcessor {
     }
     final Resource resource = Resource.create(cacheKey.getGroupName(), cacheKey.getType());
 
-    Reader reader = new StringReader(content.toString());
-    Writer writer = null;
+    final PipelineBuffers buffers = new PipelineBuffers(content.length());
+    Reader reader = new StringReader(content);
     for (final ResourcePostProcessor processor : processors) {
       final ResourcePreProcessor decoratedProcessor = decorateProcessor(processor, cacheKey.isMinimize());
-      writer = new StringWriter();
-      decoratedProcessor.process(resource, reader, writer);
-      reader = new StringReader(writer.toString());
+      decoratedProcessor.process(resource, reader, buffers.nextWriter());
+      reader = buffers.getReader();
     }
-    return writer.toString();
+    return buffers.toString();
   }
 
   /**
@@ -154,4 +265,30 @@ public class GroupsProcessor {
   public void destroy() {
     preProcessorExecutor.destroy();
   }
+
+  /**
+   * Identifies a resource pre processed with a minimize flag. The {@link Resource#equals(Object)} ignores the minimize
+   * flag of the resource, which is relevant for pre processing.
+   */
+  private static final class ResourceKey {
+    private final Resource resource;
+    private final boolean resourceMinimize;
+    private final boolean minimize;
+
+    public ResourceKey(final Resource resource, final boolean minimize) {
+      this.resource = resource;
+      this.resourceMinimize = resource.isMinimize();
+      this.minimize = minimize;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return EqualsBuilder.reflectionEquals(this, obj);
+    }
+
+    @Override
+    public int hashCode() {
+      return HashCodeBuilder.reflectionHashCode(this);
+    }
+  }
 }
@@ -20,6 +20,7 @@ import ro.isdc.wro.config.Context;
 import ro.isdc.wro.config.ReadOnlyContext;
 import ro.isdc.wro.config.jmx.WroConfiguration;
 import ro.isdc.wro.config.metadata.MetaDataFactory;
+import ro.isdc.wro.http.support.ProxyResourceCache;
 import ro.isdc.wro.manager.ResourceBundleProcessor;
 import ro.isdc.wro.manager.WroManager;
 import ro.isdc.wro.manager.callback.LifecycleCallbackRegistry;
@@ -33,6 +34,8 @@ import ro.isdc.wro.model.resource.locator.support.DispatcherStreamLocator;
 import ro.isdc.wro.model.resource.processor.factory.ProcessorsFactory;
 import ro.isdc.wro.model.resource.support.ResourceAuthorizationManager;
 import ro.isdc.wro.model.resource.support.change.ResourceChangeDetector;
+import ro.isdc.wro.model.resource.support.change.ResourceDependencyIndex;
+import ro.isdc.wro.model.resource.support.change.ResourceFileWatcher;
 import ro.isdc.wro.model.resource.support.change.ResourceWatcher;
 import ro.isdc.wro.model.resource.support.hash.HashStrategy;
 import ro.isdc.wro.model.resource.support.naming.NamingStrategy;
@@ -53,7 +56,11 @@ public class InjectorBuilder {
   private static final Logger LOG = LoggerFactory.getLogger(InjectorBuilder.class);
   private final GroupsProcessor groupsProcessor = new GroupsProcessor();
   private final PreProcessorExecutor preProcessorExecutor = new PreProcessorExecutor();
+  private final PreProcessedResourceCache preProcessedResourceCache = new PreProcessedResourceCache();
+  private final ProxyResourceCache proxyResourceCache = new ProxyResourceCache();
   private final ResourceChangeDetector resourceChangeDetector = new ResourceChangeDetector();
+  private final ResourceFileWatcher resourceFileWatcher = new ResourceFileWatcher();
+  private final ResourceDependencyIndex resourceDependencyIndex = new ResourceDependencyIndex();
   private final ResourceBundleProcessor bundleProcessor = new ResourceBundleProcessor();
   private ResourceWatcher resourceWatcher = new ResourceWatcher();
   private DispatcherStreamLocator dispatcherLocator = new DispatcherStreamLocator();
@@ -93,6 +100,8 @@ public class InjectorBuilder {
     map.put(CacheStrategy.class, createCacheStrategyProxy());
 
     map.put(PreProcessorExecutor.class, createPreProcessorExecutorProxy());
+    map.put(PreProcessedResourceCache.class, createPreProcessedResourceCacheProxy());
+    map.put(ProxyResourceCache.class, createProxyResourceCacheProxy());
     map.put(GroupsProcessor.class, createGroupsProcessorProxy());
     map.put(LifecycleCallbackRegistry.class, createCallbackRegistryProxy());
     map.put(GroupExtractor.class, createGroupExtractorProxy());
@@ -109,6 +118,8 @@ public class InjectorBuilder {
     map.put(CacheKeyFactory.class, createCacheKeyFactoryProxy());
     map.put(ResourceChangeDetector.class, createResourceChangeDetectorProxy());
     map.put(ResourceWatcher.class, createResourceWatcherProxy());
+    map.put(ResourceFileWatcher.class, createResourceFileWatcherProxy());
+    map.put(ResourceDependencyIndex.class, createResourceDependencyIndexProxy());
     map.put(DispatcherStreamLocator.class, createDispatcherLocatorProxy());
   }
 
@@ -146,6 +157,38 @@ public class InjectorBuilder {
     };
   }
 
+  private InjectorObjectFactory<PreProcessedResourceCache> createPreProcessedResourceCacheProxy() {
+    return new InjectorObjectFactory<PreProcessedResourceCache>() {
+      public PreProcessedResourceCache create() {
+        return preProcessedResourceCache;
+      }
+    };
+  }
+
+  private InjectorObjectFactory<ProxyResourceCache> createProxyResourceCacheProxy() {
+    return new InjectorObjectFactory<ProxyResourceCache>() {
+      public ProxyResourceCache create() {
+        return proxyResourceCache;
+      }
+    };
+  }
+
+  private InjectorObjectFactory<ResourceFileWatcher> createResourceFileWatcherProxy() {
+    return new InjectorObjectFactory<ResourceFileWatcher>() {
+      public ResourceFileWatcher create() {
+        return resourceFileWatcher;
+      }
+    };
+  }
+
+  private InjectorObjectFactory<ResourceDependencyIndex> createResourceDependencyIndexProxy() {
+    return new InjectorObjectFactory<ResourceDependencyIndex>() {
+      public ResourceDependencyIndex create() {
+        return resourceDependencyIndex;
+      }
+    };
+  }
+
   private InjectorObjectFactory<GroupsProcessor> createGroupsProcessorProxy() {
     return new InjectorObjectFactory<GroupsProcessor>() {
       public GroupsProcessor create() {
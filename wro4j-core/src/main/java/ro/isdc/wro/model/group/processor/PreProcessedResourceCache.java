@@ -0,0 +1,207 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.model.group.processor;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.isdc.wro.WroRuntimeException;
+import ro.isdc.wro.cache.CacheStrategy;
+import ro.isdc.wro.cache.impl.LruMemoryCacheStrategy;
+import ro.isdc.wro.config.ReadOnlyContext;
+import ro.isdc.wro.model.group.Inject;
+import ro.isdc.wro.model.resource.Resource;
+import ro.isdc.wro.model.resource.ResourceType;
+import ro.isdc.wro.model.resource.processor.ResourcePreProcessor;
+import ro.isdc.wro.model.resource.processor.support.ProcessingCriteria;
+import ro.isdc.wro.model.resource.processor.support.ProcessingType;
+import ro.isdc.wro.model.resource.support.hash.HashStrategy;
+import ro.isdc.wro.util.LazyInitializer;
+
+
+/**
+ * A second level cache (beneath the group cache) holding the pre processed content of a single resource. It allows a
+ * resource shared by many groups to be located, read and pre processed only once, no matter how many groups contain
+ * it. The entries are identified by the resource uri, the fingerprint of the resource content, the pre processors chain
+ * and the {@link ProcessingCriteria}.
+ * <p/>
+ * The cache is bounded by the number of entries (using LRU eviction policy) and is enabled only when
+ * {@link ro.isdc.wro.config.jmx.WroConfiguration#getPreProcessingCacheSize()} is greater than 0. This class is
+ * thread-safe.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public class PreProcessedResourceCache {
+  private static final Logger LOG = LoggerFactory.getLogger(PreProcessedResourceCache.class);
+  @Inject
+  private ReadOnlyContext context;
+  @Inject
+  private HashStrategy hashStrategy;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final LazyInitializer<CacheStrategy<Key, String>> cacheRef = new LazyInitializer<CacheStrategy<Key, String>>() {
+    @Override
+    protected CacheStrategy<Key, String> initialize() {
+      final int size = context.getConfig().getPreProcessingCacheSize();
+      LOG.debug("Creating pre processed resource cache of size: {}", size);
+      return new LruMemoryCacheStrategy<Key, String>(size);
+    }
+  };
+
+  /**
+   * @return true if the pre processed resources should be cached.
+   */
+  public boolean isEnabled() {
+    return context.getConfig().getPreProcessingCacheSize() > 0;
+  }
+
+  /**
+   * Creates the {@link Key} identifying the pre processed content of a resource.
+   *
+   * @param resource
+   *          the {@link Resource} being processed.
+   * @param content
+   *          the content of the resource before pre processing, used to compute the fingerprint.
+   * @param processors
+   *          the chain of pre processors to be applied on the resource.
+   * @param criteria
+   *          the {@link ProcessingCriteria} used to apply or skip processors.
+   * @return the {@link Key} for the pre processed content.
+   */
+  public Key createKey(final Resource resource, final String content,
+      final Collection<ResourcePreProcessor> processors, final ProcessingCriteria criteria) {
+    notNull(resource);
+    notNull(content);
+    notNull(processors);
+    notNull(criteria);
+    final Key key = new Key();
+    key.uri = resource.getUri();
+    key.type = resource.getType();
+    key.minimize = resource.isMinimize();
+    key.processingType = criteria.getProcessingType();
+    key.criteriaMinimize = criteria.isMinimize();
+    // the outcome of css url rewriting depends on the location of the aggregated bundle
+    key.aggregatedFolderPath = context.getAggregatedFolderPath();
+    key.processorsChain = computeProcessorsChain(processors);
+    key.fingerprint = computeFingerprint(content);
+    return key;
+  }
+
+  private String computeProcessorsChain(final Collection<ResourcePreProcessor> processors) {
+    final StringBuilder chain = new StringBuilder();
+    for (final ResourcePreProcessor processor : processors) {
+      chain.append(processor.getClass().getName()).append(';');
+    }
+    return chain.toString();
+  }
+
+  private String computeFingerprint(final String content) {
+    try {
+      return hashStrategy.getHash(new ByteArrayInputStream(content.getBytes(context.getConfig().getEncoding())));
+    } catch (final IOException e) {
+      throw WroRuntimeException.wrap(e, "Cannot compute fingerprint of the resource content");
+    }
+  }
+
+  /**
+   * @return the pre processed content associated with the key or null if there is no such entry.
+   */
+  public String get(final Key key) {
+    notNull(key);
+    final String content = cacheRef.get().get(key);
+    if (content == null) {
+      missCount.incrementAndGet();
+    } else {
+      hitCount.incrementAndGet();
+    }
+    LOG.debug("resource: {}, hit: {}", key.uri, content != null);
+    return content;
+  }
+
+  /**
+   * Stores the pre processed content of a resource.
+   */
+  public void put(final Key key, final String content) {
+    notNull(key);
+    cacheRef.get().put(key, content);
+  }
+
+  /**
+   * Removes all cached entries. This should be invoked whenever the group cache is cleared, because the content of the
+   * pre processed resource may depend on other resources (ex: css @import) whose change is not reflected by the
+   * fingerprint.
+   */
+  public void clear() {
+    if (cacheRef.isInitialized()) {
+      LOG.debug("Clearing pre processed resource cache. Hits: {}, misses: {}", getHitCount(), getMissCount());
+      cacheRef.get().clear();
+    }
+  }
+
+  /**
+   * Perform cleanup when taken out of service.
+   */
+  public void destroy() {
+    if (cacheRef.isInitialized()) {
+      cacheRef.get().destroy();
+    }
+  }
+
+  /**
+   * @return the number of lookups which found a pre processed resource.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return the number of lookups which didn't find a pre processed resource.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Identifies the pre processed content of a resource.
+   */
+  public static final class Key {
+    private String uri;
+    private ResourceType type;
+    private boolean minimize;
+    private ProcessingType processingType;
+    private boolean criteriaMinimize;
+    private String aggregatedFolderPath;
+    private String processorsChain;
+    private String fingerprint;
+
+    private Key() {
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return EqualsBuilder.reflectionEquals(this, obj);
+    }
+
+    @Override
+    public int hashCode() {
+      return HashCodeBuilder.reflectionHashCode(this);
+    }
+
+    @Override
+    public String toString() {
+      return ToStringBuilder.reflectionToString(this);
+    }
+  }
+}
@@ -6,15 +6,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.BOMInputStream;
@@ -35,7 +31,8 @@ import ro.isdc.wro.model.resource.processor.decorator.DefaultProcessorDecorator;
 import ro.isdc.wro.model.resource.processor.factory.ProcessorsFactory;
 import ro.isdc.wro.model.resource.processor.support.ProcessingCriteria;
 import ro.isdc.wro.model.resource.processor.support.ProcessingType;
-import ro.isdc.wro.util.WroUtil;
+import ro.isdc.wro.util.concurrent.WorkStealingExecutor;
+import ro.isdc.wro.util.io.PipelineBuffers;
 
 
 /**
@@ -58,10 +55,12 @@ public class PreProcessorExecutor {
   private LifecycleCallbackRegistry callbackRegistry;
   @Inject
   private Injector injector;
+  @Inject
+  private PreProcessedResourceCache preProcessedResourceCache;
   /**
-   * Runs the preProcessing in parallel.
+   * Runs the preProcessing in parallel. Shared by all nested invocations (ex: css imports).
    */
-  private ExecutorService executor;
+  private volatile WorkStealingExecutor executor;
 
   /**
    * Apply preProcessors on resources and merge them after all preProcessors are applied.
@@ -94,9 +93,11 @@ public class PreProcessorExecutor {
     try {
       notNull(resources);
       LOG.debug("process and merge resources: {}", resources);
-      final StringBuffer result = new StringBuffer();
+      final StringBuilder result = new StringBuilder();
       if (shouldRunInParallel(resources)) {
-        result.append(runInParallel(resources, criteria));
+        for (final String content : runInParallel(resources, criteria)) {
+          result.append(content);
+        }
       } else {
         for (final Resource resource : resources) {
           LOG.debug("\tmerging resource: {}", resource);
@@ -111,64 +112,77 @@ public class PreProcessorExecutor {
 
   private boolean shouldRunInParallel(final List<Resource> resources) {
     final boolean isParallel = context.getConfig().isParallelPreprocessing();
-    final int availableProcessors = Runtime.getRuntime().availableProcessors();
-    return isParallel && resources.size() > 1 && availableProcessors > 1;
+    return isParallel && resources.size() > 1 && getParallelPoolSize() > 1;
+  }
+
+  /**
+   * Apply preProcessors on each of the provided resources in parallel, regardless of the parallelPreprocessing flag,
+   * without merging them. This is useful when the pre processed resources are shared by more than one group.
+   *
+   * @param resources
+   *          the resources to pre process.
+   * @param criteria
+   *          {@link ProcessingCriteria} used to identify the processors to apply and those to skip.
+   * @return the preProcessed content of each resource, in the order of the provided resources.
+   */
+  public List<String> processAll(final List<Resource> resources, final ProcessingCriteria criteria)
+      throws IOException {
+    notNull(resources);
+    notNull(criteria);
+    return runInParallel(resources, criteria);
   }
 
   /**
    * runs the pre processors in parallel.
    *
-   * @return merged and pre processed content.
+   * @return the pre processed content of each resource.
    */
-  private String runInParallel(final List<Resource> resources, final ProcessingCriteria criteria)
+  private List<String> runInParallel(final List<Resource> resources, final ProcessingCriteria criteria)
       throws IOException {
     LOG.debug("Running preProcessing in Parallel");
-    final StringBuffer result = new StringBuffer();
     final List<Callable<String>> callables = new ArrayList<Callable<String>>();
     for (final Resource resource : resources) {
-      callables.add(new Callable<String>() {
+      // decorate with ContextPropagatingCallable in order to allow spawn threads to access the Context
+      callables.add(new ContextPropagatingCallable<String>(new Callable<String>() {
         public String call()
             throws Exception {
           LOG.debug("Callable started for resource: {} ...", resource);
           return applyPreProcessors(resource, criteria);
         }
-      });
+      }));
     }
-    final ExecutorService exec = getExecutorService();
-    final List<Future<String>> futures = new ArrayList<Future<String>>();
-    for (final Callable<String> callable : callables) {
-      // decorate with ContextPropagatingCallable in order to allow spawn threads to access the Context
-      final Callable<String> decoratedCallable = new ContextPropagatingCallable<String>(callable);
-      futures.add(exec.submit(decoratedCallable));
+    try {
+      return getExecutor().invokeAll(callables);
+    } catch (final WroRuntimeException e) {
+      throw e;
+    } catch (final IOException e) {
+      throw e;
+    } catch (final Exception e) {
+      throw new WroRuntimeException("Problem during parallel pre processing", e);
     }
+  }
 
-    for (final Future<String> future : futures) {
-      try {
-        result.append(future.get());
-      } catch (final Exception e) {
-        // propagate original cause
-        final Throwable cause = e.getCause();
-        if (cause instanceof WroRuntimeException) {
-          throw (WroRuntimeException) cause;
-        } else if (cause instanceof IOException) {
-          throw (IOException) cause;
-        } else {
-          throw new WroRuntimeException("Problem during parallel pre processing", e);
+  /**
+   * @return the executor used for parallel pre processing, created when first used.
+   */
+  public WorkStealingExecutor getExecutor() {
+    if (executor == null) {
+      synchronized (this) {
+        if (executor == null) {
+          executor = new WorkStealingExecutor(getParallelPoolSize(), "parallelPreprocessing");
         }
       }
     }
-    return result.toString();
+    return executor;
   }
 
-  private ExecutorService getExecutorService() {
-    if (executor == null) {
-      // use at most the number of available processors (true parallelism)
-      final int threadPoolSize = Runtime.getRuntime().availableProcessors();
-      LOG.debug("Parallel thread pool size: {}", threadPoolSize);
-      executor = Executors.newFixedThreadPool(threadPoolSize,
-          WroUtil.createDaemonThreadFactory("parallelPreprocessing"));
-    }
-    return executor;
+  /**
+   * @return the number of threads used for parallel pre processing. By default, the number of available processors is
+   *         used (true parallelism).
+   */
+  private int getParallelPoolSize() {
+    final int poolSize = context.getConfig().getParallelPreprocessingPoolSize();
+    return poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
   }
 
   /**
@@ -197,22 +211,43 @@ public class PreProcessorExecutor {
       }
     }
     if (!processors.isEmpty()) {
-      Writer writer = null;
-      for (final ResourcePreProcessor processor : processors) {
-        final ResourcePreProcessor decoratedProcessor = decoratePreProcessor(processor, criteria);
-
-        writer = new StringWriter();
-        final Reader reader = new StringReader(resourceContent);
-        // decorate and process
-        decoratedProcessor.process(resource, reader, writer);
-        // use the outcome for next input
-        resourceContent = writer.toString();
+      if (preProcessedResourceCache.isEnabled()) {
+        final PreProcessedResourceCache.Key key = preProcessedResourceCache.createKey(resource, resourceContent,
+            processors, criteria);
+        String processedContent = preProcessedResourceCache.get(key);
+        if (processedContent == null) {
+          processedContent = applyPreProcessors(resource, resourceContent, processors, criteria);
+          preProcessedResourceCache.put(key, processedContent);
+        }
+        resourceContent = processedContent;
+      } else {
+        resourceContent = applyPreProcessors(resource, resourceContent, processors, criteria);
       }
     }
     // add explicitly new line at the end to avoid unexpected comment issue
     return String.format("%s%n", resourceContent);
   }
 
+  /**
+   * Apply the chain of processors on the content of the resource.
+   *
+   * @return the pre processed content.
+   */
+  private String applyPreProcessors(final Resource resource, final String content,
+      final Collection<ResourcePreProcessor> processors, final ProcessingCriteria criteria)
+      throws IOException {
+    final PipelineBuffers buffers = new PipelineBuffers(content.length());
+    Reader reader = new StringReader(content);
+    for (final ResourcePreProcessor processor : processors) {
+      final ResourcePreProcessor decoratedProcessor = decoratePreProcessor(processor, criteria);
+      // decorate and process
+      decoratedProcessor.process(resource, reader, buffers.nextWriter());
+      // use the outcome for next input
+      reader = buffers.getReader();
+    }
+    return buffers.toString();
+  }
+
   /**
    * Decorates preProcessor with mandatory decorators.
    * This method is synchronized to ensure that processor is injected before it is being used by other thread.
@@ -261,6 +296,9 @@ public class PreProcessorExecutor {
    * Perform cleanUp on service shut down.
    */
   public void destroy() {
-    getExecutorService().shutdownNow();
+    if (executor != null) {
+      executor.destroy();
+    }
+    preProcessedResourceCache.destroy();
   }
 }
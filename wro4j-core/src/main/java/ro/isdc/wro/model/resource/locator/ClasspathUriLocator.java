@@ -12,6 +12,7 @@ import java.io.InputStream;
 import java.net.URL;
 import java.net.URLDecoder;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
@@ -24,6 +25,7 @@ import ro.isdc.wro.model.resource.locator.wildcard.WildcardStreamLocator;
 import ro.isdc.wro.model.resource.locator.wildcard.WildcardUriLocatorSupport;
 import ro.isdc.wro.model.transformer.WildcardExpanderModelTransformer.NoMoreAttemptsIOException;
 import ro.isdc.wro.util.StringUtils;
+import ro.isdc.wro.util.WroUtil;
 
 
 /**
@@ -33,7 +35,7 @@ import ro.isdc.wro.util.StringUtils;
  * @created Created on Nov 6, 2008
  */
 public class ClasspathUriLocator
-    extends WildcardUriLocatorSupport {
+    extends WildcardUriLocatorSupport implements LastModifiedAware, FileAware {
   private static final Logger LOG = LoggerFactory.getLogger(ClasspathUriLocator.class);
   /**
    * Alias used to register this locator with {@link LocatorProvider}.
@@ -97,6 +99,34 @@ public class ClasspathUriLocator
     return is;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public long getLastModified(final String uri)
+      throws IOException {
+    Validate.notNull(uri, "URI cannot be NULL!");
+    final String location = StringUtils.cleanPath(uri.replaceFirst(PREFIX, "")).trim();
+    if (getWildcardStreamLocator().hasWildcard(location)) {
+      // the timestamp of the expanded resources is unknown
+      return 0;
+    }
+    return WroUtil.getLastModified(Thread.currentThread().getContextClassLoader().getResource(location));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public File getFile(final String uri)
+      throws IOException {
+    Validate.notNull(uri, "URI cannot be NULL!");
+    final String location = StringUtils.cleanPath(uri.replaceFirst(PREFIX, "")).trim();
+    if (getWildcardStreamLocator().hasWildcard(location)) {
+      return null;
+    }
+    final URL url = Thread.currentThread().getContextClassLoader().getResource(location);
+    return url != null && "file".equals(url.getProtocol()) ? FileUtils.toFile(url) : null;
+  }
+
   /**
    * @return an input stream for an uri containing a wildcard for a given location.
    */
@@ -0,0 +1,28 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.model.resource.locator;
+
+import java.io.File;
+import java.io.IOException;
+
+
+/**
+ * Optional contract of a {@link UriLocator} able to map a resource to the file it is read from. Used to detect the
+ * change of a resource by inspecting the file, without locating the resource.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public interface FileAware {
+  /**
+   * @param uri
+   *          of the resource.
+   * @return the file containing the resource, or null if the resource is not read from a file (ex: it is located inside
+   *         a jar or it is the result of a dispatch).
+   * @throws IOException
+   *           if the resource cannot be accessed.
+   */
+  File getFile(final String uri)
+      throws IOException;
+}
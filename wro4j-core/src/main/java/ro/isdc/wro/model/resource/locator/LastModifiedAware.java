@@ -0,0 +1,26 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.model.resource.locator;
+
+import java.io.IOException;
+
+
+/**
+ * Optional contract of a {@link UriLocator} able to retrieve the last modification timestamp of a resource without
+ * reading its content. Used to compute the validators of the responses serving the located resources.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public interface LastModifiedAware {
+  /**
+   * @param uri
+   *          of the resource.
+   * @return the last modification timestamp of the resource, or 0 if unknown.
+   * @throws IOException
+   *           if the resource cannot be accessed.
+   */
+  long getLastModified(final String uri)
+      throws IOException;
+}
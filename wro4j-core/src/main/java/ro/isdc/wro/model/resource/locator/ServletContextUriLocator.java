@@ -37,7 +37,7 @@ import ro.isdc.wro.util.WroUtil;
  * @created Created on Nov 10 2008
  */
 public class ServletContextUriLocator
-    extends WildcardUriLocatorSupport {
+    extends WildcardUriLocatorSupport implements LastModifiedAware, FileAware {
   private static final Logger LOG = LoggerFactory.getLogger(ServletContextUriLocator.class);
   /**
    * Alias used to register this locator with {@link LocatorProvider}.
@@ -183,6 +183,47 @@ public class ServletContextUriLocator
     }
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public long getLastModified(final String uri)
+      throws IOException {
+    notNull(uri, "URI cannot be NULL!");
+    if (getWildcardStreamLocator().hasWildcard(uri)) {
+      // the timestamp of the expanded resources is unknown
+      return 0;
+    }
+    final ServletContext servletContext = Context.get().getServletContext();
+    final String realPath = servletContext.getRealPath(uri);
+    if (realPath != null) {
+      final File file = new File(realPath);
+      if (file.isFile()) {
+        return file.lastModified();
+      }
+    }
+    return WroUtil.getLastModified(servletContext.getResource(uri));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public File getFile(final String uri)
+      throws IOException {
+    notNull(uri, "URI cannot be NULL!");
+    final ServletContext servletContext = Context.get().getServletContext();
+    if (servletContext == null || getWildcardStreamLocator().hasWildcard(uri)) {
+      return null;
+    }
+    final String realPath = servletContext.getRealPath(uri);
+    if (realPath != null) {
+      final File file = new File(realPath);
+      if (file.isFile()) {
+        return file;
+      }
+    }
+    return null;
+  }
+
   private InputStream servletContextFirstStreamLocator(final String uri)
       throws IOException {
     try {
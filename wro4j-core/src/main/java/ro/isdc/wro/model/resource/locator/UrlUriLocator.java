@@ -9,6 +9,7 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
@@ -19,6 +20,7 @@ import org.apache.commons.lang3.Validate;
 
 import ro.isdc.wro.config.Context;
 import ro.isdc.wro.config.jmx.WroConfiguration;
+import ro.isdc.wro.http.support.HttpHeader;
 import ro.isdc.wro.model.resource.locator.support.LocatorProvider;
 import ro.isdc.wro.model.resource.locator.wildcard.WildcardUriLocatorSupport;
 
@@ -72,6 +74,51 @@ public class UrlUriLocator extends WildcardUriLocatorSupport {
       final URL url = new URL(fullPath);
       return getWildcardStreamLocator().locateStream(uri, new File(URLDecoder.decode(url.getFile(), "UTF-8")));
     }
+    return new BufferedInputStream(openConnection(uri).getInputStream());
+  }
+
+  /**
+   * Locates the resource only if it was modified since the provided validators were received. When the uri is a http
+   * url, a conditional request is sent, thus the content is transferred only if changed. Otherwise (or when the uri
+   * contains a wildcard), the resource is always located.
+   *
+   * @param uri
+   *          the uri of the resource.
+   * @param etag
+   *          the ETag of the previously located content, or null if unknown.
+   * @param lastModified
+   *          the last modified timestamp of the previously located content, or 0 if unknown.
+   * @return the located content along with its validators, or null if the resource was not modified.
+   * @since 1.8.1
+   */
+  public LocatedResource locateIfModified(final String uri, final String etag, final long lastModified)
+      throws IOException {
+    notNull(uri, "uri cannot be NULL!");
+    if (getWildcardStreamLocator().hasWildcard(uri)) {
+      return new LocatedResource(locate(uri), null, 0);
+    }
+    final URLConnection connection = openConnection(uri);
+    if (!(connection instanceof HttpURLConnection)) {
+      return new LocatedResource(new BufferedInputStream(connection.getInputStream()), null, 0);
+    }
+    final HttpURLConnection httpConnection = (HttpURLConnection) connection;
+    final boolean conditional = etag != null || lastModified > 0;
+    if (etag != null) {
+      httpConnection.setRequestProperty(HttpHeader.IF_NONE_MATCH.toString(), etag);
+    }
+    if (lastModified > 0) {
+      httpConnection.setIfModifiedSince(lastModified);
+    }
+    if (conditional && httpConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+      httpConnection.disconnect();
+      return null;
+    }
+    return new LocatedResource(new BufferedInputStream(httpConnection.getInputStream()),
+        httpConnection.getHeaderField(HttpHeader.ETAG.toString()), httpConnection.getLastModified());
+  }
+
+  private URLConnection openConnection(final String uri)
+      throws IOException {
     final URL url = new URL(uri);
     final URLConnection connection = url.openConnection();
     // avoid jar file locking on Windows.
@@ -82,8 +129,7 @@ public class UrlUriLocator extends WildcardUriLocatorSupport {
     // when the server has problems.
     connection.setConnectTimeout(timeout);
     connection.setReadTimeout(timeout);
-
-    return new BufferedInputStream(connection.getInputStream());
+    return connection;
   }
 
   /**
@@ -93,4 +139,43 @@ public class UrlUriLocator extends WildcardUriLocatorSupport {
   public void setTimeout(int timeout) {
     this.timeout = timeout;
   }
+
+  /**
+   * The content located by {@link UrlUriLocator#locateIfModified(String, String, long)}, along with the validators
+   * received with it.
+   *
+   * @since 1.8.1
+   */
+  public static final class LocatedResource {
+    private final InputStream inputStream;
+    private final String etag;
+    private final long lastModified;
+
+    private LocatedResource(final InputStream inputStream, final String etag, final long lastModified) {
+      this.inputStream = inputStream;
+      this.etag = etag;
+      this.lastModified = lastModified;
+    }
+
+    /**
+     * @return the stream of the content. The caller is responsible for closing it.
+     */
+    public InputStream getInputStream() {
+      return inputStream;
+    }
+
+    /**
+     * @return the value of the ETag header, or null if unknown.
+     */
+    public String getETag() {
+      return etag;
+    }
+
+    /**
+     * @return the value of the Last-Modified header, or 0 if unknown.
+     */
+    public long getLastModified() {
+      return lastModified;
+    }
+  }
 }
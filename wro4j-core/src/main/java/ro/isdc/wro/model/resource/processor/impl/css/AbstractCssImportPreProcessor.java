@@ -30,6 +30,7 @@ import ro.isdc.wro.model.resource.locator.factory.UriLocatorFactory;
 import ro.isdc.wro.model.resource.processor.ImportAware;
 import ro.isdc.wro.model.resource.processor.ResourcePreProcessor;
 import ro.isdc.wro.model.resource.processor.support.CssImportInspector;
+import ro.isdc.wro.model.resource.support.change.ResourceDependencyIndex;
 import ro.isdc.wro.util.StringUtils;
 import ro.isdc.wro.util.WroUtil;
 
@@ -53,6 +54,11 @@ public abstract class AbstractCssImportPreProcessor
    */
   @Inject
   private UriLocatorFactory uriLocatorFactory;
+  /**
+   * Records the found imports, used by the change detection.
+   */
+  @Inject
+  private ResourceDependencyIndex dependencyIndex;
   /**
    * A map useful for detecting deep recursion. The key (correlationId) - identifies a processing unit, while the value
    * contains a pair between the list o processed resources and a stack holding recursive calls (value contained on this
@@ -163,6 +169,7 @@ public abstract class AbstractCssImportPreProcessor
     final List<Resource> imports = new ArrayList<Resource>();
     final String css = cssContent;
     final List<String> foundImports = findImports(css);
+    final List<String> importedUris = new ArrayList<String>();
     for (final String importUrl : foundImports) {
       final Resource importedResource = createImportedResource(resourceUri, importUrl);
       // check if already exist
@@ -170,9 +177,13 @@ public abstract class AbstractCssImportPreProcessor
         LOG.debug("[WARN] Duplicate imported resource: {}", importedResource);
       } else {
         imports.add(importedResource);
+        importedUris.add(importedResource.getUri());
         onImportDetected(importedResource.getUri());
       }
     }
+    if (dependencyIndex != null) {
+      dependencyIndex.setImports(resourceUri, importedUris);
+    }
     return imports;
   }
 
@@ -2,15 +2,16 @@ package ro.isdc.wro.model.resource.processor.support;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.commons.io.IOUtils;
+
 import ro.isdc.wro.model.resource.Resource;
 import ro.isdc.wro.model.resource.processor.ResourcePreProcessor;
+import ro.isdc.wro.util.io.PipelineBuffers;
 
 
 /**
@@ -39,13 +40,16 @@ public class ChainedProcessor
 
   public void process(final Resource resource, final Reader reader, final Writer writer)
       throws IOException {
+    if (processors.isEmpty()) {
+      IOUtils.copy(reader, writer);
+      return;
+    }
+    final PipelineBuffers buffers = new PipelineBuffers(0);
     Reader tempReader = reader;
-    Writer tempWriter = new StringWriter();
     for (final ResourcePreProcessor processor : processors) {
-      tempWriter = new StringWriter();
-      processor.process(resource, tempReader, tempWriter);
-      tempReader = new StringReader(tempWriter.toString());
+      processor.process(resource, tempReader, buffers.nextWriter());
+      tempReader = buffers.getReader();
     }
-    writer.write(tempWriter.toString());
+    buffers.writeTo(writer);
   }
 }
\ No newline at end of file
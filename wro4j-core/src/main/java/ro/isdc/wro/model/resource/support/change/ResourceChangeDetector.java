@@ -3,23 +3,46 @@ package ro.isdc.wro.model.resource.support.change;
 
 import static org.apache.commons.lang3.Validate.notNull;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.jar.JarEntry;
 
 import org.apache.commons.io.IOUtils;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ro.isdc.wro.WroRuntimeException;
 import ro.isdc.wro.model.group.Inject;
+import ro.isdc.wro.model.resource.locator.ClasspathUriLocator;
+import ro.isdc.wro.model.resource.locator.FileAware;
+import ro.isdc.wro.model.resource.locator.UriLocator;
+import ro.isdc.wro.model.resource.locator.UrlUriLocator;
+import ro.isdc.wro.model.resource.locator.UrlUriLocator.LocatedResource;
 import ro.isdc.wro.model.resource.locator.factory.UriLocatorFactory;
 import ro.isdc.wro.model.resource.support.hash.HashStrategy;
+import ro.isdc.wro.util.StringUtils;
 
 
 /**
  * Responsbile for keeping details about resources contents and identify the change of any resource in time.
+ * <p/>
+ * The content of a resource is hashed only when its metadata is unavailable or has changed since the previous check.
+ * The following metadata is used: the size and the last modified timestamp of the resources read from files, the
+ * checksum of the classpath resources read from jars and the validators (ETag or Last-Modified) of the remote
+ * resources, which are retrieved with a conditional request.
+ * <p/>
+ * Once the checks are organized in cycles (see {@link #startCycle()}), each resource is checked at most once per cycle,
+ * even if it is shared by more groups checked concurrently.
  *
  * @author Alex Objelean
  * @since 1.6.0
@@ -27,10 +50,24 @@ import ro.isdc.wro.model.resource.support.hash.HashStrategy;
  */
 public class ResourceChangeDetector {
   private static final Logger LOG = LoggerFactory.getLogger(ResourceChangeDetector.class);
+  /**
+   * The coarsest resolution (in milliseconds) of the last modified timestamp of a file, among the common file systems.
+   */
+  private static final long TIMESTAMP_RESOLUTION = 2000;
   @Inject
   private UriLocatorFactory locatorFactory;
   @Inject
   private HashStrategy hashStrategy;
+  /**
+   * The metadata and the hash of each resource, computed when its content was hashed for the last time.
+   */
+  private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<String, Fingerprint>();
+  /**
+   * The hash of each resource checked during the current cycle. Used only after the first cycle is started.
+   */
+  private final ConcurrentMap<String, FutureTask<String>> cycleHashes = new ConcurrentHashMap<String,
+      FutureTask<String>>();
+  private volatile boolean cycleStarted;
   /**
    * Map between a resource uri and a corresponding {@link ResourceChangeInfo} object. It is ensured that any get(key)
    * operation will return a not null object.
@@ -56,6 +93,15 @@ public class ResourceChangeDetector {
     }
   }
 
+  /**
+   * Starts a new check cycle (ex: a period of the resource watcher). The resources checked during the previous cycle
+   * are checked again, but only once during the new cycle, no matter how many groups contain them.
+   */
+  public void startCycle() {
+    cycleHashes.clear();
+    cycleStarted = true;
+  }
+
   /**
    * Check if an uri from a particular group has changed.
    *
@@ -71,14 +117,192 @@ public class ResourceChangeDetector {
     LOG.debug("group={}, uri={}", groupName, uri);
     final ResourceChangeInfo resourceInfo = changeInfoMap.get(uri);
     if (resourceInfo.isCheckRequiredForGroup(groupName)) {
-      final InputStream inputStream = locatorFactory.locate(uri);
-      try{
-        final String currentHash = hashStrategy.getHash(inputStream);
-        resourceInfo.updateHashForGroup(currentHash, groupName);
-      }finally{
-        IOUtils.closeQuietly(inputStream);
-      }
+      resourceInfo.updateHashForGroup(getCycleHash(uri), groupName);
     }
     return resourceInfo.isChanged(groupName);
   }
+
+  /**
+   * @param uri
+   *          the uri checked during the current cycle.
+   * @return true if the content of the resource changed since the previous cycle. Unlike
+   *         {@link #checkChangeForGroup(String, String)}, doesn't report a change when the resource is checked for a
+   *         group for the first time.
+   */
+  public boolean isContentChanged(final String uri) {
+    notNull(uri);
+    return changeInfoMap.containsKey(uri) && changeInfoMap.get(uri).isHashChangedSincePreviousCycle();
+  }
+
+  /**
+   * Marks the change of the resource as handled by the provided group, thus it is not reported again when the resource
+   * is checked for the group, during the current or a next cycle.
+   *
+   * @param uri
+   *          the uri whose change was detected during the current cycle.
+   * @param groupName
+   *          the name of the group invalidated because of the change.
+   */
+  public void markChangeHandled(final String uri, final String groupName) {
+    notNull(uri);
+    notNull(groupName);
+    changeInfoMap.get(uri).markHandled(groupName);
+  }
+
+  /**
+   * @return the hash of the resource content, computed only once during the current cycle. The concurrent checks of the
+   *         same resource wait for the hash computed by the first one.
+   */
+  private String getCycleHash(final String uri)
+      throws IOException {
+    if (!cycleStarted) {
+      return getHash(uri);
+    }
+    FutureTask<String> task = cycleHashes.get(uri);
+    if (task == null) {
+      final FutureTask<String> newTask = new FutureTask<String>(new Callable<String>() {
+        public String call()
+            throws Exception {
+          return getHash(uri);
+        }
+      });
+      task = cycleHashes.putIfAbsent(uri, newTask);
+      if (task == null) {
+        task = newTask;
+        task.run();
+      }
+    }
+    try {
+      return task.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while checking uri: " + uri, e);
+    } catch (final ExecutionException e) {
+      // a failed check is retried by the next group containing the resource
+      cycleHashes.remove(uri, task);
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new WroRuntimeException("Cannot check uri: " + uri, cause);
+    }
+  }
+
+  /**
+   * @return the hash of the resource content, reused from the previous check when the metadata is unchanged.
+   */
+  private String getHash(final String uri)
+      throws IOException {
+    final Fingerprint previous = fingerprints.get(uri);
+    final UriLocator locator = locatorFactory.getInstance(uri);
+    if (locator instanceof UrlUriLocator && !((UrlUriLocator) locator).getWildcardStreamLocator().hasWildcard(uri)) {
+      return getHashOfUrl((UrlUriLocator) locator, uri, previous);
+    }
+    final String metadata = getMetadata(uri, locator);
+    if (metadata != null && previous != null && metadata.equals(previous.metadata)) {
+      LOG.debug("unchanged metadata of uri: {}", uri);
+      return previous.hash;
+    }
+    final String hash = computeHash(locatorFactory.locate(uri));
+    fingerprints.put(uri, new Fingerprint(metadata, hash));
+    return hash;
+  }
+
+  /**
+   * @return the metadata of the resource, or null if it cannot be retrieved without reading the content.
+   */
+  private String getMetadata(final String uri, final UriLocator locator) {
+    try {
+      if (locator instanceof FileAware) {
+        final File file = ((FileAware) locator).getFile(uri);
+        // a file modified within the timestamp resolution may be modified again without changing its timestamp.
+        if (file != null && System.currentTimeMillis() - file.lastModified() > TIMESTAMP_RESOLUTION) {
+          return file.length() + "/" + file.lastModified();
+        }
+      }
+      if (locator instanceof ClasspathUriLocator) {
+        return getJarEntryMetadata(uri);
+      }
+    } catch (final IOException e) {
+      LOG.debug("[FAIL] Cannot retrieve the metadata of uri: {}", uri);
+    }
+    return null;
+  }
+
+  /**
+   * @return the checksum of the jar entry containing the classpath resource, or null if the resource is not in a jar.
+   */
+  private String getJarEntryMetadata(final String uri)
+      throws IOException {
+    final String location = StringUtils.cleanPath(uri.replaceFirst(ClasspathUriLocator.PREFIX, "")).trim();
+    final URL url = Thread.currentThread().getContextClassLoader().getResource(location);
+    if (url == null || !"jar".equals(url.getProtocol())) {
+      return null;
+    }
+    final JarURLConnection connection = (JarURLConnection) url.openConnection();
+    // read the entry from a private copy of the jar, in order to close it right away
+    connection.setUseCaches(false);
+    try {
+      final JarEntry entry = connection.getJarEntry();
+      return entry == null || entry.getCrc() == -1 ? null : entry.getCrc() + "/" + entry.getSize();
+    } finally {
+      connection.getJarFile().close();
+    }
+  }
+
+  /**
+   * Retrieves the remote resource with a conditional request (see
+   * {@link UrlUriLocator#locateIfModified(String, String, long)}), using the validators of the previous response. The
+   * content is transferred only if changed.
+   */
+  private String getHashOfUrl(final UrlUriLocator locator, final String uri, final Fingerprint previous)
+      throws IOException {
+    final LocatedResource resource = previous == null ? locator.locateIfModified(uri, null, 0)
+        : locator.locateIfModified(uri, previous.metadata, previous.lastModified);
+    if (resource == null) {
+      LOG.debug("not modified uri: {}", uri);
+      return previous.hash;
+    }
+    final String hash = computeHash(resource.getInputStream());
+    fingerprints.put(uri, new Fingerprint(resource.getETag(), hash, resource.getLastModified()));
+    return hash;
+  }
+
+  private String computeHash(final InputStream inputStream)
+      throws IOException {
+    try {
+      return hashStrategy.getHash(inputStream);
+    } finally {
+      IOUtils.closeQuietly(inputStream);
+    }
+  }
+
+  /**
+   * The hash of a resource, along with the metadata of the resource when hashed.
+   */
+  private static final class Fingerprint {
+    /**
+     * Describes the state of the resource (ex: size and last modified timestamp of a file or the ETag of a remote
+     * resource). Null if unknown.
+     */
+    private final String metadata;
+    private final String hash;
+    /**
+     * The last modified timestamp of a remote resource, or 0 if unknown.
+     */
+    private final long lastModified;
+
+    Fingerprint(final String metadata, final String hash) {
+      this(metadata, hash, 0);
+    }
+
+    Fingerprint(final String metadata, final String hash, final long lastModified) {
+      this.metadata = metadata;
+      this.hash = hash;
+      this.lastModified = lastModified;
+    }
+  }
 }
@@ -28,6 +28,11 @@ public final class ResourceChangeInfo {
    * resource is contained in two different groups and only the first group is notified about the change.
    */
   private final Set<String> groups = Collections.synchronizedSet(new HashSet<String>());
+  /**
+   * The groups which already handled the change of the hash detected during the current cycle (see
+   * {@link #markHandled(String)}).
+   */
+  private final Set<String> handledGroups = Collections.synchronizedSet(new HashSet<String>());
 
   /**
    * Updates the hash associated with the resource for a give groupName.
@@ -44,9 +49,17 @@ public final class ResourceChangeInfo {
       LOG.debug("Group {} has changed", groupName);
       //remove all persisted groups. Starting over..
       groups.clear();
+      handledGroups.clear();
     }
   }
 
+  /**
+   * @return true if the hash computed during the current cycle differs from the one computed during a previous cycle.
+   */
+  public boolean isHashChangedSincePreviousCycle() {
+    return currentHash != null && prevHash != null && !currentHash.equals(prevHash);
+  }
+
   private boolean isChangedHash() {
     return currentHash != null ? !currentHash.equals(prevHash) : prevHash != null;
   }
@@ -61,6 +74,7 @@ public final class ResourceChangeInfo {
       this.prevHash = currentHash;
     }
     this.currentHash = null;
+    handledGroups.clear();
   }
 
   /**
@@ -70,13 +84,27 @@ public final class ResourceChangeInfo {
    */
   public boolean isChanged(final String groupName) {
     notNull(groupName);
-    final boolean result = isChangedHash() ? true : !groups.contains(groupName);
+    final boolean result = isChangedHash() ? !handledGroups.contains(groupName) : !groups.contains(groupName);
     if (result) {
       groups.add(groupName);
     }
     return result;
   }
 
+  /**
+   * Marks the change of the resource as handled by the provided group (ex: the group was invalidated because of a
+   * change detected for another group). The change is not reported by {@link #isChanged(String)} for this group,
+   * neither during the current cycle nor during the next ones, until the hash changes again.
+   *
+   * @param groupName
+   *          the name of the group which handled the change.
+   */
+  public void markHandled(final String groupName) {
+    notNull(groupName);
+    groups.add(groupName);
+    handledGroups.add(groupName);
+  }
+
   /**
    * Checks if the current hash was set previously and persist the groupName in the set of the groups who are interested
    * about the change.
@@ -0,0 +1,127 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.model.resource.support.change;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import ro.isdc.wro.cache.CacheKey;
+
+
+/**
+ * Maps each resource uri to the keys of the groups depending on it, either directly (the group contains the resource)
+ * or transitively (the resource is imported by a resource of the group). Allows invalidating all the groups affected by
+ * a changed resource, after checking the resource only once. The index is populated incrementally, as the dependencies
+ * are discovered.
+ * <p/>
+ * The index also holds the graph of the imports (ex: css <code>@import</code>), recorded by the processors resolving
+ * them during processing. Allows detecting the change of the imported resources without parsing the importing resource
+ * again. This class is thread-safe.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public class ResourceDependencyIndex {
+  private final ConcurrentMap<String, Set<CacheKey>> dependentKeys = new ConcurrentHashMap<String, Set<CacheKey>>();
+  /**
+   * The uris of the resources imported by each resource, in the order of their import.
+   */
+  private final ConcurrentMap<String, List<String>> imports = new ConcurrentHashMap<String, List<String>>();
+
+  /**
+   * Records that the group associated with the provided key depends on the resource.
+   *
+   * @param uri
+   *          the uri of the resource.
+   * @param key
+   *          the {@link CacheKey} of the dependent group.
+   */
+  public void addDependency(final String uri, final CacheKey key) {
+    notNull(uri);
+    notNull(key);
+    Set<CacheKey> keys = dependentKeys.get(uri);
+    if (keys == null) {
+      final Set<CacheKey> newKeys = Collections.synchronizedSet(new HashSet<CacheKey>());
+      keys = dependentKeys.putIfAbsent(uri, newKeys);
+      if (keys == null) {
+        keys = newKeys;
+      }
+    }
+    keys.add(key);
+  }
+
+  /**
+   * @param uri
+   *          the uri of the resource.
+   * @return the keys of the groups known to depend on the resource. Never null.
+   */
+  public Set<CacheKey> getDependentKeys(final String uri) {
+    notNull(uri);
+    final Set<CacheKey> keys = dependentKeys.get(uri);
+    if (keys == null) {
+      return Collections.emptySet();
+    }
+    synchronized (keys) {
+      return new HashSet<CacheKey>(keys);
+    }
+  }
+
+  /**
+   * Records the resources imported by a resource, replacing the ones recorded previously.
+   *
+   * @param uri
+   *          the uri of the importing resource.
+   * @param importedUris
+   *          the uris of all the resources it imports.
+   */
+  public synchronized void setImports(final String uri, final List<String> importedUris) {
+    notNull(uri);
+    notNull(importedUris);
+    imports.put(uri, Collections.unmodifiableList(new ArrayList<String>(importedUris)));
+  }
+
+  /**
+   * Records a single import, useful when the imports are resolved one by one.
+   *
+   * @param uri
+   *          the uri of the importing resource.
+   * @param importedUri
+   *          the uri of the imported resource.
+   */
+  public synchronized void addImport(final String uri, final String importedUri) {
+    notNull(uri);
+    notNull(importedUri);
+    final List<String> current = imports.get(uri);
+    final List<String> updated = current == null ? new ArrayList<String>() : new ArrayList<String>(current);
+    if (!updated.contains(importedUri)) {
+      updated.add(importedUri);
+    }
+    imports.put(uri, Collections.unmodifiableList(updated));
+  }
+
+  /**
+   * @param uri
+   *          the uri of the resource.
+   * @return the uris of the resources imported by the provided one, or null if its imports were not recorded yet.
+   */
+  public List<String> getImports(final String uri) {
+    notNull(uri);
+    return imports.get(uri);
+  }
+
+  /**
+   * Removes all dependencies. Invoked when the cached groups are discarded.
+   */
+  public void clear() {
+    dependentKeys.clear();
+    imports.clear();
+  }
+}
@@ -0,0 +1,312 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.model.resource.support.change;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.isdc.wro.cache.CacheKey;
+import ro.isdc.wro.cache.CacheStrategy;
+import ro.isdc.wro.cache.CacheValue;
+import ro.isdc.wro.config.Context;
+import ro.isdc.wro.config.ReadOnlyContext;
+import ro.isdc.wro.manager.callback.LifecycleCallbackRegistry;
+import ro.isdc.wro.model.WroModelInspector;
+import ro.isdc.wro.model.factory.WroModelFactory;
+import ro.isdc.wro.model.group.Group;
+import ro.isdc.wro.model.group.Inject;
+import ro.isdc.wro.model.group.processor.PreProcessedResourceCache;
+import ro.isdc.wro.model.resource.Resource;
+import ro.isdc.wro.model.resource.ResourceType;
+import ro.isdc.wro.model.resource.locator.FileAware;
+import ro.isdc.wro.model.resource.locator.UriLocator;
+import ro.isdc.wro.model.resource.locator.factory.UriLocatorFactory;
+
+
+/**
+ * Detects the change of the resources read from files (see {@link FileAware}) by comparing the size and the last
+ * modified timestamp of each file with the ones it had when the group was loaded in the cache. When a file changes,
+ * only the cache entries of the groups containing it are invalidated.
+ * <p/>
+ * The files are inspected by {@link #checkAndNotify()}, invoked periodically outside of the request cycle, thus the
+ * requests of a watched group don't trigger any change detection. A group is watched only if all its resources are
+ * read from files. The files of the css resources imported by the group are watched as well, when the imports were
+ * recorded during processing (see {@link ResourceDependencyIndex}). Otherwise, a group containing a css resource with
+ * an <code>@import</code> statement is not watched. The change of any other group is detected by the
+ * {@link ResourceWatcher}. This class is thread-safe.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public class ResourceFileWatcher {
+  private static final Logger LOG = LoggerFactory.getLogger(ResourceFileWatcher.class);
+  @Inject
+  private WroModelFactory modelFactory;
+  @Inject
+  private UriLocatorFactory locatorFactory;
+  @Inject
+  private CacheStrategy<CacheKey, CacheValue> cacheStrategy;
+  @Inject
+  private PreProcessedResourceCache preProcessedResourceCache;
+  @Inject
+  private LifecycleCallbackRegistry lifecycleCallback;
+  @Inject
+  private ReadOnlyContext context;
+  @Inject
+  private ResourceDependencyIndex dependencyIndex;
+  /**
+   * The watched files. The groups containing them are recorded in the {@link ResourceDependencyIndex}, shared with the
+   * {@link ResourceWatcher}.
+   */
+  private final Map<File, WatchedFile> watchedFiles = new ConcurrentHashMap<File, WatchedFile>();
+  private final Set<CacheKey> watchedKeys = Collections.synchronizedSet(new HashSet<CacheKey>());
+  /**
+   * A detached context used to invalidate the changed groups outside of the request cycle.
+   */
+  private volatile Context watchContext;
+
+  /**
+   * @return true if the change of the groups should be detected by watching their files.
+   */
+  public boolean isEnabled() {
+    return context.getConfig().isResourceWatcherFileMonitor();
+  }
+
+  /**
+   * @return true if the change of the group associated with the provided key is detected by watching its files.
+   */
+  public boolean isWatched(final CacheKey key) {
+    return watchedKeys.contains(key);
+  }
+
+  /**
+   * Starts watching the files of the group associated with the provided key. Must be invoked before the group is
+   * processed, thus any change performed meanwhile is detected.
+   *
+   * @param key
+   *          the {@link CacheKey} of the group loaded in the cache.
+   * @return true if the group is watched.
+   */
+  public boolean watch(final CacheKey key) {
+    notNull(key);
+    if (watchedKeys.contains(key)) {
+      return true;
+    }
+    // resolved without holding the lock, since the css files may be read in order to find their imports
+    final Map<File, Resource> files = getFiles(key);
+    if (files == null) {
+      LOG.debug("Cannot watch the files of: {}", key);
+      return false;
+    }
+    synchronized (this) {
+      if (!watchedKeys.contains(key)) {
+        for (final Map.Entry<File, Resource> entry : files.entrySet()) {
+          WatchedFile watchedFile = watchedFiles.get(entry.getKey());
+          if (watchedFile == null) {
+            watchedFile = new WatchedFile(entry.getKey(), entry.getValue());
+            watchedFiles.put(entry.getKey(), watchedFile);
+          }
+          watchedFile.uris.add(entry.getValue().getUri());
+          dependencyIndex.addDependency(entry.getValue().getUri(), key);
+        }
+        watchedKeys.add(key);
+        if (watchContext == null) {
+          watchContext = Context.detachedContext(Context.get());
+        }
+      }
+    }
+    LOG.debug("Watching {} files of: {}", files.size(), key);
+    return true;
+  }
+
+  /**
+   * @return the files of the resources contained in the group (including the imported ones), or null if any of them
+   *         cannot be watched.
+   */
+  private Map<File, Resource> getFiles(final CacheKey key) {
+    final Group group = new WroModelInspector(modelFactory.create()).getGroupByName(key.getGroupName());
+    if (group == null) {
+      return null;
+    }
+    final Map<File, Resource> files = new HashMap<File, Resource>();
+    for (final Resource resource : group.collectResourcesOfType(key.getType()).getResources()) {
+      if (!collectFiles(resource, files)) {
+        return null;
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Collects the file of the resource, along with the files of the resources it imports.
+   *
+   * @return false if any of the files cannot be watched.
+   */
+  private boolean collectFiles(final Resource resource, final Map<File, Resource> files) {
+    final File file = getFile(resource);
+    if (file == null) {
+      return false;
+    }
+    if (files.put(file, resource) != null || resource.getType() != ResourceType.CSS) {
+      return true;
+    }
+    final List<String> imports = getImports(resource, file);
+    if (imports == null) {
+      return false;
+    }
+    for (final String importedUri : imports) {
+      if (!collectFiles(Resource.create(importedUri, ResourceType.CSS), files)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private File getFile(final Resource resource) {
+    final UriLocator locator = locatorFactory.getInstance(resource.getUri());
+    if (locator instanceof FileAware) {
+      try {
+        return ((FileAware) locator).getFile(resource.getUri());
+      } catch (final IOException e) {
+        LOG.debug("[FAIL] Cannot find the file of: {}", resource.getUri());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the uris of the resources imported by the css resource, as recorded during processing. When not recorded
+   *         yet, an empty list is returned if the file doesn't contain any import or null if the imports are unknown.
+   */
+  private List<String> getImports(final Resource resource, final File file) {
+    final List<String> imports = dependencyIndex.getImports(resource.getUri());
+    if (imports != null) {
+      return imports;
+    }
+    try {
+      final String content = FileUtils.readFileToString(file, context.getConfig().getEncoding());
+      return content.contains("@import") ? null : Collections.<String> emptyList();
+    } catch (final IOException e) {
+      LOG.debug("[FAIL] Cannot read the file of: {}", resource.getUri());
+      return null;
+    }
+  }
+
+  /**
+   * Inspects the watched files and invalidates the groups containing the changed ones. The invalidated groups are not
+   * watched anymore, until they are loaded again.
+   */
+  public void checkAndNotify() {
+    final Context current = watchContext;
+    if (current == null || watchedFiles.isEmpty()) {
+      return;
+    }
+    Context.set(current, current.getConfig());
+    try {
+      for (final WatchedFile watchedFile : watchedFiles.values()) {
+        if (watchedFile.isChanged()) {
+          onFileChanged(watchedFile);
+        }
+      }
+    } catch (final Exception e) {
+      LOG.error("Could not check the watched files", e);
+    } finally {
+      Context.unset();
+    }
+  }
+
+  private synchronized void onFileChanged(final WatchedFile watchedFile) {
+    LOG.debug("Changed file: {}", watchedFile.file);
+    watchedFiles.remove(watchedFile.file);
+    lifecycleCallback.onResourceChanged(watchedFile.resource);
+    for (final CacheKey key : getDependentKeys(watchedFile)) {
+      watchedKeys.remove(key);
+      cacheStrategy.put(key, null);
+    }
+    removeUnwatchedFiles();
+    // the changed resource may be imported by other resources, whose fingerprint is unchanged.
+    preProcessedResourceCache.clear();
+  }
+
+  /**
+   * @return the keys of all the groups depending on the file, including the ones not watched.
+   */
+  private Set<CacheKey> getDependentKeys(final WatchedFile watchedFile) {
+    final Set<CacheKey> keys = new HashSet<CacheKey>();
+    synchronized (watchedFile.uris) {
+      for (final String uri : watchedFile.uris) {
+        keys.addAll(dependencyIndex.getDependentKeys(uri));
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Stops watching the files not contained by any watched group.
+   */
+  private void removeUnwatchedFiles() {
+    final Iterator<WatchedFile> iterator = watchedFiles.values().iterator();
+    while (iterator.hasNext()) {
+      if (!isWatched(getDependentKeys(iterator.next()))) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private boolean isWatched(final Set<CacheKey> keys) {
+    for (final CacheKey key : keys) {
+      if (watchedKeys.contains(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Stops watching all files. The groups are watched again when loaded in the cache.
+   */
+  public synchronized void clear() {
+    watchedFiles.clear();
+    watchedKeys.clear();
+  }
+
+  /**
+   * The state of a file when it started to be watched.
+   */
+  private static final class WatchedFile {
+    private final File file;
+    private final Resource resource;
+    private final long lastModified;
+    private final long length;
+    /**
+     * The uris of the resources read from the file.
+     */
+    private final Set<String> uris = Collections.synchronizedSet(new HashSet<String>());
+
+    WatchedFile(final File file, final Resource resource) {
+      this.file = file;
+      this.resource = resource;
+      this.lastModified = file.lastModified();
+      this.length = file.length();
+    }
+
+    boolean isChanged() {
+      return file.lastModified() != lastModified || file.length() != length;
+    }
+  }
+}
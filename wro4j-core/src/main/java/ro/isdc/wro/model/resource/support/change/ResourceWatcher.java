@@ -6,17 +6,17 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringWriter;
-import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import javax.servlet.http.HttpServletRequest;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,18 +27,16 @@ import ro.isdc.wro.config.Context;
 import ro.isdc.wro.config.ReadOnlyContext;
 import ro.isdc.wro.config.support.ContextPropagatingCallable;
 import ro.isdc.wro.http.WroFilter;
-import ro.isdc.wro.http.handler.ResourceWatcherRequestHandler;
-import ro.isdc.wro.http.support.PreserveDetailsRequestWrapper;
 import ro.isdc.wro.manager.callback.LifecycleCallbackRegistry;
 import ro.isdc.wro.model.WroModelInspector;
 import ro.isdc.wro.model.factory.WroModelFactory;
 import ro.isdc.wro.model.group.Group;
 import ro.isdc.wro.model.group.Inject;
 import ro.isdc.wro.model.group.processor.Injector;
+import ro.isdc.wro.model.group.processor.PreProcessedResourceCache;
 import ro.isdc.wro.model.resource.Resource;
 import ro.isdc.wro.model.resource.ResourceType;
 import ro.isdc.wro.model.resource.locator.factory.UriLocatorFactory;
-import ro.isdc.wro.model.resource.locator.support.DispatcherStreamLocator;
 import ro.isdc.wro.model.resource.processor.Destroyable;
 import ro.isdc.wro.model.resource.processor.ResourcePreProcessor;
 import ro.isdc.wro.model.resource.processor.decorator.ExceptionHandlingProcessorDecorator;
@@ -51,7 +49,11 @@ import ro.isdc.wro.util.WroUtil;
 
 /**
  * A runnable responsible for watching if any resources were changed and invalidate the cache entry for the group
- * containing obsolete resources. This class is thread-safe.
+ * containing obsolete resources. The resources (including the imported ones) discovered while checking a group are
+ * recorded in the {@link ResourceDependencyIndex}, thus when the content of a resource changes, all the groups
+ * depending on it are invalidated at once, instead of detecting the same change again while checking each of them.
+ * The imports of a css resource are read from the graph recorded during processing, the resource being parsed only if
+ * its imports are unknown. This class is thread-safe.
  *
  * @author Alex Objelean
  * @created 06 Aug 2012
@@ -110,7 +112,9 @@ public class ResourceWatcher
   @Inject
   private ReadOnlyContext context;
   @Inject
-  private DispatcherStreamLocator dispatcherLocator;
+  private PreProcessedResourceCache preProcessedResourceCache;
+  @Inject
+  private ResourceDependencyIndex dependencyIndex;
   /**
    * Executor responsible for running the check asynchronously.
    */
@@ -128,6 +132,29 @@ public class ResourceWatcher
       super.destroy();
     };
   };
+  /**
+   * Executor running the asynchronous checks, one at a time. It is distinct from the executor checking the resources of
+   * a group in parallel, since an asynchronous check waits for the resources to be checked.
+   */
+  private final DestroyableLazyInitializer<ExecutorService> asyncCheckExecutorRef = new DestroyableLazyInitializer<ExecutorService>() {
+    @Override
+    protected ExecutorService initialize() {
+      return Executors.newSingleThreadExecutor(WroUtil.createDaemonThreadFactory(ResourceWatcher.class.getName()
+          + "-async"));
+    }
+
+    @Override
+    public void destroy() {
+      if (isInitialized()) {
+        get().shutdownNow();
+      }
+      super.destroy();
+    };
+  };
+  /**
+   * The keys whose asynchronous check is pending. Used to avoid scheduling the same check more than once.
+   */
+  private final Set<CacheKey> pendingKeys = Collections.synchronizedSet(new HashSet<CacheKey>());
 
   /**
    * Default constructor with a NoOP callback.
@@ -138,8 +165,8 @@ public class ResourceWatcher
 
   /**
    * Will try an asynchronous check if the async configuration is enabled. If async check is not configured, a
-   * synchronous check will be performed. The async check assumes that the {@link ResourceWatcherRequestHandler} is
-   * enabled.
+   * synchronous check will be performed. The async check runs in process, on an internal thread, using a copy of the
+   * current context which doesn't depend on the request. A key whose async check is pending is not scheduled again.
    * <p/>
    * If the async check is not allowed (the request was not passed through {@link WroFilter}) - no check will be
    * performed. This is important for use-cases when wro resource is included using a taglib which performs a wro api
@@ -152,9 +179,12 @@ public class ResourceWatcher
     boolean checkInvoked = false;
     if (context.getConfig().isResourceWatcherAsync()) {
       if (isAsyncCheckAllowed()) {
-        LOG.debug("Checking resourceWatcher asynchronously...");
-        final Callable<Void> callable = createAsyncCheckCallable(cacheKey);
-        submit(callable);
+        if (pendingKeys.add(cacheKey)) {
+          LOG.debug("Checking resourceWatcher asynchronously...");
+          submit(createAsyncCheckCallable(cacheKey));
+        } else {
+          LOG.debug("Async check already pending for: {}", cacheKey);
+        }
         checkInvoked = true;
       }
     } else {
@@ -179,7 +209,7 @@ public class ResourceWatcher
    *          {@link Callable} to submit for asynchronous execution.
    */
   void submit(final Callable<Void> callable) {
-    executorServiceRef.get().submit(callable);
+    asyncCheckExecutorRef.get().submit(callable);
   }
 
   /**
@@ -195,9 +225,13 @@ public class ResourceWatcher
     watch.start("detect changes");
     try {
       final Group group = new WroModelInspector(modelFactory.create()).getGroupByName(cacheKey.getGroupName());
-      if (isGroupChanged(group.collectResourcesOfType(cacheKey.getType()), callback)) {
+      final Set<String> changedUris = Collections.synchronizedSet(new HashSet<String>());
+      if (isGroupChanged(group.collectResourcesOfType(cacheKey.getType()), cacheKey, callback, changedUris)) {
         callback.onGroupChanged(cacheKey);
         cacheStrategy.put(cacheKey, null);
+        invalidateDependentKeys(cacheKey, callback, changedUris);
+        // the changed resource may be imported by other resources, whose fingerprint is unchanged.
+        preProcessedResourceCache.clear();
       }
       resourceChangeDetector.reset();
     } catch (final Exception e) {
@@ -208,6 +242,28 @@ public class ResourceWatcher
     }
   }
 
+  /**
+   * Invalidates the other groups depending on the resources whose content changed and notifies the callback about each
+   * of them. The change is marked as handled for these groups, thus it is not detected again when they are checked.
+   */
+  private void invalidateDependentKeys(final CacheKey cacheKey, final Callback callback,
+      final Set<String> changedUris) {
+    final Set<CacheKey> invalidatedKeys = new HashSet<CacheKey>();
+    invalidatedKeys.add(cacheKey);
+    for (final String uri : new ArrayList<String>(changedUris)) {
+      if (resourceChangeDetector.isContentChanged(uri)) {
+        for (final CacheKey dependentKey : dependencyIndex.getDependentKeys(uri)) {
+          resourceChangeDetector.markChangeHandled(uri, dependentKey.getGroupName());
+          if (invalidatedKeys.add(dependentKey)) {
+            LOG.debug("Invalidating {} which depends on changed uri: {}", dependentKey, uri);
+            callback.onGroupChanged(dependentKey);
+            cacheStrategy.put(dependentKey, null);
+          }
+        }
+      }
+    }
+  }
+
   /**
    * Invoked when exception occurs.
    */
@@ -217,7 +273,8 @@ public class ResourceWatcher
     LOG.debug("[FAIL] detecting resource change ", e);
   }
 
-  private boolean isGroupChanged(final Group group, final Callback callback) {
+  private boolean isGroupChanged(final Group group, final CacheKey cacheKey, final Callback callback,
+      final Set<String> changedUris) {
     final List<Resource> resources = group.getResources();
     final AtomicBoolean isChanged = new AtomicBoolean(false);
     final List<Future<?>> futures = new ArrayList<Future<?>>();
@@ -228,12 +285,12 @@ public class ResourceWatcher
           futures.add(executorServiceRef.get().submit(ContextPropagatingCallable.decorate(new Callable<Void>() {
             public Void call()
                 throws Exception {
-              checkResourceChange(resource, group, callback, isChanged);
+              checkResourceChange(resource, cacheKey, callback, isChanged, changedUris);
               return null;
             }
           })));
         } else {
-          checkResourceChange(resource, group, callback, isChanged);
+          checkResourceChange(resource, cacheKey, callback, isChanged, changedUris);
         }
       }
       if (isAsync) {
@@ -253,10 +310,10 @@ public class ResourceWatcher
   /**
    * Will check if a given resource was changed and will invoke the appropriate callback.
    */
-  private void checkResourceChange(final Resource resource, final Group group, final Callback callback,
-      final AtomicBoolean isChanged)
+  private void checkResourceChange(final Resource resource, final CacheKey cacheKey, final Callback callback,
+      final AtomicBoolean isChanged, final Set<String> changedUris)
       throws Exception {
-    if (isChanged(resource, group.getName())) {
+    if (isChanged(resource, cacheKey, changedUris, new HashSet<String>())) {
       isChanged.compareAndSet(false, true);
       callback.onResourceChanged(resource);
       lifecycleCallback.onResourceChanged(resource);
@@ -269,48 +326,72 @@ public class ResourceWatcher
    *
    * @param resource
    *          the {@link Resource} to check.
+   * @param cacheKey
+   *          the {@link CacheKey} of the group depending on the resource.
+   * @param changedUris
+   *          collects the uri of each changed resource, including the imported ones.
+   * @param visitedUris
+   *          the uris already checked along with the resource, used to stop at recursive imports.
    * @return true if the resource was changed.
    */
-  private boolean isChanged(final Resource resource, final String groupName) {
+  private boolean isChanged(final Resource resource, final CacheKey cacheKey, final Set<String> changedUris,
+      final Set<String> visitedUris) {
+    final String uri = resource.getUri();
+    if (!visitedUris.add(uri)) {
+      return false;
+    }
     boolean changed = false;
     try {
-      final String uri = resource.getUri();
-      // using AtomicBoolean because we need to mutate this variable inside an anonymous class.
-      final AtomicBoolean changeDetected = new AtomicBoolean(resourceChangeDetector.checkChangeForGroup(uri, groupName));
-      if (!changeDetected.get() && resource.getType() == ResourceType.CSS) {
-        final Reader reader = new InputStreamReader(locatorFactory.locate(uri));
-        LOG.debug("\tCheck @import directive from {}", resource);
-        createCssImportProcessor(changeDetected, groupName).process(resource, reader, new StringWriter());
+      dependencyIndex.addDependency(uri, cacheKey);
+      changed = resourceChangeDetector.checkChangeForGroup(uri, cacheKey.getGroupName());
+      if (changed) {
+        changedUris.add(uri);
+      } else if (resource.getType() == ResourceType.CSS) {
+        for (final String importedUri : getImports(resource)) {
+          final boolean isImportChanged = isChanged(Resource.create(importedUri, ResourceType.CSS), cacheKey,
+              changedUris, visitedUris);
+          LOG.debug("\tisImportChanged={}", isImportChanged);
+          // we need to continue in order to store the hash for all imported resources, otherwise the change won't be
+          // computed correctly.
+          changed |= isImportChanged;
+        }
       }
-      changed = changeDetected.get();
     } catch (final IOException e) {
       LOG.debug("[FAIL] Cannot check {} resource (Exception message: {}). Assuming it is unchanged...", resource,
           e.getMessage());
     }
-    LOG.debug("resource={}, changed={}", resource.getUri(), changed);
+    LOG.debug("resource={}, changed={}", uri, changed);
     return changed;
   }
 
   /**
-   * @param changeDetected
-   *          - flag indicating if the change is detected. When this value is true, the processing will be interrupted
-   *          by throwing a {@link RuntimeException}.
-   * @param groupName
-   *          the name of the group being processed.
-   * @return a processor used to detect changes in imported resources.
+   * @return the uris imported by the css resource. The imports recorded during processing are used when available,
+   *         otherwise the resource is parsed.
+   */
+  private List<String> getImports(final Resource resource)
+      throws IOException {
+    final List<String> recordedImports = dependencyIndex.getImports(resource.getUri());
+    if (recordedImports != null) {
+      return recordedImports;
+    }
+    final List<String> foundImports = new ArrayList<String>();
+    final Reader reader = new InputStreamReader(locatorFactory.locate(resource.getUri()));
+    LOG.debug("\tCheck @import directive from {}", resource);
+    createCssImportProcessor(foundImports).process(resource, reader, new StringWriter());
+    return foundImports;
+  }
+
+  /**
+   * @param foundImports
+   *          collects the uri of each import found in the processed resource.
+   * @return a processor used to find the imported resources.
    */
-  private ResourcePreProcessor createCssImportProcessor(final AtomicBoolean changeDetected, final String groupName) {
+  private ResourcePreProcessor createCssImportProcessor(final List<String> foundImports) {
     final ResourcePreProcessor cssImportProcessor = new AbstractCssImportPreProcessor() {
       @Override
       protected void onImportDetected(final String importedUri) {
         LOG.debug("Found @import {}", importedUri);
-        final boolean isImportChanged = isChanged(Resource.create(importedUri, ResourceType.CSS), groupName);
-        LOG.debug("\tisImportChanged={}", isImportChanged);
-        if (isImportChanged) {
-          changeDetected.set(true);
-          // we need to continue in order to store the hash for all imported resources, otherwise the change won't be
-          // computed correctly.
-        }
+        foundImports.add(importedUri);
       };
 
       @Override
@@ -339,31 +420,26 @@ public class ResourceWatcher
     return processor;
   }
 
+  /**
+   * @return a {@link Callable} performing the check in process, using a copy of the current context holding only the
+   *         servlet context and the configuration, thus the check doesn't depend on the request which triggered it. The
+   *         resources which can be located only by dispatching a request are considered unchanged.
+   */
   private Callable<Void> createAsyncCheckCallable(final CacheKey cacheKey) {
-    final HttpServletRequest originalRequest = Context.get().getRequest();
-    LOG.debug("OriginalRequest: url={}, uri={}, servletPath={}", originalRequest.getRequestURL(),
-        originalRequest.getRequestURI(), originalRequest.getServletPath());
-    final HttpServletRequest request = new PreserveDetailsRequestWrapper(originalRequest);
-    return ContextPropagatingCallable.decorate(new Callable<Void>() {
+    final Context detachedContext = Context.detachedContext(Context.get(), null);
+    return new Callable<Void>() {
       public Void call()
           throws Exception {
-        final String location = ResourceWatcherRequestHandler.createHandlerRequestPath(cacheKey, request);
+        Context.set(detachedContext, detachedContext.getConfig());
         try {
-          dispatcherLocator.locateExternal(request, location);
+          check(cacheKey);
           return null;
-        } catch (final IOException e) {
-          final StringBuffer message = new StringBuffer("Could not check the following cacheKey: " + cacheKey);
-          if (e instanceof SocketTimeoutException) {
-            message.append(". The invocation of ").append(location).append(
-                " timed out. Consider increasing the connectionTimeout configuration.");
-            LOG.error(message.toString());
-          } else {
-            LOG.error(message.toString(), e);
-          }
-          throw e;
+        } finally {
+          pendingKeys.remove(cacheKey);
+          Context.unset();
         }
       }
-    });
+    };
   }
 
   /**
@@ -375,6 +451,8 @@ public class ResourceWatcher
 
   public void destroy()
       throws Exception {
+    asyncCheckExecutorRef.destroy();
     executorServiceRef.destroy();
+    pendingKeys.clear();
   }
 }
@@ -24,6 +24,7 @@ import ro.isdc.wro.WroRuntimeException;
 public abstract class AbstractDigesterHashStrategy
   implements HashStrategy {
   private static final Logger LOG = LoggerFactory.getLogger(AbstractDigesterHashStrategy.class);
+  private static final int IO_BUFFER_SIZE = 4096;
 
 
   public String getHash(final InputStream input)
@@ -33,7 +34,13 @@ public abstract class AbstractDigesterHashStrategy
     }
     try {
       final MessageDigest messageDigest = newMessageDigest();
-      final byte[] digest = messageDigest.digest(IOUtils.toByteArray(input));
+      // the content is digested while read, without being buffered.
+      final byte[] buffer = new byte[IO_BUFFER_SIZE];
+      int len = 0;
+      while ((len = input.read(buffer)) >= 0) {
+        messageDigest.update(buffer, 0, len);
+      }
+      final byte[] digest = messageDigest.digest();
       final String hash = new BigInteger(1, digest).toString(16);
 
       LOG.debug("{} hash: {}", getClass().getSimpleName(), hash);
@@ -44,6 +44,13 @@ public abstract class LazyInitializer<T> {
     return object != null;
   }
 
+  /**
+   * @return the initialized object, or null if the object is not initialized yet. Never triggers the initialization.
+   */
+  public final T getIfInitialized() {
+    return object;
+  }
+
   /**
    * Creates and initializes the object managed by this {@code LazyInitializer}. This method is called by {@link #get()}
    * when the object is accessed for the first time. An implementation can focus on the creation of the object. No
@@ -12,6 +12,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
 import java.util.Enumeration;
 import java.util.Locale;
 import java.util.Properties;
@@ -19,6 +22,7 @@ import java.util.TimeZone;
 import java.util.UUID;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -95,6 +99,37 @@ public final class WroUtil {
     return DATE_FORMAT.format(milliseconds);
   }
 
+  /**
+   * Retrieves the last modification timestamp of the resource identified by the url. For file urls the timestamp is
+   * read from the file system, without opening a connection.
+   *
+   * @param url
+   *          of the resource (can be null).
+   * @return the last modification timestamp or 0 if unknown.
+   */
+  public static long getLastModified(final URL url)
+      throws IOException {
+    if (url == null) {
+      return 0;
+    }
+    if ("file".equals(url.getProtocol())) {
+      return FileUtils.toFile(url).lastModified();
+    }
+    final URLConnection connection = url.openConnection();
+    if (connection instanceof JarURLConnection) {
+      // read the time of the entry from a private copy of the jar, in order to close it right away
+      connection.setUseCaches(false);
+      final JarURLConnection jarConnection = (JarURLConnection) connection;
+      try {
+        final JarEntry entry = jarConnection.getJarEntry();
+        return entry == null ? 0 : Math.max(0, entry.getTime());
+      } finally {
+        jarConnection.getJarFile().close();
+      }
+    }
+    return connection.getLastModified();
+  }
+
   /**
    * Retrieve pathInfo from a given location.
    *
@@ -205,8 +240,21 @@ public final class WroUtil {
    *
    * @return true if this request support gzip encoding.
    */
-  @SuppressWarnings("unchecked")
   public static boolean isGzipSupported(final HttpServletRequest request) {
+    final String headerValue = getAcceptEncoding(request);
+    return headerValue != null && PATTERN_GZIP.matcher(headerValue).find();
+  }
+
+  /**
+   * Finds the value of the Accept-Encoding header, including the case when its name was mangled by a proxy or a
+   * firewall.
+   *
+   * @param request
+   *          the request to inspect (can be null).
+   * @return the value of the Accept-Encoding header or null if there is no such header.
+   */
+  @SuppressWarnings("unchecked")
+  public static String getAcceptEncoding(final HttpServletRequest request) {
     if (request != null) {
       final Enumeration<String> headerNames = request.getHeaderNames();
       if (headerNames != null) {
@@ -214,14 +262,12 @@ public final class WroUtil {
           final String headerName = headerNames.nextElement();
           final Matcher m = PATTERN_ACCEPT_ENCODING.matcher(headerName);
           if (m.find()) {
-            final String headerValue = request.getHeader(headerName);
-            final Matcher mValue = PATTERN_GZIP.matcher(headerValue);
-            return mValue.find();
+            return request.getHeader(headerName);
           }
         }
       }
     }
-    return false;
+    return null;
   }
 
   /**
@@ -0,0 +1,164 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.util.concurrent;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.isdc.wro.util.WroUtil;
+
+
+/**
+ * Runs tasks asynchronously, coalescing the tasks submitted with the same key: while a task is running, the tasks
+ * submitted with the same key are queued and run only after it completes. This is useful when the first task computes
+ * a result (ex: populates a cache) which all the others can reuse.
+ * <p/>
+ * The number of tasks submitted and not started yet (including the ones waiting for a task with the same key) is
+ * bounded: when the limit is reached, the submitted tasks are rejected, allowing the caller to run them differently.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public class CoalescingTaskExecutor<K> {
+  private static final Logger LOG = LoggerFactory.getLogger(CoalescingTaskExecutor.class);
+  /**
+   * The tasks waiting for the task running with the same key.
+   */
+  private final Map<K, List<Runnable>> waitingTasks = new HashMap<K, List<Runnable>>();
+  private final ExecutorService executor;
+  private final int maxPendingTasks;
+  /**
+   * The number of submitted tasks which were not started yet. Guarded by the lock of {@link #waitingTasks}.
+   */
+  private int pendingCount;
+
+  /**
+   * @param poolSize
+   *          the number of threads running the tasks.
+   * @param maxPendingTasks
+   *          the maximum number of submitted tasks which were not started yet.
+   * @param threadName
+   *          the prefix of the thread names.
+   */
+  public CoalescingTaskExecutor(final int poolSize, final int maxPendingTasks, final String threadName) {
+    isTrue(poolSize > 0, "The pool size must be a positive number");
+    isTrue(maxPendingTasks > 0, "The maximum number of pending tasks must be a positive number");
+    notNull(threadName);
+    this.maxPendingTasks = maxPendingTasks;
+    executor = Executors.newFixedThreadPool(poolSize, WroUtil.createDaemonThreadFactory(threadName));
+  }
+
+  /**
+   * Submits a task for asynchronous execution. If a task with the same key is running, the submitted task is run after
+   * it completes.
+   *
+   * @return true if the task was accepted, false if it was rejected because too many tasks are pending.
+   */
+  public boolean submit(final K key, final Runnable task) {
+    notNull(key);
+    notNull(task);
+    final Runnable countedTask = new Runnable() {
+      public void run() {
+        synchronized (waitingTasks) {
+          pendingCount--;
+        }
+        task.run();
+      }
+    };
+    synchronized (waitingTasks) {
+      if (pendingCount >= maxPendingTasks) {
+        LOG.debug("Rejected task with key {}, since {} tasks are pending", key, pendingCount);
+        return false;
+      }
+      pendingCount++;
+      final List<Runnable> tasks = waitingTasks.get(key);
+      if (tasks != null) {
+        LOG.debug("Task with key {} is waiting for the running one", key);
+        tasks.add(countedTask);
+        return true;
+      }
+      waitingTasks.put(key, new ArrayList<Runnable>());
+    }
+    try {
+      executor.execute(new Runnable() {
+        public void run() {
+          try {
+            countedTask.run();
+          } finally {
+            runWaitingTasks(key);
+          }
+        }
+      });
+    } catch (final RejectedExecutionException e) {
+      LOG.debug("Executor is destroyed, rejected task with key {}", key);
+      synchronized (waitingTasks) {
+        pendingCount--;
+        waitingTasks.remove(key);
+      }
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Runs in parallel the tasks which were waiting for the task with the provided key. The key is released only when no
+   * other task is waiting.
+   */
+  private void runWaitingTasks(final K key) {
+    while (true) {
+      final List<Runnable> tasks;
+      synchronized (waitingTasks) {
+        tasks = waitingTasks.get(key);
+        if (tasks.isEmpty()) {
+          waitingTasks.remove(key);
+          return;
+        }
+        waitingTasks.put(key, new ArrayList<Runnable>());
+      }
+      for (final Runnable task : tasks) {
+        executor.execute(task);
+      }
+    }
+  }
+
+  /**
+   * @return the number of tasks waiting for a running task with the same key.
+   */
+  public int getWaitingCount() {
+    synchronized (waitingTasks) {
+      int count = 0;
+      for (final List<Runnable> tasks : waitingTasks.values()) {
+        count += tasks.size();
+      }
+      return count;
+    }
+  }
+
+  /**
+   * @return the number of submitted tasks which were not started yet.
+   */
+  public int getPendingCount() {
+    synchronized (waitingTasks) {
+      return pendingCount;
+    }
+  }
+
+  /**
+   * Stops the threads running the tasks.
+   */
+  public void destroy() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright Alex Objelean
+ */
+package ro.isdc.wro.util.concurrent;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.isdc.wro.util.WroUtil;
+
+
+/**
+ * Runs chunks of tasks in parallel using a bounded pool of daemon threads, which can be safely shared by nested
+ * submissions (ex: a task submitting other tasks and waiting for their result).
+ * <p/>
+ * The thread submitting the tasks doesn't block while the workers are busy: it runs the first task itself and then
+ * steals, starting from the tail, all the tasks not yet picked by a worker. Because a waiting thread only waits for
+ * tasks already running on other threads, the pool cannot be starved by nested submissions, regardless of its size.
+ * The results are always returned in the order of the submitted tasks.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public class WorkStealingExecutor {
+  private static final Logger LOG = LoggerFactory.getLogger(WorkStealingExecutor.class);
+  private final int poolSize;
+  private final String threadName;
+  private final AtomicInteger activeCount = new AtomicInteger();
+  private final AtomicLong completedCount = new AtomicLong();
+  private final AtomicLong stolenCount = new AtomicLong();
+  private volatile ThreadPoolExecutor executor;
+
+  /**
+   * @param poolSize
+   *          the maximum number of worker threads.
+   * @param threadName
+   *          the prefix of the worker thread names.
+   */
+  public WorkStealingExecutor(final int poolSize, final String threadName) {
+    isTrue(poolSize > 0, "The pool size must be a positive number");
+    notNull(threadName);
+    this.poolSize = poolSize;
+    this.threadName = threadName;
+  }
+
+  /**
+   * Runs the provided tasks in parallel. This is a blocking operation - it returns when all tasks are finished.
+   *
+   * @param callables
+   *          the tasks to run.
+   * @return the results of the tasks, in the same order as the tasks.
+   * @throws Exception
+   *           the exception thrown by the first failed task (in the order of the tasks).
+   */
+  public <T> List<T> invokeAll(final List<Callable<T>> callables)
+      throws Exception {
+    notNull(callables);
+    final List<FutureTask<T>> tasks = new ArrayList<FutureTask<T>>(callables.size());
+    for (final Callable<T> callable : callables) {
+      tasks.add(new FutureTask<T>(decorate(callable)));
+    }
+    final boolean isParallel = tasks.size() > 1;
+    final List<FutureTask<T>> rejectedTasks = new ArrayList<FutureTask<T>>();
+    if (isParallel) {
+      for (final FutureTask<T> task : tasks.subList(1, tasks.size())) {
+        try {
+          getExecutor().execute(task);
+        } catch (final RejectedExecutionException e) {
+          LOG.debug("Task rejected, it will be run by the submitting thread");
+          rejectedTasks.add(task);
+        }
+      }
+    }
+    if (!tasks.isEmpty()) {
+      tasks.get(0).run();
+    }
+    for (final FutureTask<T> task : rejectedTasks) {
+      task.run();
+    }
+    if (isParallel) {
+      // the workers consume the head of the queue, so steal from the tail to avoid contention
+      for (int i = tasks.size() - 1; i > 0; i--) {
+        final FutureTask<T> task = tasks.get(i);
+        if (getExecutor().remove(task)) {
+          stolenCount.incrementAndGet();
+          task.run();
+        } else if (getExecutor().isShutdown()) {
+          // the queued tasks are dropped when the executor is destroyed
+          task.run();
+        }
+      }
+    }
+    final List<T> results = new ArrayList<T>(tasks.size());
+    for (final FutureTask<T> task : tasks) {
+      results.add(await(task));
+    }
+    return results;
+  }
+
+  private <T> Callable<T> decorate(final Callable<T> callable) {
+    notNull(callable);
+    return new Callable<T>() {
+      public T call()
+          throws Exception {
+        activeCount.incrementAndGet();
+        try {
+          return callable.call();
+        } finally {
+          activeCount.decrementAndGet();
+          completedCount.incrementAndGet();
+        }
+      }
+    };
+  }
+
+  private <T> T await(final FutureTask<T> task)
+      throws Exception {
+    try {
+      return task.get();
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+
+  private ThreadPoolExecutor getExecutor() {
+    if (executor == null) {
+      synchronized (this) {
+        if (executor == null) {
+          LOG.debug("Parallel thread pool size: {}", poolSize);
+          final ThreadPoolExecutor newExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(), WroUtil.createDaemonThreadFactory(threadName));
+          newExecutor.allowCoreThreadTimeOut(true);
+          executor = newExecutor;
+        }
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * @return the maximum number of worker threads.
+   */
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  /**
+   * @return the number of tasks waiting for a worker.
+   */
+  public int getQueueSize() {
+    return executor == null ? 0 : executor.getQueue().size();
+  }
+
+  /**
+   * @return the number of tasks currently running, either by a worker or by a submitting thread.
+   */
+  public int getActiveCount() {
+    return activeCount.get();
+  }
+
+  /**
+   * @return the number of finished tasks.
+   */
+  public long getCompletedCount() {
+    return completedCount.get();
+  }
+
+  /**
+   * @return the number of tasks run by the submitting thread after being queued.
+   */
+  public long getStolenCount() {
+    return stolenCount.get();
+  }
+
+  /**
+   * Stops the worker threads. The tasks which are still queued won't be run.
+   */
+  public void destroy() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package ro.isdc.wro.util.io;
+
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+
+/**
+ * Holds the buffers used to chain the processors applied on the same content. The output of a processor is read by the
+ * next processor directly from the buffer (without being copied into an intermediate {@link String}) and only two
+ * buffers are used for the entire chain: the one being read and the one being written. The buffers are reused, thus
+ * the allocated memory is proportional to the largest output of a single processor instead of the sum of all
+ * outputs.
+ * <p/>
+ * A buffer is reused only after the processor reading it completes, thus it is safe to use with any processor which
+ * doesn't hold the reader or writer after it completes. This class is not thread-safe.
+ *
+ * @author Alex Objelean
+ * @since 1.8.1
+ */
+public final class PipelineBuffers {
+  private final int initialSize;
+  private ReusableCharArrayWriter current;
+  private ReusableCharArrayWriter spare;
+
+  /**
+   * @param initialSize
+   *          the initial size of each buffer, usually the size of the content being processed.
+   */
+  public PipelineBuffers(final int initialSize) {
+    this.initialSize = Math.max(initialSize, 32);
+  }
+
+  /**
+   * @return an empty {@link Writer} where the next processor writes its output. The previously returned writer is not
+   *         affected until the next invocation of this method.
+   */
+  public Writer nextWriter() {
+    final ReusableCharArrayWriter writer = spare != null ? spare : new ReusableCharArrayWriter(initialSize);
+    writer.reset();
+    spare = current;
+    current = writer;
+    return writer;
+  }
+
+  /**
+   * @return a {@link Reader} of the content written by the last processor, which can be used as input for the next
+   *         processor.
+   */
+  public Reader getReader() {
+    checkWritten();
+    return current.toReader();
+  }
+
+  /**
+   * Writes the content written by the last processor to the provided writer.
+   */
+  public void writeTo(final Writer writer)
+      throws IOException {
+    checkWritten();
+    current.writeTo(writer);
+  }
+
+  /**
+   * @return the content written by the last processor.
+   */
+  @Override
+  public String toString() {
+    checkWritten();
+    return current.toString();
+  }
+
+  private void checkWritten() {
+    if (current == null) {
+      throw new IllegalStateException("Nothing was written yet");
+    }
+  }
+
+  /**
+   * A {@link CharArrayWriter} which can be read without copying its content.
+   */
+  private static final class ReusableCharArrayWriter
+      extends CharArrayWriter {
+    ReusableCharArrayWriter(final int initialSize) {
+      super(initialSize);
+    }
+
+    Reader toReader() {
+      return new CharArrayReader(buf, 0, count);
+    }
+  }
+}
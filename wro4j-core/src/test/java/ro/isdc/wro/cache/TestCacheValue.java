@@ -10,6 +10,8 @@ import org.junit.Test;
 
 import ro.isdc.wro.config.Context;
 import ro.isdc.wro.config.jmx.WroConfiguration;
+import ro.isdc.wro.http.support.ContentCodec;
+import ro.isdc.wro.http.support.ContentCodecs;
 
 /**
  * @author Alex Objelean
@@ -56,6 +58,78 @@ public class TestCacheValue {
     Assert.assertNotNull(entry.getGzippedContent());
   }
 
+  @Test
+  public void shouldEncodeRawContentUsingConfiguredEncoding()
+      throws Exception {
+    final String content = "\u00e9l\u00e8ve";
+    Context.get().getConfig().setEncoding("UTF-16");
+    final CacheValue entry = CacheValue.valueOf(content, "hash");
+    Assert.assertArrayEquals(content.getBytes("UTF-16"), entry.getRawBytes());
+  }
+
+  @Test
+  public void shouldUpdateRawBytesWhenRawContentIsChanged()
+      throws Exception {
+    final CacheValue entry = CacheValue.valueOf(RAW_CONTENT, "hash");
+    entry.setRawContent("changed");
+    Assert.assertArrayEquals("changed".getBytes(WroConfiguration.DEFAULT_ENCODING), entry.getRawBytes());
+  }
+
+  @Test
+  public void shouldHaveNoRawBytesForNullContent() {
+    final CacheValue entry = CacheValue.valueOf(null, null);
+    Assert.assertNull(entry.getRawBytes());
+  }
+
+  @Test
+  public void shouldCacheContentOfAllConfiguredEncodings() {
+    final WroConfiguration config = Context.get().getConfig();
+    config.setCacheGzippedContent(true);
+    config.setContentEncodings("deflate,gzip");
+    final CacheValue entry = CacheValue.valueOf(RAW_CONTENT, "hash");
+    final long weight = entry.getWeight();
+    Assert.assertSame(entry.getEncodedContent(ContentCodecs.DEFLATE), entry.getEncodedContent(ContentCodecs.DEFLATE));
+    Assert.assertSame(entry.getGzippedContent(), entry.getEncodedContent(ContentCodecs.GZIP));
+    Assert.assertEquals(weight, entry.getWeight());
+    Assert.assertTrue(weight > RAW_CONTENT.length());
+  }
+
+  @Test
+  public void shouldCompressContentOnDemandWhenCachingIsDisabled() {
+    final CacheValue entry = CacheValue.valueOf(RAW_CONTENT, "hash");
+    Assert.assertEquals(3 * RAW_CONTENT.length(), entry.getWeight());
+    final byte[] content = entry.getEncodedContent(ContentCodecs.DEFLATE);
+    Assert.assertSame(content, entry.getEncodedContent(ContentCodecs.DEFLATE));
+    Assert.assertEquals(3 * RAW_CONTENT.length() + content.length, entry.getWeight());
+  }
+
+  @Test
+  public void shouldCompressContentAtConfiguredLevelWhenCachingIsDisabled() {
+    Context.get().getConfig().setCompressionLevel(1);
+    final CacheValue entry = CacheValue.valueOf(RAW_CONTENT, "hash");
+    final int[] levels = new int[1];
+    entry.getEncodedContent(new ContentCodec() {
+      public String getEncoding() {
+        return "custom";
+      }
+
+      public byte[] encode(final byte[] content, final int level) {
+        levels[0] = level;
+        return content;
+      }
+    });
+    Assert.assertEquals(1, levels[0]);
+  }
+
+  @Test
+  public void shouldUpdateValidatorsWhenLastModifiedIsSet() {
+    final CacheValue entry = CacheValue.valueOf(RAW_CONTENT, "hash");
+    entry.getValidators();
+    entry.setLastModified(1000);
+    Assert.assertEquals(1000, entry.getLastModified());
+    Assert.assertEquals(1000, entry.getValidators().getLastModified());
+  }
+
   @After
   public void tearDown() {
     Context.unset();
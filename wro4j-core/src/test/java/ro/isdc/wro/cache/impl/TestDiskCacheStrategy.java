@@ -0,0 +1,216 @@
+package ro.isdc.wro.cache.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ro.isdc.wro.cache.CacheKey;
+import ro.isdc.wro.cache.CacheValue;
+import ro.isdc.wro.config.Context;
+import ro.isdc.wro.manager.factory.BaseWroManagerFactory;
+import ro.isdc.wro.model.WroModel;
+import ro.isdc.wro.model.group.Group;
+import ro.isdc.wro.model.group.processor.InjectorBuilder;
+import ro.isdc.wro.model.resource.Resource;
+import ro.isdc.wro.model.resource.ResourceType;
+import ro.isdc.wro.util.WroTestUtils;
+
+
+/**
+ * @author Alex Objelean
+ */
+public class TestDiskCacheStrategy {
+  private static final String CONTENT = "var foo = 'Hello World';";
+  private File directory;
+  private File resourcesDirectory;
+  private final CacheKey key = new CacheKey("g1", ResourceType.JS, true).addAttribute("browser", "chrome");
+
+  @BeforeClass
+  public static void onBeforeClass() {
+    assertEquals(0, Context.countActive());
+  }
+
+  @AfterClass
+  public static void onAfterClass() {
+    assertEquals(0, Context.countActive());
+  }
+
+  @Before
+  public void setUp() {
+    directory = new File(FileUtils.getTempDirectory(), "wro4j-disk-cache-" + System.nanoTime());
+    resourcesDirectory = new File(directory.getPath() + "-resources");
+    Context.set(Context.standaloneContext());
+    Context.get().getConfig().setDiskCacheDirectory(directory.getPath());
+  }
+
+  @After
+  public void tearDown() {
+    Context.unset();
+    FileUtils.deleteQuietly(directory);
+    FileUtils.deleteQuietly(resourcesDirectory);
+  }
+
+  private DiskCacheStrategy createVictim(final String resourceName) {
+    final File resource = new File(resourcesDirectory, resourceName);
+    try {
+      if (!resource.exists()) {
+        FileUtils.write(resource, CONTENT);
+      }
+      final String resourceUri = resource.toURI().toURL().toString();
+      final WroModel model = new WroModel().addGroup(new Group("g1").addResource(Resource.create(resourceUri)));
+      final BaseWroManagerFactory factory = new BaseWroManagerFactory().setModelFactory(WroTestUtils.simpleModelFactory(model));
+      final DiskCacheStrategy victim = new DiskCacheStrategy();
+      InjectorBuilder.create(factory).build().inject(victim);
+      return victim;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Test
+  public void shouldServeStoredEntryAfterRestart() {
+    final DiskCacheStrategy victim = createVictim("a.js");
+    final CacheValue stored = CacheValue.valueOf(CONTENT, "hash");
+    stored.setLastModified(1000);
+    victim.put(key, stored);
+    victim.destroy();
+
+    final CacheValue value = createVictim("a.js").get(key);
+    assertNotNull(value);
+    assertEquals(CONTENT, value.getRawContent());
+    assertEquals("hash", value.getHash());
+    assertEquals(1000, value.getLastModified());
+  }
+
+  @Test
+  public void shouldNotServeEntriesStoredForDifferentModel() {
+    final DiskCacheStrategy victim = createVictim("a.js");
+    victim.put(key, CacheValue.valueOf(CONTENT, "hash"));
+    victim.destroy();
+
+    assertNull(createVictim("b.js").get(key));
+    // the folder of the stale fingerprint is deleted
+    assertEquals(1, directory.listFiles().length);
+    assertTrue(new File(directory.listFiles()[0], DiskCacheStrategy.MARKER_FILE).isFile());
+  }
+
+  @Test
+  public void shouldDeleteCorruptedEntry()
+      throws Exception {
+    final DiskCacheStrategy victim = createVictim("a.js");
+    victim.put(key, CacheValue.valueOf(CONTENT, "hash"));
+    victim.destroy();
+    final File entry = getEntryFiles().iterator().next();
+    final RandomAccessFile file = new RandomAccessFile(entry, "rw");
+    try {
+      file.seek(file.length() - 1);
+      file.write('X');
+    } finally {
+      file.close();
+    }
+
+    assertNull(createVictim("a.js").get(key));
+    assertEquals(0, getEntryFiles().size());
+  }
+
+  @Test
+  public void shouldDeleteEntryWhenNullValueIsPut() {
+    final DiskCacheStrategy victim = createVictim("a.js");
+    victim.put(key, CacheValue.valueOf(CONTENT, "hash"));
+    // completes the pending writes
+    victim.destroy();
+    assertEquals(1, getEntryFiles().size());
+    victim.put(key, null);
+    assertNull(victim.get(key));
+    victim.destroy();
+    assertEquals(0, getEntryFiles().size());
+  }
+
+  @Test
+  public void shouldDeleteEntriesWhenCleared() {
+    final DiskCacheStrategy victim = createVictim("a.js");
+    victim.put(key, CacheValue.valueOf(CONTENT, "hash"));
+    victim.clear();
+    assertNull(victim.get(key));
+    victim.destroy();
+    assertEquals(0, getEntryFiles().size());
+  }
+
+  @Test
+  public void shouldServeValueBeforeItIsWritten() {
+    final DiskCacheStrategy victim = createVictim("a.js");
+    final CacheValue value = CacheValue.valueOf(CONTENT, "hash");
+    // too small to keep the value in memory
+    Context.get().getConfig().setWeightedMemoryCacheSize(1);
+    victim.put(key, value);
+    assertEquals(CONTENT, victim.get(key).getRawContent());
+    victim.destroy();
+  }
+
+  @Test
+  public void shouldReadEntryAgainWhenNotKeptInMemory() {
+    final DiskCacheStrategy victim = createVictim("a.js");
+    victim.put(key, CacheValue.valueOf(CONTENT, "hash"));
+    victim.destroy();
+
+    Context.get().getConfig().setWeightedMemoryCacheSize(1);
+    final DiskCacheStrategy restarted = createVictim("a.js");
+    assertEquals(CONTENT, restarted.get(key).getRawContent());
+    assertEquals(CONTENT, restarted.get(key).getRawContent());
+    assertEquals(1, getEntryFiles().size());
+  }
+
+  @Test
+  public void shouldNotServeEntryWhenResourceChangedWhileStopped()
+      throws Exception {
+    final DiskCacheStrategy victim = createVictim("a.js");
+    victim.put(key, CacheValue.valueOf(CONTENT, "hash"));
+    victim.destroy();
+    FileUtils.write(new File(resourcesDirectory, "a.js"), "var changed = true;");
+
+    final DiskCacheStrategy restarted = createVictim("a.js");
+    assertNull(restarted.get(key));
+    restarted.destroy();
+    assertEquals(0, getEntryFiles().size());
+  }
+
+  @Test
+  public void shouldNotDeleteFoldersNotCreatedByStrategy()
+      throws Exception {
+    final File foreignFolder = new File(directory, "foreign");
+    FileUtils.write(new File(foreignFolder, "file.txt"), "content");
+    final DiskCacheStrategy victim = createVictim("a.js");
+    victim.put(key, CacheValue.valueOf(CONTENT, "hash"));
+    victim.destroy();
+
+    createVictim("b.js").get(key);
+    assertTrue(foreignFolder.isDirectory());
+    assertEquals(2, directory.listFiles().length);
+  }
+
+  @Test
+  public void shouldUseDefaultFolderSpecificToContext() {
+    Context.get().getConfig().setDiskCacheDirectory(null);
+    final File baseDirectory = createVictim("a.js").getBaseDirectory();
+    assertTrue(baseDirectory.getName().startsWith(DiskCacheStrategy.DEFAULT_FOLDER_NAME + "-"));
+  }
+
+  private Collection<File> getEntryFiles() {
+    return FileUtils.listFiles(directory, new String[] {
+      "entry"
+    }, true);
+  }
+}
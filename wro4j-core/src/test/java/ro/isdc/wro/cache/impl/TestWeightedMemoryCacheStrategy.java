@@ -0,0 +1,241 @@
+package ro.isdc.wro.cache.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ro.isdc.wro.cache.CacheKey;
+import ro.isdc.wro.cache.CacheStrategy;
+import ro.isdc.wro.cache.CacheValue;
+import ro.isdc.wro.config.Context;
+import ro.isdc.wro.manager.factory.BaseWroManagerFactory;
+import ro.isdc.wro.model.group.processor.InjectorBuilder;
+import ro.isdc.wro.model.resource.ResourceType;
+
+
+/**
+ * @author Alex Objelean
+ */
+public class TestWeightedMemoryCacheStrategy {
+  private static final long MAX_WEIGHT = 100;
+  /**
+   * Weighs the values by the length of their content, making the weights easy to follow.
+   */
+  private static final WeightedMemoryCacheStrategy.Weigher<CacheValue> CONTENT_LENGTH_WEIGHER =
+      new WeightedMemoryCacheStrategy.Weigher<CacheValue>() {
+    public long weigh(final CacheValue value) {
+      return value.getRawContent().length();
+    }
+  };
+  private WeightedMemoryCacheStrategy<CacheKey, CacheValue> victim;
+
+  @BeforeClass
+  public static void onBeforeClass() {
+    assertEquals(0, Context.countActive());
+  }
+
+  @AfterClass
+  public static void onAfterClass() {
+    assertEquals(0, Context.countActive());
+  }
+
+  @Before
+  public void setUp() {
+    Context.set(Context.standaloneContext());
+    Context.get().getConfig().setCacheGzippedContent(false);
+    victim = new WeightedMemoryCacheStrategy<CacheKey, CacheValue>(MAX_WEIGHT, CONTENT_LENGTH_WEIGHER);
+  }
+
+  @After
+  public void tearDown() {
+    Context.unset();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void cannotUseInvalidMaxWeight() {
+    WeightedMemoryCacheStrategy.forCacheValues(0);
+  }
+
+  @Test
+  public void shouldComputeTotalWeight() {
+    victim.put(createKey("g1"), createValue(10));
+    victim.put(createKey("g2"), createValue(20));
+    assertEquals(30, victim.getTotalWeight());
+    victim.put(createKey("g1"), createValue(5));
+    assertEquals(25, victim.getTotalWeight());
+    victim.put(createKey("g2"), null);
+    assertEquals(5, victim.getTotalWeight());
+    victim.clear();
+    assertEquals(0, victim.getTotalWeight());
+  }
+
+  @Test
+  public void shouldNotHoldValueLargerThanMaxWeight() {
+    final CacheKey key = createKey("g1");
+    victim.put(key, createValue((int) MAX_WEIGHT + 1));
+    assertNull(victim.get(key));
+    assertEquals(0, victim.getTotalWeight());
+  }
+
+  @Test
+  public void shouldDropOldestRejectedValuesWhenTheirWeightExceedsMaxWeight() {
+    final CacheKey hotKey = createKey("hot");
+    victim.put(hotKey, createValue(60));
+    for (int i = 0; i < 10; i++) {
+      victim.get(hotKey);
+    }
+    final CacheKey coldKey1 = createKey("cold1");
+    final CacheKey coldKey2 = createKey("cold2");
+    victim.put(coldKey1, createValue(60));
+    victim.put(coldKey2, createValue(60));
+    assertEquals(60, victim.getTotalWeight());
+    assertNull(victim.get(coldKey1));
+    assertNotNull(victim.get(coldKey2));
+  }
+
+  @Test
+  public void shouldWeighCacheValueByTheBytesItHolds() {
+    final CacheValue value = createValue(10);
+    victim = WeightedMemoryCacheStrategy.forCacheValues(MAX_WEIGHT);
+    victim.put(createKey("g1"), value);
+    // two bytes for each char of the raw content and one for each of its encoded bytes
+    assertEquals(30, victim.getTotalWeight());
+  }
+
+  @Test
+  public void shouldUseConfiguredSizeForAliasedStrategy() {
+    Context.get().getConfig().setWeightedMemoryCacheSize(MAX_WEIGHT);
+    final CacheStrategy<CacheKey, CacheValue> strategy = WeightedMemoryCacheStrategy.forConfiguredCacheValues();
+    InjectorBuilder.create(new BaseWroManagerFactory()).build().inject(strategy);
+    final CacheKey key = createKey("g1");
+    strategy.put(key, createValue(30));
+    assertNotNull(strategy.get(key));
+    strategy.put(key, createValue(40));
+    assertNull(strategy.get(key));
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedWhenMaxWeightIsExceeded() {
+    final CacheKey key1 = createKey("g1");
+    final CacheKey key2 = createKey("g2");
+    final CacheKey key3 = createKey("g3");
+    victim.put(key1, createValue(40));
+    victim.put(key2, createValue(40));
+    assertNotNull(victim.get(key1));
+    // a miss, making the key as frequent as the others
+    victim.get(key3);
+    victim.put(key3, createValue(40));
+    assertNull(victim.get(key2));
+    assertNotNull(victim.get(key1));
+    assertNotNull(victim.get(key3));
+    assertEquals(80, victim.getTotalWeight());
+  }
+
+  @Test
+  public void shouldNotifyEvictedValue() {
+    final List<CacheKey> evictedKeys = new ArrayList<CacheKey>();
+    victim = new WeightedMemoryCacheStrategy<CacheKey, CacheValue>(MAX_WEIGHT, CONTENT_LENGTH_WEIGHER) {
+      @Override
+      protected void onEvicted(final CacheKey key, final CacheValue value) {
+        evictedKeys.add(key);
+      }
+    };
+    final CacheKey key1 = createKey("g1");
+    final CacheKey key2 = createKey("g2");
+    victim.put(key1, createValue(60));
+    victim.get(key2);
+    victim.put(key2, createValue(60));
+    assertEquals(Arrays.asList(key1), evictedKeys);
+    // neither the removal nor the replacement is an eviction
+    victim.put(key2, createValue(10));
+    victim.put(key2, null);
+    assertEquals(1, evictedKeys.size());
+  }
+
+  @Test
+  public void shouldNotAdmitRarelyUsedValueInsteadOfFrequentlyUsedOne() {
+    final CacheKey hotKey = createKey("hot");
+    final CacheKey coldKey = createKey("cold");
+    victim.put(hotKey, createValue(60));
+    for (int i = 0; i < 10; i++) {
+      victim.get(hotKey);
+    }
+    victim.put(coldKey, createValue(60));
+    // the rejected value is held softly, without evicting the hot one
+    assertEquals(60, victim.getTotalWeight());
+    assertNotNull(victim.get(coldKey));
+    assertNotNull(victim.get(hotKey));
+    assertEquals(60, victim.getTotalWeight());
+  }
+
+  @Test
+  public void shouldNotEvictAnythingWhenValueIsRejected() {
+    final CacheKey hotKey = createKey("hot");
+    final CacheKey warmKey = createKey("warm");
+    final CacheKey coldKey = createKey("cold");
+    victim.put(warmKey, createValue(40));
+    victim.put(hotKey, createValue(40));
+    victim.get(warmKey);
+    for (int i = 0; i < 10; i++) {
+      victim.get(hotKey);
+    }
+    // would require evicting both the warm and the hot entries
+    victim.put(coldKey, createValue(90));
+    assertEquals(80, victim.getTotalWeight());
+    assertNotNull(victim.get(warmKey));
+    assertNotNull(victim.get(hotKey));
+  }
+
+  @Test
+  public void shouldAlwaysAdmitReplacementOfCachedValue() {
+    final CacheKey hotKey = createKey("hot");
+    final CacheKey key = createKey("g1");
+    victim.put(key, createValue(40));
+    victim.put(hotKey, createValue(40));
+    for (int i = 0; i < 10; i++) {
+      victim.get(hotKey);
+    }
+    victim.put(key, createValue(70));
+    assertEquals(70, victim.getTotalWeight());
+    assertNotNull(victim.get(key));
+  }
+
+  @Test
+  public void shouldAdmitRejectedValueOnceFrequentEnough() {
+    final CacheKey hotKey = createKey("hot");
+    final CacheKey coldKey = createKey("cold");
+    victim.put(hotKey, createValue(60));
+    victim.get(hotKey);
+    victim.put(coldKey, createValue(60));
+    assertEquals(60, victim.getTotalWeight());
+    for (int i = 0; i < 3; i++) {
+      assertNotNull(victim.get(coldKey));
+    }
+    // the cold value was promoted, evicting the less frequent one
+    assertNull(victim.get(hotKey));
+    assertNotNull(victim.get(coldKey));
+    assertEquals(60, victim.getTotalWeight());
+  }
+
+  private CacheKey createKey(final String groupName) {
+    return new CacheKey(groupName, ResourceType.JS, true);
+  }
+
+  private CacheValue createValue(final int size) {
+    final StringBuilder content = new StringBuilder();
+    for (int i = 0; i < size; i++) {
+      content.append('a');
+    }
+    return CacheValue.valueOf(content.toString(), "hash");
+  }
+}
@@ -0,0 +1,121 @@
+package ro.isdc.wro.cache.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import ro.isdc.wro.cache.CacheKey;
+import ro.isdc.wro.cache.CacheStrategy;
+import ro.isdc.wro.cache.CacheValue;
+import ro.isdc.wro.config.Context;
+import ro.isdc.wro.manager.factory.BaseWroManagerFactory;
+import ro.isdc.wro.model.WroModel;
+import ro.isdc.wro.model.group.Group;
+import ro.isdc.wro.model.group.processor.InjectorBuilder;
+import ro.isdc.wro.model.resource.Resource;
+import ro.isdc.wro.model.resource.ResourceType;
+import ro.isdc.wro.model.resource.processor.factory.SimpleProcessorsFactory;
+import ro.isdc.wro.util.WroTestUtils;
+
+
+/**
+ * @author Alex Objelean
+ */
+public class TestCacheWarmer {
+  @Mock
+  private HttpServletRequest mockRequest;
+  @Mock
+  private CacheStrategy<CacheKey, CacheValue> mockCacheStrategy;
+  private CacheWarmer victim;
+
+  @BeforeClass
+  public static void onBeforeClass() {
+    assertEquals(0, Context.countActive());
+  }
+
+  @AfterClass
+  public static void onAfterClass() {
+    assertEquals(0, Context.countActive());
+  }
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    when(mockRequest.getRequestURI()).thenReturn("/app/wro/g1.js");
+    when(mockRequest.getRequestURL()).thenReturn(new StringBuffer("http://localhost/app/wro/g1.js"));
+    when(mockRequest.getContextPath()).thenReturn("/app");
+    Context.set(Context.webContext(mockRequest, mock(HttpServletResponse.class), mock(FilterConfig.class)));
+
+    final WroModel model = new WroModel();
+    model.addGroup(new Group("g1").addResource(Resource.create("/a.js")).addResource(Resource.create("/a.css")));
+    model.addGroup(new Group("g2").addResource(Resource.create("/b.js")));
+    final BaseWroManagerFactory factory = new BaseWroManagerFactory().setModelFactory(
+        WroTestUtils.simpleModelFactory(model)).setUriLocatorFactory(WroTestUtils.createResourceMockingLocatorFactory());
+    factory.setCacheStrategy(mockCacheStrategy);
+    factory.setProcessorsFactory(new SimpleProcessorsFactory());
+    victim = new CacheWarmer();
+    InjectorBuilder.create(factory).build().inject(victim);
+  }
+
+  @After
+  public void tearDown() {
+    victim.destroy();
+    Context.unset();
+  }
+
+  @Test
+  public void shouldPopulateCacheWithAllGroups()
+      throws Exception {
+    victim.warmUpOnce();
+    awaitCompletion();
+    assertEquals(6, victim.getTotalCount());
+    assertEquals(6, victim.getCompletedCount());
+    assertEquals(0, victim.getFailedCount());
+    verify(mockCacheStrategy).put(Mockito.eq(new CacheKey("g1", ResourceType.CSS, false)), Mockito.any(CacheValue.class));
+    verify(mockCacheStrategy).put(Mockito.eq(new CacheKey("g2", ResourceType.JS, true)), Mockito.any(CacheValue.class));
+  }
+
+  @Test
+  public void shouldWarmUpOnlyNotMinimizedGroupsWhenMinimizationIsDisabled()
+      throws Exception {
+    Context.get().getConfig().setMinimizeEnabled(false);
+    victim.warmUpOnce();
+    awaitCompletion();
+    assertEquals(3, victim.getCompletedCount());
+  }
+
+  @Test
+  public void shouldWarmUpOnlyOnce()
+      throws Exception {
+    victim.warmUpOnce();
+    awaitCompletion();
+    victim.warmUpOnce();
+    awaitCompletion();
+    assertEquals(6, victim.getTotalCount());
+    assertEquals(6, victim.getCompletedCount());
+  }
+
+  private void awaitCompletion()
+      throws InterruptedException {
+    final long start = System.currentTimeMillis();
+    while (victim.isInProgress() && System.currentTimeMillis() - start < 5000) {
+      Thread.sleep(10);
+    }
+    assertFalse(victim.isInProgress());
+  }
+}
@@ -2,6 +2,8 @@ package ro.isdc.wro.cache.support;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.never;
@@ -9,7 +11,10 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -35,6 +40,9 @@ import ro.isdc.wro.model.group.processor.Injector;
 import ro.isdc.wro.model.group.processor.InjectorBuilder;
 import ro.isdc.wro.model.resource.Resource;
 import ro.isdc.wro.model.resource.ResourceType;
+import ro.isdc.wro.model.resource.locator.LastModifiedAware;
+import ro.isdc.wro.model.resource.locator.UriLocator;
+import ro.isdc.wro.model.resource.locator.factory.AbstractUriLocatorFactory;
 import ro.isdc.wro.model.resource.locator.factory.UriLocatorFactory;
 import ro.isdc.wro.model.resource.processor.factory.SimpleProcessorsFactory;
 import ro.isdc.wro.model.resource.support.change.ResourceWatcher;
@@ -110,6 +118,53 @@ public class TestDefaultSynchronizedCacheStrategyDecorator {
     verify(mockResourceWatcher, never()).check(key);
   }
 
+  @Test
+  public void shouldMaintainFingerprintWhenValueIsStored() {
+    final CacheKey key = new CacheKey("g1", ResourceType.JS, true);
+    final String fingerprint = victim.getFingerprint(key);
+    assertNotNull(fingerprint);
+    assertEquals(victim.get(key).getHash(), fingerprint);
+    victim.put(key, CacheValue.valueOf("changed", "newHash"));
+    assertEquals("newHash", victim.getFingerprint(key));
+  }
+
+  @Test
+  public void shouldNotKeepFingerprintOfValueInvalidatedWhileRetrieved() {
+    final CacheKey key = new CacheKey(GROUP_NAME, ResourceType.JS, true);
+    final AtomicBoolean invalidateOnGet = new AtomicBoolean();
+    final DefaultSynchronizedCacheStrategyDecorator[] holder = new DefaultSynchronizedCacheStrategyDecorator[1];
+    victim.destroy();
+    victim = new DefaultSynchronizedCacheStrategyDecorator(new MemoryCacheStrategy<CacheKey, CacheValue>() {
+      @Override
+      public CacheValue get(final CacheKey key) {
+        final CacheValue value = super.get(key);
+        if (invalidateOnGet.compareAndSet(true, false)) {
+          holder[0].put(key, null);
+        }
+        return value;
+      }
+    });
+    holder[0] = victim;
+    createInjector().inject(victim);
+    // stored without computing its fingerprint (ex: found in a persistent cache)
+    victim.getDecoratedObject().put(key, CacheValue.valueOf("stale", "staleHash"));
+    invalidateOnGet.set(true);
+
+    assertEquals("staleHash", victim.getFingerprint(key));
+    final String fingerprint = victim.getFingerprint(key);
+    assertFalse("staleHash".equals(fingerprint));
+    assertEquals(victim.get(key).getHash(), fingerprint);
+  }
+
+  @Test
+  public void shouldRecomputeFingerprintAfterCacheIsCleared() {
+    final CacheKey key = new CacheKey("g1", ResourceType.JS, true);
+    final String fingerprint = victim.getFingerprint(key);
+    victim.put(key, CacheValue.valueOf("changed", "newHash"));
+    victim.clear();
+    assertEquals(fingerprint, victim.getFingerprint(key));
+  }
+
   /**
    * Proves that even if the get() is invoked more times, the check is performed only after a certain period of time.
    */
@@ -202,4 +257,79 @@ public class TestDefaultSynchronizedCacheStrategyDecorator {
     victim.get(key);
     assertTrue(victim.wasCheckedForChange(key));
   }
+
+  @Test
+  public void shouldReloadCachedValueOutsideOfRequestCycle()
+      throws Exception {
+    Context.get().getConfig().setReloadCacheInBackground(true);
+    final CacheKey key = new CacheKey(GROUP_NAME, ResourceType.JS, true);
+    final CacheValue value = victim.get(key);
+    final Thread thread = new Thread(new Runnable() {
+      public void run() {
+        assertFalse(Context.isContextSet());
+        victim.reload();
+      }
+    });
+    thread.start();
+    thread.join();
+    final CacheValue reloaded = victim.getDecoratedObject().get(key);
+    assertNotNull(reloaded);
+    assertEquals(value.getHash(), reloaded.getHash());
+  }
+
+  @Test
+  public void shouldNotReloadInvalidatedKeys() {
+    Context.get().getConfig().setReloadCacheInBackground(true);
+    final CacheKey key = new CacheKey(GROUP_NAME, ResourceType.JS, true);
+    victim.get(key);
+    victim.put(key, null);
+    victim.reload();
+    assertNull(victim.getDecoratedObject().get(key));
+  }
+
+  @Test
+  public void shouldUseNewestResourceTimestampAsLastModified() {
+    final Group group = new Group(GROUP_NAME).addResource(Resource.create("/1000.js")).addResource(
+        Resource.create("/2000.js"));
+    final WroModel model = new WroModel().addGroup(group);
+    final UriLocatorFactory locatorFactory = new AbstractUriLocatorFactory() {
+      public UriLocator getInstance(final String uri) {
+        return new LastModifiedAwareLocator();
+      }
+    };
+    final BaseWroManagerFactory factory = new BaseWroManagerFactory().setModelFactory(
+        WroTestUtils.simpleModelFactory(model)).setUriLocatorFactory(locatorFactory);
+    factory.setProcessorsFactory(new SimpleProcessorsFactory());
+    InjectorBuilder.create(factory).setResourceWatcher(mockResourceWatcher).build().inject(victim);
+
+    final CacheValue value = victim.get(new CacheKey(GROUP_NAME, ResourceType.JS, true));
+    assertEquals(2000, value.getLastModified());
+    assertEquals(2000, value.getValidators().getLastModified());
+  }
+
+  @Test
+  public void shouldUseProcessingTimeAsLastModifiedWhenResourceTimestampIsUnknown() {
+    final long start = System.currentTimeMillis();
+    final CacheValue value = victim.get(new CacheKey(GROUP_NAME, ResourceType.JS, true));
+    assertTrue(value.getLastModified() >= start);
+  }
+
+  /**
+   * Locates the uri as content and reports the name of the resource as its last modified timestamp.
+   */
+  private static class LastModifiedAwareLocator
+      implements UriLocator, LastModifiedAware {
+    public InputStream locate(final String uri)
+        throws IOException {
+      return WroTestUtils.createResourceMockingLocator().locate(uri);
+    }
+
+    public boolean accept(final String uri) {
+      return true;
+    }
+
+    public long getLastModified(final String uri) {
+      return Long.parseLong(uri.replaceAll("\\D", ""));
+    }
+  }
 }
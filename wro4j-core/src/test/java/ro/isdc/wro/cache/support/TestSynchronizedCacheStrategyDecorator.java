@@ -1,7 +1,12 @@
 package ro.isdc.wro.cache.support;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -82,6 +87,92 @@ public class TestSynchronizedCacheStrategyDecorator {
     Assert.assertEquals(2, count.get());
   }
   
+  @Test
+  public void shouldRetryLoadAfterFailure() {
+    final AtomicInteger count = new AtomicInteger();
+    victim = new AbstractSynchronizedCacheStrategyDecorator<String, String>(decorated) {
+      @Override
+      protected String loadValue(final String key) {
+        if (count.incrementAndGet() == 1) {
+          throw new IllegalStateException("BOOM");
+        }
+        return "value-" + key;
+      }
+    };
+    try {
+      victim.get("key");
+      Assert.fail("Should have propagated the load failure");
+    } catch (final IllegalStateException e) {
+    }
+    assertEquals("value-key", victim.get("key"));
+    assertEquals(2, count.get());
+  }
+  
+  @Test
+  public void shouldNotOverridePutValueWithPendingLoad()
+      throws Exception {
+    createSlowCountingDecorator();
+    final String key = "key";
+    executor.execute(getRunnableForKey(key));
+    // give the load the chance to start
+    Thread.sleep(100);
+    victim.put(key, null);
+    assertNull(decorated.get(key));
+  }
+  
+  @Test
+  public void shouldNotLoadAgainKeyLoadedByPendingBatch()
+      throws Exception {
+    final AtomicInteger count = createSlowCountingDecorator();
+    executor.execute(new Runnable() {
+      public void run() {
+        victim.getAll(Arrays.asList("key1", "key2"));
+      }
+    });
+    // give the batch the chance to start
+    Thread.sleep(100);
+    assertEquals("value-key2", victim.get("key2"));
+    assertEquals(2, count.get());
+  }
+
+  @Test
+  public void shouldInvokeCallbackBeforeGettingEachKeyOfBatch() {
+    final List<String> checkedKeys = new ArrayList<String>();
+    victim = new AbstractSynchronizedCacheStrategyDecorator<String, String>(decorated) {
+      @Override
+      protected String loadValue(final String key) {
+        return "value-" + key;
+      }
+
+      @Override
+      protected void onBeforeGet(final String key) {
+        checkedKeys.add(key);
+      }
+    };
+    decorated.put("key1", "cached");
+    final Map<String, String> values = victim.getAll(Arrays.asList("key1", "key2", "key1"));
+    assertEquals(Arrays.asList("key1", "key2"), checkedKeys);
+    assertEquals("cached", values.get("key1"));
+    assertEquals("value-key2", values.get("key2"));
+    assertEquals("value-key2", decorated.get("key2"));
+  }
+
+  @Test
+  public void shouldPropagateBatchLoadFailure() {
+    victim = new AbstractSynchronizedCacheStrategyDecorator<String, String>(decorated) {
+      @Override
+      protected String loadValue(final String key) {
+        throw new IllegalStateException("BOOM");
+      }
+    };
+    try {
+      victim.getAll(Arrays.asList("key1", "key2"));
+      Assert.fail("Should have propagated the load failure");
+    } catch (final IllegalStateException e) {
+    }
+    assertNull(decorated.get("key1"));
+  }
+
   protected AtomicInteger createSlowCountingDecorator() {
     final AtomicInteger count = new AtomicInteger();
     victim = new AbstractSynchronizedCacheStrategyDecorator<String, String>(decorated) {
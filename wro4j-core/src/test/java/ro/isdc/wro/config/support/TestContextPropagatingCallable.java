@@ -108,6 +108,16 @@ public class TestContextPropagatingCallable {
     }), 1);
   }
 
+  @Test
+  public void shouldPreserveContextWhenCalledByTheCreatorThread()
+      throws Exception {
+    Context.set(context);
+    final String correlationId = Context.getCorrelationId();
+    new ContextPropagatingCallable<Void>(NO_OP_CALLABLE).call();
+    assertEquals(correlationId, Context.getCorrelationId());
+    assertSame(context, Context.get());
+  }
+
   @After
   public void tearDown() {
     Context.unset();
@@ -1,28 +1,34 @@
 package ro.isdc.wro.http;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.zip.GZIPInputStream;
 
 import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -32,6 +38,7 @@ import org.mockito.stubbing.Answer;
 import ro.isdc.wro.config.Context;
 import ro.isdc.wro.http.support.DelegatingServletInputStream;
 import ro.isdc.wro.http.support.DelegatingServletOutputStream;
+import ro.isdc.wro.http.support.HttpHeader;
 import ro.isdc.wro.util.io.NullOutputStream;
 
 
@@ -46,6 +53,8 @@ public class TestGzipFilter {
   private HttpServletResponse mockResponse;
   @Mock
   private FilterChain mockFilterChain;
+  @Mock
+  private ServletContext mockServletContext;
   
   @BeforeClass
   public static void onBeforeClass() {
@@ -113,6 +122,193 @@ public class TestGzipFilter {
     assertEquals(content, IOUtils.toString(ungzippedStream));
   }
   
+  @Test
+  public void shouldServeCachedCompressedContentWhenValidatorIsUnchanged()
+      throws Exception {
+    markGzipAsAllowed();
+    final String content = "sampleContent";
+    when(mockRequest.getRequestURI()).thenReturn("/app/resource.js");
+    Mockito.doAnswer(new Answer<Void>() {
+      public Void answer(final InvocationOnMock invocation)
+          throws Throwable {
+        final HttpServletResponse response = (HttpServletResponse) invocation.getArguments()[1];
+        response.setHeader(HttpHeader.ETAG.toString(), "\"123\"");
+        response.getOutputStream().write(content.getBytes());
+        return null;
+      }
+    }).when(mockFilterChain).doFilter(Mockito.any(HttpServletRequest.class), Mockito.any(HttpServletResponse.class));
+    final ByteArrayOutputStream firstStream = new ByteArrayOutputStream();
+    when(mockResponse.getOutputStream()).thenReturn(new DelegatingServletOutputStream(firstStream));
+    victim.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+    markGzipAsAllowed();
+    final ByteArrayOutputStream secondStream = new ByteArrayOutputStream();
+    when(mockResponse.getOutputStream()).thenReturn(new DelegatingServletOutputStream(secondStream));
+    victim.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+    assertArrayEquals(firstStream.toByteArray(), secondStream.toByteArray());
+    assertEquals(content, IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(secondStream.toByteArray()))));
+    verify(mockResponse, Mockito.times(2)).setContentLength(firstStream.size());
+  }
+
+  @Test
+  public void shouldNotCacheCompressedContentOfRangeRequest()
+      throws Exception {
+    markGzipAsAllowed();
+    final String content = "sampleContent";
+    when(mockRequest.getRequestURI()).thenReturn("/app/resource.js");
+    Mockito.doAnswer(new Answer<Void>() {
+      public Void answer(final InvocationOnMock invocation)
+          throws Throwable {
+        final HttpServletRequest request = (HttpServletRequest) invocation.getArguments()[0];
+        final HttpServletResponse response = (HttpServletResponse) invocation.getArguments()[1];
+        response.setHeader(HttpHeader.ETAG.toString(), "\"123\"");
+        if (request.getHeader(HttpHeader.RANGE.toString()) != null) {
+          response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+          response.getOutputStream().write(content.substring(0, 6).getBytes());
+        } else {
+          response.getOutputStream().write(content.getBytes());
+        }
+        return null;
+      }
+    }).when(mockFilterChain).doFilter(Mockito.any(HttpServletRequest.class), Mockito.any(HttpServletResponse.class));
+    when(mockRequest.getHeader(HttpHeader.RANGE.toString())).thenReturn("bytes=0-5");
+    final ByteArrayOutputStream rangeStream = new ByteArrayOutputStream();
+    when(mockResponse.getOutputStream()).thenReturn(new DelegatingServletOutputStream(rangeStream));
+    victim.doFilter(mockRequest, mockResponse, mockFilterChain);
+    assertEquals("sample", IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(rangeStream.toByteArray()))));
+
+    markGzipAsAllowed();
+    when(mockRequest.getHeader(HttpHeader.RANGE.toString())).thenReturn(null);
+    final ByteArrayOutputStream fullStream = new ByteArrayOutputStream();
+    when(mockResponse.getOutputStream()).thenReturn(new DelegatingServletOutputStream(fullStream));
+    victim.doFilter(mockRequest, mockResponse, mockFilterChain);
+    assertEquals(content, IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(fullStream.toByteArray()))));
+  }
+
+  @Test
+  public void shouldNotCacheCompressedContentOfErrorResponse()
+      throws Exception {
+    markGzipAsAllowed();
+    final String content = "sampleContent";
+    when(mockRequest.getRequestURI()).thenReturn("/app/resource.js");
+    final boolean[] failing = new boolean[] { true };
+    Mockito.doAnswer(new Answer<Void>() {
+      public Void answer(final InvocationOnMock invocation)
+          throws Throwable {
+        final HttpServletResponse response = (HttpServletResponse) invocation.getArguments()[1];
+        response.setHeader(HttpHeader.ETAG.toString(), "\"123\"");
+        if (failing[0]) {
+          response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+          response.getOutputStream().write("error".getBytes());
+        } else {
+          response.getOutputStream().write(content.getBytes());
+        }
+        return null;
+      }
+    }).when(mockFilterChain).doFilter(Mockito.any(HttpServletRequest.class), Mockito.any(HttpServletResponse.class));
+    victim.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+    markGzipAsAllowed();
+    failing[0] = false;
+    final ByteArrayOutputStream targetStream = new ByteArrayOutputStream();
+    when(mockResponse.getOutputStream()).thenReturn(new DelegatingServletOutputStream(targetStream));
+    victim.doFilter(mockRequest, mockResponse, mockFilterChain);
+    assertEquals(content, IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(targetStream.toByteArray()))));
+  }
+
+  @Test
+  public void shouldServePrecompressedSidecar()
+      throws Exception {
+    final ByteArrayOutputStream targetStream = prepareSidecar("/");
+
+    victim.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+    verify(mockFilterChain, Mockito.never()).doFilter(Mockito.any(HttpServletRequest.class),
+        Mockito.any(HttpServletResponse.class));
+    verify(mockResponse).setHeader(HttpHeader.CONTENT_ENCODING.toString(), "gzip");
+    verify(mockResponse).setHeader(Mockito.eq(HttpHeader.LAST_MODIFIED.toString()), Mockito.anyString());
+    verify(mockResponse).setContentType("application/javascript");
+    assertEquals("compressed", new String(targetStream.toByteArray()));
+  }
+
+  @Test
+  public void shouldNotServePrecompressedSidecarOfPathNotEnabled()
+      throws Exception {
+    prepareSidecar("/static/");
+
+    victim.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+    verify(mockFilterChain).doFilter(Mockito.eq(mockRequest), Mockito.any(HttpServletResponse.class));
+  }
+
+  @Test
+  public void shouldNotServePrecompressedSidecarWhenResourceDoesNotExist()
+      throws Exception {
+    prepareSidecar("/");
+    when(mockServletContext.getResource("/resource.js")).thenReturn(null);
+
+    victim.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+    verify(mockFilterChain).doFilter(Mockito.eq(mockRequest), Mockito.any(HttpServletResponse.class));
+  }
+
+  @Test
+  public void shouldNotServePrecompressedSidecarForRangeRequest()
+      throws Exception {
+    prepareSidecar("/");
+    when(mockRequest.getHeader(HttpHeader.RANGE.toString())).thenReturn("bytes=0-1");
+
+    victim.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+    verify(mockFilterChain).doFilter(Mockito.eq(mockRequest), Mockito.any(HttpServletResponse.class));
+  }
+
+  @Test
+  public void shouldSendNotModifiedWhenPrecompressedSidecarIsUnchanged()
+      throws Exception {
+    final ByteArrayOutputStream targetStream = prepareSidecar("/");
+    final ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+    victim.doFilter(mockRequest, mockResponse, mockFilterChain);
+    verify(mockResponse).setHeader(Mockito.eq(HttpHeader.ETAG.toString()), etag.capture());
+    targetStream.reset();
+
+    markGzipAsAllowed();
+    when(mockRequest.getHeader(HttpHeader.IF_NONE_MATCH.toString())).thenReturn(etag.getValue());
+    victim.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+    verify(mockResponse).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    assertEquals(0, targetStream.size());
+  }
+
+  /**
+   * Prepares a request of a static resource having a sidecar, with the sidecar serving enabled for the provided paths.
+   *
+   * @return the stream where the response content is written.
+   */
+  private ByteArrayOutputStream prepareSidecar(final String precompressedPaths)
+      throws Exception {
+    markGzipAsAllowed();
+    final FilterConfig mockFilterConfig = Mockito.mock(FilterConfig.class);
+    when(mockFilterConfig.getServletContext()).thenReturn(mockServletContext);
+    when(mockFilterConfig.getInitParameter(GzipFilter.PARAM_PRECOMPRESSED_PATHS)).thenReturn(precompressedPaths);
+    final File resource = File.createTempFile("wro4j", ".js");
+    resource.deleteOnExit();
+    final File sidecar = new File(resource.getPath() + GzipFilter.GZIP_EXTENSION);
+    sidecar.deleteOnExit();
+    FileUtils.writeByteArrayToFile(sidecar, "compressed".getBytes());
+    when(mockServletContext.getResource("/resource.js")).thenReturn(resource.toURI().toURL());
+    when(mockServletContext.getResource("/resource.js.gz")).thenReturn(sidecar.toURI().toURL());
+    when(mockServletContext.getMimeType("/resource.js")).thenReturn("application/javascript");
+    when(mockRequest.getMethod()).thenReturn("GET");
+    when(mockRequest.getContextPath()).thenReturn("/app");
+    when(mockRequest.getRequestURI()).thenReturn("/app/resource.js");
+    final ByteArrayOutputStream targetStream = new ByteArrayOutputStream();
+    when(mockResponse.getOutputStream()).thenReturn(new DelegatingServletOutputStream(targetStream));
+    victim.init(mockFilterConfig);
+    return targetStream;
+  }
+
   private void markGzipAsAllowed() {
     final String headerName = "Accept-Encoding";
     when(mockRequest.getHeaderNames()).thenReturn(Collections.enumeration(Arrays.asList(headerName)));
@@ -6,7 +6,9 @@ package ro.isdc.wro.http;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static ro.isdc.wro.http.handler.ResourceProxyRequestHandler.PARAM_RESOURCE_ID;
@@ -17,6 +19,8 @@ import java.io.PrintWriter;
 import java.util.Collection;
 import java.util.Properties;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
@@ -148,6 +152,16 @@ public class TestWroFilter {
     victim.setWroManagerFactory(mockManagerFactory);
   }
 
+  /**
+   * Creates the victim filter which chains on error and uses a valid model.
+   */
+  private void initFilterWithValidModel()
+      throws ServletException {
+    victim = new WroFilter();
+    victim.setWroManagerFactory(createValidManagerFactory());
+    victim.init(mockFilterConfig);
+  }
+
   private WroManagerFactory createValidManagerFactory() {
     return new BaseWroManagerFactory().setModelFactory(createValidModelFactory());
   }
@@ -385,6 +399,43 @@ public class TestWroFilter {
     verifyChainIsCalled(mockFilterChain);
   }
 
+  @Test
+  public void shouldChainRequestOfUnknownGroupWithoutProcessingOnceModelIsCreated()
+      throws Exception {
+    initFilterWithValidModel();
+    final HttpServletRequest request = new RequestBuilder("/folder/INVALID_GROUP.css").newRequest();
+    victim.doFilter(request, mockResponse, mockFilterChain);
+    // the group names are not known before the model is created
+    verify(request).setAttribute(WroFilter.ATTRIBUTE_PASSED_THROUGH_FILTER, Boolean.TRUE);
+
+    doFilter("/folder/g1.css", new RequestBuilder("/folder/g1.css"), mockFilterChain);
+    final HttpServletRequest unknownGroupRequest = new RequestBuilder("/folder/INVALID_GROUP.css").newRequest();
+    victim.doFilter(unknownGroupRequest, mockResponse, mockFilterChain);
+    verify(mockFilterChain).doFilter(unknownGroupRequest, mockResponse);
+    verify(unknownGroupRequest, Mockito.never()).setAttribute(Mockito.anyString(), Mockito.any());
+  }
+
+  @Test
+  public void shouldProcessApiRequestOnceModelIsCreated()
+      throws Exception {
+    initFilterWithValidModel();
+    doFilter("/folder/g1.css", new RequestBuilder("/folder/g1.css"), mockFilterChain);
+    final HttpServletRequest request = new RequestBuilder("/" + ReloadCacheRequestHandler.ENDPOINT_URI).newRequest();
+    victim.doFilter(request, mockResponse, mockFilterChain);
+    verify(request).setAttribute(WroFilter.ATTRIBUTE_PASSED_THROUGH_FILTER, Boolean.TRUE);
+  }
+
+  @Test
+  public void shouldProcessRequestOfUnknownGroupAfterModelIsDestroyed()
+      throws Exception {
+    initFilterWithValidModel();
+    doFilter("/folder/g1.css", new RequestBuilder("/folder/g1.css"), mockFilterChain);
+    victim.getWroManagerFactory().create().getModelFactory().destroy();
+    final HttpServletRequest request = new RequestBuilder("/folder/INVALID_GROUP.css").newRequest();
+    victim.doFilter(request, mockResponse, mockFilterChain);
+    verify(request).setAttribute(WroFilter.ATTRIBUTE_PASSED_THROUGH_FILTER, Boolean.TRUE);
+  }
+
   @Test
   public void cannotAccessUnauthorizedRequest()
       throws Exception {
@@ -855,6 +906,109 @@ public class TestWroFilter {
     assertEquals(DefaultWroManagerFactory.class, victim.getWroManagerFactory().getClass());
   }
 
+  @Test
+  public void shouldProcessRequestAsynchronouslyWhenEnabled()
+      throws Exception {
+    final FakeAsyncContext asyncContext = new FakeAsyncContext(false);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getOutputStream()).thenReturn(new DelegatingServletOutputStream(new NullOutputStream()));
+
+    doAsyncFilter(asyncContext, response);
+
+    assertTrue(asyncContext.completed.await(5, TimeUnit.SECONDS));
+    assertEquals(1234, asyncContext.timeout);
+    verify(response).getOutputStream();
+    verifyChainIsNotCalled(mockFilterChain);
+  }
+
+  @Test
+  public void shouldSendErrorWhenAsynchronousProcessingFails()
+      throws Exception {
+    final FakeAsyncContext asyncContext = new FakeAsyncContext(false);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getOutputStream()).thenThrow(new IOException("BOOM!"));
+
+    doAsyncFilter(asyncContext, response);
+
+    assertTrue(asyncContext.completed.await(5, TimeUnit.SECONDS));
+    verify(response).sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    verifyChainIsNotCalled(mockFilterChain);
+  }
+
+  @Test
+  public void shouldNotWriteResponseWhenAsynchronousProcessingTimedOut()
+      throws Exception {
+    final FakeAsyncContext asyncContext = new FakeAsyncContext(true);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+
+    doAsyncFilter(asyncContext, response);
+
+    verify(response, after(500).never()).getOutputStream();
+    verify(response, Mockito.never()).sendError(Mockito.anyInt());
+    assertEquals(1, asyncContext.completed.getCount());
+  }
+
+  private void doAsyncFilter(final FakeAsyncContext asyncContext, final HttpServletResponse response)
+      throws Exception {
+    final WroConfiguration config = new WroConfiguration();
+    config.setAsyncProcessing(true);
+    config.setAsyncProcessingTimeout(1234);
+    Context.unset();
+    victim = new WroFilter();
+    victim.setConfiguration(config);
+    victim.setWroManagerFactory(createValidManagerFactory());
+    victim.init(mockFilterConfig);
+
+    final AsyncHttpServletRequest request = mock(AsyncHttpServletRequest.class);
+    when(request.getRequestURI()).thenReturn("/folder/g1.css");
+    when(request.isAsyncSupported()).thenReturn(true);
+    when(request.startAsync()).thenReturn(asyncContext);
+    victim.doFilter(request, response, mockFilterChain);
+  }
+
+  /**
+   * A request exposing the Servlet 3.0 asynchronous processing methods, which are invoked reflectively.
+   */
+  public static abstract class AsyncHttpServletRequest
+      implements HttpServletRequest {
+    public abstract boolean isAsyncSupported();
+
+    public abstract boolean isAsyncStarted();
+
+    public abstract Object startAsync();
+  }
+
+  /**
+   * Mimics the Servlet 3.0 AsyncContext, optionally timing out as soon as the listener is added.
+   */
+  public static class FakeAsyncContext {
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private final boolean timeOut;
+    private volatile long timeout;
+
+    public FakeAsyncContext(final boolean timeOut) {
+      this.timeOut = timeOut;
+    }
+
+    public void setTimeout(final long timeout) {
+      this.timeout = timeout;
+    }
+
+    public void addListener(final Listener listener) {
+      if (timeOut) {
+        listener.onTimeout(null);
+      }
+    }
+
+    public void complete() {
+      completed.countDown();
+    }
+  }
+
+  public interface Listener {
+    void onTimeout(Object event);
+  }
+
   @After
   public void tearDown() {
     if (victim != null) {
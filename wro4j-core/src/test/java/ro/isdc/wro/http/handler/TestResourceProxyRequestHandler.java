@@ -9,6 +9,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -21,6 +22,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -35,6 +37,8 @@ import org.mockito.stubbing.Answer;
 
 import ro.isdc.wro.config.Context;
 import ro.isdc.wro.http.support.HttpHeader;
+import ro.isdc.wro.http.support.ProxyResourceCache;
+import ro.isdc.wro.http.support.ProxyResourceCache.ProxyResource;
 import ro.isdc.wro.http.support.UnauthorizedRequestException;
 import ro.isdc.wro.manager.factory.BaseWroManagerFactory;
 import ro.isdc.wro.model.group.processor.Injector;
@@ -43,6 +47,7 @@ import ro.isdc.wro.model.resource.locator.ClasspathUriLocator;
 import ro.isdc.wro.model.resource.locator.UriLocator;
 import ro.isdc.wro.model.resource.locator.factory.UriLocatorFactory;
 import ro.isdc.wro.model.resource.support.ResourceAuthorizationManager;
+import ro.isdc.wro.model.resource.support.hash.SHA1HashStrategy;
 import ro.isdc.wro.util.WroUtil;
 
 
@@ -272,6 +277,129 @@ public class TestResourceProxyRequestHandler {
     verify(response).setStatus(HttpServletResponse.SC_OK);
   }
 
+  @Test
+  public void shouldLocateCachedResourceOnlyOnce()
+      throws IOException {
+    final String resourceUri = "/" + packagePath + "/" + "test.css";
+    when(mockAuthorizationManager.isAuthorized(resourceUri)).thenReturn(true);
+    when(request.getParameter(ResourceProxyRequestHandler.PARAM_RESOURCE_ID)).thenReturn(resourceUri);
+    when(mockUriLocator.locate(resourceUri)).thenReturn(getInputStream("test.css"));
+
+    victim.handle(request, response);
+    victim.handle(request, response);
+
+    final String expectedBody = IOUtils.toString(getInputStream("test.css"));
+    verify(mockUriLocator, times(1)).locate(resourceUri);
+    assertEquals(expectedBody + expectedBody, outputStream.toString());
+  }
+
+  @Test
+  public void shouldNotLocateResourceWhenCacheIsDisabled()
+      throws IOException {
+    Context.get().getConfig().setProxyResourceCacheSize(0);
+    final String resourceUri = "/" + packagePath + "/" + "test.css";
+    when(mockAuthorizationManager.isAuthorized(resourceUri)).thenReturn(true);
+    when(request.getParameter(ResourceProxyRequestHandler.PARAM_RESOURCE_ID)).thenReturn(resourceUri);
+
+    victim.handle(request, response);
+    victim.handle(request, response);
+
+    verify(mockUriLocator, times(2)).locate(resourceUri);
+  }
+
+  @Test
+  public void shouldUseContentHashAsETagOfCachedResource()
+      throws IOException {
+    final String resourceUri = "/" + packagePath + "/" + "test.css";
+    when(mockAuthorizationManager.isAuthorized(resourceUri)).thenReturn(true);
+    when(request.getParameter(ResourceProxyRequestHandler.PARAM_RESOURCE_ID)).thenReturn(resourceUri);
+    when(mockUriLocator.locate(resourceUri)).thenReturn(getInputStream("test.css"));
+    final String etag = "\"" + new SHA1HashStrategy().getHash(getInputStream("test.css")) + "\"";
+
+    victim.handle(request, response);
+    verify(response).setHeader(HttpHeader.ETAG.toString(), etag);
+
+    when(request.getHeader(HttpHeader.IF_NONE_MATCH.toString())).thenReturn(etag);
+    victim.handle(request, response);
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    // the validators are sent along with the not modified status
+    verify(response, times(2)).setHeader(HttpHeader.ETAG.toString(), etag);
+  }
+
+  @Test
+  public void shouldServeRangeOfResourceStoredOnDisk()
+      throws IOException {
+    Context.get().getConfig().setProxyResourceSpillThreshold(1);
+    final String resourceUri = "/" + packagePath + "/" + "test.css";
+    when(mockAuthorizationManager.isAuthorized(resourceUri)).thenReturn(true);
+    when(request.getParameter(ResourceProxyRequestHandler.PARAM_RESOURCE_ID)).thenReturn(resourceUri);
+    when(mockUriLocator.locate(resourceUri)).thenReturn(getInputStream("test.css"));
+    when(request.getHeader(HttpHeader.RANGE.toString())).thenReturn("bytes=1-3");
+
+    victim.handle(request, response);
+
+    final String expectedBody = IOUtils.toString(getInputStream("test.css"));
+    verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    assertEquals(expectedBody.substring(1, 4), outputStream.toString());
+  }
+
+  @Test
+  public void shouldRetrieveCachedResourceOnlyOncePerRequest()
+      throws Exception {
+    final String resourceUri = "/" + packagePath + "/" + "test.css";
+    when(mockAuthorizationManager.isAuthorized(resourceUri)).thenReturn(true);
+    when(request.getParameter(ResourceProxyRequestHandler.PARAM_RESOURCE_ID)).thenReturn(resourceUri);
+    when(mockUriLocator.locate(resourceUri)).thenReturn(getInputStream("test.css"));
+    final ProxyResourceCache cache = spyProxyResourceCache();
+
+    victim.handle(request, response);
+
+    verify(cache, times(1)).get(resourceUri);
+    assertEquals(IOUtils.toString(getInputStream("test.css")), outputStream.toString());
+  }
+
+  @Test
+  public void shouldRetrieveResourceAgainWhenItsFileIsDeletedAfterRetrieval()
+      throws Exception {
+    Context.get().getConfig().setProxyResourceSpillThreshold(1);
+    final String resourceUri = "/" + packagePath + "/" + "test.css";
+    when(mockAuthorizationManager.isAuthorized(resourceUri)).thenReturn(true);
+    when(request.getParameter(ResourceProxyRequestHandler.PARAM_RESOURCE_ID)).thenReturn(resourceUri);
+    when(mockUriLocator.locate(resourceUri)).thenReturn(getInputStream("test.css"), getInputStream("test.css"));
+    final ProxyResourceCache cache = spyProxyResourceCache();
+    Mockito.doAnswer(new Answer<ProxyResource>() {
+      private boolean evicted;
+
+      public ProxyResource answer(final InvocationOnMock invocation)
+          throws Throwable {
+        final ProxyResource resource = (ProxyResource) invocation.callRealMethod();
+        if (!evicted) {
+          // simulates the eviction of the resource right after it was retrieved
+          evicted = true;
+          assertTrue(((File) FieldUtils.readField(resource, "file", true)).delete());
+        }
+        return resource;
+      }
+    }).when(cache).get(resourceUri);
+
+    victim.handle(request, response);
+
+    verify(cache, times(2)).get(resourceUri);
+    verify(response).setStatus(HttpServletResponse.SC_OK);
+    assertEquals(IOUtils.toString(getInputStream("test.css")), outputStream.toString());
+  }
+
+  /**
+   * Replaces the cache used by the victim with a spy.
+   */
+  private ProxyResourceCache spyProxyResourceCache()
+      throws Exception {
+    final ProxyResourceCache cache = Mockito.spy((ProxyResourceCache) FieldUtils.readField(victim,
+        "proxyResourceCache", true));
+    FieldUtils.writeField(victim, "proxyResourceCache", cache, true);
+    return cache;
+  }
+
   private InputStream getInputStream(final String filename)
       throws IOException {
     return this.getClass().getClassLoader().getResourceAsStream(packagePath + "/" + filename);
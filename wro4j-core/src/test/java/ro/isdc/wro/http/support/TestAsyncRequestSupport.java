@@ -0,0 +1,31 @@
+package ro.isdc.wro.http.support;
+
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+import ro.isdc.wro.WroRuntimeException;
+
+
+/**
+ * @author Alex Objelean
+ */
+public class TestAsyncRequestSupport {
+  @Test(expected = NullPointerException.class)
+  public void cannotCheckNullRequest() {
+    AsyncRequestSupport.isAsyncSupported(null);
+  }
+
+  @Test
+  public void shouldNotSupportAsyncProcessingWhenServletApiIsOlderThan30() {
+    assertFalse(AsyncRequestSupport.isAsyncSupported(mock(HttpServletRequest.class)));
+  }
+
+  @Test(expected = WroRuntimeException.class)
+  public void cannotStartAsyncProcessingWhenServletApiIsOlderThan30() {
+    AsyncRequestSupport.start(mock(HttpServletRequest.class), 1000);
+  }
+}
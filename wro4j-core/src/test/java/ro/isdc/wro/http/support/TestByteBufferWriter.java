@@ -0,0 +1,106 @@
+package ro.isdc.wro.http.support;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * @author Alex Objelean
+ */
+public class TestByteBufferWriter {
+  private static final byte[] CONTENT = "content".getBytes();
+  private ByteBufferWriter victim;
+
+  @Before
+  public void setUp() {
+    victim = new ByteBufferWriter() {
+      @Override
+      List<ContainerOutputAdapter> newAdapters() {
+        return Collections.emptyList();
+      }
+    };
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void cannotWriteNullBuffer()
+      throws Exception {
+    victim.write(new ByteArrayOutputStream(), null);
+  }
+
+  @Test
+  public void shouldWriteRemainingContentOfHeapBuffer()
+      throws Exception {
+    final ByteArrayOutputStream os = new ByteArrayOutputStream();
+    final ByteBuffer buffer = ByteBuffer.wrap(CONTENT);
+    buffer.position(3);
+    victim.write(os, buffer);
+    assertEquals("tent", new String(os.toByteArray()));
+    assertEquals(3, buffer.position());
+  }
+
+  @Test
+  public void shouldWriteDirectBuffer()
+      throws Exception {
+    final ByteArrayOutputStream os = new ByteArrayOutputStream();
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(CONTENT.length);
+    buffer.put(CONTENT).flip();
+    victim.write(os, buffer);
+    assertArrayEquals(CONTENT, os.toByteArray());
+  }
+
+  @Test
+  public void shouldUseSendContentMethodOfTheStreamWhenAvailable()
+      throws Exception {
+    final SendContentOutputStream os = new SendContentOutputStream();
+    final ByteBuffer buffer = ByteBuffer.wrap(CONTENT);
+    victim.write(os, buffer);
+    assertSame(CONTENT, os.sentContent.array());
+    assertEquals(0, os.size());
+  }
+
+  @Test
+  public void shouldUseCustomAdapter()
+      throws Exception {
+    final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    victim = new ByteBufferWriter() {
+      @Override
+      List<ContainerOutputAdapter> newAdapters() {
+        return Arrays.<ContainerOutputAdapter> asList(new ContainerOutputAdapter() {
+          public boolean write(final OutputStream outputStream, final ByteBuffer content)
+              throws IOException {
+            written.write(content.array());
+            return true;
+          }
+        });
+      }
+    };
+    final ByteArrayOutputStream os = new ByteArrayOutputStream();
+    victim.write(os, ByteBuffer.wrap(CONTENT));
+    assertArrayEquals(CONTENT, written.toByteArray());
+    assertEquals(0, os.size());
+  }
+
+  /**
+   * Simulates a stream of a container which accepts {@link ByteBuffer}'s.
+   */
+  public static class SendContentOutputStream
+      extends ByteArrayOutputStream {
+    private ByteBuffer sentContent;
+
+    public void sendContent(final ByteBuffer content) {
+      sentContent = content;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package ro.isdc.wro.http.support;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+
+/**
+ * @author Alex Objelean
+ */
+public class TestContentCodecs {
+  private static final byte[] CONTENT = "content content content content".getBytes();
+  private final List<ContentCodec> codecs = Arrays.asList(ContentCodecs.GZIP, ContentCodecs.DEFLATE);
+
+  @Test
+  public void shouldIgnoreUnavailableEncodings() {
+    assertEquals(Arrays.asList(ContentCodecs.DEFLATE, ContentCodecs.GZIP),
+        ContentCodecs.forEncodings(" deflate, unknown,GZIP,gzip"));
+    assertEquals(Collections.emptyList(), ContentCodecs.forEncodings(null));
+  }
+
+  @Test
+  public void shouldNotChooseAnyCodecWhenNoEncodingIsAccepted() {
+    assertNull(ContentCodecs.negotiate(null, codecs));
+    assertNull(ContentCodecs.negotiate("identity", codecs));
+    assertNull(ContentCodecs.negotiate("gzip;q=0, deflate;q=0", codecs));
+    assertNull(ContentCodecs.negotiate("*;q=0", codecs));
+  }
+
+  @Test
+  public void shouldChooseCodecWithHighestQValue() {
+    assertSame(ContentCodecs.DEFLATE, ContentCodecs.negotiate("gzip;q=0.5, deflate", codecs));
+    assertSame(ContentCodecs.DEFLATE, ContentCodecs.negotiate("gzip;q=0, *", codecs));
+    assertSame(ContentCodecs.GZIP, ContentCodecs.negotiate("x-gzip", codecs));
+  }
+
+  @Test
+  public void shouldPreferFirstCodecWhenQValuesAreEqual() {
+    assertSame(ContentCodecs.GZIP, ContentCodecs.negotiate("deflate, gzip", codecs));
+    assertSame(ContentCodecs.GZIP, ContentCodecs.negotiate("*", codecs));
+  }
+
+  @Test
+  public void shouldEncodeGzipAtAnyLevel()
+      throws Exception {
+    for (final int level : new int[] { -1, 1, 9 }) {
+      final byte[] encoded = ContentCodecs.GZIP.encode(CONTENT, level);
+      assertArrayEquals(CONTENT, IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(encoded))));
+    }
+  }
+
+  @Test
+  public void shouldEncodeDeflate()
+      throws Exception {
+    final byte[] encoded = ContentCodecs.DEFLATE.encode(CONTENT, 9);
+    assertTrue(encoded.length < CONTENT.length);
+    assertArrayEquals(CONTENT, IOUtils.toByteArray(new InflaterInputStream(new ByteArrayInputStream(encoded))));
+  }
+}
@@ -0,0 +1,53 @@
+package ro.isdc.wro.http.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+
+/**
+ * @author Alex Objelean
+ */
+public class TestPreloadLinks {
+  @Test(expected = NullPointerException.class)
+  public void cannotAcceptNullCss() {
+    PreloadLinks.fromCss(null);
+  }
+
+  @Test
+  public void shouldHaveNoLinksWhenCssHasNoUrls() {
+    assertNull(PreloadLinks.fromCss("body {color: red}"));
+  }
+
+  @Test
+  public void shouldPreloadFontsAndImages() {
+    final String css = "@font-face {src: url('../fonts/a.woff2') format('woff2')}"
+        + ".logo {background: url(img/logo.png?v=1)}";
+    assertEquals("<../fonts/a.woff2>; rel=preload; as=font; crossorigin, <img/logo.png?v=1>; rel=preload; as=image",
+        PreloadLinks.fromCss(css));
+  }
+
+  @Test
+  public void shouldUseProxiedResourceExtension() {
+    final String css = ".a {background: url(/app/wro/all.css?wroAPI=wroResources&id=/img/a.gif)}";
+    assertEquals("</app/wro/all.css?wroAPI=wroResources&id=/img/a.gif>; rel=preload; as=image",
+        PreloadLinks.fromCss(css));
+  }
+
+  @Test
+  public void shouldSkipDataUrisDuplicatesAndUnknownTypes() {
+    final String css = ".a {background: url(data:image/png;base64,AAAA)} .b {background: url(a.png)} "
+        + ".c {background: url(a.png)} .d {behavior: url(a.htc)}";
+    assertEquals("<a.png>; rel=preload; as=image", PreloadLinks.fromCss(css));
+  }
+
+  @Test
+  public void shouldLimitTheNumberOfLinks() {
+    final StringBuilder css = new StringBuilder();
+    for (int i = 0; i < PreloadLinks.MAX_LINKS + 5; i++) {
+      css.append(".i").append(i).append(" {background: url(").append(i).append(".png)}");
+    }
+    assertEquals(PreloadLinks.MAX_LINKS, PreloadLinks.fromCss(css.toString()).split(", ").length);
+  }
+}
@@ -1,8 +1,15 @@
 package ro.isdc.wro.http.support;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import java.text.SimpleDateFormat;
+import java.util.Locale;
 import java.util.Map;
 
 import javax.servlet.FilterChain;
@@ -13,6 +20,7 @@ import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -118,4 +126,50 @@ public class TestResponseHeadersConfigurer {
     assertEquals("v1", map.get("h1"));
     assertEquals("v2", map.get("h2"));
   }
+
+  @Test
+  public void shouldSetConfiguredHeaders() {
+    victim = ResponseHeadersConfigurer.withHeadersSet("h1:v1 | h2:v2");
+    victim.setHeaders(response);
+    verify(response).setHeader("h1", "v1");
+    verify(response).setHeader("h2", "v2");
+  }
+
+  @Test
+  public void shouldComputeExpiresRelativeToCurrentTime()
+      throws Exception {
+    final WroConfiguration config = new WroConfiguration();
+    config.setDebug(false);
+    victim = ResponseHeadersConfigurer.fromConfig(config);
+    final long before = System.currentTimeMillis() / 1000 * 1000;
+    victim.setHeaders(response);
+
+    final ArgumentCaptor<String> expires = ArgumentCaptor.forClass(String.class);
+    verify(response).setHeader(eq(HttpHeader.EXPIRES.getHeaderName()), expires.capture());
+    final long oneYear = 365L * 24 * 60 * 60 * 1000;
+    final long expiresTime = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US).parse(
+        expires.getValue()).getTime();
+    assertTrue(expiresTime >= before + oneYear);
+    assertTrue(expiresTime <= System.currentTimeMillis() + oneYear);
+  }
+
+  @Test
+  public void shouldKeepExplicitExpiresHeaderSetAsString() {
+    final String explicitExpires = "Thu, 15 Apr 2010 20:00:00 GMT";
+    final WroConfiguration config = new WroConfiguration();
+    config.setDebug(false);
+    config.setHeader("Expires: " + explicitExpires);
+    victim = ResponseHeadersConfigurer.fromConfig(config);
+    victim.setHeaders(response);
+
+    verify(response).setHeader(HttpHeader.EXPIRES.getHeaderName(), explicitExpires);
+    verify(response, times(1)).setHeader(eq(HttpHeader.EXPIRES.getHeaderName()), anyString());
+  }
+
+  @Test
+  public void shouldShareNoCacheHeaders() {
+    assertSame(ResponseHeadersConfigurer.noCache(), ResponseHeadersConfigurer.noCache());
+    assertEquals("no-cache", ResponseHeadersConfigurer.noCache().getHeadersMap().get(
+        HttpHeader.CACHE_CONTROL.getHeaderName()));
+  }
 }
@@ -0,0 +1,129 @@
+package ro.isdc.wro.http.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import ro.isdc.wro.http.support.ResponseValidators.ByteRange;
+import ro.isdc.wro.util.WroUtil;
+
+
+/**
+ * @author Alex Objelean
+ */
+public class TestResponseValidators {
+  private static final long LAST_MODIFIED = 1356994800123L;
+  @Mock
+  private HttpServletRequest mockRequest;
+  private ResponseValidators victim;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    when(mockRequest.getDateHeader(anyString())).thenReturn(-1L);
+    victim = ResponseValidators.strong("abc", LAST_MODIFIED);
+  }
+
+  @Test
+  public void shouldSetHeaders() {
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    victim.setHeaders(response);
+    verify(response).setHeader(HttpHeader.ETAG.toString(), "\"abc\"");
+    verify(response).setHeader(HttpHeader.LAST_MODIFIED.toString(), WroUtil.toDateAsString(1356994800000L));
+  }
+
+  @Test
+  public void shouldQuoteWeakETag() {
+    assertEquals("W/\"abc\"", ResponseValidators.weak("abc", 0).getETag());
+    assertNull(ResponseValidators.strong(null, 0).getETag());
+  }
+
+  @Test
+  public void shouldBeModifiedWhenNoConditionalHeaders() {
+    assertFalse(victim.isNotModified(mockRequest));
+  }
+
+  @Test
+  public void shouldMatchAnyOfIfNoneMatchTags() {
+    when(mockRequest.getHeader(HttpHeader.IF_NONE_MATCH.toString())).thenReturn("\"xyz\", W/\"abc\"");
+    assertTrue(victim.isNotModified(mockRequest));
+  }
+
+  @Test
+  public void shouldIgnoreIfModifiedSinceWhenIfNoneMatchIsPresent() {
+    when(mockRequest.getHeader(HttpHeader.IF_NONE_MATCH.toString())).thenReturn("\"xyz\"");
+    when(mockRequest.getDateHeader(HttpHeader.IF_MODIFIED_SINCE.toString())).thenReturn(LAST_MODIFIED + 1000);
+    assertFalse(victim.isNotModified(mockRequest));
+  }
+
+  @Test
+  public void shouldNotBeModifiedSinceLastModifiedSecond() {
+    when(mockRequest.getDateHeader(HttpHeader.IF_MODIFIED_SINCE.toString())).thenReturn(1356994800000L);
+    assertTrue(victim.isNotModified(mockRequest));
+    when(mockRequest.getDateHeader(HttpHeader.IF_MODIFIED_SINCE.toString())).thenReturn(1356994799000L);
+    assertFalse(victim.isNotModified(mockRequest));
+  }
+
+  @Test
+  public void shouldTreatInvalidDateAsMissingHeader() {
+    when(mockRequest.getDateHeader(HttpHeader.IF_MODIFIED_SINCE.toString())).thenThrow(
+        new IllegalArgumentException("invalid"));
+    assertFalse(victim.isNotModified(mockRequest));
+  }
+
+  @Test
+  public void shouldIgnoreMissingOrInvalidRange() {
+    assertNull(victim.getRange(mockRequest, 10));
+    assertNull(ByteRange.parse("items=0-1", 10));
+    assertNull(ByteRange.parse("bytes=0-1,3-4", 10));
+    assertNull(ByteRange.parse("bytes=5-1", 10));
+    assertNull(ByteRange.parse("bytes=a-", 10));
+  }
+
+  @Test
+  public void shouldParseRanges() {
+    assertEquals("bytes 2-5/10", ByteRange.parse("bytes=2-5", 10).toContentRange());
+    assertEquals("bytes 2-9/10", ByteRange.parse("bytes=2-", 10).toContentRange());
+    assertEquals("bytes 2-9/10", ByteRange.parse("bytes=2-100", 10).toContentRange());
+    assertEquals("bytes 7-9/10", ByteRange.parse("bytes=-3", 10).toContentRange());
+    assertEquals("bytes 0-9/10", ByteRange.parse("bytes=-30", 10).toContentRange());
+    assertEquals(4, ByteRange.parse("bytes=2-5", 10).getLength());
+  }
+
+  @Test
+  public void shouldDetectUnsatisfiableRange() {
+    final ByteRange range = ByteRange.parse("bytes=10-", 10);
+    assertFalse(range.isSatisfiable());
+    assertEquals("bytes */10", range.toContentRange());
+  }
+
+  @Test
+  public void shouldIgnoreRangeWhenIfRangeDoesNotMatch() {
+    when(mockRequest.getHeader(HttpHeader.RANGE.toString())).thenReturn("bytes=0-1");
+    when(mockRequest.getHeader(HttpHeader.IF_RANGE.toString())).thenReturn("\"xyz\"");
+    assertNull(victim.getRange(mockRequest, 10));
+    when(mockRequest.getHeader(HttpHeader.IF_RANGE.toString())).thenReturn("\"abc\"");
+    assertEquals(0, victim.getRange(mockRequest, 10).getStart());
+  }
+
+  @Test
+  public void shouldNotUseWeakETagForIfRange() {
+    victim = ResponseValidators.weak("abc", 0);
+    when(mockRequest.getHeader(HttpHeader.RANGE.toString())).thenReturn("bytes=0-1");
+    when(mockRequest.getHeader(HttpHeader.IF_RANGE.toString())).thenReturn("W/\"abc\"");
+    assertNull(victim.getRange(mockRequest, 10));
+  }
+}
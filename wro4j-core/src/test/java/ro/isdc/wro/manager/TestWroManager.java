@@ -4,6 +4,9 @@
 package ro.isdc.wro.manager;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.verify;
 
@@ -17,6 +20,7 @@ import java.io.Reader;
 import java.io.Writer;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.Map;
 
 import javax.servlet.FilterConfig;
 import javax.servlet.http.HttpServletRequest;
@@ -396,6 +400,27 @@ public class TestWroManager {
     managerFactory.create().process();
   }
 
+  @Test
+  public void shouldServeFingerprintedRequestAsImmutable()
+      throws IOException {
+    final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+    final HttpServletResponse response = Mockito.mock(HttpServletResponse.class, Mockito.RETURNS_DEEP_STUBS);
+    final WroConfiguration config = new WroConfiguration();
+    config.setDebug(false);
+    Context.unset();
+    Context.set(Context.webContext(request, response, Mockito.mock(FilterConfig.class)), config);
+    final WroManager manager = managerFactory.create();
+    final String versionedPath = manager.encodeVersionIntoGroupPath("g1", ResourceType.CSS, true);
+    final String fingerprint = versionedPath.substring(0, versionedPath.indexOf('/'));
+    Mockito.when(request.getRequestURI()).thenReturn("/app/" + fingerprint + "/g1.css");
+    Mockito.when(request.getHeader(HttpHeader.IF_NONE_MATCH.toString())).thenReturn("\"stale\"");
+
+    manager.process();
+
+    Mockito.verify(response).setHeader(HttpHeader.CACHE_CONTROL.toString(), "public, max-age=31536000, immutable");
+    Mockito.verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+  }
+
   @Test
   public void testManagerWithSchedulerAndUpdatePeriodSet()
       throws Exception {
@@ -513,6 +538,29 @@ public class TestWroManager {
     assertEquals("aebaedcdec8131230d47259be7a628b5dfeff6ba/g3.css?minimize=true", path);
   }
 
+  @Test
+  public void shouldStoreInCacheAllGroupsProcessedAtOnce() {
+    final Resource common = Resource.create("/common.js");
+    final WroModel model = new WroModel().addGroup(new Group("g1").addResource(common).addResource(Resource.create("/a.js"))).addGroup(
+        new Group("g2").addResource(common));
+    final BaseWroManagerFactory factory = new BaseWroManagerFactory().setModelFactory(
+        WroTestUtils.simpleModelFactory(model)).setUriLocatorFactory(WroTestUtils.createResourceMockingLocatorFactory());
+    factory.setProcessorsFactory(new SimpleProcessorsFactory());
+    final WroManager manager = factory.create();
+    final CacheKey key1 = new CacheKey("g1", ResourceType.JS, true);
+    final CacheKey key2 = new CacheKey("g2", ResourceType.JS, true);
+
+    assertFalse(manager.isCached(key1));
+    final Map<CacheKey, CacheValue> result = manager.processAll(Arrays.asList(key1, key2));
+    assertTrue(manager.isCached(key1));
+    assertEquals(2, result.size());
+    WroTestUtils.compare("/common.js\n/a.js", result.get(key1).getRawContent());
+    assertSame(result.get(key1), manager.getCacheStrategy().get(key1));
+    assertSame(result.get(key2), manager.getCacheStrategy().get(key2));
+    // the cached groups are not processed again
+    assertSame(result.get(key2), manager.processAll(Arrays.asList(key2)).get(key2));
+  }
+
   @Test
   public void cacheShouldNotBeClearedAfterModelReload()
       throws IOException {
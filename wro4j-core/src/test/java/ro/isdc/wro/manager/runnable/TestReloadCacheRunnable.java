@@ -11,7 +11,9 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
 import ro.isdc.wro.cache.CacheStrategy;
+import ro.isdc.wro.cache.support.DefaultSynchronizedCacheStrategyDecorator;
 import ro.isdc.wro.config.Context;
+import ro.isdc.wro.config.jmx.WroConfiguration;
 
 
 /**
@@ -48,4 +50,22 @@ public class TestReloadCacheRunnable {
     victim.run();
     Mockito.verify(mockCacheStrategy).clear();
   }
+  
+  @Test
+  public void shouldClearCacheWhenReloadInBackgroundIsDisabled() {
+    final DefaultSynchronizedCacheStrategyDecorator cacheStrategy = Mockito.mock(DefaultSynchronizedCacheStrategyDecorator.class);
+    new ReloadCacheRunnable(cacheStrategy, new WroConfiguration()).run();
+    Mockito.verify(cacheStrategy).clear();
+    Mockito.verify(cacheStrategy, Mockito.never()).reload();
+  }
+  
+  @Test
+  public void shouldReloadCacheInBackgroundWhenEnabled() {
+    final DefaultSynchronizedCacheStrategyDecorator cacheStrategy = Mockito.mock(DefaultSynchronizedCacheStrategyDecorator.class);
+    final WroConfiguration config = new WroConfiguration();
+    config.setReloadCacheInBackground(true);
+    new ReloadCacheRunnable(cacheStrategy, config).run();
+    Mockito.verify(cacheStrategy).reload();
+    Mockito.verify(cacheStrategy, Mockito.never()).clear();
+  }
 }
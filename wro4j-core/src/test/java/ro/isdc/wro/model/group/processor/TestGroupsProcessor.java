@@ -10,7 +10,11 @@ import static org.mockito.Mockito.verify;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -159,6 +163,41 @@ public class TestGroupsProcessor {
     verify(cssMinProcessor).process(Mockito.any(Resource.class), Mockito.any(Reader.class), Mockito.any(Writer.class));
   }
   
+  @Test
+  public void shouldPreProcessSharedResourcesOnlyOnceWhenProcessingMoreGroups() {
+    final Resource common = Resource.create("common.js");
+    final WroModel model = new WroModel().addGroup(new Group("g1").addResource(common).addResource(Resource.create("a.js"))).addGroup(
+        new Group("g2").addResource(common).addResource(Resource.create("b.js")));
+    final AtomicInteger preProcessedCount = new AtomicInteger();
+    final ResourcePreProcessor countingPreProcessor = new ResourcePreProcessor() {
+      public void process(final Resource resource, final Reader reader, final Writer writer)
+          throws IOException {
+        preProcessedCount.incrementAndGet();
+        IOUtils.copy(reader, writer);
+      }
+    };
+    final BaseWroManagerFactory managerFactory = new BaseWroManagerFactory().setModelFactory(
+        WroTestUtils.simpleModelFactory(model)).setUriLocatorFactory(
+        new SimpleUriLocatorFactory().addLocator(WroTestUtils.createResourceMockingLocator()));
+    managerFactory.setProcessorsFactory(new SimpleProcessorsFactory().addPreProcessor(countingPreProcessor));
+    initVictim(new WroConfiguration(), managerFactory);
+
+    final CacheKey key1 = new CacheKey("g1", ResourceType.JS, true);
+    final CacheKey key2 = new CacheKey("g2", ResourceType.JS, true);
+    final Map<CacheKey, String> result = victim.processAll(Arrays.asList(key2, key1));
+    assertEquals(Arrays.asList(key2, key1), Arrays.asList(result.keySet().toArray()));
+    WroTestUtils.compare("common.js\na.js", result.get(key1));
+    WroTestUtils.compare("common.js\nb.js", result.get(key2));
+    assertEquals(3, preProcessedCount.get());
+    assertEquals(victim.process(key1), result.get(key1));
+  }
+
+  @Test(expected = WroRuntimeException.class)
+  public void cannotProcessMoreGroupsWhenOneOfThemIsMissing() {
+    victim.processAll(Arrays.asList(new CacheKey(groupName, ResourceType.JS, true), new CacheKey("missing",
+        ResourceType.JS, true)));
+  }
+
   @Test
   public void shouldCleanupProperlyWhenDestroyed() {
     PreProcessorExecutor mockPreProcessorExecutor = mock(PreProcessorExecutor.class);
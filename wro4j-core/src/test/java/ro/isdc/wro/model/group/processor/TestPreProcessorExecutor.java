@@ -15,6 +15,7 @@ import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletContext;
@@ -362,6 +363,50 @@ public class TestPreProcessorExecutor {
     compare("1\n2", result);
   }
 
+  @Test
+  public void shouldPreProcessSharedResourceOnlyOnceWhenCacheIsEnabled()
+      throws Exception {
+    Context.get().getConfig().setPreProcessingCacheSize(10);
+    final AtomicInteger invocations = new AtomicInteger();
+    initExecutorWithCountingProcessor(invocations);
+
+    final String first = victim.processAndMerge(createResources(Resource.create("shared", ResourceType.JS),
+        Resource.create("first", ResourceType.JS)), true);
+    final String second = victim.processAndMerge(createResources(Resource.create("shared", ResourceType.JS),
+        Resource.create("second", ResourceType.JS)), true);
+    compare("shared\nfirst", first);
+    compare("shared\nsecond", second);
+    assertEquals(3, invocations.get());
+  }
+
+  @Test
+  public void shouldPreProcessResourceEachTimeWhenCacheIsDisabled()
+      throws Exception {
+    Context.get().getConfig().setPreProcessingCacheSize(0);
+    final AtomicInteger invocations = new AtomicInteger();
+    initExecutorWithCountingProcessor(invocations);
+
+    victim.processAndMerge(createResources(Resource.create("shared", ResourceType.JS)), true);
+    victim.processAndMerge(createResources(Resource.create("shared", ResourceType.JS)), true);
+    assertEquals(2, invocations.get());
+  }
+
+  private void initExecutorWithCountingProcessor(final AtomicInteger invocations) {
+    final UriLocatorFactory locatorFactory = new SimpleUriLocatorFactory().addLocator(WroTestUtils.createResourceMockingLocator());
+    final SimpleProcessorsFactory processorsFactory = new SimpleProcessorsFactory();
+    processorsFactory.addPreProcessor(new ResourcePreProcessor() {
+      public void process(final Resource resource, final Reader reader, final Writer writer)
+          throws IOException {
+        invocations.incrementAndGet();
+        IOUtils.copy(reader, writer);
+      }
+    });
+    final WroManagerFactory managerFactory = new BaseWroManagerFactory().setUriLocatorFactory(locatorFactory).setProcessorsFactory(
+        processorsFactory);
+    victim = new PreProcessorExecutor();
+    InjectorBuilder.create(managerFactory).build().inject(victim);
+  }
+
   private static class AnyTypeProcessor
       implements ResourcePreProcessor, ResourcePostProcessor {
     public void process(final Resource resource, final Reader reader, final Writer writer)
@@ -3,15 +3,27 @@
  */
 package ro.isdc.wro.model.resource.locator;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
 import ro.isdc.wro.config.Context;
+import ro.isdc.wro.model.resource.locator.UrlUriLocator.LocatedResource;
 import ro.isdc.wro.util.WroTestUtils;
 
 
@@ -115,4 +127,38 @@ public class TestUrlUriLocator {
   public void shouldRetrieveCDNResourceRequiringAgentHeader() throws IOException {
 	  victim.locate("http://cdn.datatables.net/1.10.5/js/jquery.dataTables.min.js");
   }
+
+  @Test
+  public void shouldLocateRemoteResourceOnlyIfModified()
+      throws Exception {
+    final AtomicInteger transfers = new AtomicInteger();
+    final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      public void handle(final HttpExchange exchange)
+          throws IOException {
+        exchange.getResponseHeaders().set("ETag", "\"v1\"");
+        if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+          exchange.sendResponseHeaders(304, -1);
+        } else {
+          transfers.incrementAndGet();
+          exchange.sendResponseHeaders(200, 7);
+          exchange.getResponseBody().write("content".getBytes());
+        }
+        exchange.close();
+      }
+    });
+    server.start();
+    try {
+      final String uri = "http://localhost:" + server.getAddress().getPort() + "/resource.js";
+      final LocatedResource resource = ((UrlUriLocator) victim).locateIfModified(uri, null, 0);
+      assertEquals("content", IOUtils.toString(resource.getInputStream()));
+      resource.getInputStream().close();
+      assertEquals("\"v1\"", resource.getETag());
+
+      assertNull(((UrlUriLocator) victim).locateIfModified(uri, resource.getETag(), 0));
+      assertEquals(1, transfers.get());
+    } finally {
+      server.stop(0);
+    }
+  }
 }
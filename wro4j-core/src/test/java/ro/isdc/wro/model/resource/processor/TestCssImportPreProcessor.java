@@ -12,6 +12,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -28,9 +29,12 @@ import ro.isdc.wro.WroRuntimeException;
 import ro.isdc.wro.config.Context;
 import ro.isdc.wro.config.jmx.WroConfiguration;
 import ro.isdc.wro.config.support.ContextPropagatingCallable;
+import ro.isdc.wro.model.group.Inject;
+import ro.isdc.wro.model.group.processor.Injector;
 import ro.isdc.wro.model.resource.Resource;
 import ro.isdc.wro.model.resource.ResourceType;
 import ro.isdc.wro.model.resource.processor.impl.css.CssImportPreProcessor;
+import ro.isdc.wro.model.resource.support.change.ResourceDependencyIndex;
 import ro.isdc.wro.util.WroTestUtils;
 
 
@@ -108,6 +112,23 @@ public class TestCssImportPreProcessor {
     assertEquals(1, times.get());
   }
 
+  private static class DependencyIndexHolder {
+    @Inject
+    private ResourceDependencyIndex dependencyIndex;
+  }
+
+  @Test
+  public void shouldRecordFoundImports()
+      throws Exception {
+    final Injector injector = WroTestUtils.createInjector();
+    final DependencyIndexHolder holder = new DependencyIndexHolder();
+    injector.inject(victim);
+    injector.inject(holder);
+    final Resource resource = Resource.create("/css/someResource.css");
+    victim.process(resource, new StringReader("@import('child/style.css');"), new StringWriter());
+    assertEquals(Arrays.asList("/css/child/style.css"), holder.dependencyIndex.getImports(resource.getUri()));
+  }
+
   @Test
   public void shouldCorrectlyDetectImportWithDoubleQuotes()
       throws Exception {
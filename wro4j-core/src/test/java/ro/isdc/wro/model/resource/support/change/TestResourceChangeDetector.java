@@ -1,8 +1,17 @@
 package ro.isdc.wro.model.resource.support.change;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -13,6 +22,8 @@ import ro.isdc.wro.manager.factory.WroManagerFactory;
 import ro.isdc.wro.model.group.Inject;
 import ro.isdc.wro.model.group.processor.Injector;
 import ro.isdc.wro.model.group.processor.InjectorBuilder;
+import ro.isdc.wro.model.resource.locator.FileAware;
+import ro.isdc.wro.model.resource.locator.UriLocator;
 import ro.isdc.wro.model.resource.locator.factory.SimpleUriLocatorFactory;
 import ro.isdc.wro.util.WroTestUtils;
 
@@ -67,4 +78,114 @@ public class TestResourceChangeDetector {
     assertFalse(victim.checkChangeForGroup("resource", GROUP1_NAME));
     assertTrue(victim.checkChangeForGroup("resource", GROUP2_NAME));
   }
+
+  @Test
+  public void shouldNotReadFileWhenMetadataIsUnchanged()
+      throws Exception {
+    final File file = File.createTempFile("wro4j", ".js");
+    try {
+      FileUtils.write(file, "content");
+      file.setLastModified(System.currentTimeMillis() - 60000);
+      final AtomicInteger reads = new AtomicInteger();
+      final UriLocator fileLocator = new FileLocator(file) {
+        @Override
+        public InputStream locate(final String uri)
+            throws IOException {
+          reads.incrementAndGet();
+          return super.locate(uri);
+        }
+      };
+      final WroManagerFactory managerFactory = new BaseWroManagerFactory().setUriLocatorFactory(
+          new SimpleUriLocatorFactory().addLocator(fileLocator));
+      InjectorBuilder.create(managerFactory).build().inject(this);
+
+      victim.checkChangeForGroup("/file.js", GROUP1_NAME);
+      victim.reset();
+      assertFalse(victim.checkChangeForGroup("/file.js", GROUP1_NAME));
+      assertEquals(1, reads.get());
+
+      victim.reset();
+      FileUtils.write(file, "changed content");
+      file.setLastModified(System.currentTimeMillis() - 30000);
+      assertTrue(victim.checkChangeForGroup("/file.js", GROUP1_NAME));
+      assertEquals(2, reads.get());
+    } finally {
+      FileUtils.deleteQuietly(file);
+    }
+  }
+
+  @Test
+  public void shouldNotDetectChangeWhenOnlyTheTimestampChanged()
+      throws Exception {
+    final File file = File.createTempFile("wro4j", ".js");
+    try {
+      FileUtils.write(file, "content");
+      file.setLastModified(System.currentTimeMillis() - 60000);
+      InjectorBuilder.create(
+          new BaseWroManagerFactory().setUriLocatorFactory(new SimpleUriLocatorFactory().addLocator(new FileLocator(
+              file)))).build().inject(this);
+      victim.checkChangeForGroup("/file.js", GROUP1_NAME);
+      victim.reset();
+      file.setLastModified(System.currentTimeMillis() - 30000);
+      assertFalse(victim.checkChangeForGroup("/file.js", GROUP1_NAME));
+    } finally {
+      FileUtils.deleteQuietly(file);
+    }
+  }
+
+  @Test
+  public void shouldCheckSharedResourceOnlyOncePerCycle()
+      throws Exception {
+    final AtomicInteger reads = new AtomicInteger();
+    final UriLocator locator = new UriLocator() {
+      public InputStream locate(final String uri)
+          throws IOException {
+        reads.incrementAndGet();
+        return new ByteArrayInputStream("content".getBytes());
+      }
+
+      public boolean accept(final String uri) {
+        return true;
+      }
+    };
+    InjectorBuilder.create(
+        new BaseWroManagerFactory().setUriLocatorFactory(new SimpleUriLocatorFactory().addLocator(locator))).build()
+        .inject(this);
+
+    victim.startCycle();
+    victim.checkChangeForGroup("/shared.js", GROUP1_NAME);
+    victim.reset();
+    victim.checkChangeForGroup("/shared.js", GROUP2_NAME);
+    assertEquals(1, reads.get());
+
+    victim.startCycle();
+    victim.reset();
+    assertFalse(victim.checkChangeForGroup("/shared.js", GROUP1_NAME));
+    assertEquals(2, reads.get());
+  }
+
+  /**
+   * Locates any uri from the provided file.
+   */
+  private static class FileLocator
+      implements UriLocator, FileAware {
+    private final File file;
+
+    FileLocator(final File file) {
+      this.file = file;
+    }
+
+    public InputStream locate(final String uri)
+        throws IOException {
+      return new FileInputStream(file);
+    }
+
+    public boolean accept(final String uri) {
+      return true;
+    }
+
+    public File getFile(final String uri) {
+      return file;
+    }
+  }
 }
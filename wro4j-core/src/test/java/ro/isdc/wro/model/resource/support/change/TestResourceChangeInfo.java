@@ -94,6 +94,21 @@ public class TestResourceChangeInfo {
     assertTrue(victim.isChanged(GROUP1_NAME));
   }
 
+  @Test
+  public void shouldNotDetectChangeHandledDuringSameCycle() {
+    victim.updateHashForGroup("hash1", GROUP1_NAME);
+    victim.reset();
+    victim.updateHashForGroup("hash2", GROUP1_NAME);
+    assertTrue(victim.isChanged(GROUP1_NAME));
+    victim.markHandled(GROUP2_NAME);
+    assertFalse(victim.isChanged(GROUP2_NAME));
+    assertTrue(victim.isChanged(GROUP3_NAME));
+    // the next cycle
+    victim.reset();
+    victim.updateHashForGroup("hash2", GROUP2_NAME);
+    assertFalse(victim.isChanged(GROUP2_NAME));
+  }
+
   @Test
   public void shouldDetectChangeForUpdatedGroupsOnly() {
     victim.updateHashForGroup("hash1", GROUP1_NAME);
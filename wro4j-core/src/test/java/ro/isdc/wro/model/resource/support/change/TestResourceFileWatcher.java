@@ -0,0 +1,208 @@
+package ro.isdc.wro.model.resource.support.change;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+import ro.isdc.wro.cache.CacheKey;
+import ro.isdc.wro.cache.CacheStrategy;
+import ro.isdc.wro.cache.CacheValue;
+import ro.isdc.wro.config.Context;
+import ro.isdc.wro.manager.factory.BaseWroManagerFactory;
+import ro.isdc.wro.model.WroModel;
+import ro.isdc.wro.model.group.Group;
+import ro.isdc.wro.model.group.Inject;
+import ro.isdc.wro.model.group.processor.Injector;
+import ro.isdc.wro.model.group.processor.InjectorBuilder;
+import ro.isdc.wro.model.resource.Resource;
+import ro.isdc.wro.model.resource.ResourceType;
+import ro.isdc.wro.model.resource.locator.FileAware;
+import ro.isdc.wro.model.resource.locator.UriLocator;
+import ro.isdc.wro.model.resource.locator.factory.AbstractUriLocatorFactory;
+import ro.isdc.wro.util.WroTestUtils;
+
+
+/**
+ * @author Alex Objelean
+ */
+public class TestResourceFileWatcher {
+  private final CacheKey jsKey = new CacheKey("g1", ResourceType.JS, true);
+  private final CacheKey sharedKey = new CacheKey("g2", ResourceType.JS, true);
+  private final CacheKey remoteKey = new CacheKey("g3", ResourceType.JS, true);
+  private final CacheKey importingKey = new CacheKey("g4", ResourceType.CSS, true);
+  @Mock
+  private CacheStrategy<CacheKey, CacheValue> mockCacheStrategy;
+  private File folder;
+  private ResourceFileWatcher victim;
+  private final DependencyIndexHolder dependencyIndexHolder = new DependencyIndexHolder();
+
+  @BeforeClass
+  public static void onBeforeClass() {
+    assertEquals(0, Context.countActive());
+  }
+
+  @AfterClass
+  public static void onAfterClass() {
+    assertEquals(0, Context.countActive());
+  }
+
+  @Before
+  public void setUp()
+      throws Exception {
+    initMocks(this);
+    Context.set(Context.standaloneContext());
+    folder = new File(FileUtils.getTempDirectory(), "wro4j-file-watcher-" + System.nanoTime());
+    FileUtils.write(new File(folder, "a.js"), "a");
+    FileUtils.write(new File(folder, "b.js"), "b");
+    FileUtils.write(new File(folder, "c.css"), "@import url(d.css);");
+    final WroModel model = new WroModel();
+    model.addGroup(new Group("g1").addResource(Resource.create("/a.js")).addResource(Resource.create("/b.js")));
+    model.addGroup(new Group("g2").addResource(Resource.create("/b.js")));
+    model.addGroup(new Group("g3").addResource(Resource.create("/b.js")).addResource(
+        Resource.create("http://www.site.com/remote.js")));
+    model.addGroup(new Group("g4").addResource(Resource.create("/c.css")));
+    final BaseWroManagerFactory managerFactory = new BaseWroManagerFactory().setModelFactory(
+        WroTestUtils.simpleModelFactory(model)).setUriLocatorFactory(new AbstractUriLocatorFactory() {
+      public UriLocator getInstance(final String uri) {
+        return new FileLocator();
+      }
+    });
+    managerFactory.setCacheStrategy(mockCacheStrategy);
+    victim = new ResourceFileWatcher();
+    final Injector injector = InjectorBuilder.create(managerFactory).build();
+    injector.inject(victim);
+    injector.inject(dependencyIndexHolder);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(folder);
+    Context.unset();
+  }
+
+  @Test
+  public void shouldInvalidateOnlyTheGroupsContainingTheChangedFile()
+      throws Exception {
+    assertTrue(victim.watch(jsKey));
+    assertTrue(victim.watch(sharedKey));
+
+    FileUtils.write(new File(folder, "a.js"), "changed");
+    checkAndNotify();
+
+    verify(mockCacheStrategy).put(jsKey, null);
+    verify(mockCacheStrategy, never()).put(sharedKey, null);
+    assertFalse(victim.isWatched(jsKey));
+    assertTrue(victim.isWatched(sharedKey));
+  }
+
+  @Test
+  public void shouldNotInvalidateWhenFilesAreUnchanged() {
+    victim.watch(jsKey);
+    checkAndNotify();
+    verify(mockCacheStrategy, never()).put(Mockito.any(CacheKey.class), Mockito.any(CacheValue.class));
+    assertTrue(victim.isWatched(jsKey));
+  }
+
+  @Test
+  public void shouldInvalidateWhenFileIsDeleted() {
+    victim.watch(sharedKey);
+    FileUtils.deleteQuietly(new File(folder, "b.js"));
+    checkAndNotify();
+    verify(mockCacheStrategy).put(sharedKey, null);
+  }
+
+  @Test
+  public void shouldNotWatchGroupContainingResourceNotReadFromFile() {
+    assertFalse(victim.watch(remoteKey));
+    assertFalse(victim.isWatched(remoteKey));
+  }
+
+  @Test
+  public void shouldNotWatchCssContainingImports() {
+    assertFalse(victim.watch(importingKey));
+  }
+
+  @Test
+  public void shouldWatchImportedFilesWhenImportsAreRecorded()
+      throws Exception {
+    FileUtils.write(new File(folder, "d.css"), "d");
+    dependencyIndexHolder.dependencyIndex.setImports("/c.css", Arrays.asList("/d.css"));
+    assertTrue(victim.watch(importingKey));
+
+    FileUtils.write(new File(folder, "d.css"), "changed");
+    checkAndNotify();
+
+    verify(mockCacheStrategy).put(importingKey, null);
+  }
+
+  @Test
+  public void shouldInvalidateGroupsDependingOnChangedFileWhichAreNotWatched()
+      throws Exception {
+    assertTrue(victim.watch(sharedKey));
+    // recorded by the ResourceWatcher, which checks the groups not watched
+    dependencyIndexHolder.dependencyIndex.addDependency("/b.js", remoteKey);
+
+    FileUtils.write(new File(folder, "b.js"), "changed");
+    checkAndNotify();
+
+    verify(mockCacheStrategy).put(sharedKey, null);
+    verify(mockCacheStrategy).put(remoteKey, null);
+  }
+
+  @Test
+  public void shouldNotWatchAnythingAfterClear() {
+    victim.watch(jsKey);
+    victim.clear();
+    assertFalse(victim.isWatched(jsKey));
+  }
+
+  private static class DependencyIndexHolder {
+    @Inject
+    private ResourceDependencyIndex dependencyIndex;
+  }
+
+  /**
+   * The files are inspected outside of the request cycle.
+   */
+  private void checkAndNotify() {
+    Context.unset();
+    victim.checkAndNotify();
+  }
+
+  /**
+   * Locates the resources relative to the temporary folder. The absolute urls are not read from files.
+   */
+  private class FileLocator
+      implements UriLocator, FileAware {
+    public InputStream locate(final String uri)
+        throws IOException {
+      return new FileInputStream(getFile(uri));
+    }
+
+    public boolean accept(final String uri) {
+      return true;
+    }
+
+    public File getFile(final String uri) {
+      return uri.startsWith("/") ? new File(folder, uri) : null;
+    }
+  }
+}
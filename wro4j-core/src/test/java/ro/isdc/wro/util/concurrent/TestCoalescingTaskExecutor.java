@@ -0,0 +1,144 @@
+package ro.isdc.wro.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * @author Alex Objelean
+ */
+public class TestCoalescingTaskExecutor {
+  private CoalescingTaskExecutor<String> victim;
+
+  @Before
+  public void setUp() {
+    victim = new CoalescingTaskExecutor<String>(4, 4, "test");
+  }
+
+  @After
+  public void tearDown() {
+    victim.destroy();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void cannotUseInvalidPoolSize() {
+    new CoalescingTaskExecutor<String>(0, 1, "test");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void cannotUseInvalidMaxPendingTasks() {
+    new CoalescingTaskExecutor<String>(1, 0, "test");
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void cannotSubmitNullTask() {
+    victim.submit("key", null);
+  }
+
+  @Test
+  public void shouldRunTasksWithSameKeyAfterTheFirstOneCompletes()
+      throws Exception {
+    final CountDownLatch firstTaskStarted = new CountDownLatch(1);
+    final CountDownLatch releaseFirstTask = new CountDownLatch(1);
+    final CountDownLatch allTasksCompleted = new CountDownLatch(4);
+    final AtomicInteger completedBeforeRelease = new AtomicInteger();
+    victim.submit("key", new Runnable() {
+      public void run() {
+        firstTaskStarted.countDown();
+        try {
+          releaseFirstTask.await();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        allTasksCompleted.countDown();
+      }
+    });
+    assertTrue(firstTaskStarted.await(5, TimeUnit.SECONDS));
+    for (int i = 0; i < 3; i++) {
+      victim.submit("key", new Runnable() {
+        public void run() {
+          if (releaseFirstTask.getCount() > 0) {
+            completedBeforeRelease.incrementAndGet();
+          }
+          allTasksCompleted.countDown();
+        }
+      });
+    }
+    assertEquals(3, victim.getWaitingCount());
+
+    final CountDownLatch otherKeyCompleted = new CountDownLatch(1);
+    victim.submit("otherKey", new Runnable() {
+      public void run() {
+        otherKeyCompleted.countDown();
+      }
+    });
+    assertTrue(otherKeyCompleted.await(5, TimeUnit.SECONDS));
+
+    releaseFirstTask.countDown();
+    assertTrue(allTasksCompleted.await(5, TimeUnit.SECONDS));
+    assertEquals(0, completedBeforeRelease.get());
+    assertEquals(0, victim.getWaitingCount());
+  }
+
+  @Test
+  public void shouldRejectTasksWhenTooManyArePending()
+      throws Exception {
+    final CountDownLatch firstTaskStarted = new CountDownLatch(1);
+    final CountDownLatch releaseTask = new CountDownLatch(1);
+    final CountDownLatch allTasksCompleted = new CountDownLatch(5);
+    final Runnable task = new Runnable() {
+      public void run() {
+        firstTaskStarted.countDown();
+        try {
+          releaseTask.await();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        allTasksCompleted.countDown();
+      }
+    };
+    assertTrue(victim.submit("key", task));
+    assertTrue(firstTaskStarted.await(5, TimeUnit.SECONDS));
+    for (int i = 0; i < 4; i++) {
+      assertTrue(victim.submit("key", task));
+    }
+    // the tasks waiting for the running one are pending too
+    assertEquals(4, victim.getPendingCount());
+    assertFalse(victim.submit("otherKey", task));
+    releaseTask.countDown();
+    assertTrue(allTasksCompleted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void shouldRunWaitingTasksWhenTheFirstOneFails()
+      throws Exception {
+    final CountDownLatch completed = new CountDownLatch(1);
+    final CountDownLatch releaseFirstTask = new CountDownLatch(1);
+    victim.submit("key", new Runnable() {
+      public void run() {
+        try {
+          releaseFirstTask.await();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        throw new IllegalStateException("BOOM");
+      }
+    });
+    victim.submit("key", new Runnable() {
+      public void run() {
+        completed.countDown();
+      }
+    });
+    releaseFirstTask.countDown();
+    assertTrue(completed.await(5, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,124 @@
+package ro.isdc.wro.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ro.isdc.wro.config.Context;
+
+
+/**
+ * @author Alex Objelean
+ */
+public class TestWorkStealingExecutor {
+  private WorkStealingExecutor victim;
+
+  @BeforeClass
+  public static void onBeforeClass() {
+    assertEquals(0, Context.countActive());
+  }
+
+  @AfterClass
+  public static void onAfterClass() {
+    assertEquals(0, Context.countActive());
+  }
+
+  @After
+  public void tearDown() {
+    if (victim != null) {
+      victim.destroy();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void cannotUseInvalidPoolSize() {
+    new WorkStealingExecutor(0, "test");
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void cannotInvokeNullTasks()
+      throws Exception {
+    victim = new WorkStealingExecutor(2, "test");
+    victim.invokeAll(null);
+  }
+
+  @Test
+  public void shouldReturnResultsInOrderOfTasks()
+      throws Exception {
+    victim = new WorkStealingExecutor(4, "test");
+    final List<Callable<Integer>> callables = new ArrayList<Callable<Integer>>();
+    final List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < 50; i++) {
+      callables.add(createTask(i, (50 - i) % 5));
+      expected.add(i);
+    }
+    assertEquals(expected, victim.invokeAll(callables));
+    assertEquals(50, victim.getCompletedCount());
+    assertEquals(0, victim.getActiveCount());
+    assertEquals(0, victim.getQueueSize());
+  }
+
+  @Test(timeout = 10000)
+  public void shouldNotDeadlockWhenNestedTasksAreSubmittedToSingleThreadPool()
+      throws Exception {
+    victim = new WorkStealingExecutor(1, "test");
+    final List<Callable<Integer>> callables = new ArrayList<Callable<Integer>>();
+    for (int i = 0; i < 4; i++) {
+      final int index = i;
+      callables.add(new Callable<Integer>() {
+        public Integer call()
+            throws Exception {
+          int sum = 0;
+          for (final Integer result : victim.invokeAll(Arrays.asList(createTask(index, 5), createTask(index, 5)))) {
+            sum += result;
+          }
+          return sum;
+        }
+      });
+    }
+    assertEquals(Arrays.asList(0, 2, 4, 6), victim.invokeAll(callables));
+  }
+
+  @Test(expected = IOException.class)
+  public void shouldPropagateOriginalException()
+      throws Exception {
+    victim = new WorkStealingExecutor(2, "test");
+    final List<Callable<Integer>> callables = new ArrayList<Callable<Integer>>();
+    callables.add(createTask(0, 0));
+    callables.add(new Callable<Integer>() {
+      public Integer call()
+          throws Exception {
+        throw new IOException("BOOM");
+      }
+    });
+    victim.invokeAll(callables);
+  }
+
+  @Test
+  public void shouldRunTasksAfterDestroy()
+      throws Exception {
+    victim = new WorkStealingExecutor(2, "test");
+    victim.invokeAll(Arrays.asList(createTask(0, 0), createTask(1, 0)));
+    victim.destroy();
+    assertEquals(Arrays.asList(2, 3), victim.invokeAll(Arrays.asList(createTask(2, 0), createTask(3, 0))));
+  }
+
+  private Callable<Integer> createTask(final int result, final long delay) {
+    return new Callable<Integer>() {
+      public Integer call()
+          throws Exception {
+        Thread.sleep(delay);
+        return result;
+      }
+    };
+  }
+}
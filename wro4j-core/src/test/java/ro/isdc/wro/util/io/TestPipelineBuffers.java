@@ -0,0 +1,71 @@
+package ro.isdc.wro.util.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * @author Alex Objelean
+ */
+public class TestPipelineBuffers {
+  private PipelineBuffers victim;
+
+  @Before
+  public void setUp() {
+    victim = new PipelineBuffers(0);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void cannotReadWhenNothingWasWritten() {
+    victim.getReader();
+  }
+
+  @Test
+  public void shouldChainMultipleStages()
+      throws Exception {
+    Reader reader = new StringReader("a");
+    for (int i = 0; i < 5; i++) {
+      appendStage(reader, victim.nextWriter(), i);
+      reader = victim.getReader();
+    }
+    assertEquals("a01234", victim.toString());
+    assertEquals("a01234", IOUtils.toString(victim.getReader()));
+    final StringWriter writer = new StringWriter();
+    victim.writeTo(writer);
+    assertEquals("a01234", writer.toString());
+  }
+
+  @Test
+  public void shouldNotAffectPreviousOutputUntilNextWriterIsRequested()
+      throws Exception {
+    victim.nextWriter().write("first");
+    final Reader reader = victim.getReader();
+    victim.nextWriter().write("second");
+    assertEquals("first", IOUtils.toString(reader));
+    assertEquals("second", victim.toString());
+  }
+
+  @Test
+  public void shouldHandleContentLargerThanInitialSize()
+      throws Exception {
+    final String content = new String(new char[10000]).replace('\0', 'x');
+    victim.nextWriter().write(content);
+    appendStage(victim.getReader(), victim.nextWriter(), 1);
+    assertEquals(content + "1", victim.toString());
+  }
+
+  private void appendStage(final Reader reader, final Writer writer, final int stage)
+      throws IOException {
+    IOUtils.copy(reader, writer);
+    writer.write(String.valueOf(stage));
+  }
+}
@@ -5,6 +5,7 @@ import static org.apache.commons.lang3.Validate.notNull;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.Collections;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -18,6 +19,7 @@ import ro.isdc.wro.model.resource.SupportedResourceType;
 import ro.isdc.wro.model.resource.locator.factory.UriLocatorFactory;
 import ro.isdc.wro.model.resource.processor.ResourcePostProcessor;
 import ro.isdc.wro.model.resource.processor.ResourcePreProcessor;
+import ro.isdc.wro.model.resource.support.change.ResourceDependencyIndex;
 import ro.isdc.wro.util.WroUtil;
 
 import com.github.sommeri.less4j.Less4jException;
@@ -42,18 +44,27 @@ public class Less4jProcessor
   public static final String ALIAS = "less4j";
 
   /**
-   * Required to use the less4j import mechanism.
+   * Required to use the less4j import mechanism. Each resolved import is recorded in the
+   * {@link ResourceDependencyIndex}.
    */
   private static class RelativeAwareLessSource
       extends LessSource.StringSource {
     private final Resource resource;
     private final UriLocatorFactory locatorFactory;
+    private final ResourceDependencyIndex dependencyIndex;
 
-    public RelativeAwareLessSource(final Resource resource, final String content, final UriLocatorFactory locatorFactory) {
+    public RelativeAwareLessSource(final Resource resource, final String content,
+        final UriLocatorFactory locatorFactory, final ResourceDependencyIndex dependencyIndex) {
       super(content);
       this.resource = resource;
       notNull(locatorFactory);
+      notNull(dependencyIndex);
       this.locatorFactory = locatorFactory;
+      this.dependencyIndex = dependencyIndex;
+      if (resource != null) {
+        // the imports are recorded again while compiling the current content
+        dependencyIndex.setImports(resource.getUri(), Collections.<String> emptyList());
+      }
     }
 
     @Override
@@ -67,7 +78,8 @@ public class Less4jProcessor
         final String relativeResourceUri = computeRelativeResourceUri(resource.getUri(), relativePath);
         final Resource relativeResource = Resource.create(relativeResourceUri, ResourceType.CSS);
         final String relativeResourceContent = IOUtils.toString(locatorFactory.locate(relativeResourceUri), "UTF-8");
-        return new RelativeAwareLessSource(relativeResource, relativeResourceContent, locatorFactory);
+        dependencyIndex.addImport(resource.getUri(), relativeResourceUri);
+        return new RelativeAwareLessSource(relativeResource, relativeResourceContent, locatorFactory, dependencyIndex);
       } catch (final IOException e) {
         LOG.error("Failed to compute relative resource: " + resource, e);
         throw new StringSourceException();
@@ -81,6 +93,8 @@ public class Less4jProcessor
   }
   @Inject
   private UriLocatorFactory locatorFactory;
+  @Inject
+  private ResourceDependencyIndex dependencyIndex;
 
   private final LessCompiler compiler = new DefaultLessCompiler();
 
@@ -94,7 +108,8 @@ public class Less4jProcessor
   public void process(final Resource resource, final Reader reader, final Writer writer)
       throws IOException {
     try {
-      final LessSource lessSource = new RelativeAwareLessSource(resource, IOUtils.toString(reader), locatorFactory);
+      final LessSource lessSource = new RelativeAwareLessSource(resource, IOUtils.toString(reader), locatorFactory,
+          dependencyIndex);
       final CompilationResult result = compiler.compile(lessSource);
       logWarnings(result);
       writer.write(result.getCss());
@@ -8,6 +8,8 @@ import java.io.FileReader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.concurrent.Callable;
 
 import org.junit.After;
@@ -17,9 +19,13 @@ import org.junit.Test;
 
 import ro.isdc.wro.config.Context;
 import ro.isdc.wro.extensions.processor.css.Less4jProcessor;
+import ro.isdc.wro.model.group.Inject;
+import ro.isdc.wro.model.group.processor.Injector;
 import ro.isdc.wro.model.resource.Resource;
 import ro.isdc.wro.model.resource.ResourceType;
+import ro.isdc.wro.model.resource.locator.ClasspathUriLocator;
 import ro.isdc.wro.model.resource.processor.ResourcePreProcessor;
+import ro.isdc.wro.model.resource.support.change.ResourceDependencyIndex;
 import ro.isdc.wro.util.Function;
 import ro.isdc.wro.util.WroTestUtils;
 
@@ -30,13 +36,18 @@ import ro.isdc.wro.util.WroTestUtils;
  * @author Alex Objelean
  */
 public class TestLess4jProcessor {
+  private static final String PACKAGE_PATH = "ro/isdc/wro/extensions/processor/lesscss/test/";
   private ResourcePreProcessor victim;
+  @Inject
+  private ResourceDependencyIndex dependencyIndex;
   @Before
   public void setUp() {
     victim = new Less4jProcessor();
     Context.set(Context.standaloneContext());
     victim = new Less4jProcessor();
-    WroTestUtils.createInjector().inject(victim);
+    final Injector injector = WroTestUtils.createInjector();
+    injector.inject(victim);
+    injector.inject(this);
   }
 
   @After
@@ -108,6 +119,26 @@ public class TestLess4jProcessor {
     WroTestUtils.compareFromDifferentFoldersByExtension(testFolder, expectedFolder, "css", processor);
   }
 
+  @Test
+  public void shouldRecordResolvedImports()
+      throws Exception {
+    final String uri = ClasspathUriLocator.createUri(PACKAGE_PATH + "import.css");
+    final Resource resource = Resource.create(uri, ResourceType.CSS);
+    victim.process(resource, new FileReader(new File(getClass().getResource("lesscss/test/import.css").getFile())),
+        new StringWriter());
+    Assert.assertEquals(Arrays.asList(ClasspathUriLocator.createUri(PACKAGE_PATH + "import/mixins.less")),
+        dependencyIndex.getImports(uri));
+  }
+
+  @Test
+  public void shouldReplaceRecordedImportsWhenProcessedAgain()
+      throws Exception {
+    final String uri = ClasspathUriLocator.createUri(PACKAGE_PATH + "import.css");
+    dependencyIndex.setImports(uri, Arrays.asList("/removed.less"));
+    victim.process(Resource.create(uri, ResourceType.CSS), new StringReader("#id {color: red;}"), new StringWriter());
+    Assert.assertEquals(Collections.emptyList(), dependencyIndex.getImports(uri));
+  }
+
   @Test
   public void shouldSupportCorrectResourceTypes() {
     WroTestUtils.assertProcessorSupportResourceTypes(new Less4jProcessor(), ResourceType.CSS);
@@ -7,11 +7,14 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.logging.Log;
 import org.sonatype.plexus.build.incremental.BuildContext;
 
@@ -25,6 +28,7 @@ import ro.isdc.wro.model.resource.processor.ResourcePreProcessor;
 import ro.isdc.wro.model.resource.processor.decorator.ExceptionHandlingProcessorDecorator;
 import ro.isdc.wro.model.resource.processor.impl.css.AbstractCssImportPreProcessor;
 import ro.isdc.wro.model.resource.processor.impl.css.CssImportPreProcessor;
+import ro.isdc.wro.model.resource.support.change.ResourceDependencyIndex;
 import ro.isdc.wro.model.resource.support.hash.HashStrategy;
 import ro.isdc.wro.util.Function;
 
@@ -33,6 +37,10 @@ import com.google.common.annotations.VisibleForTesting;
 
 /**
  * Encapsulates the details about resource change detection and persist the change information in build context.
+ * <p/>
+ * Along with the fingerprints, the imports of each css resource recorded during processing (see
+ * {@link ResourceDependencyIndex}) are persisted, thus the imports are checked for change without parsing the css
+ * again. A css is parsed only when its imports were not recorded yet.
  *
  * @author Alex Objelean
  * @created 2 Oct 2013
@@ -42,6 +50,14 @@ public class ResourceChangeHandler {
   private enum ChangeStatus {
     CHANGED, NOT_CHANGED
   }
+  /**
+   * Prefix of the key under which the imports of a resource are persisted.
+   */
+  private static final String IMPORTS_KEY_PREFIX = "imports:";
+  /**
+   * Separates the persisted uris of the imported resources.
+   */
+  private static final String IMPORTS_SEPARATOR = "\n";
 
   private WroManagerFactory managerFactory;
   private Log log;
@@ -86,10 +102,8 @@ public class ResourceChangeHandler {
       changeDetected.set(newValue);
 
       if (!changeDetected.get() && resource.getType() == ResourceType.CSS) {
-        final Reader reader = new InputStreamReader(locatorFactory.locate(resource.getUri()));
-        getLog().debug("Check @import directive from " + resource);
         // detect changes in imported resources.
-        detectChangeForCssImports(resource, reader, changeDetected);
+        detectChangeForCssImports(resource, locatorFactory, changeDetected);
       }
       return changeDetected.get();
     } catch (final IOException e) {
@@ -98,9 +112,23 @@ public class ResourceChangeHandler {
     return false;
   }
 
-  private void detectChangeForCssImports(final Resource resource, final Reader reader,
+  private void detectChangeForCssImports(final Resource resource, final UriLocatorFactory locatorFactory,
       final AtomicBoolean changeDetected)
       throws IOException {
+    final List<String> persistedImports = getPersistedImports(resource.getUri());
+    if (persistedImports != null) {
+      for (final String importedUri : persistedImports) {
+        final boolean isImportChanged = isResourceChanged(Resource.create(importedUri, ResourceType.CSS));
+        getLog().debug("\tisImportChanged: " + isImportChanged);
+        if (isImportChanged) {
+          changeDetected.set(true);
+          return;
+        }
+      }
+      return;
+    }
+    final Reader reader = new InputStreamReader(locatorFactory.locate(resource.getUri()));
+    getLog().debug("Check @import directive from " + resource);
     forEachCssImportApply(new Function<String, ChangeStatus>() {
       public ChangeStatus apply(final String importedUri) throws Exception {
         final boolean isImportChanged = isResourceChanged(Resource.create(importedUri, ResourceType.CSS));
@@ -136,10 +164,8 @@ public class ResourceChangeHandler {
         rememberedSet.add(resource.getUri());
         getLog().debug("Persist fingerprint for resource '" + resource.getUri() + "' : " + fingerprint);
         if (resource.getType() == ResourceType.CSS) {
-          final Reader reader = new InputStreamReader(locatorFactory.locate(resource.getUri()));
-          getLog().debug("Check @import directive from " + resource);
           // persist fingerprints in imported resources.
-          persistFingerprintsForCssImports(resource, reader);
+          persistFingerprintsForCssImports(resource, locatorFactory);
         }
       } catch (final IOException e) {
         getLog().debug("could not check fingerprint of resource: " + resource);
@@ -147,8 +173,17 @@ public class ResourceChangeHandler {
     }
   }
 
-  private void persistFingerprintsForCssImports(final Resource resource, final Reader reader)
+  private void persistFingerprintsForCssImports(final Resource resource, final UriLocatorFactory locatorFactory)
       throws IOException {
+    final List<String> recordedImports = getRecordedImports(resource.getUri());
+    if (recordedImports != null) {
+      for (final String importedUri : recordedImports) {
+        remember(Resource.create(importedUri, ResourceType.CSS));
+      }
+      return;
+    }
+    final Reader reader = new InputStreamReader(locatorFactory.locate(resource.getUri()));
+    getLog().debug("Check @import directive from " + resource);
     forEachCssImportApply(new Function<String, ChangeStatus>() {
       public ChangeStatus apply(final String importedUri) throws Exception {
         remember(Resource.create(importedUri, ResourceType.CSS));
@@ -157,6 +192,44 @@ public class ResourceChangeHandler {
     }, resource, reader);
   }
 
+  /**
+   * @return the imports recorded while processing the resource during the current build, or the ones persisted by a
+   *         previous build. Null if unknown.
+   */
+  private List<String> getRecordedImports(final String uri) {
+    final ResourceDependencyIndex dependencyIndex = getManagerFactory().create().getResourceDependencyIndex();
+    final List<String> recordedImports = dependencyIndex != null ? dependencyIndex.getImports(uri) : null;
+    return recordedImports != null ? recordedImports : getPersistedImports(uri);
+  }
+
+  /**
+   * @return the imports of the resource persisted by a previous build, or null if unknown.
+   */
+  private List<String> getPersistedImports(final String uri) {
+    final String value = getBuildContextHolder().getValue(IMPORTS_KEY_PREFIX + uri);
+    return value == null ? null : Arrays.asList(StringUtils.split(value, IMPORTS_SEPARATOR));
+  }
+
+  /**
+   * Persists the imports recorded during processing for each remembered resource. The imported resources discovered
+   * during processing only are remembered as well.
+   */
+  private void persistRecordedImports() {
+    final ResourceDependencyIndex dependencyIndex = getManagerFactory().create().getResourceDependencyIndex();
+    if (dependencyIndex == null) {
+      return;
+    }
+    for (final String uri : new ArrayList<String>(rememberedSet)) {
+      final List<String> imports = dependencyIndex.getImports(uri);
+      if (imports != null) {
+        getBuildContextHolder().setValue(IMPORTS_KEY_PREFIX + uri, StringUtils.join(imports, IMPORTS_SEPARATOR));
+        for (final String importedUri : imports) {
+          remember(Resource.create(importedUri, ResourceType.CSS));
+        }
+      }
+    }
+  }
+
   /**
    * Invokes the provided function for each detected css import.
    *
@@ -276,6 +349,7 @@ public class ResourceChangeHandler {
   public void forget(final Resource resource) {
     if (resource != null) {
       getBuildContextHolder().setValue(resource.getUri(), null);
+      getBuildContextHolder().setValue(IMPORTS_KEY_PREFIX + resource.getUri(), null);
       rememberedSet.remove(resource.getUri());
     }
   }
@@ -284,6 +358,7 @@ public class ResourceChangeHandler {
    * Persist the values stored in BuildContext(Holder)
    */
   public void persist() {
+    persistRecordedImports();
     getBuildContextHolder().persist();
   }
 }
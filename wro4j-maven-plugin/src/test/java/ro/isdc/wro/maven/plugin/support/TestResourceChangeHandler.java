@@ -1,11 +1,15 @@
 package ro.isdc.wro.maven.plugin.support;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.MockitoAnnotations.initMocks;
 
+import java.io.File;
+import java.util.Arrays;
 import java.util.Properties;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.logging.Log;
 import org.junit.After;
 import org.junit.Before;
@@ -30,6 +34,7 @@ public class TestResourceChangeHandler {
   private Log log;
   private ConfigurableWroManagerFactory managerFactory;
   private ResourceChangeHandler victim;
+  private File buildDirectory;
 
   @Before
   public void setUp() {
@@ -37,15 +42,21 @@ public class TestResourceChangeHandler {
 
     Context.set(Context.standaloneContext());
 
-    managerFactory = new ConfigurableWroManagerFactory() {
+    managerFactory = createManagerFactory();
+    buildDirectory = new File(FileUtils.getTempDirectory(), "wro4j-build-" + System.nanoTime());
+
+    victim = ResourceChangeHandler.create(managerFactory, log);
+  }
+
+  private ConfigurableWroManagerFactory createManagerFactory() {
+    final ConfigurableWroManagerFactory factory = new ConfigurableWroManagerFactory() {
       @Override
       protected Properties createProperties() {
         return new Properties();
       }
     };
-    managerFactory.initialize(new StandaloneContext());
-
-    victim = ResourceChangeHandler.create(managerFactory, log);
+    factory.initialize(new StandaloneContext());
+    return factory;
   }
 
   @Test(expected = NullPointerException.class)
@@ -95,8 +106,55 @@ public class TestResourceChangeHandler {
     assertEquals(true, victim.isResourceChanged(resource));
   }
 
+  @Test
+  public void shouldDetectChangeOfImportPersistedByPreviousBuild()
+      throws Exception {
+    // the css doesn't contain any @import, thus the change can be detected only through the persisted imports
+    final File css = new File(buildDirectory, "style.css");
+    final File importedCss = new File(buildDirectory, "imported.css");
+    FileUtils.write(css, "body {}");
+    FileUtils.write(importedCss, "a {}");
+    final String cssUri = css.toURI().toURL().toString();
+    final String importedUri = importedCss.toURI().toURL().toString();
+    final Resource resource = Resource.create(cssUri, ResourceType.CSS);
+
+    managerFactory.create().getResourceDependencyIndex().setImports(cssUri, Arrays.asList(importedUri));
+    victim.setBuildContextHolder(new BuildContextHolder(null, buildDirectory));
+    victim.remember(resource);
+    victim.persist();
+
+    // the next build doesn't process the css, thus its imports are not recorded
+    final ResourceChangeHandler nextBuild = ResourceChangeHandler.create(createManagerFactory(), log);
+    final BuildContextHolder nextBuildContextHolder = new BuildContextHolder(null, buildDirectory);
+    nextBuild.setBuildContextHolder(nextBuildContextHolder);
+    assertEquals(importedUri, nextBuildContextHolder.getValue("imports:" + cssUri));
+    assertEquals(false, nextBuild.isResourceChanged(resource));
+
+    FileUtils.write(importedCss, "a {color: red}");
+    assertEquals(true, nextBuild.isResourceChanged(resource));
+  }
+
+  @Test
+  public void shouldPersistImportsRecordedForRememberedResourceOnly()
+      throws Exception {
+    final String cssUri = "/style.css";
+    managerFactory.create().getResourceDependencyIndex().setImports(cssUri, Arrays.asList("/imported.css"));
+    victim.setBuildContextHolder(buildContextHolder);
+    victim.persist();
+    verify(buildContextHolder, never()).setValue("imports:" + cssUri, "/imported.css");
+  }
+
+  @Test
+  public void shouldForgetPersistedImports() {
+    final Resource resource = Resource.create("/style.css", ResourceType.CSS);
+    victim.setBuildContextHolder(buildContextHolder);
+    victim.forget(resource);
+    verify(buildContextHolder).setValue("imports:/style.css", null);
+  }
+
   @After
   public void tearDown() {
+    FileUtils.deleteQuietly(buildDirectory);
     Context.unset();
   }
 }